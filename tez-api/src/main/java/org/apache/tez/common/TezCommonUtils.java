@@ -264,6 +264,23 @@ public class TezCommonUtils {
     return new Path(attemptRecoverPath, dagID + TezConstants.DAG_RECOVERY_RECOVER_FILE_SUFFIX);
   }
 
+  /**
+   * <p>
+   * Returns a path to store the DAG specific recovery checkpoint
+   * </p>
+   *
+   * @param attemptRecoverPath
+   *          TEZ system level staging directory used for Tez internals
+   * @param dagID
+   *          DagID as string
+   * @return DAG specific recovery checkpoint path
+   */
+  @Private
+  public static Path getDAGRecoveryCheckpointPath(Path attemptRecoverPath, String dagID) {
+    return new Path(attemptRecoverPath,
+        dagID + TezConstants.DAG_RECOVERY_CHECKPOINT_FILE_SUFFIX);
+  }
+
   /**
    * <p>
    * Returns a path to store summary info for recovery
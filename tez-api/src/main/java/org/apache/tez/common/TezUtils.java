@@ -21,6 +21,7 @@ package org.apache.tez.common;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -52,6 +53,19 @@ public class TezUtils {
 
   private static final Logger LOG = LoggerFactory.getLogger(TezUtils.class);
 
+  // The same payload is parsed by every task of a vertex, often by several of its inputs and
+  // outputs as well. Parsed configurations are cached by the compressed payload bytes, and
+  // callers get copies, which are much cheaper than inflating and parsing the payload again.
+  private static final int PARSED_CONF_CACHE_SIZE = 32;
+  // Guarded by itself
+  private static final Map<ByteString, Configuration> PARSED_CONFS =
+      new LinkedHashMap<ByteString, Configuration>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<ByteString, Configuration> eldest) {
+          return size() > PARSED_CONF_CACHE_SIZE;
+        }
+      };
+
   /**
    * Allows changing the log level for task / AM logging. </p>
    *
@@ -112,12 +126,29 @@ public class TezUtils {
    */
   public static Configuration createConfFromByteString(ByteString byteString) throws IOException {
     Preconditions.checkNotNull(byteString, "ByteString must be specified");
-    // SnappyInputStream uncompressIs = new
-    // SnappyInputStream(byteString.newInput());
-    InflaterInputStream uncompressIs = new InflaterInputStream(byteString.newInput());
-    DAGProtos.ConfigurationProto confProto = DAGProtos.ConfigurationProto.parseFrom(uncompressIs);
-    Configuration conf = new Configuration(false);
-    readConfFromPB(confProto, conf);
+    Configuration parsedConf;
+    synchronized (PARSED_CONFS) {
+      parsedConf = PARSED_CONFS.get(byteString);
+    }
+    if (parsedConf == null) {
+      // SnappyInputStream uncompressIs = new
+      // SnappyInputStream(byteString.newInput());
+      InflaterInputStream uncompressIs = new InflaterInputStream(byteString.newInput());
+      DAGProtos.ConfigurationProto confProto =
+          DAGProtos.ConfigurationProto.parseFrom(uncompressIs);
+      parsedConf = new Configuration(false);
+      readConfFromPB(confProto, parsedConf);
+      synchronized (PARSED_CONFS) {
+        PARSED_CONFS.put(byteString, parsedConf);
+      }
+    }
+    // The cached instance is never handed out, so callers are free to modify their copy
+    Configuration conf = new Configuration(parsedConf);
+    // The copy inherits the class loader of the thread which parsed the payload
+    ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+    if (classLoader != null) {
+      conf.setClassLoader(classLoader);
+    }
     return conf;
   }
 
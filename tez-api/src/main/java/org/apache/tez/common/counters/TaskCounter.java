@@ -218,5 +218,79 @@ public enum TaskCounter {
    *
    * Represented in milliseconds
    */
-  LAST_EVENT_RECEIVED
+  LAST_EVENT_RECEIVED,
+
+  /**
+   * Number of bytes of fetched inputs served from the container level fetch cache, instead of
+   * being fetched again. Not included in SHUFFLE_BYTES.
+   */
+  SHUFFLE_BYTES_FROM_CACHE,
+
+  /**
+   * Number of lookups by the task which found an object in the ObjectRegistry.
+   */
+  OBJECT_REGISTRY_HITS,
+
+  /**
+   * Number of lookups by the task which did not find an object in the ObjectRegistry.
+   */
+  OBJECT_REGISTRY_MISSES,
+
+  /**
+   * Number of objects evicted from the ObjectRegistry, to stay within its memory budget, while
+   * the task was running.
+   */
+  OBJECT_REGISTRY_EVICTIONS,
+
+  /**
+   * Time taken to initialize the task, i.e. to initialize the processor and its Inputs and
+   * Outputs, and to start the Inputs.
+   *
+   * Represented in milliseconds.
+   */
+  TASK_INITIALIZE_TIME,
+
+  /**
+   * Time taken to initialize the processor.
+   *
+   * Represented in milliseconds.
+   */
+  PROCESSOR_INITIALIZE_TIME,
+
+  /**
+   * Time taken for all Inputs and Outputs to be initialized, which is done in parallel.
+   *
+   * Represented in milliseconds.
+   */
+  IO_INITIALIZE_TIME,
+
+  /**
+   * Time taken to start the Inputs started by the framework.
+   *
+   * Represented in milliseconds.
+   */
+  INPUT_START_TIME,
+
+  /**
+   * Time spent in the run method of the processor.
+   *
+   * Represented in milliseconds.
+   */
+  PROCESSOR_RUN_TIME,
+
+  /**
+   * Time taken to close the Inputs, Outputs and processor.
+   *
+   * Represented in milliseconds.
+   */
+  TASK_CLOSE_TIME,
+
+  /**
+   * Number of fetched in-memory outputs waiting to be merged, summed over the inputs of the task.
+   * Unlike the other counters, this is the current value rather than a total, and is 0 once the
+   * shuffles complete.
+   *
+   * Used by ShuffledMergedInput
+   */
+  SHUFFLE_MERGE_QUEUE_DEPTH
 }
\ No newline at end of file
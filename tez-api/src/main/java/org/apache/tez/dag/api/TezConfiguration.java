@@ -521,6 +521,18 @@ public class TezConfiguration extends Configuration {
   public static final int TEZ_AM_CONTAINERLAUNCHER_THREAD_COUNT_LIMIT_DEFAULT = 
     500;
 
+  /**
+   * Int value. Maximum number of container launches or stops sent to a NodeManager in a single
+   * call. Launches and stops which queue up for the same node while the launcher threads are
+   * busy are batched. Expert level setting.
+   */
+  @ConfigurationScope(Scope.AM)
+  @ConfigurationProperty(type="integer")
+  public static final String TEZ_AM_CONTAINERLAUNCHER_BATCH_SIZE =
+    TEZ_AM_PREFIX + "containerlauncher.batch-size";
+
+  public static final int TEZ_AM_CONTAINERLAUNCHER_BATCH_SIZE_DEFAULT = 50;
+
 
   /**
    * Int value. Specifies the number of task failures on a node before the node is considered faulty.
@@ -597,6 +609,67 @@ public class TezConfiguration extends Configuration {
   public static final boolean
     TEZ_AM_NODE_UNHEALTHY_RESCHEDULE_TASKS_DEFAULT = false;
 
+  /**
+   * Float value. Nodes whose health score drops below this value are considered degraded.
+   * The health score of a node starts at 1 for every DAG, goes down with task failures, fetch
+   * failures of task outputs, container launch failures and attempts which are much slower than
+   * the other attempts of their vertex, and recovers with succeeded attempts. Containers on
+   * degraded nodes are assigned after those on other nodes, and running attempts on degraded
+   * nodes are speculated first. Set to 0 to disable.
+   */
+  @ConfigurationScope(Scope.AM)
+  @ConfigurationProperty(type="float")
+  public static final String TEZ_AM_NODE_HEALTH_DEGRADED_THRESHOLD =
+      TEZ_AM_PREFIX + "node-health.degraded-threshold";
+  public static final float TEZ_AM_NODE_HEALTH_DEGRADED_THRESHOLD_DEFAULT = 0.5f;
+
+  /**
+   * Float value. An attempt is considered slow, and lowers the health score of its node, when it
+   * runs this many times longer than the average of the attempts of its vertex which succeeded
+   * before it.
+   */
+  @ConfigurationScope(Scope.AM)
+  @ConfigurationProperty(type="float")
+  public static final String TEZ_AM_NODE_HEALTH_SLOW_ATTEMPT_FACTOR =
+      TEZ_AM_PREFIX + "node-health.slow-attempt-factor";
+  public static final float TEZ_AM_NODE_HEALTH_SLOW_ATTEMPT_FACTOR_DEFAULT = 2.0f;
+
+  /**
+   * Long value. Time in milliseconds by which the task scheduler delays the assignment of
+   * containers on degraded nodes, so that containers on other nodes get the pending tasks first.
+   */
+  @ConfigurationScope(Scope.AM)
+  @ConfigurationProperty(type="long")
+  public static final String TEZ_AM_NODE_HEALTH_DEGRADED_SCHEDULING_DELAY_MILLIS =
+      TEZ_AM_PREFIX + "node-health.degraded-scheduling-delay-ms";
+  public static final long TEZ_AM_NODE_HEALTH_DEGRADED_SCHEDULING_DELAY_MILLIS_DEFAULT = 1000L;
+
+  /**
+   * Int value. Number of distinct succeeded task attempts on a node whose outputs consumers failed
+   * to fetch, after which all the succeeded task attempts with outputs on that node are
+   * re-executed, without waiting for the failures of each output to be reported. Failures of a
+   * single output, however many consumers report them, are left to the per output handling.
+   * Values less than or equal to 0 disable this, which is the default.
+   */
+  @ConfigurationScope(Scope.AM)
+  @ConfigurationProperty(type="integer")
+  public static final String TEZ_AM_NODE_OUTPUT_FAILURES_RESCHEDULE_THRESHOLD =
+      TEZ_AM_PREFIX + "node-output-failures-reschedule-threshold";
+  public static final int TEZ_AM_NODE_OUTPUT_FAILURES_RESCHEDULE_THRESHOLD_DEFAULT = 0;
+
+  /**
+   * Long value
+   * Maximum time in Milliseconds for which the AM holds a request for DAG status updates while
+   * waiting for the status to change. The wait occupies one of the
+   * {@link #TEZ_AM_CLIENT_THREAD_COUNT} client RPC handlers, so it is kept well below the RPC
+   * timeout, and clients ask again once it expires. Expert level setting.
+   */
+  @ConfigurationScope(Scope.AM)
+  @ConfigurationProperty(type="long")
+  public static final String TEZ_AM_DAG_STATUS_UPDATE_MAX_WAIT_MS = TEZ_AM_PREFIX
+      + "dag.status.update.max-wait-ms";
+  public static final long TEZ_AM_DAG_STATUS_UPDATE_MAX_WAIT_MS_DEFAULT = 1000;
+
   /** Int value. Number of threads to handle client RPC requests. Expert level setting.*/
   @ConfigurationScope(Scope.AM)
   @ConfigurationProperty(type="integer")
@@ -709,6 +782,94 @@ public class TezConfiguration extends Configuration {
   public static final int TEZ_TASK_AM_HEARTBEAT_COUNTER_INTERVAL_MS_DEFAULT =
       4000;
 
+  /**
+   * Int value. Interval, in milliseconds, at which tasks sample their fetch rate, merge queue
+   * depth, spills and CPU usage into a time series, which is sent to the AM along with the
+   * counters and shown per vertex by the AM web service. A value of 0 or less disables sampling.
+   * Intervals shorter than the heartbeat interval are not useful. Expert level setting.
+   */
+  @ConfigurationScope(Scope.AM)
+  @ConfigurationProperty(type="integer")
+  public static final String TEZ_TASK_METRICS_SAMPLE_INTERVAL_MS = TEZ_TASK_PREFIX
+      + "metrics.sample-interval-ms";
+  public static final int TEZ_TASK_METRICS_SAMPLE_INTERVAL_MS_DEFAULT = 0;
+
+  /**
+   * Int value. Maximum number of samples kept per task attempt. Once reached, adjacent samples
+   * are merged and the sample interval of the attempt is doubled, which bounds the memory used
+   * by the AM for each attempt. Expert level setting.
+   */
+  @ConfigurationScope(Scope.AM)
+  @ConfigurationProperty(type="integer")
+  public static final String TEZ_TASK_METRICS_MAX_SAMPLES = TEZ_TASK_PREFIX
+      + "metrics.max-samples";
+  public static final int TEZ_TASK_METRICS_MAX_SAMPLES_DEFAULT = 60;
+
+  /**
+   * Int value. The minimum heartbeat interval, in milliseconds, used by a task while events are
+   * flowing between it and the app master. When set lower than
+   * {@link #TEZ_TASK_AM_HEARTBEAT_INTERVAL_MS}, a task tightens its heartbeat interval down to
+   * this value after any heartbeat which sent or received events. A value of -1 disables this
+   * and keeps the heartbeat interval fixed. Expert level setting.
+   */
+  @ConfigurationScope(Scope.AM)
+  @ConfigurationProperty(type="integer")
+  public static final String TEZ_TASK_AM_HEARTBEAT_INTERVAL_MS_MIN = TEZ_TASK_PREFIX
+      + "am.heartbeat.interval-ms.min";
+  public static final int TEZ_TASK_AM_HEARTBEAT_INTERVAL_MS_MIN_DEFAULT = -1;
+
+  /**
+   * Int value. The heartbeat interval, in milliseconds, up to which an idle task backs off.
+   * When set higher than {@link #TEZ_TASK_AM_HEARTBEAT_INTERVAL_MS}, the heartbeat interval of a
+   * task is doubled after every heartbeat in which no events were sent or received, until this
+   * value is reached. Events generated by the task are still sent out immediately. A value of -1
+   * disables back off. Expert level setting.
+   */
+  @ConfigurationScope(Scope.AM)
+  @ConfigurationProperty(type="integer")
+  public static final String TEZ_TASK_AM_HEARTBEAT_IDLE_INTERVAL_MS_MAX = TEZ_TASK_PREFIX
+      + "am.heartbeat.idle.interval-ms.max";
+  public static final int TEZ_TASK_AM_HEARTBEAT_IDLE_INTERVAL_MS_MAX_DEFAULT = -1;
+
+  /**
+   * Int value. Time, in milliseconds, for which the app master holds a task heartbeat when it
+   * has no events to return, so that events routed to the task in the meantime are delivered
+   * right away instead of at the next heartbeat. Tasks which know the app master long polls only
+   * wait for {@link #TEZ_TASK_AM_HEARTBEAT_INTERVAL_MS_MIN} between heartbeats.
+   * A task releases its held heartbeat as soon as it generates events or completes. Each held
+   * heartbeat occupies one of the {@link #TEZ_AM_TASK_LISTENER_THREAD_COUNT} handler threads, and
+   * at most half of them hold heartbeats at any time.
+   * A value of 0 disables long polling. Expert level setting.
+   */
+  @ConfigurationScope(Scope.AM)
+  @ConfigurationProperty(type="integer")
+  public static final String TEZ_TASK_AM_HEARTBEAT_LONG_POLL_TIMEOUT_MS = TEZ_TASK_PREFIX
+      + "am.heartbeat.long-poll.timeout-ms";
+  public static final int TEZ_TASK_AM_HEARTBEAT_LONG_POLL_TIMEOUT_MS_DEFAULT = 0;
+
+  /**
+   * Int value. Interval, in milliseconds, at which the app master checks for new events for a
+   * task while holding a long polled heartbeat. See
+   * {@link #TEZ_TASK_AM_HEARTBEAT_LONG_POLL_TIMEOUT_MS}. Expert level setting.
+   */
+  @ConfigurationScope(Scope.AM)
+  @ConfigurationProperty(type="integer")
+  public static final String TEZ_TASK_AM_HEARTBEAT_LONG_POLL_CHECK_INTERVAL_MS = TEZ_TASK_PREFIX
+      + "am.heartbeat.long-poll.check-interval-ms";
+  public static final int TEZ_TASK_AM_HEARTBEAT_LONG_POLL_CHECK_INTERVAL_MS_DEFAULT = 10;
+
+  /**
+   * Boolean value. Whether the user payloads of the processor, input and output descriptors are
+   * sent to a container only once. Later tasks run in the same container refer to payloads the
+   * container already has by their hash, which avoids resending large payloads, e.g. serialized
+   * configurations, for every task. Expert level setting.
+   */
+  @ConfigurationScope(Scope.AM)
+  @ConfigurationProperty(type="boolean")
+  public static final String TEZ_TASK_PAYLOAD_REFS_ENABLED = TEZ_TASK_PREFIX
+      + "payload-refs.enabled";
+  public static final boolean TEZ_TASK_PAYLOAD_REFS_ENABLED_DEFAULT = true;
+
   /**
    * Int value. Maximum number of of events to fetch from the AM by the tasks in a single heartbeat.
    * Expert level setting. Expert level setting.
@@ -752,6 +913,55 @@ public class TezConfiguration extends Configuration {
       "initialize-processor-io-serially";
   public static final boolean TEZ_TASK_INITIALIZE_PROCESSOR_IO_SERIALLY_DEFAULT = false;
 
+  /**
+   * Boolean value. Start inputs, and the routing of events to them, as soon as inputs and
+   * outputs have been initialized, and initialize the processor while inputs are already
+   * fetching data. Memory requested by the processor during initialization is assigned as
+   * requested, without being scaled along with the requests of inputs and outputs.
+   * Ignored if {@link #TEZ_TASK_INITIALIZE_PROCESSOR_FIRST} or
+   * {@link #TEZ_TASK_INITIALIZE_PROCESSOR_IO_SERIALLY} is set.
+   * Expert level setting.
+   */
+  @ConfigurationScope(Scope.AM)
+  @ConfigurationProperty(type="boolean")
+  public static final String TEZ_TASK_START_INPUTS_BEFORE_PROCESSOR_INITIALIZE = TEZ_TASK_PREFIX +
+      "start-inputs-before-processor-initialize";
+  public static final boolean TEZ_TASK_START_INPUTS_BEFORE_PROCESSOR_INITIALIZE_DEFAULT = false;
+
+  /**
+   * Long value. Memory budget, in MB, for objects cached in the
+   * {@link org.apache.tez.runtime.api.ObjectRegistry} of a container. Objects are weighed by the
+   * {@link org.apache.tez.runtime.api.ObjectWeigher} configured via
+   * {@link #TEZ_TASK_OBJECT_REGISTRY_WEIGHER_CLASS}, and evicted once the budget is exceeded,
+   * starting with the shortest life-cycle. A value of -1 disables the budget.
+   */
+  @ConfigurationScope(Scope.AM)
+  @ConfigurationProperty(type="long")
+  public static final String TEZ_TASK_OBJECT_REGISTRY_MAX_SIZE_MB = TEZ_TASK_PREFIX +
+      "object-registry.max-size-mb";
+  public static final long TEZ_TASK_OBJECT_REGISTRY_MAX_SIZE_MB_DEFAULT = -1;
+
+  /**
+   * String value. Order in which objects of the same life-cycle are evicted from the
+   * {@link org.apache.tez.runtime.api.ObjectRegistry} when its memory budget is exceeded.
+   * Either LRU (least recently used first) or LFU (least frequently used first).
+   */
+  @ConfigurationScope(Scope.AM)
+  @ConfigurationProperty
+  public static final String TEZ_TASK_OBJECT_REGISTRY_EVICTION_POLICY = TEZ_TASK_PREFIX +
+      "object-registry.eviction-policy";
+  public static final String TEZ_TASK_OBJECT_REGISTRY_EVICTION_POLICY_DEFAULT = "LRU";
+
+  /**
+   * String value. Class implementing {@link org.apache.tez.runtime.api.ObjectWeigher}, used to
+   * estimate the size of objects cached in the {@link org.apache.tez.runtime.api.ObjectRegistry}.
+   * Objects are considered to have no weight if this is not set.
+   */
+  @ConfigurationScope(Scope.AM)
+  @ConfigurationProperty
+  public static final String TEZ_TASK_OBJECT_REGISTRY_WEIGHER_CLASS = TEZ_TASK_PREFIX +
+      "object-registry.weigher.class";
+
   /**
    * Long value. Interval, in milliseconds, within which any of the tasks Input/Processor/Output 
    * components need to make successive progress notifications. If the progress is not notified 
@@ -1262,8 +1472,9 @@ public class TezConfiguration extends Configuration {
 
   /**
    * String value. The directory into which history data will be written. This defaults to the 
-   * container logging directory. This is relevant only when SimpleHistoryLoggingService is being
-   * used for {@link TezConfiguration#TEZ_HISTORY_LOGGING_SERVICE_CLASS}
+   * container logging directory. This is relevant only when SimpleHistoryLoggingService or
+   * ProtoHistoryLoggingService is being used for
+   * {@link TezConfiguration#TEZ_HISTORY_LOGGING_SERVICE_CLASS}
    */
   @ConfigurationScope(Scope.AM)
   @ConfigurationProperty
@@ -1280,6 +1491,18 @@ public class TezConfiguration extends Configuration {
       TEZ_PREFIX + "simple.history.max.errors";
   public static final int TEZ_SIMPLE_HISTORY_LOGGING_MAX_ERRORS_DEFAULT = 10;
 
+  /**
+   * Int value. Number of history events ProtoHistoryLoggingService buffers into a block before
+   * writing it out. Each block is indexed by the DAGs and vertices it contains, so that readers
+   * can skip blocks which are not relevant to them. Blocks are also written out when a DAG
+   * completes.
+   */
+  @ConfigurationScope(Scope.AM)
+  @ConfigurationProperty(type="integer")
+  public static final String TEZ_PROTO_HISTORY_LOGGING_BLOCK_SIZE_EVENTS =
+      TEZ_PREFIX + "proto.history.logging.block.size.events";
+  public static final int TEZ_PROTO_HISTORY_LOGGING_BLOCK_SIZE_EVENTS_DEFAULT = 1000;
+
   /**
    * Int value. Time, in milliseconds, to wait while flushing YARN ATS data during shutdown.
    * Expert level setting.
@@ -1312,6 +1535,37 @@ public class TezConfiguration extends Configuration {
       + "yarn.ats.max.polling.time.per.event.millis";
   public static final int YARN_ATS_MAX_POLLING_TIME_PER_EVENT_DEFAULT = 10;
 
+  /**
+   * Int value. Max no. of history events queued for conversion to ATS entities. Once the limit is
+   * reached, new events wait for space in the queue. Converted entities which cannot be sent to
+   * ATS yet are spilled to local disk, so the queue only fills up if conversion falls behind.
+   * Expert level setting.
+   */
+  @ConfigurationScope(Scope.AM)
+  @ConfigurationProperty(type="integer")
+  public static final String YARN_ATS_EVENT_QUEUE_MAX_SIZE =
+      TEZ_PREFIX + "yarn.ats.event.queue.max.size";
+  public static final int YARN_ATS_EVENT_QUEUE_MAX_SIZE_DEFAULT = 10000;
+
+  /**
+   * Int value. Max no. of converted entity batches held in memory while waiting to be sent to
+   * ATS. Further batches are compressed and spilled to local disk, see
+   * {@link #YARN_ATS_SPILL_DIR}. Expert level setting.
+   */
+  @ConfigurationScope(Scope.AM)
+  @ConfigurationProperty(type="integer")
+  public static final String YARN_ATS_MAX_PENDING_BATCHES =
+      TEZ_PREFIX + "yarn.ats.max.pending.batches";
+  public static final int YARN_ATS_MAX_PENDING_BATCHES_DEFAULT = 100;
+
+  /**
+   * String value. Local directory into which entity batches waiting to be sent to ATS are
+   * spilled. Defaults to the working directory of the AM. Expert level setting.
+   */
+  @ConfigurationScope(Scope.AM)
+  @ConfigurationProperty
+  public static final String YARN_ATS_SPILL_DIR = TEZ_PREFIX + "yarn.ats.spill.dir";
+
   @ConfigurationScope(Scope.AM)
   @ConfigurationProperty(type="boolean")
   public static final String YARN_ATS_ACL_DOMAINS_AUTO_CREATE = TEZ_PREFIX
@@ -1363,6 +1617,51 @@ public class TezConfiguration extends Configuration {
       TEZ_PREFIX + "dag.recovery.flush.interval.secs";
   public static final int DAG_RECOVERY_FLUSH_INTERVAL_SECS_DEFAULT = 30;
 
+  /**
+   * Boolean value. Write the recovery log through group commit. Each recovery file is written by
+   * its own writer, off the threads generating the events, and events which arrive while a
+   * writer is busy are written and flushed together, with a single hflush. Only the submission,
+   * commit start and completion events wait for the flush covering them, the other events are
+   * recorded in the background.
+   */
+  @ConfigurationScope(Scope.AM)
+  @ConfigurationProperty(type="boolean")
+  public static final String DAG_RECOVERY_GROUP_COMMIT_ENABLED =
+      TEZ_PREFIX + "dag.recovery.group.commit.enabled";
+  public static final boolean DAG_RECOVERY_GROUP_COMMIT_ENABLED_DEFAULT = false;
+
+  /**
+   * Long value. Time, in milliseconds, for which a recovery writer waits for more events to
+   * arrive before writing and flushing a batch, when group commit is enabled. 0 only batches
+   * events which arrive while the previous batch is being written.
+   */
+  @ConfigurationScope(Scope.AM)
+  @ConfigurationProperty(type="long")
+  public static final String DAG_RECOVERY_GROUP_COMMIT_WINDOW_MS =
+      TEZ_PREFIX + "dag.recovery.group.commit.window.ms";
+  public static final long DAG_RECOVERY_GROUP_COMMIT_WINDOW_MS_DEFAULT = 0;
+
+  /**
+   * Int value. Number of threads shared by the recovery writers, when group commit is enabled.
+   */
+  @ConfigurationScope(Scope.AM)
+  @ConfigurationProperty(type="integer")
+  public static final String DAG_RECOVERY_GROUP_COMMIT_WRITER_THREADS =
+      TEZ_PREFIX + "dag.recovery.group.commit.writer.threads";
+  public static final int DAG_RECOVERY_GROUP_COMMIT_WRITER_THREADS_DEFAULT = 4;
+
+  /**
+   * Int value. Number of events written to a DAG recovery file between checkpoints. A checkpoint
+   * holds the recovered state of the DAG, along with the offset in the recovery file up to which
+   * it is complete, so that a restarted AM only replays the events written after it. -1 disables
+   * checkpoints.
+   */
+  @ConfigurationScope(Scope.AM)
+  @ConfigurationProperty(type="integer")
+  public static final String DAG_RECOVERY_CHECKPOINT_INTERVAL_EVENTS =
+      TEZ_PREFIX + "dag.recovery.checkpoint.interval.events";
+  public static final int DAG_RECOVERY_CHECKPOINT_INTERVAL_EVENTS_DEFAULT = -1;
+
   /**
    *  Boolean value. Enable local mode execution in Tez. Enables tasks to run in the same process as
    *  the app master. Primarily used for debugging.
@@ -1391,7 +1690,8 @@ public class TezConfiguration extends Configuration {
 
   /**
    * Int value.
-   * The maximium number of tasks running in parallel within the app master process.
+   * The maximium number of tasks running in parallel within the app master process. In local
+   * mode, a value of -1 runs as many tasks in parallel as there are available processors.
    */
   @ConfigurationScope(Scope.AM)
   @ConfigurationProperty(type="integer")
@@ -1400,6 +1700,17 @@ public class TezConfiguration extends Configuration {
 
   public static final int TEZ_AM_INLINE_TASK_EXECUTION_MAX_TASKS_DEFAULT = 1;
 
+  /**
+   * Comma-separated list of directories. Local mode only. Directories on which tasks write their
+   * outputs as IFiles, like the local dirs of a NodeManager. Outputs always go through these
+   * files; local mode does not hand them between tasks as in-memory segments. The directories
+   * are created per application and deleted when the client is stopped. By default, outputs are
+   * written under the staging directory.
+   */
+  @ConfigurationScope(Scope.AM)
+  @ConfigurationProperty
+  public static final String TEZ_LOCAL_MODE_LOCAL_DIRS = TEZ_PREFIX + "local.mode.local-dirs";
+
   // ACLs related configuration
   // Format supports a comma-separated list of users and groups with the users and groups separated
   // by whitespace. e.g. "user1,user2 group1,group2"
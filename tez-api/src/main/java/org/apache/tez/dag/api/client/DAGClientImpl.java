@@ -210,6 +210,15 @@ public class DAGClientImpl extends DAGClient {
 
   private DAGStatus getDAGStatusInternal(@Nullable Set<StatusGetOpts> statusOptions,
       long timeout) throws TezException, IOException {
+    return getDAGStatusInternal(statusOptions, timeout, false);
+  }
+
+  /**
+   * @param waitForUpdate whether to return as soon as the status changes, instead of waiting for
+   *          the DAG to complete until the timeout expires
+   */
+  private DAGStatus getDAGStatusInternal(@Nullable Set<StatusGetOpts> statusOptions,
+      long timeout, boolean waitForUpdate) throws TezException, IOException {
 
     if (!dagCompleted) {
       // fetch from AM. on Error and while DAG is still not completed (could not reach AM, AM got
@@ -217,7 +226,7 @@ public class DAGClientImpl extends DAGClient {
       // RM does not give status).
 
       // dagCompleted may be reset within getDagStatusViaAM
-      final DAGStatus dagStatus = getDAGStatusViaAM(statusOptions, timeout);
+      final DAGStatus dagStatus = getDAGStatusViaAM(statusOptions, timeout, waitForUpdate);
 
       if (!dagCompleted) {
         if (dagStatus != null) {
@@ -354,10 +363,14 @@ public class DAGClientImpl extends DAGClient {
    * @throws IOException
    */
   private DAGStatus getDAGStatusViaAM(@Nullable Set<StatusGetOpts> statusOptions,
-      long timeout) throws IOException {
+      long timeout, boolean waitForUpdate) throws IOException {
     DAGStatus dagStatus = null;
     try {
-      dagStatus = realClient.getDAGStatus(statusOptions, timeout);
+      if (waitForUpdate) {
+        dagStatus = realClient.getDAGStatusUpdate(statusOptions, timeout);
+      } else {
+        dagStatus = realClient.getDAGStatus(statusOptions, timeout);
+      }
     } catch (DAGNotRunningException e) {
       LOG.info("DAG is no longer running", e);
       dagCompleted = true;
@@ -530,7 +543,9 @@ public class DAGClientImpl extends DAGClient {
         vertexNames = getDAGStatus(statusGetOpts).getVertexProgress().keySet();
       }
       dagProgress = monitorProgress(vertexNames, dagProgress, null, dagStatus);
-      dagStatus = getDAGStatus(statusGetOpts, SLEEP_FOR_COMPLETION);
+      // The AM returns as soon as the status changes, with only what changed, at most once per
+      // status poll interval
+      dagStatus = getDAGStatusInternal(statusGetOpts, PRINT_STATUS_INTERVAL_MILLIS, true);
     }// end of while
     // Always print the last status irrespective of progress change
     monitorProgress(vertexNames, -1.0, statusGetOpts, dagStatus);
@@ -72,6 +72,24 @@ public abstract class DAGClientInternal extends DAGClient {
       long timeout)
       throws IOException, TezException;
 
+  /**
+   * Get the status of the specified DAG once it has changed since the previous call of this
+   * method, the DAG reaches a final state, or the timeout expires. Clients which cannot wait for
+   * changes return when the DAG reaches a final state or the timeout expires, as
+   * {@link #getDAGStatus(Set, long)} does.
+   *
+   * @param statusOptions Optionally, retrieve additional information based on
+   *                      specified options. To retrieve basic information, this can be null
+   * @param timeout maximum time to wait for a change, in milliseconds
+   * @return DAG Status
+   * @throws IOException
+   * @throws TezException
+   */
+  public DAGStatus getDAGStatusUpdate(@Nullable Set<StatusGetOpts> statusOptions, long timeout)
+      throws IOException, TezException {
+    return getDAGStatus(statusOptions, timeout);
+  }
+
   /**
    * Get the status of a Vertex of a DAG
    * @param statusOptions Optionally, retrieve additional information based on
@@ -19,6 +19,8 @@
 package org.apache.tez.dag.api.client.rpc;
 
 import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Set;
 
 import javax.annotation.Nullable;
@@ -31,6 +33,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.apache.hadoop.classification.InterfaceAudience.Private;
 import org.apache.hadoop.ipc.RPC;
+import org.apache.hadoop.ipc.RpcNoSuchMethodException;
 import org.apache.hadoop.yarn.api.records.ApplicationId;
 import org.apache.hadoop.yarn.api.records.ApplicationReport;
 import org.apache.hadoop.yarn.api.records.YarnApplicationState;
@@ -46,8 +49,12 @@ import org.apache.tez.dag.api.client.DagStatusSource;
 import org.apache.tez.dag.api.client.StatusGetOpts;
 import org.apache.tez.dag.api.client.VertexStatus;
 import org.apache.tez.dag.api.client.rpc.DAGClientAMProtocolRPC.GetDAGStatusRequestProto;
+import org.apache.tez.dag.api.client.rpc.DAGClientAMProtocolRPC.GetDAGStatusUpdateRequestProto;
+import org.apache.tez.dag.api.client.rpc.DAGClientAMProtocolRPC.GetDAGStatusUpdateResponseProto;
 import org.apache.tez.dag.api.client.rpc.DAGClientAMProtocolRPC.GetVertexStatusRequestProto;
 import org.apache.tez.dag.api.client.rpc.DAGClientAMProtocolRPC.TryKillDAGRequestProto;
+import org.apache.tez.dag.api.records.DAGProtos.DAGStatusProto;
+import org.apache.tez.dag.api.records.DAGProtos.StringProgressPairProto;
 
 import com.google.common.annotations.VisibleForTesting;
 import com.google.protobuf.ServiceException;
@@ -67,6 +74,16 @@ public class DAGClientRPCImpl extends DAGClientInternal {
   private final FrameworkClient frameworkClient;
   @VisibleForTesting
   DAGClientAMProtocolBlockingPB proxy = null;
+  // Status of the DAG merged from the updates received from the current AM
+  private DAGStatusProto.Builder updatedStatus = null;
+  private final Map<String, StringProgressPairProto> updatedVertexProgress =
+      new LinkedHashMap<String, StringProgressPairProto>();
+  private long statusVersion = 0;
+  private boolean statusUpdatesSupported = true;
+  private final long statusPollInterval;
+  // Time at which the last status update was received, later updates are requested at most once
+  // per status poll interval
+  private long lastStatusUpdateTime = 0;
 
   public DAGClientRPCImpl(ApplicationId appId, String dagId,
       TezConfiguration conf, @Nullable FrameworkClient frameworkClient) {
@@ -74,6 +91,9 @@ public class DAGClientRPCImpl extends DAGClientInternal {
     this.dagId = dagId;
     this.conf = conf;
     this.frameworkClient = frameworkClient;
+    this.statusPollInterval = Math.max(0, conf.getLong(
+        TezConfiguration.TEZ_DAG_STATUS_POLLINTERVAL_MS,
+        TezConfiguration.TEZ_DAG_STATUS_POLLINTERVAL_MS_DEFAULT));
     appReport = null;
   }
 
@@ -109,6 +129,28 @@ public class DAGClientRPCImpl extends DAGClientInternal {
       }
   }
 
+  @Override
+  public DAGStatus getDAGStatusUpdate(@Nullable Set<StatusGetOpts> statusOptions,
+      long timeout) throws IOException, TezException {
+    if (!statusUpdatesSupported) {
+      return getDAGStatus(statusOptions, timeout);
+    }
+    try {
+      if (createAMProxyIfNeeded()) {
+        return getDAGStatusUpdateViaAM(statusOptions, timeout);
+      }
+
+      // the dag is not running
+      return null;
+    } catch (TezException | IOException e) {
+      resetProxy(e); // create proxy again
+      throw e;
+    } catch(ApplicationNotFoundException e) {
+      // propagate as TezException
+      throw new TezException(e);
+    }
+  }
+
   @Override
   public VertexStatus getVertexStatus(String vertexName,
       Set<StatusGetOpts> statusOptions)
@@ -166,6 +208,9 @@ public class DAGClientRPCImpl extends DAGClientInternal {
           " due to exception :", e);
     }
     proxy = null;
+    // Versions are only meaningful to the AM which handed them out
+    updatedStatus = null;
+    statusVersion = 0;
   }
 
   DAGStatus getDAGStatusViaAM(Set<StatusGetOpts> statusOptions, long timeout)
@@ -193,6 +238,75 @@ public class DAGClientRPCImpl extends DAGClientInternal {
     }
   }
 
+  DAGStatus getDAGStatusUpdateViaAM(Set<StatusGetOpts> statusOptions, long timeout)
+      throws IOException, TezException {
+    if(LOG.isDebugEnabled()) {
+      LOG.debug("GetDAGStatusUpdate via AM for app: " + appId + " dag:" + dagId
+          + " since version: " + statusVersion);
+    }
+    if (statusVersion > 0) {
+      // Wait here rather than in the AM, where the wait would hold a client RPC handler
+      long waitTime = Math.min(lastStatusUpdateTime + statusPollInterval
+          - System.currentTimeMillis(), timeout);
+      if (waitTime > 0) {
+        try {
+          Thread.sleep(waitTime);
+        } catch (InterruptedException e) {
+          throw new TezException(e);
+        }
+        timeout -= waitTime;
+      }
+    }
+    GetDAGStatusUpdateRequestProto.Builder requestProtoBuilder =
+        GetDAGStatusUpdateRequestProto.newBuilder()
+          .setDagId(dagId).setTimeout(timeout).setSinceVersion(statusVersion);
+
+    if (statusOptions != null) {
+      requestProtoBuilder.addAllStatusOptions(
+        DagTypeConverters.convertStatusGetOptsToProto(statusOptions));
+    }
+
+    GetDAGStatusUpdateResponseProto response;
+    try {
+      response = proxy.getDAGStatusUpdate(null, requestProtoBuilder.build());
+    } catch (ServiceException e) {
+      try {
+        RPCUtil.unwrapAndThrowException(e);
+      } catch (RpcNoSuchMethodException nsme) {
+        LOG.info("AM does not support status updates, falling back to status polling");
+        statusUpdatesSupported = false;
+        return getDAGStatusViaAM(statusOptions, timeout);
+      }
+      // Should not reach here
+      throw new TezException(e);
+    }
+    return mergeStatusUpdate(response);
+  }
+
+  private DAGStatus mergeStatusUpdate(GetDAGStatusUpdateResponseProto response) {
+    DAGStatusProto delta = response.getDagStatus();
+    if (updatedStatus == null) {
+      updatedStatus = DAGStatusProto.newBuilder();
+      updatedVertexProgress.clear();
+    }
+    updatedStatus.setState(delta.getState());
+    updatedStatus.setDAGProgress(delta.getDAGProgress());
+    // Diagnostics are only ever added to
+    if (delta.getDiagnosticsCount() > 0) {
+      updatedStatus.clearDiagnostics().addAllDiagnostics(delta.getDiagnosticsList());
+    }
+    for (StringProgressPairProto vertexProgress : delta.getVertexProgressList()) {
+      updatedVertexProgress.put(vertexProgress.getKey(), vertexProgress);
+    }
+    updatedStatus.clearVertexProgress().addAllVertexProgress(updatedVertexProgress.values());
+    if (delta.hasDagCounters()) {
+      updatedStatus.setDagCounters(delta.getDagCounters());
+    }
+    statusVersion = response.getVersion();
+    lastStatusUpdateTime = System.currentTimeMillis();
+    return new DAGStatus(updatedStatus.build(), DagStatusSource.AM);
+  }
+
   VertexStatus getVertexStatusViaAM(String vertexName,
       Set<StatusGetOpts> statusOptions)
       throws TezException, IOException {
@@ -29,7 +29,9 @@ import org.apache.hadoop.classification.InterfaceStability.Evolving;
  * an object to the cache with Vertex life-cycle then that object is in the
  * cache while the Vertex (to which the task belongs) is running. DAG life-cycle
  * is while the DAG (to which that task belongs) is running. Session life-cycle
- * is while the session (to which that task belongs) is running. <br>
+ * is while the session (to which that task belongs) is running. Objects may
+ * be evicted earlier if the registry exceeds its configured memory budget, so
+ * callers must be prepared to re-create them. <br>
  * This interface is not supposed to be implemented by users.
  */
 @Public
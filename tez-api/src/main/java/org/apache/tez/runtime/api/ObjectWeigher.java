@@ -0,0 +1,46 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.tez.runtime.api;
+
+import org.apache.hadoop.classification.InterfaceAudience.Public;
+import org.apache.hadoop.classification.InterfaceStability.Evolving;
+
+/**
+ * Estimates the memory used by objects cached in the {@link ObjectRegistry}, so that the
+ * registry can stay within the memory budget of the container. Configured via
+ * {@link org.apache.tez.dag.api.TezConfiguration#TEZ_TASK_OBJECT_REGISTRY_WEIGHER_CLASS}.
+ * Implementations must have a public no-argument constructor, and must be thread safe.
+ */
+@Public
+@Evolving
+public interface ObjectWeigher {
+
+  /**
+   * Estimate the size of an object being inserted into the registry
+   *
+   * @param key
+   *          Key the Object is being cached with
+   * @param value
+   *          Object being cached
+   * @return Estimated size of the object in bytes. 0 if the object should not count against
+   *         the memory budget.
+   */
+  public long weigh(String key, Object value);
+
+}
@@ -0,0 +1,57 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.tez.runtime.api;
+
+import java.util.List;
+
+import org.apache.hadoop.classification.InterfaceAudience.Public;
+import org.apache.hadoop.classification.InterfaceStability.Unstable;
+
+/**
+ * An {@link InputInitializerContext} which lets the {@link InputInitializer} send its events in
+ * batches, before {@link InputInitializer#initialize()} returns. Initializers opt in by checking
+ * whether their context implements this interface, and otherwise return all their events from
+ * initialize().
+ */
+@Unstable
+@Public
+public interface StreamingInputInitializerContext extends InputInitializerContext {
+
+  /**
+   * Send a batch of events to the vertex before {@link InputInitializer#initialize()} returns.
+   * The events returned by {@link InputInitializer#initialize()} form the last batch. </p>
+   *
+   * Once every initializer of the vertex has sent a batch, the vertex can be initialized, so that
+   * its parallelism is known and downstream vertices can be configured, while the remaining
+   * {@link org.apache.tez.runtime.api.events.InputDataInformationEvent}s are still being
+   * generated. The vertex may also start, and its tasks receive the events of each batch as it
+   * arrives. If the AM restarts before every initializer has completed, the initializers of the
+   * vertex, and its tasks and those of downstream vertices, are run again. </p>
+   *
+   * The number of tasks of the vertex cannot change once it has been initialized. An
+   * {@link org.apache.tez.runtime.api.events.InputConfigureVertexTasksEvent} or
+   * {@link org.apache.tez.runtime.api.events.InputUpdatePayloadEvent} must therefore be part of
+   * the first batch, and every later batch may only carry InputDataInformationEvents for tasks
+   * within that parallelism.
+   *
+   * @param events the events generated so far, which are not returned again by initialize()
+   */
+  void addEvents(List<Event> events);
+
+}
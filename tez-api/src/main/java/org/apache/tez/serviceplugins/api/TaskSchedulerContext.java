@@ -26,6 +26,7 @@ import org.apache.hadoop.yarn.api.records.Container;
 import org.apache.hadoop.yarn.api.records.ContainerId;
 import org.apache.hadoop.yarn.api.records.ContainerStatus;
 import org.apache.hadoop.yarn.api.records.FinalApplicationStatus;
+import org.apache.hadoop.yarn.api.records.NodeId;
 import org.apache.hadoop.yarn.api.records.NodeReport;
 import org.apache.hadoop.yarn.api.records.Resource;
 import org.apache.tez.common.ContainerSignatureMatcher;
@@ -184,6 +185,16 @@ public interface TaskSchedulerContext extends ServicePluginContextBase {
    */
   ContainerSignatureMatcher getContainerSignatureMatcher();
 
+  /**
+   * Get the health of a node as seen by the framework during the current DAG, based on the
+   * failures, fetch failures and runtimes of the tasks run on it. Schedulers may prefer
+   * containers on healthier nodes.
+   *
+   * @param nodeId the node
+   * @return a score between 0, for a node with nothing but problems, and 1 for a healthy node
+   */
+  float getNodeHealthScore(NodeId nodeId);
+
   /**
    * Get the application attempt id for the running application. Relevant when running under YARN
    *
@@ -29,6 +29,7 @@ import static org.mockito.Mockito.when;
 
 import javax.annotation.Nullable;
 import java.io.IOException;
+import java.util.Collections;
 import java.util.EnumSet;
 import java.util.Set;
 
@@ -47,6 +48,8 @@ import org.apache.tez.dag.api.client.StatusGetOpts;
 import org.apache.tez.dag.api.client.VertexStatus;
 import org.apache.tez.dag.api.client.rpc.DAGClientAMProtocolRPC.GetDAGStatusRequestProto;
 import org.apache.tez.dag.api.client.rpc.DAGClientAMProtocolRPC.GetDAGStatusResponseProto;
+import org.apache.tez.dag.api.client.rpc.DAGClientAMProtocolRPC.GetDAGStatusUpdateRequestProto;
+import org.apache.tez.dag.api.client.rpc.DAGClientAMProtocolRPC.GetDAGStatusUpdateResponseProto;
 import org.apache.tez.dag.api.client.rpc.DAGClientAMProtocolRPC.GetVertexStatusRequestProto;
 import org.apache.tez.dag.api.client.rpc.DAGClientAMProtocolRPC.GetVertexStatusResponseProto;
 import org.apache.tez.dag.api.client.rpc.DAGClientAMProtocolRPC.TryKillDAGRequestProto;
@@ -254,11 +257,13 @@ public class TestDAGClient {
   
   @Test(timeout = 5000)
   public void testWaitForCompletion() throws Exception{
-    // first time return DAG_RUNNING, second time return DAG_SUCCEEDED
+    // first time return DAG_RUNNING, the first update returns DAG_SUCCEEDED
     when(mockProxy.getDAGStatus(isNull(RpcController.class), any(GetDAGStatusRequestProto.class)))
       .thenReturn(GetDAGStatusResponseProto.newBuilder().setDagStatus(dagStatusProtoWithoutCounters)
-          .build())
-      .thenReturn(GetDAGStatusResponseProto.newBuilder().setDagStatus
+          .build());
+    when(mockProxy.getDAGStatusUpdate(isNull(RpcController.class),
+        any(GetDAGStatusUpdateRequestProto.class)))
+      .thenReturn(GetDAGStatusUpdateResponseProto.newBuilder().setVersion(1).setDagStatus
           (DAGStatusProto.newBuilder(dagStatusProtoWithoutCounters)
               .setState(DAGStatusStateProto.DAG_SUCCEEDED).build())
           .build());
@@ -268,8 +273,52 @@ public class TestDAGClient {
         ArgumentCaptor.forClass(RpcController.class);
     ArgumentCaptor<GetDAGStatusRequestProto> argumentCaptor =
         ArgumentCaptor.forClass(GetDAGStatusRequestProto.class);
-    verify(mockProxy, times(2))
+    verify(mockProxy, times(1))
         .getDAGStatus(rpcControllerArgumentCaptor.capture(), argumentCaptor.capture());
+    verify(mockProxy, times(1)).getDAGStatusUpdate(null, GetDAGStatusUpdateRequestProto
+        .newBuilder().setDagId(dagIdStr).setTimeout(5000).setSinceVersion(0).build());
+  }
+
+  @Test(timeout = 5000)
+  public void testDAGStatusUpdates() throws Exception {
+    DAGClientRPCImpl realClient = (DAGClientRPCImpl)((DAGClientImpl)dagClient).getRealClient();
+    ProgressProto v2Progress = ProgressProto.newBuilder()
+        .setFailedTaskCount(1)
+        .setSucceededTaskCount(2)
+        .setKilledTaskCount(1).build();
+    // The second update only carries the progress of v2
+    when(mockProxy.getDAGStatusUpdate(isNull(RpcController.class),
+        any(GetDAGStatusUpdateRequestProto.class)))
+      .thenReturn(GetDAGStatusUpdateResponseProto.newBuilder().setVersion(3)
+          .setDagStatus(dagStatusProtoWithoutCounters).build())
+      .thenReturn(GetDAGStatusUpdateResponseProto.newBuilder().setVersion(5)
+          .setDagStatus(DAGStatusProto.newBuilder()
+              .setState(DAGStatusStateProto.DAG_RUNNING)
+              .setDAGProgress(dagStatusProtoWithoutCounters.getDAGProgress())
+              .addVertexProgress(StringProgressPairProto.newBuilder().setKey("v2")
+                  .setProgress(v2Progress))).build());
+
+    DAGStatus dagStatus = realClient.getDAGStatusUpdate(null, 1000);
+    assertEquals(new DAGStatus(dagStatusProtoWithoutCounters, DagStatusSource.AM), dagStatus);
+
+    // The next update is requested once the poll interval elapsed, waiting on the client
+    long start = System.currentTimeMillis();
+    dagStatus = realClient.getDAGStatusUpdate(null, 1000);
+    assertTrue(System.currentTimeMillis() - start
+        >= TezConfiguration.TEZ_DAG_STATUS_POLLINTERVAL_MS_DEFAULT - 50);
+    ArgumentCaptor<GetDAGStatusUpdateRequestProto> requestCaptor =
+        ArgumentCaptor.forClass(GetDAGStatusUpdateRequestProto.class);
+    verify(mockProxy, times(2)).getDAGStatusUpdate(isNull(RpcController.class),
+        requestCaptor.capture());
+    GetDAGStatusUpdateRequestProto request = requestCaptor.getAllValues().get(1);
+    assertEquals(3, request.getSinceVersion());
+    // The AM is only left with what remains of the timeout
+    assertTrue(request.getTimeout() <= 1000 - TezConfiguration.TEZ_DAG_STATUS_POLLINTERVAL_MS_DEFAULT
+        + 50);
+    assertEquals(Collections.singletonList("Diagnostics_0"), dagStatus.getDiagnostics());
+    assertEquals(2, dagStatus.getVertexProgress().size());
+    assertEquals(0, dagStatus.getVertexProgress().get("v1").getSucceededTaskCount());
+    assertEquals(2, dagStatus.getVertexProgress().get("v2").getSucceededTaskCount());
   }
 
   @Test(timeout = 5000)
@@ -285,8 +334,10 @@ public class TestDAGClient {
                 .setState(DAGStatusStateProto.DAG_RUNNING).build()).build())
         .thenReturn(GetDAGStatusResponseProto.newBuilder().setDagStatus(
             DAGStatusProto.newBuilder(dagStatusProtoWithCounters)
-                .setState(DAGStatusStateProto.DAG_RUNNING).build()).build())
-        .thenReturn(GetDAGStatusResponseProto.newBuilder().setDagStatus
+                .setState(DAGStatusStateProto.DAG_RUNNING).build()).build());
+    when(mockProxy.getDAGStatusUpdate(isNull(RpcController.class),
+        any(GetDAGStatusUpdateRequestProto.class)))
+        .thenReturn(GetDAGStatusUpdateResponseProto.newBuilder().setVersion(1).setDagStatus
             (DAGStatusProto.newBuilder(dagStatusProtoWithoutCounters)
                 .setState(DAGStatusStateProto.DAG_SUCCEEDED).build())
             .build());
@@ -298,9 +349,11 @@ public class TestDAGClient {
     ArgumentCaptor<GetDAGStatusRequestProto> argumentCaptor =
         ArgumentCaptor.forClass(GetDAGStatusRequestProto.class);
     dagClient.waitForCompletionWithStatusUpdates(null);
-    // 2 from initial request - when status isn't cached. 1 for vertex names. 1 for final wait.
-    verify(mockProxy, times(4))
+    // 2 from initial request - when status isn't cached. 1 for vertex names. 1 update for final wait.
+    verify(mockProxy, times(3))
         .getDAGStatus(rpcControllerArgumentCaptor.capture(), argumentCaptor.capture());
+    verify(mockProxy, times(1)).getDAGStatusUpdate(isNull(RpcController.class),
+        any(GetDAGStatusUpdateRequestProto.class));
 
     when(mockProxy.getDAGStatus(isNull(RpcController.class), any(GetDAGStatusRequestProto.class)))
         .thenReturn(GetDAGStatusResponseProto.newBuilder().setDagStatus(
@@ -311,8 +364,10 @@ public class TestDAGClient {
                 .setState(DAGStatusStateProto.DAG_RUNNING).build()).build())
         .thenReturn(GetDAGStatusResponseProto.newBuilder().setDagStatus(
             DAGStatusProto.newBuilder(dagStatusProtoWithCounters)
-                .setState(DAGStatusStateProto.DAG_RUNNING).build()).build())
-        .thenReturn(GetDAGStatusResponseProto.newBuilder().setDagStatus
+                .setState(DAGStatusStateProto.DAG_RUNNING).build()).build());
+    when(mockProxy.getDAGStatusUpdate(isNull(RpcController.class),
+        any(GetDAGStatusUpdateRequestProto.class)))
+        .thenReturn(GetDAGStatusUpdateResponseProto.newBuilder().setVersion(2).setDagStatus
             (DAGStatusProto.newBuilder(dagStatusProtoWithCounters).setState(
                 DAGStatusStateProto.DAG_SUCCEEDED).build())
             .build());
@@ -322,9 +377,11 @@ public class TestDAGClient {
     argumentCaptor =
         ArgumentCaptor.forClass(GetDAGStatusRequestProto.class);
     dagClient.waitForCompletionWithStatusUpdates(Sets.newSet(StatusGetOpts.GET_COUNTERS));
-    // 4 from past invocation in the test, 2 from initial request - when status isn't cached. 1 for vertex names. 1 for final wait.
-    verify(mockProxy, times(8))
+    // 3 from past invocation in the test, 2 from initial request - when status isn't cached. 1 for vertex names. 1 update for final wait.
+    verify(mockProxy, times(6))
         .getDAGStatus(rpcControllerArgumentCaptor.capture(), argumentCaptor.capture());
+    verify(mockProxy, times(2)).getDAGStatusUpdate(isNull(RpcController.class),
+        any(GetDAGStatusUpdateRequestProto.class));
   }
 
   @Test(timeout = 50000)
@@ -56,6 +56,20 @@ public class TestTezUtils {
     checkConf(conf);
   }
 
+  @Test (timeout=2000)
+  public void testPayloadToConfIsNotShared() throws IOException {
+    UserPayload bConf = TezUtils.createUserPayloadFromConf(getConf());
+    Configuration conf1 = TezUtils.createConfFromUserPayload(bConf);
+    conf1.set("test1", "modified");
+    conf1.set("test7", "added");
+
+    Configuration conf2 = TezUtils.createConfFromUserPayload(bConf);
+    Assert.assertNotSame(conf1, conf2);
+    Assert.assertEquals(6, conf2.size());
+    Assert.assertNull(conf2.get("test7"));
+    checkConf(conf2);
+  }
+
   @Test (timeout=2000)
   public void testCleanVertexName() {
     String testString = "special characters & spaces and longer than "
@@ -22,6 +22,8 @@ import java.io.File;
 import java.io.IOException;
 import java.net.InetAddress;
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import org.apache.hadoop.yarn.api.ApplicationConstants;
@@ -74,6 +76,7 @@ public class LocalClient extends FrameworkClient {
   private boolean isSession;
   private TezApiVersionInfo versionInfo = new TezApiVersionInfo();
   private volatile Throwable amFailException = null;
+  private final List<Path> createdLocalDirs = new ArrayList<Path>();
   private static final String localModeDAGSchedulerClassName =
       "org.apache.tez.dag.app.dag.impl.DAGSchedulerNaturalOrderControlled";
 
@@ -92,6 +95,12 @@ public class LocalClient extends FrameworkClient {
 
     // disable web service for local mode.
     this.conf.setBoolean(TezConfiguration.TEZ_AM_WEBSERVICE_ENABLE, false);
+
+    if (this.conf.getInt(TezConfiguration.TEZ_AM_INLINE_TASK_EXECUTION_MAX_TASKS,
+        TezConfiguration.TEZ_AM_INLINE_TASK_EXECUTION_MAX_TASKS_DEFAULT) == -1) {
+      this.conf.setInt(TezConfiguration.TEZ_AM_INLINE_TASK_EXECUTION_MAX_TASKS,
+          Runtime.getRuntime().availableProcessors());
+    }
   }
 
 
@@ -118,6 +127,18 @@ public class LocalClient extends FrameworkClient {
     if (dagAppMaster != null) {
       dagAppMaster.stop();
     }
+    synchronized (createdLocalDirs) {
+      if (createdLocalDirs.isEmpty()) {
+        return;
+      }
+      FileSystem localFs = FileSystem.getLocal(conf);
+      for (Path localDir : createdLocalDirs) {
+        if (!localFs.delete(localDir, true)) {
+          LOG.warn("Failed to delete local dir " + localDir);
+        }
+      }
+      createdLocalDirs.clear();
+    }
   }
 
   @Override
@@ -291,9 +312,8 @@ public class LocalClient extends FrameworkClient {
           FileUtil.copy(fs, staging, fs, userDir, false, conf);
           // Prepare Environment
           Path logDir = new Path(userDir, "localmode-log-dir");
-          Path localDir = new Path(userDir, "localmode-local-dir");
           fs.mkdirs(logDir);
-          fs.mkdirs(localDir);
+          String[] localDirs = createLocalDirs(fs, userDir, appId);
 
           UserGroupInformation.setConfiguration(conf);
           // Add session specific credentials to the AM credentials.
@@ -317,7 +337,7 @@ public class LocalClient extends FrameworkClient {
           dagAppMaster =
               createDAGAppMaster(applicationAttemptId, cId, currentHost, nmPort, nmHttpPort,
                   new SystemClock(), appSubmitTime, isSession, userDir.toUri().getPath(),
-                  new String[] {localDir.toUri().getPath()}, new String[] {logDir.toUri().getPath()},
+                  localDirs, new String[] {logDir.toUri().getPath()},
                   amCredentials, UserGroupInformation.getCurrentUser().getShortUserName());
           clientHandler = new DAGClientHandler(dagAppMaster);
           DAGAppMaster.initAndStartAppMaster(dagAppMaster, conf);
@@ -339,6 +359,29 @@ public class LocalClient extends FrameworkClient {
     return thread;
   }
 
+  private String[] createLocalDirs(FileSystem fs, Path userDir, ApplicationId appId)
+      throws IOException {
+    String[] configuredDirs = conf.getTrimmedStrings(TezConfiguration.TEZ_LOCAL_MODE_LOCAL_DIRS);
+    if (configuredDirs.length == 0) {
+      Path localDir = new Path(userDir, "localmode-local-dir");
+      fs.mkdirs(localDir);
+      return new String[] {localDir.toUri().getPath()};
+    }
+    // Outside of the working directory, so the directories are deleted on close
+    FileSystem localFs = FileSystem.getLocal(conf);
+    String[] localDirs = new String[configuredDirs.length];
+    for (int i = 0; i < configuredDirs.length; ++i) {
+      Path localDir = new Path(configuredDirs[i], appId.toString() + "_localmode-local-dir");
+      localFs.mkdirs(localDir);
+      synchronized (createdLocalDirs) {
+        createdLocalDirs.add(localDir);
+      }
+      localDirs[i] = localDir.toUri().getPath();
+    }
+    LOG.info("Using local dirs: " + Arrays.toString(localDirs));
+    return localDirs;
+  }
+
   // this can be overridden by test code to create a mock app
   @VisibleForTesting
   protected DAGAppMaster createDAGAppMaster(ApplicationAttemptId applicationAttemptId,
@@ -31,6 +31,7 @@ import org.apache.hadoop.security.UserGroupInformation;
 import org.apache.hadoop.yarn.api.records.LocalResource;
 import org.apache.tez.client.TezAppMasterStatus;
 import org.apache.tez.dag.api.DAGNotRunningException;
+import org.apache.tez.dag.api.TezConfiguration;
 import org.apache.tez.dag.api.TezException;
 import org.apache.tez.dag.api.records.DAGProtos.DAGPlan;
 import org.apache.tez.dag.app.DAGAppMaster;
@@ -70,6 +71,22 @@ public class DAGClientHandler {
     return getDAG(dagIdStr).getDAGStatus(statusOptions, timeout);
   }
 
+  /**
+   * @return the changes of the status of the DAG since the given version of the status, once
+   * there are any, the DAG completes, or the timeout expires. The timeout is capped by
+   * {@link TezConfiguration#TEZ_AM_DAG_STATUS_UPDATE_MAX_WAIT_MS}, as the wait holds a client
+   * RPC handler.
+   */
+  public DAGStatusTracker.Update getDAGStatusUpdate(String dagIdStr,
+      Set<StatusGetOpts> statusOptions, long sinceVersion, long timeout) throws TezException {
+    DAG dag = getDAG(dagIdStr);
+    long maxWait = dagAppMaster.getConfig().getLong(
+        TezConfiguration.TEZ_AM_DAG_STATUS_UPDATE_MAX_WAIT_MS,
+        TezConfiguration.TEZ_AM_DAG_STATUS_UPDATE_MAX_WAIT_MS_DEFAULT);
+    return dag.getStatusTracker().getUpdate(statusOptions, sinceVersion,
+        Math.max(0, Math.min(timeout, maxWait)));
+  }
+
   public VertexStatus getVertexStatus(String dagIdStr, String vertexName,
       Set<StatusGetOpts> statusOptions) throws TezException {
     VertexStatus status =
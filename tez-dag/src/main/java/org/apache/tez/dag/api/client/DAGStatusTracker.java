@@ -0,0 +1,194 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.tez.dag.api.client;
+
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.tez.dag.api.DagTypeConverters;
+import org.apache.tez.dag.api.TezException;
+import org.apache.tez.dag.api.records.DAGProtos.DAGStatusProto;
+import org.apache.tez.dag.api.records.DAGProtos.DAGStatusStateProto;
+import org.apache.tez.dag.api.records.DAGProtos.StringProgressPairProto;
+import org.apache.tez.dag.api.records.DAGProtos.TezCountersProto;
+import org.apache.tez.dag.app.dag.DAG;
+
+/**
+ * Tracks when each part of the status of a DAG last changed, so that clients following the DAG
+ * receive only what changed since their previous update. Waiting clients are woken up by the DAG
+ * when its status may have changed, and the status is built once per change, however many
+ * clients are waiting. The counters are only built when an update is returned to a client which
+ * asked for them.
+ */
+public class DAGStatusTracker {
+
+  private final DAG dag;
+
+  // Guarded by this
+  private long version = 0;
+  // Last version in which anything but the counters changed
+  private long progressVersion = 0;
+  // Status change count of the DAG when the status and counters were last built
+  private long statusChangeCount = -1;
+  private long countersChangeCount = -1;
+  private DAGStatusProto lastStatus;
+  private long diagnosticsVersion;
+  private final Map<String, Long> vertexVersions = new HashMap<String, Long>();
+  private TezCountersProto lastCounters;
+  private long countersVersion;
+
+  public static class Update {
+    private final long version;
+    private final DAGStatusProto status;
+
+    Update(long version, DAGStatusProto status) {
+      this.version = version;
+      this.status = status;
+    }
+
+    public long getVersion() {
+      return version;
+    }
+
+    public DAGStatusProto getStatus() {
+      return status;
+    }
+  }
+
+  public DAGStatusTracker(DAG dag) {
+    this.dag = dag;
+  }
+
+  /**
+   * Waits until the status changed after the given version, the DAG completes or the timeout
+   * expires, whichever happens first. Changes of the counters alone do not end the wait, they are
+   * sent with the next update.
+   *
+   * @param sinceVersion version of the last update received by the client, 0 for a full status
+   * @param timeoutMillis maximum time to wait for a change
+   */
+  Update getUpdate(Set<StatusGetOpts> statusOptions, long sinceVersion, long timeoutMillis)
+      throws TezException {
+    boolean withCounters = statusOptions.contains(StatusGetOpts.GET_COUNTERS);
+    long now = System.currentTimeMillis();
+    long endTime = now + timeoutMillis;
+    try {
+      long changeCount = dag.getStatusChangeCount();
+      while (true) {
+        synchronized (this) {
+          checkStatus(changeCount);
+          now = System.currentTimeMillis();
+          if (progressVersion > sinceVersion || isCompleted(lastStatus.getState())
+              || now >= endTime) {
+            if (withCounters) {
+              checkCounters(changeCount);
+            }
+            return new Update(version, getDelta(sinceVersion, withCounters));
+          }
+        }
+        changeCount = dag.awaitStatusChange(changeCount, endTime - now);
+      }
+    } catch (InterruptedException e) {
+      throw new TezException("Interrupted while waiting for dag status updates", e);
+    }
+  }
+
+  private void checkStatus(long changeCount) {
+    if (lastStatus != null && changeCount <= statusChangeCount) {
+      // Already built by another client for this change
+      return;
+    }
+    statusChangeCount = changeCount;
+    DAGStatusProto status =
+        dag.getDAGStatus(EnumSet.noneOf(StatusGetOpts.class)).getProto();
+    long nextVersion = version + 1;
+    boolean changed = lastStatus == null
+        || !status.getState().equals(lastStatus.getState())
+        || !status.getDAGProgress().equals(lastStatus.getDAGProgress());
+    if (lastStatus == null
+        || !status.getDiagnosticsList().equals(lastStatus.getDiagnosticsList())) {
+      diagnosticsVersion = nextVersion;
+      changed = true;
+    }
+    Map<String, StringProgressPairProto> lastVertexProgress =
+        new HashMap<String, StringProgressPairProto>();
+    if (lastStatus != null) {
+      for (StringProgressPairProto vertexProgress : lastStatus.getVertexProgressList()) {
+        lastVertexProgress.put(vertexProgress.getKey(), vertexProgress);
+      }
+    }
+    for (StringProgressPairProto vertexProgress : status.getVertexProgressList()) {
+      if (!vertexProgress.equals(lastVertexProgress.get(vertexProgress.getKey()))) {
+        vertexVersions.put(vertexProgress.getKey(), nextVersion);
+        changed = true;
+      }
+    }
+    lastStatus = status;
+    if (changed) {
+      progressVersion = nextVersion;
+      version = nextVersion;
+    }
+  }
+
+  private void checkCounters(long changeCount) {
+    if (lastCounters != null && changeCount <= countersChangeCount) {
+      return;
+    }
+    countersChangeCount = changeCount;
+    TezCountersProto counters = DagTypeConverters.convertTezCountersToProto(
+        dag.getAllCounters());
+    if (!counters.equals(lastCounters)) {
+      lastCounters = counters;
+      version++;
+      countersVersion = version;
+    }
+  }
+
+  private DAGStatusProto getDelta(long sinceVersion, boolean withCounters) {
+    DAGStatusProto.Builder delta = DAGStatusProto.newBuilder()
+        .setState(lastStatus.getState())
+        .setDAGProgress(lastStatus.getDAGProgress());
+    if (diagnosticsVersion > sinceVersion) {
+      delta.addAllDiagnostics(lastStatus.getDiagnosticsList());
+    }
+    for (StringProgressPairProto vertexProgress : lastStatus.getVertexProgressList()) {
+      if (vertexVersions.get(vertexProgress.getKey()) > sinceVersion) {
+        delta.addVertexProgress(vertexProgress);
+      }
+    }
+    if (withCounters && lastCounters != null && countersVersion > sinceVersion) {
+      delta.setDagCounters(lastCounters);
+    }
+    return delta.build();
+  }
+
+  private static boolean isCompleted(DAGStatusStateProto state) {
+    switch (state) {
+    case DAG_SUCCEEDED:
+    case DAG_FAILED:
+    case DAG_KILLED:
+    case DAG_ERROR:
+      return true;
+    default:
+      return false;
+    }
+  }
+}
@@ -34,6 +34,7 @@ import org.apache.tez.dag.api.TezException;
 import org.apache.tez.dag.api.client.DAGClientHandler;
 import org.apache.tez.dag.api.client.DAGStatus;
 import org.apache.tez.dag.api.client.DAGStatusBuilder;
+import org.apache.tez.dag.api.client.DAGStatusTracker;
 import org.apache.tez.dag.api.client.VertexStatus;
 import org.apache.tez.dag.api.client.VertexStatusBuilder;
 import org.apache.tez.dag.api.client.rpc.DAGClientAMProtocolRPC.GetAMStatusRequestProto;
@@ -42,6 +43,8 @@ import org.apache.tez.dag.api.client.rpc.DAGClientAMProtocolRPC.GetAllDAGsReques
 import org.apache.tez.dag.api.client.rpc.DAGClientAMProtocolRPC.GetAllDAGsResponseProto;
 import org.apache.tez.dag.api.client.rpc.DAGClientAMProtocolRPC.GetDAGStatusRequestProto;
 import org.apache.tez.dag.api.client.rpc.DAGClientAMProtocolRPC.GetDAGStatusResponseProto;
+import org.apache.tez.dag.api.client.rpc.DAGClientAMProtocolRPC.GetDAGStatusUpdateRequestProto;
+import org.apache.tez.dag.api.client.rpc.DAGClientAMProtocolRPC.GetDAGStatusUpdateResponseProto;
 import org.apache.tez.dag.api.client.rpc.DAGClientAMProtocolRPC.GetVertexStatusRequestProto;
 import org.apache.tez.dag.api.client.rpc.DAGClientAMProtocolRPC.GetVertexStatusResponseProto;
 import org.apache.tez.dag.api.client.rpc.DAGClientAMProtocolRPC.ShutdownSessionRequestProto;
@@ -111,6 +114,26 @@ public class DAGClientAMProtocolBlockingPBServerImpl implements DAGClientAMProto
     }
   }
 
+  @Override
+  public GetDAGStatusUpdateResponseProto getDAGStatusUpdate(RpcController controller,
+      GetDAGStatusUpdateRequestProto request) throws ServiceException {
+    UserGroupInformation user = getRPCUser();
+    try {
+      String dagId = request.getDagId();
+      if (!real.getACLManager(dagId).checkDAGViewAccess(user)) {
+        throw new AccessControlException("User " + user + " cannot perform DAG view operation");
+      }
+      DAGStatusTracker.Update update = real.getDAGStatusUpdate(dagId,
+          DagTypeConverters.convertStatusGetOptsFromProto(request.getStatusOptionsList()),
+          request.getSinceVersion(), request.getTimeout());
+      return GetDAGStatusUpdateResponseProto.newBuilder()
+          .setVersion(update.getVersion())
+          .setDagStatus(update.getStatus()).build();
+    } catch (TezException e) {
+      throw wrapException(e);
+    }
+  }
+
   @Override
   public GetVertexStatusResponseProto getVertexStatus(RpcController controller,
       GetVertexStatusRequestProto request) throws ServiceException {
@@ -2069,6 +2069,10 @@ public class DAGAppMaster extends AbstractService {
       } else {
         LOG.info("Found DAG to recover, dagId=" + recoveredDAGData.recoveredDAG.getID());
         _updateLoggers(recoveredDAGData.recoveredDAG, "");
+        if (recoveredDAGData.checkpoint != null) {
+          historyEventHandler.setRecoveredCheckpoint(recoveredDAGData.recoveredDAG.getID(),
+              recoveredDAGData.checkpoint);
+        }
         DAGRecoveredEvent dagRecoveredEvent = new DAGRecoveredEvent(this.appAttemptID,
             recoveredDAGData.recoveredDAG.getID(), recoveredDAGData.recoveredDAG.getName(),
             recoveredDAGData.recoveredDAG.getUserName(), this.clock.getTime(), this.containerLogs);
@@ -23,9 +23,11 @@ import java.io.IOException;
 import java.net.URL;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Set;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -40,6 +42,8 @@ import org.apache.tez.common.TezCommonUtils;
 import org.apache.tez.dag.api.TezConfiguration;
 import org.apache.tez.dag.api.TezConstants;
 import org.apache.tez.dag.api.oldrecords.TaskAttemptState;
+import org.apache.tez.dag.api.records.DAGProtos.DAGPlan;
+import org.apache.tez.dag.api.records.DAGProtos.EdgePlan;
 import org.apache.tez.dag.app.dag.DAGState;
 import org.apache.tez.dag.app.dag.VertexState;
 import org.apache.tez.dag.app.dag.impl.DAGImpl;
@@ -66,6 +70,7 @@ import org.apache.tez.dag.history.events.VertexGroupCommitStartedEvent;
 import org.apache.tez.dag.history.events.VertexInitializedEvent;
 import org.apache.tez.dag.history.events.VertexConfigurationDoneEvent;
 import org.apache.tez.dag.history.events.VertexStartedEvent;
+import org.apache.tez.dag.history.recovery.RecoveryCheckpoint;
 import org.apache.tez.dag.history.recovery.RecoveryService;
 import org.apache.tez.dag.records.TezDAGID;
 import org.apache.tez.dag.records.TezTaskAttemptID;
@@ -93,6 +98,7 @@ public class RecoveryParser {
   private final Path currentAttemptRecoveryDataDir;
   private final int recoveryBufferSize;
   private final int currentAttemptId;
+  private final boolean checkpointEnabled;
 
   public RecoveryParser(DAGAppMaster dagAppMaster,
       FileSystem recoveryFS,
@@ -107,6 +113,9 @@ public class RecoveryParser {
     recoveryBufferSize = dagAppMaster.getConfig().getInt(
         TezConfiguration.DAG_RECOVERY_FILE_IO_BUFFER_SIZE,
         TezConfiguration.DAG_RECOVERY_FILE_IO_BUFFER_SIZE_DEFAULT);
+    checkpointEnabled = dagAppMaster.getConfig().getInt(
+        TezConfiguration.DAG_RECOVERY_CHECKPOINT_INTERVAL_EVENTS,
+        TezConfiguration.DAG_RECOVERY_CHECKPOINT_INTERVAL_EVENTS_DEFAULT) > 0;
     this.recoveryFS.mkdirs(currentAttemptRecoveryDataDir);
   }
 
@@ -121,9 +130,12 @@ public class RecoveryParser {
     public String reason = null;
     public Map<String, LocalResource> cumulativeAdditionalResources = null;
     public List<URL> additionalUrlsForClasspath = null;
+    // Recovered state, to seed the recovery checkpoints of the current attempt
+    public RecoveryCheckpoint checkpoint = null;
 
     public Map<TezVertexID, VertexRecoveryData> vertexRecoveryDataMap =
         new HashMap<TezVertexID, RecoveryParser.VertexRecoveryData>();
+    private DAGPlan dagPlan;
     private DAGInitializedEvent dagInitedEvent;
     private DAGStartedEvent dagStartedEvent;
     private DAGFinishedEvent dagFinishedEvent;
@@ -185,6 +197,46 @@ public class RecoveryParser {
       }
     }
 
+    /**
+     * Drops the recovery data of the vertices which started before their VertexInitializedEvent was
+     * logged, and of the vertices downstream of them, so that they are initialized and run again.
+     * A vertex with streaming input initializers may start before they complete, and the events
+     * they generated until then are not in the recovery log. Called at the end of the recovery
+     * log of each attempt, since the next attempt logs the events of these vertices again.
+     *
+     * @return the vertices whose recovery data was dropped
+     */
+    public Set<TezVertexID> resetPartiallyInitializedVertices() {
+      Set<TezVertexID> resetVertices = new HashSet<TezVertexID>();
+      for (Map.Entry<TezVertexID, VertexRecoveryData> entry : vertexRecoveryDataMap.entrySet()) {
+        VertexRecoveryData vertexRecoveryData = entry.getValue();
+        if (vertexRecoveryData.isVertexStarted() && !vertexRecoveryData.isVertexInited()
+            && !vertexRecoveryData.isVertexFinished()) {
+          LOG.info("Vertex started before it was initialized, running it and its downstream"
+              + " vertices again, vertexId=" + entry.getKey());
+          addVertexAndDownstream(entry.getKey(), resetVertices);
+        }
+      }
+      vertexRecoveryDataMap.keySet().removeAll(resetVertices);
+      return resetVertices;
+    }
+
+    private void addVertexAndDownstream(TezVertexID vertexId, Set<TezVertexID> vertices) {
+      if (!vertices.add(vertexId) || dagPlan == null) {
+        return;
+      }
+      String vertexName = dagPlan.getVertex(vertexId.getId()).getName();
+      for (EdgePlan edge : dagPlan.getEdgeList()) {
+        if (edge.getInputVertexName().equals(vertexName)) {
+          for (int i = 0; i < dagPlan.getVertexCount(); ++i) {
+            if (dagPlan.getVertex(i).getName().equals(edge.getOutputVertexName())) {
+              addVertexAndDownstream(TezVertexID.getInstance(vertexId.getDAGId(), i), vertices);
+            }
+          }
+        }
+      }
+    }
+
     public DAGInitializedEvent getDAGInitializedEvent() {
       return dagInitedEvent;
     }
@@ -251,7 +303,12 @@ public class RecoveryParser {
     }
   }
 
-  private static HistoryEvent getNextEvent(FSDataInputStream inputStream)
+  /**
+   * Reads the next event written to a DAG recovery file, or a recovery checkpoint.
+   *
+   * @return the event, or null at the end of the stream
+   */
+  public static HistoryEvent getNextEvent(FSDataInputStream inputStream)
       throws IOException {
     int eventTypeOrdinal = -1;
     try {
@@ -627,9 +684,10 @@ public class RecoveryParser {
     return summaryFiles;
   }
 
-  private List<Path> getDAGRecoveryFiles(TezDAGID dagId) throws IOException {
+  private List<Path> getDAGRecoveryFiles(TezDAGID dagId, int firstAttemptId)
+      throws IOException {
     List<Path> recoveryFiles = new ArrayList<Path>();
-    for (int i = 1; i < currentAttemptId; ++i) {
+    for (int i = firstAttemptId; i < currentAttemptId; ++i) {
       Path attemptPath = TezCommonUtils.getAttemptRecoveryPath(recoveryDataDir, i);
       Path recoveryFile = getDAGRecoveryFilePath(attemptPath, dagId);
       if (recoveryFS.exists(recoveryFile)) {
@@ -727,8 +785,30 @@ public class RecoveryParser {
         + ", dagId=" + lastInProgressDAGData.dagId);
 
     final DAGRecoveryData recoveredDAGData = new DAGRecoveryData(lastInProgressDAGData);
-    List<Path> dagRecoveryFiles = getDAGRecoveryFiles(lastInProgressDAG);
+    // Rebuilt while replaying, so that the checkpoints of this attempt also cover the recovery
+    // files of the previous attempts
+    RecoveryCheckpoint newCheckpoint = checkpointEnabled
+        ? new RecoveryCheckpoint(currentAttemptId, 0) : null;
     boolean skipAllOtherEvents = false;
+    int firstAttemptId = 1;
+    long firstFileOffset = 0;
+    RecoveryCheckpoint checkpoint = getLatestCheckpoint(lastInProgressDAG);
+    if (checkpoint != null) {
+      for (HistoryEvent event : checkpoint.getEvents()) {
+        if (skipAllOtherEvents) {
+          break;
+        }
+        if (newCheckpoint != null) {
+          newCheckpoint.add(event);
+        }
+        skipAllOtherEvents = handleRecoveryEvent(recoveredDAGData, lastInProgressDAG, event);
+      }
+      firstAttemptId = checkpoint.getCoveredAttemptId();
+      firstFileOffset = checkpoint.getCoveredOffset();
+    }
+    List<Path> dagRecoveryFiles = getDAGRecoveryFiles(lastInProgressDAG, firstAttemptId);
+    Path firstRecoveryFile = getDAGRecoveryFilePath(
+        TezCommonUtils.getAttemptRecoveryPath(recoveryDataDir, firstAttemptId), lastInProgressDAG);
     Path lastRecoveryFile = null;
     // read the non summary events even when it is nonrecoverable. (Just read the DAGSubmittedEvent
     // to create the DAGImpl)
@@ -740,11 +820,16 @@ public class RecoveryParser {
       }
       FileStatus fileStatus = recoveryFS.getFileStatus(dagRecoveryFile);
       lastRecoveryFile = dagRecoveryFile;
+      long offset = dagRecoveryFile.equals(firstRecoveryFile) ? firstFileOffset : 0;
       LOG.info("Trying to recover dag from recovery file"
           + ", dagId=" + lastInProgressDAG.toString()
           + ", dagRecoveryFile=" + dagRecoveryFile
-          + ", len=" + fileStatus.getLen());
+          + ", len=" + fileStatus.getLen()
+          + ", offset=" + offset);
       FSDataInputStream dagRecoveryStream = recoveryFS.open(dagRecoveryFile, recoveryBufferSize);
+      if (offset > 0) {
+        dagRecoveryStream.seek(offset);
+      }
       while (true) {
         HistoryEvent event;
         try {
@@ -764,147 +849,211 @@ public class RecoveryParser {
           // hit an error - skip reading other events
           break;
         }
-
-        HistoryEventType eventType = event.getEventType();
-        LOG.info("Recovering from event"
-            + ", eventType=" + eventType
-            + ", event=" + event.toString());
-        switch (eventType) {
-          case DAG_SUBMITTED:
-            DAGSubmittedEvent submittedEvent = (DAGSubmittedEvent) event;
-            recoveredDAGData.recoveredDAG = dagAppMaster.createDAG(submittedEvent.getDAGPlan(),
-                lastInProgressDAG);
-            recoveredDAGData.cumulativeAdditionalResources = submittedEvent
-              .getCumulativeAdditionalLocalResources();
-            recoveredDAGData.recoveredDagID = recoveredDAGData.recoveredDAG.getID();
-            dagAppMaster.setCurrentDAG(recoveredDAGData.recoveredDAG);
-            if (recoveredDAGData.nonRecoverable) {
-              skipAllOtherEvents = true;
-            }
-            break;
-          case DAG_INITIALIZED:
-            recoveredDAGData.dagInitedEvent = (DAGInitializedEvent)event;
-            break;
-          case DAG_STARTED:
-            recoveredDAGData.dagStartedEvent= (DAGStartedEvent)event;
-            break;
-          case DAG_FINISHED:
-            recoveredDAGData.dagFinishedEvent = (DAGFinishedEvent)event;
-            skipAllOtherEvents = true;
-            break; 
-          case DAG_COMMIT_STARTED:
-          case VERTEX_GROUP_COMMIT_STARTED:
-          case VERTEX_GROUP_COMMIT_FINISHED: 
-          case CONTAINER_LAUNCHED:
-          {
-            // Nothing to do for now
-            break;
-          }
-          case DAG_KILL_REQUEST:
-          {
-            break;
-          }
-          case VERTEX_INITIALIZED:
-
-          {
-            VertexInitializedEvent vertexInitEvent = (VertexInitializedEvent)event;
-            VertexRecoveryData vertexRecoveryData = recoveredDAGData.maybeCreateVertexRecoveryData(vertexInitEvent.getVertexID());
-            vertexRecoveryData.vertexInitedEvent = vertexInitEvent;
-            break;
-          }
-          case VERTEX_CONFIGURE_DONE:
-          {
-            VertexConfigurationDoneEvent reconfigureDoneEvent = (VertexConfigurationDoneEvent)event;
-            VertexRecoveryData vertexRecoveryData = recoveredDAGData.maybeCreateVertexRecoveryData(reconfigureDoneEvent.getVertexID());
-            vertexRecoveryData.vertexConfigurationDoneEvent = reconfigureDoneEvent;
-            break;
-          }
-          case VERTEX_STARTED:
-          {
-            VertexStartedEvent vertexStartedEvent = (VertexStartedEvent)event;
-            VertexRecoveryData vertexRecoveryData = recoveredDAGData.vertexRecoveryDataMap.get(vertexStartedEvent.getVertexID());
-            Preconditions.checkArgument(vertexRecoveryData != null, "No VertexInitializedEvent before VertexStartedEvent");
-            vertexRecoveryData.vertexStartedEvent = vertexStartedEvent;
-            break;
-          }
-          case VERTEX_COMMIT_STARTED:
-          {
-            break;
-          }
-          case VERTEX_FINISHED:
-          {
-            VertexFinishedEvent vertexFinishedEvent = (VertexFinishedEvent)event;
-            VertexRecoveryData vertexRecoveryData = recoveredDAGData.maybeCreateVertexRecoveryData(vertexFinishedEvent.getVertexID());
-            vertexRecoveryData.vertexFinishedEvent = vertexFinishedEvent;
-            break;
-          }
-          case TASK_STARTED:
-          {
-            TaskStartedEvent taskStartedEvent = (TaskStartedEvent) event;
-            VertexRecoveryData vertexRecoveryData = recoveredDAGData.vertexRecoveryDataMap.get(taskStartedEvent.getTaskID().getVertexID());
-            Preconditions.checkArgument(vertexRecoveryData != null,
-                "Invalid TaskStartedEvent, its vertex does not exist:" + taskStartedEvent.getTaskID().getVertexID());
-            TaskRecoveryData taskRecoveryData = vertexRecoveryData.maybeCreateTaskRecoveryData(taskStartedEvent.getTaskID());
-            taskRecoveryData.taskStartedEvent = taskStartedEvent;
-            break;
-          }
-          case TASK_FINISHED:
-          {
-            TaskFinishedEvent taskFinishedEvent = (TaskFinishedEvent) event;
-            VertexRecoveryData vertexRecoveryData = recoveredDAGData.vertexRecoveryDataMap.get(taskFinishedEvent.getTaskID().getVertexID());
-            Preconditions.checkArgument(vertexRecoveryData != null,
-                "Invalid TaskFinishedEvent, its vertex does not exist:" + taskFinishedEvent.getTaskID().getVertexID());
-            TaskRecoveryData taskRecoveryData = vertexRecoveryData.maybeCreateTaskRecoveryData(taskFinishedEvent.getTaskID());
-            taskRecoveryData.taskFinishedEvent = taskFinishedEvent;
-            break;
-          }
-          case TASK_ATTEMPT_STARTED:
-          {
-            TaskAttemptStartedEvent taStartedEvent = (TaskAttemptStartedEvent)event;
-            VertexRecoveryData vertexRecoveryData = recoveredDAGData.vertexRecoveryDataMap.get(
-                taStartedEvent.getTaskAttemptID().getTaskID().getVertexID());
-            Preconditions.checkArgument(vertexRecoveryData != null,
-                "Invalid TaskAttemptStartedEvent, its vertexId does not exist, taId=" + taStartedEvent.getTaskAttemptID());
-            TaskRecoveryData taskRecoveryData = vertexRecoveryData.taskRecoveryDataMap
-                .get(taStartedEvent.getTaskAttemptID().getTaskID());
-            Preconditions.checkArgument(taskRecoveryData != null,
-                "Invalid TaskAttemptStartedEvent, its taskId does not exist, taId=" + taStartedEvent.getTaskAttemptID());
-            TaskAttemptRecoveryData taRecoveryData = taskRecoveryData.maybeCreateTaskAttemptRecoveryData(taStartedEvent.getTaskAttemptID());
-            taRecoveryData.taStartedEvent = taStartedEvent;
-            break;
-          }
-          case TASK_ATTEMPT_FINISHED:
-          {
-            TaskAttemptFinishedEvent taFinishedEvent = (TaskAttemptFinishedEvent)event;
-            VertexRecoveryData vertexRecoveryData = recoveredDAGData.vertexRecoveryDataMap.get(
-                taFinishedEvent.getTaskAttemptID().getTaskID().getVertexID());
-            Preconditions.checkArgument(vertexRecoveryData != null,
-                "Invalid TaskAttemtFinishedEvent, its vertexId does not exist, taId=" + taFinishedEvent.getTaskAttemptID());
-            TaskRecoveryData taskRecoveryData = vertexRecoveryData.taskRecoveryDataMap
-                .get(taFinishedEvent.getTaskAttemptID().getTaskID());
-            Preconditions.checkArgument(taskRecoveryData != null,
-                "Invalid TaskAttemptFinishedEvent, its taskId does not exist, taId=" + taFinishedEvent.getTaskAttemptID());
-            TaskAttemptRecoveryData taRecoveryData = taskRecoveryData.maybeCreateTaskAttemptRecoveryData(taFinishedEvent.getTaskAttemptID());
-            taRecoveryData.taFinishedEvent = taFinishedEvent;
-            break;
-          }
-          default:
-            throw new RuntimeException("Invalid data found, unknown event type "
-                + eventType);
-        }
-        if (LOG.isDebugEnabled()) {
-          LOG.debug("[DAG RECOVERY]"
-              + " dagId=" + lastInProgressDAG
-              + ", eventType=" + eventType
-              + ", event=" + event.toString());
+        if (newCheckpoint != null) {
+          newCheckpoint.add(event);
         }
+        skipAllOtherEvents = handleRecoveryEvent(recoveredDAGData, lastInProgressDAG, event);
       }
       dagRecoveryStream.close();
+      Set<TezVertexID> resetVertices = recoveredDAGData.resetPartiallyInitializedVertices();
+      if (newCheckpoint != null && !resetVertices.isEmpty()) {
+        newCheckpoint.removeVertices(resetVertices);
+      }
     }
     recoveredDAGData.checkRecoverableNonSummary();
+    recoveredDAGData.checkpoint = newCheckpoint;
     return recoveredDAGData;
   }
 
+  /**
+   * Applies an event of the DAG recovery log to the recovered DAG data.
+   *
+   * @return whether all the events after this one should be skipped
+   */
+  private boolean handleRecoveryEvent(DAGRecoveryData recoveredDAGData, TezDAGID dagId,
+      HistoryEvent event) {
+    boolean skipAllOtherEvents = false;
+    HistoryEventType eventType = event.getEventType();
+    LOG.info("Recovering from event"
+        + ", eventType=" + eventType
+        + ", event=" + event.toString());
+    switch (eventType) {
+      case DAG_SUBMITTED:
+        DAGSubmittedEvent submittedEvent = (DAGSubmittedEvent) event;
+        recoveredDAGData.recoveredDAG = dagAppMaster.createDAG(submittedEvent.getDAGPlan(),
+            dagId);
+        recoveredDAGData.dagPlan = submittedEvent.getDAGPlan();
+        recoveredDAGData.cumulativeAdditionalResources = submittedEvent
+          .getCumulativeAdditionalLocalResources();
+        recoveredDAGData.recoveredDagID = recoveredDAGData.recoveredDAG.getID();
+        dagAppMaster.setCurrentDAG(recoveredDAGData.recoveredDAG);
+        if (recoveredDAGData.nonRecoverable) {
+          skipAllOtherEvents = true;
+        }
+        break;
+      case DAG_INITIALIZED:
+        recoveredDAGData.dagInitedEvent = (DAGInitializedEvent)event;
+        break;
+      case DAG_STARTED:
+        recoveredDAGData.dagStartedEvent= (DAGStartedEvent)event;
+        break;
+      case DAG_FINISHED:
+        recoveredDAGData.dagFinishedEvent = (DAGFinishedEvent)event;
+        skipAllOtherEvents = true;
+        break; 
+      case DAG_COMMIT_STARTED:
+      case VERTEX_GROUP_COMMIT_STARTED:
+      case VERTEX_GROUP_COMMIT_FINISHED: 
+      case CONTAINER_LAUNCHED:
+      {
+        // Nothing to do for now
+        break;
+      }
+      case DAG_KILL_REQUEST:
+      {
+        break;
+      }
+      case VERTEX_INITIALIZED:
+
+      {
+        VertexInitializedEvent vertexInitEvent = (VertexInitializedEvent)event;
+        VertexRecoveryData vertexRecoveryData = recoveredDAGData.maybeCreateVertexRecoveryData(vertexInitEvent.getVertexID());
+        vertexRecoveryData.vertexInitedEvent = vertexInitEvent;
+        break;
+      }
+      case VERTEX_CONFIGURE_DONE:
+      {
+        VertexConfigurationDoneEvent reconfigureDoneEvent = (VertexConfigurationDoneEvent)event;
+        VertexRecoveryData vertexRecoveryData = recoveredDAGData.maybeCreateVertexRecoveryData(reconfigureDoneEvent.getVertexID());
+        vertexRecoveryData.vertexConfigurationDoneEvent = reconfigureDoneEvent;
+        break;
+      }
+      case VERTEX_STARTED:
+      {
+        VertexStartedEvent vertexStartedEvent = (VertexStartedEvent)event;
+        // a vertex with streaming initializers may start before its VertexInitializedEvent
+        VertexRecoveryData vertexRecoveryData = recoveredDAGData.maybeCreateVertexRecoveryData(vertexStartedEvent.getVertexID());
+        vertexRecoveryData.vertexStartedEvent = vertexStartedEvent;
+        break;
+      }
+      case VERTEX_COMMIT_STARTED:
+      {
+        break;
+      }
+      case VERTEX_FINISHED:
+      {
+        VertexFinishedEvent vertexFinishedEvent = (VertexFinishedEvent)event;
+        VertexRecoveryData vertexRecoveryData = recoveredDAGData.maybeCreateVertexRecoveryData(vertexFinishedEvent.getVertexID());
+        vertexRecoveryData.vertexFinishedEvent = vertexFinishedEvent;
+        break;
+      }
+      case TASK_STARTED:
+      {
+        TaskStartedEvent taskStartedEvent = (TaskStartedEvent) event;
+        VertexRecoveryData vertexRecoveryData = recoveredDAGData.vertexRecoveryDataMap.get(taskStartedEvent.getTaskID().getVertexID());
+        Preconditions.checkArgument(vertexRecoveryData != null,
+            "Invalid TaskStartedEvent, its vertex does not exist:" + taskStartedEvent.getTaskID().getVertexID());
+        TaskRecoveryData taskRecoveryData = vertexRecoveryData.maybeCreateTaskRecoveryData(taskStartedEvent.getTaskID());
+        taskRecoveryData.taskStartedEvent = taskStartedEvent;
+        break;
+      }
+      case TASK_FINISHED:
+      {
+        TaskFinishedEvent taskFinishedEvent = (TaskFinishedEvent) event;
+        VertexRecoveryData vertexRecoveryData = recoveredDAGData.vertexRecoveryDataMap.get(taskFinishedEvent.getTaskID().getVertexID());
+        Preconditions.checkArgument(vertexRecoveryData != null,
+            "Invalid TaskFinishedEvent, its vertex does not exist:" + taskFinishedEvent.getTaskID().getVertexID());
+        TaskRecoveryData taskRecoveryData = vertexRecoveryData.maybeCreateTaskRecoveryData(taskFinishedEvent.getTaskID());
+        taskRecoveryData.taskFinishedEvent = taskFinishedEvent;
+        break;
+      }
+      case TASK_ATTEMPT_STARTED:
+      {
+        TaskAttemptStartedEvent taStartedEvent = (TaskAttemptStartedEvent)event;
+        VertexRecoveryData vertexRecoveryData = recoveredDAGData.vertexRecoveryDataMap.get(
+            taStartedEvent.getTaskAttemptID().getTaskID().getVertexID());
+        Preconditions.checkArgument(vertexRecoveryData != null,
+            "Invalid TaskAttemptStartedEvent, its vertexId does not exist, taId=" + taStartedEvent.getTaskAttemptID());
+        TaskRecoveryData taskRecoveryData = vertexRecoveryData.taskRecoveryDataMap
+            .get(taStartedEvent.getTaskAttemptID().getTaskID());
+        Preconditions.checkArgument(taskRecoveryData != null,
+            "Invalid TaskAttemptStartedEvent, its taskId does not exist, taId=" + taStartedEvent.getTaskAttemptID());
+        TaskAttemptRecoveryData taRecoveryData = taskRecoveryData.maybeCreateTaskAttemptRecoveryData(taStartedEvent.getTaskAttemptID());
+        taRecoveryData.taStartedEvent = taStartedEvent;
+        break;
+      }
+      case TASK_ATTEMPT_FINISHED:
+      {
+        TaskAttemptFinishedEvent taFinishedEvent = (TaskAttemptFinishedEvent)event;
+        VertexRecoveryData vertexRecoveryData = recoveredDAGData.vertexRecoveryDataMap.get(
+            taFinishedEvent.getTaskAttemptID().getTaskID().getVertexID());
+        Preconditions.checkArgument(vertexRecoveryData != null,
+            "Invalid TaskAttemtFinishedEvent, its vertexId does not exist, taId=" + taFinishedEvent.getTaskAttemptID());
+        TaskRecoveryData taskRecoveryData = vertexRecoveryData.taskRecoveryDataMap
+            .get(taFinishedEvent.getTaskAttemptID().getTaskID());
+        Preconditions.checkArgument(taskRecoveryData != null,
+            "Invalid TaskAttemptFinishedEvent, its taskId does not exist, taId=" + taFinishedEvent.getTaskAttemptID());
+        TaskAttemptRecoveryData taRecoveryData = taskRecoveryData.maybeCreateTaskAttemptRecoveryData(taFinishedEvent.getTaskAttemptID());
+        taRecoveryData.taFinishedEvent = taFinishedEvent;
+        break;
+      }
+      default:
+        throw new RuntimeException("Invalid data found, unknown event type "
+            + eventType);
+    }
+    if (LOG.isDebugEnabled()) {
+      LOG.debug("[DAG RECOVERY]"
+          + " dagId=" + dagId
+          + ", eventType=" + eventType
+          + ", event=" + event.toString());
+    }
+    return skipAllOtherEvents;
+  }
+
+  /**
+   * Returns the most recent readable checkpoint of the DAG written by a previous attempt, or null
+   * if there is none.
+   */
+  private RecoveryCheckpoint getLatestCheckpoint(TezDAGID dagId) {
+    for (int i = currentAttemptId - 1; i > 0; --i) {
+      Path attemptPath = TezCommonUtils.getAttemptRecoveryPath(recoveryDataDir, i);
+      Path checkpointPath =
+          TezCommonUtils.getDAGRecoveryCheckpointPath(attemptPath, dagId.toString());
+      try {
+        if (!recoveryFS.exists(checkpointPath)) {
+          continue;
+        }
+        RecoveryCheckpoint checkpoint;
+        FSDataInputStream checkpointStream = recoveryFS.open(checkpointPath, recoveryBufferSize);
+        try {
+          checkpoint = RecoveryCheckpoint.read(checkpointStream);
+        } finally {
+          checkpointStream.close();
+        }
+        Path dagRecoveryFile = getDAGRecoveryFilePath(attemptPath, dagId);
+        if (checkpoint.getCoveredAttemptId() != i
+            || !recoveryFS.exists(dagRecoveryFile)
+            || recoveryFS.getFileStatus(dagRecoveryFile).getLen()
+                < checkpoint.getCoveredOffset()) {
+          LOG.warn("Ignoring recovery checkpoint which does not match its recovery file"
+              + ", path=" + checkpointPath
+              + ", coveredAttemptId=" + checkpoint.getCoveredAttemptId()
+              + ", coveredOffset=" + checkpoint.getCoveredOffset());
+          continue;
+        }
+        LOG.info("Recovering dag from checkpoint"
+            + ", dagId=" + dagId
+            + ", path=" + checkpointPath
+            + ", numEvents=" + checkpoint.getEvents().size()
+            + ", coveredOffset=" + checkpoint.getCoveredOffset());
+        return checkpoint;
+      } catch (IOException e) {
+        LOG.warn("Ignoring unreadable recovery checkpoint, path=" + checkpointPath, e);
+      }
+    }
+    return null;
+  }
+
   public static class VertexRecoveryData {
 
     private VertexInitializedEvent vertexInitedEvent;
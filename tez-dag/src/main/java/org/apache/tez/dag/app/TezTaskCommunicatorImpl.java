@@ -17,9 +17,15 @@ package org.apache.tez.dag.app;
 import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.net.URISyntaxException;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 
 import com.google.common.base.Preconditions;
 import com.google.common.collect.Maps;
@@ -54,12 +60,17 @@ import org.apache.tez.serviceplugins.api.TaskHeartbeatResponse;
 import org.apache.tez.dag.api.TezConfiguration;
 import org.apache.tez.dag.api.TezException;
 import org.apache.tez.dag.api.TezUncheckedException;
+import org.apache.tez.dag.api.UserPayload;
 import org.apache.tez.dag.api.event.VertexStateUpdate;
 import org.apache.tez.dag.app.security.authorize.TezAMPolicyProvider;
+import org.apache.tez.dag.records.TezDAGID;
 import org.apache.tez.dag.records.TezTaskAttemptID;
+import org.apache.tez.runtime.api.impl.EventType;
 import org.apache.tez.runtime.api.impl.TaskSpec;
+import org.apache.tez.runtime.api.impl.TezEvent;
 import org.apache.tez.runtime.api.impl.TezHeartbeatRequest;
 import org.apache.tez.runtime.api.impl.TezHeartbeatResponse;
+import org.apache.tez.runtime.api.impl.UserPayloadStore;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -84,6 +95,12 @@ public class TezTaskCommunicatorImpl extends TaskCommunicator {
   protected final Configuration conf;
   protected InetSocketAddress address;
 
+  private final long longPollTimeout;
+  private final long longPollCheckInterval;
+  // Bounds the handler threads holding heartbeats, so that others can serve completions and events
+  private final Semaphore longPollPermits;
+  private final boolean payloadRefsEnabled;
+
   protected volatile Server server;
 
   public static final class ContainerInfo {
@@ -100,10 +117,15 @@ public class TezTaskCommunicatorImpl extends TaskCommunicator {
     TezHeartbeatResponse lastResponse = null;
     TaskSpec taskSpec = null;
     long lastRequestId = 0;
+    // Highest request id the container asked to return without holding it
+    long releasedRequestId = 0;
     Map<String, LocalResource> additionalLRs = null;
     Credentials credentials = null;
     boolean credentialsChanged = false;
     boolean taskPulled = false;
+    // Payloads sent to the container, which are not reset between tasks
+    final Set<String> sentPayloads = new HashSet<String>();
+    TezDAGID sentPayloadsDagId = null;
 
     void reset() {
       taskSpec = null;
@@ -130,6 +152,25 @@ public class TezTaskCommunicatorImpl extends TaskCommunicator {
       throw new TezUncheckedException(
           "Unable to parse user payload for " + TezTaskCommunicatorImpl.class.getSimpleName(), e);
     }
+    this.longPollTimeout = conf.getInt(
+        TezConfiguration.TEZ_TASK_AM_HEARTBEAT_LONG_POLL_TIMEOUT_MS,
+        TezConfiguration.TEZ_TASK_AM_HEARTBEAT_LONG_POLL_TIMEOUT_MS_DEFAULT);
+    this.longPollCheckInterval = Math.max(1, conf.getInt(
+        TezConfiguration.TEZ_TASK_AM_HEARTBEAT_LONG_POLL_CHECK_INTERVAL_MS,
+        TezConfiguration.TEZ_TASK_AM_HEARTBEAT_LONG_POLL_CHECK_INTERVAL_MS_DEFAULT));
+    // Nothing is serialized for tasks running within the AM
+    this.payloadRefsEnabled = conf.getBoolean(TezConfiguration.TEZ_TASK_PAYLOAD_REFS_ENABLED,
+        TezConfiguration.TEZ_TASK_PAYLOAD_REFS_ENABLED_DEFAULT)
+        && !conf.getBoolean(TezConfiguration.TEZ_LOCAL_MODE,
+        TezConfiguration.TEZ_LOCAL_MODE_DEFAULT);
+    int maxLongPolls = Math.max(1, conf.getInt(TezConfiguration.TEZ_AM_TASK_LISTENER_THREAD_COUNT,
+        TezConfiguration.TEZ_AM_TASK_LISTENER_THREAD_COUNT_DEFAULT) / 2);
+    this.longPollPermits = new Semaphore(maxLongPolls);
+    if (longPollTimeout > 0) {
+      LOG.info("Task heartbeats will be held for up to " + longPollTimeout
+          + " ms while no events are available, checkInterval=" + longPollCheckInterval
+          + ", maxHeldHeartbeats=" + maxLongPolls);
+    }
   }
 
   @Override
@@ -330,6 +371,20 @@ public class TezTaskCommunicatorImpl extends TaskCommunicator {
       return getContext().canCommit(taskAttemptId);
     }
 
+    @Override
+    public void releaseHeartbeat(String containerIdentifier, long requestId) throws IOException {
+      ContainerId containerId = ConverterUtils.toContainerId(containerIdentifier);
+      ContainerInfo containerInfo = registeredContainers.get(containerId);
+      if (containerInfo == null) {
+        return;
+      }
+      synchronized (containerInfo) {
+        // The heartbeat may not have arrived yet, it is then not held at all
+        containerInfo.releasedRequestId = Math.max(containerInfo.releasedRequestId, requestId);
+        containerInfo.notifyAll();
+      }
+    }
+
     @Override
     public TezHeartbeatResponse heartbeat(TezHeartbeatRequest request) throws IOException,
         TezException {
@@ -382,6 +437,9 @@ public class TezTaskCommunicatorImpl extends TaskCommunicator {
             request.getCurrentTaskAttemptID(), request.getEvents(), request.getStartIndex(),
             request.getPreRoutedStartIndex(), request.getMaxEvents());
         tResponse = getContext().heartbeat(tRequest);
+        if (longPollTimeout > 0) {
+          tResponse = longPollForEvents(containerInfo, request, tResponse);
+        }
         response.setEvents(tResponse.getEvents());
         response.setNextFromEventId(tResponse.getNextFromEventId());
         response.setNextPreRoutedEventId(tResponse.getNextPreRoutedEventId());
@@ -408,6 +466,68 @@ public class TezTaskCommunicatorImpl extends TaskCommunicator {
     }
   }
 
+  /**
+   * Holds a heartbeat which did not return any events, until events are available for the
+   * attempt, the long poll timeout expires or the container asks for it to be released. Only
+   * plain status heartbeats are held, so that events sent by the task and task completion are
+   * never delayed, and the task releases a held heartbeat as soon as it has events or completes.
+   * Heartbeats are only held while fewer than half of the handler threads are holding one.
+   */
+  private TaskHeartbeatResponse longPollForEvents(ContainerInfo containerInfo,
+      TezHeartbeatRequest request, TaskHeartbeatResponse response)
+      throws IOException, TezException {
+    if (!isPollOnly(request.getEvents()) || !longPollPermits.tryAcquire()) {
+      return response;
+    }
+    try {
+      long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(longPollTimeout);
+      TaskHeartbeatResponse currentResponse = response;
+      while (!currentResponse.isShouldDie()
+          && (currentResponse.getEvents() == null || currentResponse.getEvents().isEmpty())) {
+        long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+        if (remaining <= 0) {
+          break;
+        }
+        synchronized (containerInfo) {
+          if (containerInfo.releasedRequestId >= request.getRequestId()) {
+            break;
+          }
+          try {
+            containerInfo.wait(Math.min(remaining, longPollCheckInterval));
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            break;
+          }
+          if (containerInfo.releasedRequestId >= request.getRequestId()) {
+            break;
+          }
+        }
+        if (!attemptToContainerMap.containsKey(request.getCurrentTaskAttemptID())) {
+          // Unregistered meanwhile. The next heartbeat sorts out what the task should do.
+          break;
+        }
+        currentResponse = getContext().heartbeat(new TaskHeartbeatRequest(
+            request.getContainerIdentifier(), request.getCurrentTaskAttemptID(),
+            Collections.<TezEvent>emptyList(), currentResponse.getNextFromEventId(),
+            currentResponse.getNextPreRoutedEventId(), request.getMaxEvents()));
+      }
+      return currentResponse;
+    } finally {
+      longPollPermits.release();
+    }
+  }
+
+  private static boolean isPollOnly(List<TezEvent> events) {
+    if (events != null) {
+      for (TezEvent event : events) {
+        if (event.getEventType() != EventType.TASK_STATUS_UPDATE_EVENT) {
+          return false;
+        }
+      }
+    }
+    return true;
+  }
+
   private ContainerTask getContainerTask(ContainerId containerId) throws IOException {
     ContainerInfo containerInfo = registeredContainers.get(containerId);
     ContainerTask task;
@@ -446,9 +566,24 @@ public class TezTaskCommunicatorImpl extends TaskCommunicator {
   }
 
   private ContainerTask constructContainerTask(ContainerInfo containerInfo) throws IOException {
+    Map<String, UserPayload> newPayloads = null;
+    boolean resetPayloads = false;
+    if (payloadRefsEnabled) {
+      TezDAGID dagId = containerInfo.taskSpec.getTaskAttemptID().getTaskID().getVertexID()
+          .getDAGId();
+      if (!dagId.equals(containerInfo.sentPayloadsDagId)) {
+        // Payloads are rarely shared across DAGs, don't let them pile up in the container
+        resetPayloads = containerInfo.sentPayloadsDagId != null;
+        containerInfo.sentPayloads.clear();
+        containerInfo.sentPayloadsDagId = dagId;
+      }
+      newPayloads = UserPayloadStore.getPayloads(containerInfo.taskSpec);
+      newPayloads.keySet().removeAll(containerInfo.sentPayloads);
+      containerInfo.sentPayloads.addAll(newPayloads.keySet());
+    }
     return new ContainerTask(containerInfo.taskSpec, false,
         convertLocalResourceMap(containerInfo.additionalLRs), containerInfo.credentials,
-        containerInfo.credentialsChanged);
+        containerInfo.credentialsChanged, newPayloads, resetPayloads);
   }
 
   private Map<String, TezLocalResource> convertLocalResourceMap(Map<String, LocalResource> ylrs)
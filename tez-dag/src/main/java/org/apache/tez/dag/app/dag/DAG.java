@@ -30,6 +30,7 @@ import org.apache.hadoop.yarn.event.EventHandler;
 import org.apache.tez.common.counters.TezCounters;
 import org.apache.tez.dag.api.TezException;
 import org.apache.tez.dag.api.client.DAGStatusBuilder;
+import org.apache.tez.dag.api.client.DAGStatusTracker;
 import org.apache.tez.dag.api.client.StatusGetOpts;
 import org.apache.tez.dag.api.client.VertexStatusBuilder;
 import org.apache.tez.dag.api.records.DAGProtos.DAGPlan;
@@ -84,6 +85,30 @@ public interface DAG extends DagInfo {
   VertexStatusBuilder getVertexStatus(String vertexName,
                                       Set<StatusGetOpts> statusOptions);
 
+  /**
+   * @return the tracker of the status updates sent to the clients following this DAG
+   */
+  DAGStatusTracker getStatusTracker();
+
+  /**
+   * Wakes up the clients waiting in {@link #awaitStatusChange(long, long)}, as the status of the
+   * DAG or of one of its vertices may have changed.
+   */
+  void onStatusChanged();
+
+  /**
+   * @return the number of times the status of the DAG may have changed so far
+   */
+  long getStatusChangeCount();
+
+  /**
+   * Waits until the status of the DAG may have changed more than changeCount times, or the
+   * timeout expires.
+   *
+   * @return the number of times the status of the DAG may have changed so far
+   */
+  long awaitStatusChange(long changeCount, long timeoutMillis) throws InterruptedException;
+
   boolean isComplete();
 
   UserGroupInformation getDagUGI();
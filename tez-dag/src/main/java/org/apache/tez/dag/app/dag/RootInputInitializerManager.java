@@ -230,6 +230,29 @@ public class RootInputInitializerManager {
     }
   }
 
+  /**
+   * Forwards a batch of events sent by an initializer before it completed.
+   */
+  @SuppressWarnings("unchecked")
+  public void addEvents(String inputName, List<Event> events) {
+    InitializerWrapper initializer = initializerMap.get(inputName);
+    Preconditions.checkState(initializer != null, "Events added for unknown input: " + inputName);
+    if (isStopped || initializer.isComplete()) {
+      LOG.warn("Dropping " + (events == null ? 0 : events.size()) + " events added by the "
+          + "InputInitializer for Input: " + inputName + " on vertex "
+          + vertex.getLogIdentifier() + ", since it has already completed");
+      return;
+    }
+    if (events == null || events.isEmpty()) {
+      return;
+    }
+    LOG.info("InputInitializer for Input: " + inputName + " on vertex "
+        + vertex.getLogIdentifier() + " added " + events.size() + " events");
+    // Copied, since the initializer may reuse the list for the next batch
+    eventHandler.handle(new VertexEventRootInputInitialized(vertex.getVertexId(), inputName,
+        Lists.newArrayList(events), true));
+  }
+
   @VisibleForTesting
   protected InputInitializerCallback createInputInitializerCallback(InitializerWrapper initializer) {
     return new InputInitializerCallback(initializer, eventHandler, vertex.getVertexId());
@@ -33,6 +33,7 @@ import org.apache.tez.dag.records.TezDAGID;
 import org.apache.tez.dag.records.TezTaskAttemptID;
 import org.apache.tez.dag.records.TezTaskID;
 import org.apache.tez.dag.records.TezVertexID;
+import org.apache.tez.runtime.api.impl.TaskMetricsSeries;
 import org.apache.tez.runtime.api.impl.TezEvent;
 
 /**
@@ -76,6 +77,10 @@ public interface TaskAttempt {
   List<String> getDiagnostics();
   TaskAttemptTerminationCause getTerminationCause();
   TezCounters getCounters();
+  /**
+   * @return the metrics series last reported by the task, or null if the task samples no metrics
+   */
+  TaskMetricsSeries getMetricsSeries();
   float getProgress();
   TaskAttemptState getState();
   TaskAttemptState getStateNoLock();
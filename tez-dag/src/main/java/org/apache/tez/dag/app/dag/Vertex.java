@@ -50,6 +50,7 @@ import org.apache.tez.dag.app.dag.event.SpeculatorEvent;
 import org.apache.tez.dag.app.dag.impl.AMUserCodeException;
 import org.apache.tez.dag.app.dag.impl.Edge;
 import org.apache.tez.dag.app.dag.impl.ServicePluginInfo;
+import org.apache.tez.dag.app.dag.impl.VertexStats;
 import org.apache.tez.dag.records.TezTaskAttemptID;
 import org.apache.tez.dag.records.TezTaskID;
 import org.apache.tez.dag.records.TezVertexID;
@@ -98,6 +99,7 @@ public interface Vertex extends Comparable<Vertex> {
   float getProgress();
   float getCompletedTaskProgress();
   ProgressBuilder getVertexProgress();
+  VertexStats getVertexStats();
   VertexStatusBuilder getVertexStatus(Set<StatusGetOpts> statusOptions);
 
   @Nullable
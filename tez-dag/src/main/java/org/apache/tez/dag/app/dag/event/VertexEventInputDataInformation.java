@@ -27,14 +27,35 @@ import org.apache.tez.runtime.api.impl.TezEvent;
 public class VertexEventInputDataInformation extends VertexEvent {
 
   private final List<TezEvent> events;
+  private final String inputName;
+  private final boolean partial;
   
   public VertexEventInputDataInformation(TezVertexID vertexId, List<TezEvent> events) {
+    this(vertexId, events, null, false);
+  }
+
+  /**
+   * @param inputName the input whose initializer generated the events
+   * @param partial whether the events are a batch sent before the initializer completed
+   */
+  public VertexEventInputDataInformation(TezVertexID vertexId, List<TezEvent> events,
+      String inputName, boolean partial) {
     super(vertexId, VertexEventType.V_INPUT_DATA_INFORMATION);
     this.events = events;
+    this.inputName = inputName;
+    this.partial = partial;
   }
   
   public List<TezEvent> getEvents() {
     return events;
   }
 
+  public String getInputName() {
+    return inputName;
+  }
+
+  public boolean isPartial() {
+    return partial;
+  }
+
 }
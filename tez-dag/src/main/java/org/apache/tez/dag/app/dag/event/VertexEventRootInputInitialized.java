@@ -28,10 +28,20 @@ public class VertexEventRootInputInitialized extends VertexEvent {
 
   private final String inputName;
   private final List<Event> events;
+  private final boolean partial;
 
   public VertexEventRootInputInitialized(TezVertexID vertexId, String inputName, List<Event> events) {
+    this(vertexId, inputName, events, false);
+  }
+
+  /**
+   * @param partial whether the events are a batch sent before the initializer completed
+   */
+  public VertexEventRootInputInitialized(TezVertexID vertexId, String inputName,
+      List<Event> events, boolean partial) {
     super(vertexId, VertexEventType.V_ROOT_INPUT_INITIALIZED);
     this.inputName = inputName;
+    this.partial = partial;
     if (events == null) {
       this.events = Collections.emptyList();
     } else {
@@ -47,4 +57,8 @@ public class VertexEventRootInputInitialized extends VertexEvent {
     return this.inputName;
   }
 
+  public boolean isPartial() {
+    return partial;
+  }
+
 }
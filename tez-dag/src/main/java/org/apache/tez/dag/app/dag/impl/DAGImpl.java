@@ -32,7 +32,10 @@ import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReadWriteLock;
@@ -74,6 +77,7 @@ import org.apache.tez.dag.api.TezException;
 import org.apache.tez.dag.api.TezUncheckedException;
 import org.apache.tez.dag.api.VertexLocationHint;
 import org.apache.tez.dag.api.client.DAGStatusBuilder;
+import org.apache.tez.dag.api.client.DAGStatusTracker;
 import org.apache.tez.dag.api.client.ProgressBuilder;
 import org.apache.tez.dag.api.client.StatusGetOpts;
 import org.apache.tez.dag.api.client.VertexStatus;
@@ -160,6 +164,10 @@ public class DAGImpl implements org.apache.tez.dag.app.dag.DAG,
   //private final List<AMInfo> amInfos;
   private final Lock dagStatusLock = new ReentrantLock();
   private final Condition dagCompletionCondition = dagStatusLock.newCondition();
+  private final Condition dagStatusChangedCondition = dagStatusLock.newCondition();
+  private final AtomicLong statusChangeCount = new AtomicLong(0);
+  private final AtomicInteger statusChangeWaiters = new AtomicInteger(0);
+  private final DAGStatusTracker statusTracker = new DAGStatusTracker(this);
   private final AtomicBoolean isFinalState = new AtomicBoolean(false);
   private final Lock readLock;
   private final Lock writeLock;
@@ -934,6 +942,48 @@ public class DAGImpl implements org.apache.tez.dag.app.dag.DAG,
     return getDAGStatus(statusOptions);
   }
 
+  @Override
+  public DAGStatusTracker getStatusTracker() {
+    return statusTracker;
+  }
+
+  @Override
+  public void onStatusChanged() {
+    statusChangeCount.incrementAndGet();
+    // Waiters register before checking the count, so they either see the new count or get
+    // signalled
+    if (statusChangeWaiters.get() > 0) {
+      dagStatusLock.lock();
+      try {
+        dagStatusChangedCondition.signalAll();
+      } finally {
+        dagStatusLock.unlock();
+      }
+    }
+  }
+
+  @Override
+  public long getStatusChangeCount() {
+    return statusChangeCount.get();
+  }
+
+  @Override
+  public long awaitStatusChange(long changeCount, long timeoutMillis)
+      throws InterruptedException {
+    long nanosLeft = TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+    statusChangeWaiters.incrementAndGet();
+    dagStatusLock.lock();
+    try {
+      while (statusChangeCount.get() <= changeCount && nanosLeft > 0) {
+        nanosLeft = dagStatusChangedCondition.awaitNanos(nanosLeft);
+      }
+      return statusChangeCount.get();
+    } finally {
+      dagStatusLock.unlock();
+      statusChangeWaiters.decrementAndGet();
+    }
+  }
+
   private ProgressBuilder getDAGProgress() {
     int totalTaskCount = 0;
     int totalSucceededTaskCount = 0;
@@ -1182,6 +1232,7 @@ public class DAGImpl implements org.apache.tez.dag.app.dag.DAG,
     finally {
       writeLock.unlock();
     }
+    onStatusChanged();
   }
 
   @Private
@@ -0,0 +1,184 @@
+/**
+* Licensed to the Apache Software Foundation (ASF) under one
+* or more contributor license agreements.  See the NOTICE file
+* distributed with this work for additional information
+* regarding copyright ownership.  The ASF licenses this file
+* to you under the Apache License, Version 2.0 (the
+* "License"); you may not use this file except in compliance
+* with the License.  You may obtain a copy of the License at
+*
+*     http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+package org.apache.tez.dag.app.dag.impl;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.apache.hadoop.yarn.event.EventHandler;
+import org.apache.tez.dag.app.dag.DAG;
+import org.apache.tez.dag.app.dag.DAGScheduler;
+import org.apache.tez.dag.app.dag.TaskAttempt;
+import org.apache.tez.dag.app.dag.Vertex;
+import org.apache.tez.dag.app.dag.event.DAGEventSchedulerUpdate;
+import org.apache.tez.dag.app.dag.event.TaskAttemptEventSchedule;
+import org.apache.tez.dag.records.TezVertexID;
+
+/**
+ * Prioritizes the vertices on the critical path of the DAG, i.e. orders vertices by the estimated
+ * remaining work on the longest path from the vertex to the end of the DAG. With scarce
+ * containers, this keeps short branches from delaying the branch which determines when the DAG
+ * completes.</p>
+ * The remaining work of a vertex is its number of incomplete tasks times the average duration of
+ * its succeeded tasks, or of the succeeded tasks of the whole DAG while the vertex has none.
+ * Estimates are recomputed when a vertex schedules its first task, i.e. once its parallelism is
+ * known, and whenever the number of succeeded vertices changes.</p>
+ * The remaining path of a vertex includes the paths of its descendants, so a vertex is never
+ * ordered after its descendants, as with {@link DAGSchedulerNaturalOrder}.
+ */
+@SuppressWarnings("rawtypes")
+public class DAGSchedulerCriticalPath extends DAGScheduler {
+
+  private static final Logger LOG =
+      LoggerFactory.getLogger(DAGSchedulerCriticalPath.class);
+
+  private final DAG dag;
+  private final EventHandler handler;
+
+  // Position of each vertex in the priority order, highest priority first
+  private final Map<TezVertexID, Integer> vertexPositions = new HashMap<TezVertexID, Integer>();
+  // Vertices which have scheduled tasks
+  private final Set<TezVertexID> scheduledVertices = new HashSet<TezVertexID>();
+  private int lastSucceededVertices = -1;
+
+  public DAGSchedulerCriticalPath(DAG dag, EventHandler dispatcher) {
+    this.dag = dag;
+    this.handler = dispatcher;
+  }
+
+  @Override
+  public void scheduleTaskEx(DAGEventSchedulerUpdate event) {
+    TaskAttempt attempt = event.getAttempt();
+    Vertex vertex = dag.getVertex(attempt.getVertexID());
+    TezVertexID vertexId = vertex.getVertexId();
+
+    int succeededVertices = dag.getSuccessfulVertices();
+    boolean firstTaskOfVertex = scheduledVertices.add(vertexId);
+    if (firstTaskOfVertex || succeededVertices != lastSucceededVertices
+        || !vertexPositions.containsKey(vertexId)) {
+      lastSucceededVertices = succeededVertices;
+      computeVertexPositions();
+    }
+
+    // Handles failures and retries, as the natural order does
+    int priorityLowLimit = (vertexPositions.get(vertexId) + 1) * 3;
+    int priorityHighLimit = priorityLowLimit - 2;
+
+    if (LOG.isDebugEnabled()) {
+      LOG.debug("Scheduling " + attempt.getID() + " between priorityLow: " + priorityLowLimit
+          + " and priorityHigh: " + priorityHighLimit);
+    }
+
+    TaskAttemptEventSchedule attemptEvent = new TaskAttemptEventSchedule(
+        attempt.getID(), priorityLowLimit, priorityHighLimit);
+
+    sendEvent(attemptEvent);
+  }
+
+  @Override
+  public void taskCompletedEx(DAGEventSchedulerUpdate event) {
+  }
+
+  private void computeVertexPositions() {
+    Map<TezVertexID, Vertex> vertices = dag.getVertices();
+    // Stats are built from the reports of all tasks of a vertex, so get them once
+    Map<Vertex, Double> taskDurations = new HashMap<Vertex, Double>();
+    double totalDuration = 0;
+    long numSucceededTasks = 0;
+    for (Vertex vertex : vertices.values()) {
+      VertexStats stats = vertex.getVertexStats();
+      if (stats != null && stats.getAvgTaskDuration() > 0) {
+        taskDurations.put(vertex, stats.getAvgTaskDuration());
+        totalDuration += stats.getAvgTaskDuration() * stats.numSuccessfulTasks;
+        numSucceededTasks += stats.numSuccessfulTasks;
+      }
+    }
+    // Until any task succeeded, work is estimated by the number of tasks only
+    double defaultTaskDuration = numSucceededTasks > 0 ? totalDuration / numSucceededTasks : 1;
+
+    final Map<Vertex, Double> remainingPathWork = new HashMap<Vertex, Double>();
+    for (Vertex vertex : vertices.values()) {
+      computeRemainingPathWork(vertex, taskDurations, defaultTaskDuration, remainingPathWork);
+    }
+
+    List<Vertex> order = new ArrayList<Vertex>(vertices.values());
+    Collections.sort(order, new Comparator<Vertex>() {
+      @Override
+      public int compare(Vertex v1, Vertex v2) {
+        int cmp = Double.compare(remainingPathWork.get(v2), remainingPathWork.get(v1));
+        if (cmp == 0) {
+          // Keeps completed vertices, with no work left, ahead of their descendants
+          cmp = v1.getDistanceFromRoot() - v2.getDistanceFromRoot();
+        }
+        if (cmp == 0) {
+          cmp = v1.getVertexId().getId() - v2.getVertexId().getId();
+        }
+        return cmp;
+      }
+    });
+
+    vertexPositions.clear();
+    for (int i = 0; i < order.size(); ++i) {
+      vertexPositions.put(order.get(i).getVertexId(), i);
+    }
+    if (LOG.isDebugEnabled()) {
+      StringBuilder sb = new StringBuilder();
+      for (Vertex vertex : order) {
+        sb.append(vertex.getLogIdentifier()).append('=')
+            .append(remainingPathWork.get(vertex)).append(' ');
+      }
+      LOG.debug("Vertices by remaining work on their critical path: " + sb);
+    }
+  }
+
+  private static double computeRemainingPathWork(Vertex vertex, Map<Vertex, Double> taskDurations,
+      double defaultTaskDuration, Map<Vertex, Double> remainingPathWork) {
+    Double work = remainingPathWork.get(vertex);
+    if (work != null) {
+      return work;
+    }
+    // Every edge type is a precedence constraint once containers are scarce
+    double downstreamWork = 0;
+    for (Vertex outputVertex : vertex.getOutputVertices().keySet()) {
+      downstreamWork = Math.max(downstreamWork, computeRemainingPathWork(outputVertex,
+          taskDurations, defaultTaskDuration, remainingPathWork));
+    }
+    // Parallelism is -1 until it is determined at runtime
+    int remainingTasks = Math.max(vertex.getTotalTasks(), 1) - vertex.getCompletedTasks();
+    Double taskDuration = taskDurations.get(vertex);
+    work = Math.max(remainingTasks, 0)
+        * (taskDuration != null ? taskDuration : defaultTaskDuration) + downstreamWork;
+    remainingPathWork.put(vertex, work);
+    return work;
+  }
+
+  @SuppressWarnings("unchecked")
+  void sendEvent(TaskAttemptEventSchedule event) {
+    handler.handle(event);
+  }
+
+}
@@ -96,6 +96,7 @@ import org.apache.tez.dag.app.dag.event.SpeculatorEventTaskAttemptStatusUpdate;
 import org.apache.tez.dag.app.rm.AMSchedulerEventTAEnded;
 import org.apache.tez.dag.app.rm.AMSchedulerEventTALaunchRequest;
 import org.apache.tez.dag.app.rm.container.AMContainer;
+import org.apache.tez.dag.app.rm.node.AMNodeEventTaskAttemptOutputFailed;
 import org.apache.tez.dag.history.DAGHistoryEvent;
 import org.apache.tez.dag.history.events.TaskAttemptFinishedEvent;
 import org.apache.tez.dag.history.events.TaskAttemptStartedEvent;
@@ -109,6 +110,7 @@ import org.apache.tez.runtime.api.events.InputFailedEvent;
 import org.apache.tez.runtime.api.events.InputReadErrorEvent;
 import org.apache.tez.runtime.api.events.TaskStatusUpdateEvent;
 import org.apache.tez.runtime.api.impl.EventMetaData;
+import org.apache.tez.runtime.api.impl.TaskMetricsSeries;
 import org.apache.tez.runtime.api.impl.TaskSpec;
 import org.apache.tez.runtime.api.impl.TaskStatistics;
 import org.apache.tez.runtime.api.impl.TezEvent;
@@ -200,6 +202,7 @@ public class TaskAttemptImpl implements TaskAttempt,
   private DAGCounter localityCounter;
   
   org.apache.tez.runtime.api.impl.TaskStatistics statistics;
+  private volatile TaskMetricsSeries metricsSeries;
 
   long lastNotifyProgressTimestamp = 0;
   private final long hungIntervalMax;
@@ -616,6 +619,11 @@ public class TaskAttemptImpl implements TaskAttempt,
     return this.statistics;
   }
 
+  @Override
+  public TaskMetricsSeries getMetricsSeries() {
+    return metricsSeries;
+  }
+
   @Override
   public float getProgress() {
     readLock.lock();
@@ -1490,6 +1498,9 @@ public class TaskAttemptImpl implements TaskAttempt,
       ta.reportedStatus.progress = statusEvent.getProgress();
       ta.reportedStatus.counters = statusEvent.getCounters();
       ta.statistics = statusEvent.getStatistics();
+      if (statusEvent.getMetricsSeries() != null) {
+        ta.metricsSeries = statusEvent.getMetricsSeries();
+      }
       if (statusEvent.getProgressNotified()) {
         ta.lastNotifyProgressTimestamp = ta.clock.getTime();
       } else {
@@ -1702,6 +1713,12 @@ public class TaskAttemptImpl implements TaskAttempt,
       if (firstErrReportTime == null) {
         attempt.uniquefailedOutputReports.put(failedDestTaId, time);
         firstErrReportTime = time;
+        if (attempt.containerNodeId != null) {
+          // Lets the node serving the output aggregate failures across all its outputs
+          attempt.sendEvent(new AMNodeEventTaskAttemptOutputFailed(attempt.containerNodeId,
+              attempt.getVertex().getTaskSchedulerIdentifier(), attempt.getID(),
+              failedDestTaId));
+        }
       }
       
       int readErrorTimespanSec = (int)((time - firstErrReportTime)/1000);
@@ -1743,8 +1760,6 @@ public class TaskAttemptImpl implements TaskAttempt,
             attempt, event);
         return TaskAttemptStateInternal.FAIL_IN_PROGRESS;
       }
-      // TODO at some point. Nodes may be interested in FetchFailure info.
-      // Can be used to blacklist nodes.
     }
   }
   
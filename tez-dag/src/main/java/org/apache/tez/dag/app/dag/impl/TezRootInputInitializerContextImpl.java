@@ -20,6 +20,7 @@ package org.apache.tez.dag.app.dag.impl;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 
+import java.util.List;
 import java.util.Set;
 
 import org.apache.hadoop.yarn.api.records.ApplicationId;
@@ -32,10 +33,11 @@ import org.apache.tez.dag.api.event.VertexState;
 import org.apache.tez.dag.app.AppContext;
 import org.apache.tez.dag.app.dag.RootInputInitializerManager;
 import org.apache.tez.dag.app.dag.Vertex;
-import org.apache.tez.runtime.api.InputInitializerContext;
+import org.apache.tez.runtime.api.Event;
+import org.apache.tez.runtime.api.StreamingInputInitializerContext;
 
 public class TezRootInputInitializerContextImpl implements
-    InputInitializerContext {
+    StreamingInputInitializerContext {
 
   private RootInputLeafOutput<InputDescriptor, InputInitializerDescriptor> input;
   private final Vertex vertex;
@@ -119,4 +121,9 @@ public class TezRootInputInitializerContextImpl implements
     manager.registerForVertexUpdates(vertexName, input.getName(), stateSet);
   }
 
+  @Override
+  public void addEvents(List<Event> events) {
+    manager.addEvents(input.getName(), events);
+  }
+
 }
@@ -28,6 +28,7 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.EnumSet;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.LinkedList;
@@ -425,12 +426,32 @@ public class VertexImpl implements org.apache.tez.dag.app.dag.Vertex, EventHandl
           .addTransition(VertexState.INITED, VertexState.ERROR,
               VertexEventType.V_INTERNAL_ERROR,
               INTERNAL_ERROR_TRANSITION)
+          // events of initializers which are still streaming
+          .addTransition(VertexState.INITED,
+              EnumSet.of(VertexState.INITED),
+              VertexEventType.V_ROOT_INPUT_INITIALIZED,
+              new RootInputInitializedTransition())
+          .addTransition(VertexState.INITED,
+              EnumSet.of(VertexState.INITED),
+              VertexEventType.V_INPUT_DATA_INFORMATION,
+              new InputDataInformationTransition())
 
           // Transitions from RUNNING state
           .addTransition(VertexState.RUNNING,
               EnumSet.of(VertexState.TERMINATING),
               VertexEventType.V_ROOT_INPUT_FAILED,
               new RootInputInitFailedTransition())
+          // events of initializers which are still streaming
+          .addTransition(VertexState.RUNNING,
+              EnumSet.of(VertexState.RUNNING),
+              VertexEventType.V_ROOT_INPUT_INITIALIZED,
+              new RootInputInitializedTransition())
+          .addTransition(VertexState.RUNNING,
+              EnumSet.of(VertexState.RUNNING, VertexState.COMMITTING,
+                  VertexState.SUCCEEDED, VertexState.TERMINATING, VertexState.FAILED,
+                  VertexState.ERROR),
+              VertexEventType.V_INPUT_DATA_INFORMATION,
+              new InputDataInformationTransition())
           .addTransition(VertexState.RUNNING, VertexState.RUNNING,
               VertexEventType.V_TASK_ATTEMPT_COMPLETED,
               TASK_ATTEMPT_COMPLETED_EVENT_TRANSITION)
@@ -528,7 +549,8 @@ public class VertexImpl implements org.apache.tez.dag.app.dag.Vertex, EventHandl
                   VertexEventType.V_ROUTE_EVENT,
                   VertexEventType.V_SOURCE_TASK_ATTEMPT_COMPLETED,
                   VertexEventType.V_TASK_ATTEMPT_COMPLETED,
-                  VertexEventType.V_TASK_RESCHEDULED))
+                  VertexEventType.V_TASK_RESCHEDULED,
+                  VertexEventType.V_INPUT_DATA_INFORMATION))
 
           // Transitions from SUCCEEDED state
           .addTransition(
@@ -717,6 +739,11 @@ public class VertexImpl implements org.apache.tez.dag.app.dag.Vertex, EventHandl
   private int numInitializedInputs;
   @VisibleForTesting
   int numInitializerCompletionsHandled = 0;
+  // Inputs whose initializers have sent events through the vertex manager, but not completed yet
+  private final Set<String> streamingInputs = new HashSet<String>();
+  // Whether the VertexInitializedEvent waits for the streaming initializers to complete. The vertex
+  // may start before that, and is initialized again on recovery until the event is logged.
+  private boolean initializedEventDeferred = false;
   private boolean startSignalPending = false;
   // We may always store task events in the vertex for scalability
   List<TezEvent> pendingTaskEvents = Lists.newLinkedList();
@@ -1220,6 +1247,7 @@ public class VertexImpl implements org.apache.tez.dag.app.dag.Vertex, EventHandl
         TezConfiguration.TEZ_AM_VERTEX_MAX_TASK_CONCURRENCY_DEFAULT);
   }
 
+  @Override
   public VertexStats getVertexStats() {
 
     readLock.lock();
@@ -1918,6 +1946,8 @@ public class VertexImpl implements org.apache.tez.dag.app.dag.Vertex, EventHandl
     finally {
       writeLock.unlock();
     }
+    // The progress of the vertex is part of the status of the DAG
+    dag.onStatusChanged();
   }
 
   private VertexState getInternalState() {
@@ -2124,6 +2154,12 @@ public class VertexImpl implements org.apache.tez.dag.app.dag.Vertex, EventHandl
       
       //Only succeed if tasks complete successfully and no terminationCause is registered.
       if(vertex.succeededTaskCount == vertex.tasks.size() && vertex.terminationCause == null) {
+        if (!vertex.streamingInputs.isEmpty()) {
+          // events for the tasks may still be generated, checked again once the initializers end
+          LOG.info("All tasks have succeeded, waiting for streaming initializers of vertex:"
+              + vertex.logIdentifier + ", inputs: " + vertex.streamingInputs);
+          return vertex.getInternalState();
+        }
         LOG.info("All tasks have succeeded, vertex:" + vertex.logIdentifier);
         if (vertex.commitVertexOutputs && !vertex.committed.getAndSet(true)) {
           // start commit if there're commits or just finish if no commits
@@ -2361,7 +2397,15 @@ public class VertexImpl implements org.apache.tez.dag.app.dag.Vertex, EventHandl
       }
     }
 
-    logJobHistoryVertexInitializedEvent();
+    if (streamingInputs.isEmpty()) {
+      logJobHistoryVertexInitializedEvent();
+    } else {
+      // The event must carry all generated events for recovery to skip the initializers. Until
+      // then a recovered vertex runs its initializers, and its tasks, again.
+      LOG.info("Deferring VertexInitializedEvent until streaming initializers complete"
+          + " for " + logIdentifier + ", inputs: " + streamingInputs);
+      initializedEventDeferred = true;
+    }
     return true;
   }
 
@@ -2936,21 +2980,31 @@ public class VertexImpl implements org.apache.tez.dag.app.dag.Vertex, EventHandl
     public VertexState transition(VertexImpl vertex, VertexEvent event) {
       VertexEventRootInputInitialized liInitEvent = (VertexEventRootInputInitialized) event;
       VertexState state = vertex.getState();
-      if (state == VertexState.INITIALIZING) {
+      // once initialized, only the initializers which stream their events are still running
+      if (state == VertexState.INITIALIZING
+          || vertex.streamingInputs.contains(liInitEvent.getInputName())) {
         try {
           vertex.vertexManager.onRootVertexInitialized(liInitEvent.getInputName(), vertex
               .getAdditionalInputs().get(liInitEvent.getInputName()).getIODescriptor(),
-              liInitEvent.getEvents());
+              liInitEvent.getEvents(), liInitEvent.isPartial());
         } catch (AMUserCodeException e) {
-            String msg = "Exception in " + e.getSource() + ", vertex:" + vertex.getLogIdentifier();
-            LOG.error(msg, e);
-            vertex.finished(VertexState.FAILED,
-                VertexTerminationCause.AM_USERCODE_FAILURE, msg
-                + "," + ExceptionUtils.getStackTrace(e.getCause()));
-            return VertexState.FAILED;
+          if (state != VertexState.INITIALIZING) {
+            vertex.eventHandler.handle(new VertexEventManagerUserCodeError(vertex.vertexId, e));
+            return state;
+          }
+          String msg = "Exception in " + e.getSource() + ", vertex:" + vertex.getLogIdentifier();
+          LOG.error(msg, e);
+          vertex.finished(VertexState.FAILED,
+              VertexTerminationCause.AM_USERCODE_FAILURE, msg
+              + "," + ExceptionUtils.getStackTrace(e.getCause()));
+          return VertexState.FAILED;
         }
       }
 
+      if (liInitEvent.isPartial()) {
+        // more events to come from this initializer
+        return vertex.getState();
+      }
       vertex.numInitializedInputs++;
       if (vertex.numInitializedInputs == vertex.inputsWithInitializers.size()) {
         // All inputs initialized, shutdown the initializer.
@@ -2970,8 +3024,13 @@ public class VertexImpl implements org.apache.tez.dag.app.dag.Vertex, EventHandl
 
     @Override
     public VertexState transition(VertexImpl vertex, VertexEvent event) {
-      vertex.numInitializerCompletionsHandled++;
       VertexEventInputDataInformation iEvent = (VertexEventInputDataInformation) event;
+      if (iEvent.isPartial()) {
+        vertex.streamingInputs.add(iEvent.getInputName());
+      } else {
+        vertex.numInitializerCompletionsHandled++;
+        vertex.streamingInputs.remove(iEvent.getInputName());
+      }
       List<TezEvent> inputInfoEvents = iEvent.getEvents();
       try {
         if (inputInfoEvents != null && !inputInfoEvents.isEmpty()) {
@@ -2979,6 +3038,10 @@ public class VertexImpl implements org.apache.tez.dag.app.dag.Vertex, EventHandl
           vertex.handleRoutedTezEvents(inputInfoEvents, false);
         }
       } catch (AMUserCodeException e) {
+        if (vertex.getState() != VertexState.INITIALIZING) {
+          vertex.eventHandler.handle(new VertexEventManagerUserCodeError(vertex.vertexId, e));
+          return vertex.getState();
+        }
         String msg = "Exception in " + e.getSource() + ", vertex:" + vertex.getLogIdentifier();
         LOG.error(msg, e);
         vertex.finished(VertexState.FAILED, VertexTerminationCause.AM_USERCODE_FAILURE, msg + ","
@@ -2986,11 +3049,22 @@ public class VertexImpl implements org.apache.tez.dag.app.dag.Vertex, EventHandl
         return VertexState.FAILED;
       }
 
+      if (vertex.initializedEventDeferred && vertex.streamingInputs.isEmpty()) {
+        // all initializers are done, so the event now carries all generated events
+        vertex.initializedEventDeferred = false;
+        vertex.logJobHistoryVertexInitializedEvent();
+        if (vertex.getState() == VertexState.RUNNING) {
+          // the tasks may have completed while the last events were pending
+          return checkTasksForCompletion(vertex);
+        }
+      }
+
       // done. check if we need to do the initialization
       if (vertex.getState() == VertexState.INITIALIZING && vertex.initWaitsForRootInitializers) {
-        if (vertex.numInitializedInputs == vertex.inputsWithInitializers.size()
-            && vertex.numInitializerCompletionsHandled == vertex.inputsWithInitializers.size()) {
-          // set the wait flag to false if all initializers are done and InputDataInformation are received from VM
+        if (vertex.numInitializerCompletionsHandled + vertex.streamingInputs.size()
+            == vertex.inputsWithInitializers.size()) {
+          // set the wait flag to false if all initializers are done, or are streaming their events,
+          // and InputDataInformation are received from VM
           vertex.initWaitsForRootInitializers = false;
         }
         // initialize vertex if possible and needed
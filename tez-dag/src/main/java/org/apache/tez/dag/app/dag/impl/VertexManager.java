@@ -477,12 +477,22 @@ public class VertexManager {
 
   public void onRootVertexInitialized(String inputName,
       InputDescriptor inputDescriptor, List<Event> events) throws AMUserCodeException {
+    onRootVertexInitialized(inputName, inputDescriptor, events, false);
+  }
+
+  /**
+   * @param partial whether the events are a batch sent before the initializer completed
+   */
+  public void onRootVertexInitialized(String inputName,
+      InputDescriptor inputDescriptor, List<Event> events, boolean partial)
+      throws AMUserCodeException {
     if (LOG.isDebugEnabled()) {
       LOG.debug("vertex:" + managedVertex.getLogIdentifier() + "; enqueueing onRootVertexInitialized"
-          + " on input:" + inputName + ", current task events size is " + rootInputInitEventQueue.size());
+          + " on input:" + inputName + ", partial: " + partial
+          + ", current task events size is " + rootInputInitEventQueue.size());
     }
     enqueueAndScheduleNextEvent(new VertexManagerEventRootInputInitialized(inputName,
-        inputDescriptor, events));
+        inputDescriptor, events, partial));
   }
 
   private class VertexManagerCallback implements FutureCallback<Void> {
@@ -538,6 +548,14 @@ public class VertexManager {
   
   private class VertexManagerRootInputInitializedCallback extends VertexManagerCallback {
 
+    private final String inputName;
+    private final boolean partial;
+
+    VertexManagerRootInputInitializedCallback(String inputName, boolean partial) {
+      this.inputName = inputName;
+      this.partial = partial;
+    }
+
     @Override
     protected void onSuccessDerived(Void result) {
       if (LOG.isDebugEnabled()) {
@@ -548,7 +566,8 @@ public class VertexManager {
       List<TezEvent> resultEvents = new ArrayList<TezEvent>();
       rootInputInitEventQueue.drainTo(resultEvents);
       appContext.getEventHandler().handle(
-          new VertexEventInputDataInformation(managedVertex.getVertexId(), resultEvents));
+          new VertexEventInputDataInformation(managedVertex.getVertexId(), resultEvents,
+              inputName, partial));
     }
   }
   
@@ -614,8 +633,8 @@ public class VertexManager {
     private final List<Event> events;
     
     public VertexManagerEventRootInputInitialized(String inputName,
-        InputDescriptor inputDescriptor, List<Event> events) {
-      super(new VertexManagerRootInputInitializedCallback());
+        InputDescriptor inputDescriptor, List<Event> events, boolean partial) {
+      super(new VertexManagerRootInputInitializedCallback(inputName, partial));
       this.inputName = inputName;
       this.inputDescriptor = inputDescriptor;
       this.events = events;
@@ -27,6 +27,7 @@ import java.util.concurrent.ConcurrentMap;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.yarn.api.records.NodeId;
 import org.apache.hadoop.yarn.util.Clock;
 import org.apache.tez.dag.api.oldrecords.TaskAttemptState;
 import org.apache.tez.dag.api.oldrecords.TaskState;
@@ -50,7 +51,8 @@ import com.google.common.base.Preconditions;
  * the speculative version is expected to finish sooner than that. If 
  * the original is close to completion then we dont start a speculation
  * because it may be likely a wasted attempt. There is a delay between
- * successive speculations.
+ * successive speculations. Attempts running on nodes which the
+ * AMNodeTracker considers degraded are speculated first.
  */
 public class LegacySpeculator {
   
@@ -67,6 +69,7 @@ public class LegacySpeculator {
   private static final double PROPORTION_RUNNING_TASKS_SPECULATABLE = 0.1;
   private static final double PROPORTION_TOTAL_TASKS_SPECULATABLE = 0.01;
   private static final int  MINIMUM_ALLOWED_SPECULATIVE_TASKS = 10;
+  private static final int DEGRADED_NODE_SPECULATION_WEIGHT = 2;
 
   private static final Logger LOG = LoggerFactory.getLogger(LegacySpeculator.class);
 
@@ -286,6 +289,10 @@ public class LegacySpeculator {
         }
 
         result = estimatedEndTime - estimatedReplacementEndTime;
+        if (isOnDegradedNode(taskAttempt)) {
+          // The replacement is likely to run elsewhere, and to help more than estimated
+          result *= DEGRADED_NODE_SPECULATION_WEIGHT;
+        }
       }
     }
 
@@ -306,6 +313,15 @@ public class LegacySpeculator {
     return result;
   }
 
+  private boolean isOnDegradedNode(TaskAttempt taskAttempt) {
+    AppContext appContext = vertex.getAppContext();
+    NodeId nodeId = taskAttempt.getNodeId();
+    if (appContext == null || appContext.getNodeTracker() == null || nodeId == null) {
+      return false;
+    }
+    return appContext.getNodeTracker().isDegraded(nodeId, vertex.getTaskSchedulerIdentifier());
+  }
+
   //Add attempt to a given Task.
   protected void addSpeculativeAttempt(TezTaskID taskID) {
     LOG.info("DefaultSpeculator.addSpeculativeAttempt -- we are speculating " + taskID);
@@ -28,10 +28,16 @@ public class ContainerOp {
 
   final ContainerLauncherOperationBase command;
   final OPType opType;
+  final long creationTime;
 
   public ContainerOp(OPType opType, ContainerLauncherOperationBase command) {
     this.opType = opType;
     this.command = command;
+    this.creationTime = System.currentTimeMillis();
+  }
+
+  public long getCreationTime() {
+    return creationTime;
   }
 
   public OPType getOpType() {
@@ -19,7 +19,11 @@
 package org.apache.tez.dag.app.launcher;
 
 import java.io.IOException;
-import java.util.Collections;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.LinkedBlockingQueue;
@@ -28,6 +32,7 @@ import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLongArray;
 
 import org.apache.commons.lang.exception.ExceptionUtils;
 import org.apache.tez.common.TezUtils;
@@ -44,8 +49,9 @@ import org.apache.hadoop.yarn.api.protocolrecords.StartContainerRequest;
 import org.apache.hadoop.yarn.api.protocolrecords.StartContainersRequest;
 import org.apache.hadoop.yarn.api.protocolrecords.StartContainersResponse;
 import org.apache.hadoop.yarn.api.protocolrecords.StopContainersRequest;
+import org.apache.hadoop.yarn.api.protocolrecords.StopContainersResponse;
 import org.apache.hadoop.yarn.api.records.ContainerId;
-import org.apache.hadoop.yarn.api.records.ContainerLaunchContext;
+import org.apache.hadoop.yarn.api.records.SerializedException;
 import org.apache.hadoop.yarn.api.records.Token;
 import org.apache.hadoop.yarn.client.api.impl.ContainerManagementProtocolProxy;
 import org.apache.hadoop.yarn.client.api.impl.ContainerManagementProtocolProxy.ContainerManagementProtocolProxyData;
@@ -53,6 +59,8 @@ import org.apache.hadoop.yarn.util.Records;
 import org.apache.tez.dag.api.TezConfiguration;
 import org.apache.tez.dag.api.TezUncheckedException;
 
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Preconditions;
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
 
 
@@ -79,6 +87,11 @@ public class TezContainerLauncherImpl extends ContainerLauncher {
   protected BlockingQueue<ContainerOp> eventQueue = new LinkedBlockingQueue<>();
   private ContainerManagementProtocolProxy cmProxy;
   private AtomicBoolean serviceStopped = new AtomicBoolean(false);
+  private final int batchSize;
+  // From the launch request to the NodeManager call, i.e. time spent waiting for a launcher thread
+  private final LatencyHistogram launchQueueLatencies = new LatencyHistogram("Launch queue time");
+  // Of the startContainers calls to NodeManagers
+  private final LatencyHistogram launchCallLatencies = new LatencyHistogram("Launch call time");
 
   private Container getContainer(ContainerOp event) {
     ContainerId id = event.getBaseOperation().getContainerId();
@@ -103,7 +116,7 @@ public class TezContainerLauncherImpl extends ContainerLauncher {
 
 
   private static enum ContainerState {
-    PREP, FAILED, RUNNING, DONE, KILLED_BEFORE_LAUNCH
+    PREP, LAUNCHING, FAILED, RUNNING, STOPPING, DONE, KILLED_BEFORE_LAUNCH
   }
 
   private class Container {
@@ -112,6 +125,8 @@ public class TezContainerLauncherImpl extends ContainerLauncher {
     private ContainerId containerID;
     final private String containerMgrAddress;
     private Token containerToken;
+    // Set if a stop is requested while the container is being launched
+    private boolean stopAfterLaunch = false;
 
     public Container(ContainerId containerID,
         String containerMgrAddress, Token containerToken) {
@@ -125,100 +140,121 @@ public class TezContainerLauncherImpl extends ContainerLauncher {
       return state == ContainerState.DONE || state == ContainerState.FAILED;
     }
 
-    @SuppressWarnings("unchecked")
-    public synchronized void launch(ContainerLaunchRequest event) {
+    /**
+     * @return whether the container should be started
+     */
+    public synchronized boolean prepareLaunch(ContainerLaunchRequest event) {
       LOG.info("Launching " + event.getContainerId());
       if(this.state == ContainerState.KILLED_BEFORE_LAUNCH) {
         state = ContainerState.DONE;
         sendContainerLaunchFailedMsg(event.getContainerId(),
             "Container was killed before it was launched");
-        return;
+        return false;
       }
+      this.state = ContainerState.LAUNCHING;
+      return true;
+    }
 
-      ContainerManagementProtocolProxyData proxy = null;
-      try {
-
-        proxy = getCMProxy(containerID, containerMgrAddress,
-            containerToken);
-
-        // Construct the actual Container
-        ContainerLaunchContext containerLaunchContext =
-          event.getContainerLaunchContext();
-
-        // Now launch the actual container
-        StartContainerRequest startRequest = Records
-          .newRecord(StartContainerRequest.class);
-        startRequest.setContainerToken(event.getContainerToken());
-        startRequest.setContainerLaunchContext(containerLaunchContext);
-
-        StartContainersResponse response =
-            proxy.getContainerManagementProtocol().startContainers(
-                StartContainersRequest.newInstance(
-                    Collections.singletonList(startRequest)));
-        if (response.getFailedRequests() != null
-            && !response.getFailedRequests().isEmpty()) {
-          throw response.getFailedRequests().get(containerID).deSerialize();
-        }
-
-        // after launching, send launched event to task attempt to move
-        // it from ASSIGNED to RUNNING state
-        getContext().containerLaunched(containerID);
-        this.state = ContainerState.RUNNING;
-      } catch (Throwable t) {
-        String message = "Container launch failed for " + containerID + " : "
-            + ExceptionUtils.getStackTrace(t);
-        this.state = ContainerState.FAILED;
-        sendContainerLaunchFailedMsg(containerID, message);
-      } finally {
-        if (proxy != null) {
-          cmProxy.mayBeCloseProxy(proxy);
-        }
-      }
+    /**
+     * @return whether the container has to be stopped, as that was requested during the launch
+     */
+    public synchronized boolean launched() {
+      // after launching, send launched event to task attempt to move
+      // it from ASSIGNED to RUNNING state
+      getContext().containerLaunched(containerID);
+      this.state = ContainerState.RUNNING;
+      return stopAfterLaunch;
     }
 
-    @SuppressWarnings("unchecked")
-    public synchronized void kill() {
+    public synchronized void launchFailed(Throwable t) {
+      String message = "Container launch failed for " + containerID + " : "
+          + ExceptionUtils.getStackTrace(t);
+      this.state = ContainerState.FAILED;
+      sendContainerLaunchFailedMsg(containerID, message);
+    }
 
+    /**
+     * @return whether the container has to be stopped on its NodeManager
+     */
+    public synchronized boolean prepareStop() {
       if(isCompletelyDone()) {
-        return;
+        return false;
       }
-      if(this.state == ContainerState.PREP) {
-        this.state = ContainerState.KILLED_BEFORE_LAUNCH;
-      } else {
-        LOG.info("Stopping " + containerID);
+      switch (state) {
+        case PREP:
+          this.state = ContainerState.KILLED_BEFORE_LAUNCH;
+          return false;
+        case LAUNCHING:
+          stopAfterLaunch = true;
+          return false;
+        case RUNNING:
+          LOG.info("Stopping " + containerID);
+          this.state = ContainerState.STOPPING;
+          return true;
+        default:
+          // Already being stopped
+          return false;
+      }
+    }
 
-        ContainerManagementProtocolProxyData proxy = null;
-        try {
-          proxy = getCMProxy(this.containerID, this.containerMgrAddress,
-              this.containerToken);
+    public synchronized void stopped() {
+      // If stopContainer returns without an error, assuming the stop made
+      // it over to the NodeManager.
+      getContext().containerStopRequested(containerID);
+      this.state = ContainerState.DONE;
+    }
 
-            // kill the remote container if already launched
-            StopContainersRequest stopRequest = Records
-              .newRecord(StopContainersRequest.class);
-            stopRequest.setContainerIds(Collections.singletonList(containerID));
+    public synchronized void stopFailed(Throwable t) {
+      // ignore the cleanup failure
+      String message = "cleanup failed for container "
+        + this.containerID + " : "
+        + ExceptionUtils.getStackTrace(t);
+      getContext().containerStopFailed(containerID, message);
+      LOG.warn(message);
+      this.state = ContainerState.DONE;
+    }
+  }
 
-            proxy.getContainerManagementProtocol().stopContainers(stopRequest);
+  /**
+   * Counts of latencies in power of two buckets of milliseconds.
+   */
+  static class LatencyHistogram {
+    private static final int NUM_BUCKETS = 20;
+    private final String name;
+    // Bucket i counts latencies up to 2^i ms, the last one everything above
+    private final AtomicLongArray counts = new AtomicLongArray(NUM_BUCKETS);
+
+    LatencyHistogram(String name) {
+      this.name = name;
+    }
 
-            // If stopContainer returns without an error, assuming the stop made
-            // it over to the NodeManager.
-          getContext().containerStopRequested(containerID);
-        } catch (Throwable t) {
+    void record(long latencyMillis) {
+      int bucket = 0;
+      while (bucket < NUM_BUCKETS - 1 && latencyMillis > (1L << bucket)) {
+        ++bucket;
+      }
+      counts.incrementAndGet(bucket);
+    }
 
-          // ignore the cleanup failure
-          String message = "cleanup failed for container "
-            + this.containerID + " : "
-            + ExceptionUtils.getStackTrace(t);
-          getContext().containerStopFailed(containerID, message);
-          LOG.warn(message);
-          this.state = ContainerState.DONE;
-          return;
-        } finally {
-          if (proxy != null) {
-            cmProxy.mayBeCloseProxy(proxy);
-          }
+    long getCount() {
+      long count = 0;
+      for (int i = 0; i < NUM_BUCKETS; ++i) {
+        count += counts.get(i);
+      }
+      return count;
+    }
+
+    @Override
+    public String toString() {
+      StringBuilder sb = new StringBuilder(name).append(" (ms):");
+      for (int i = 0; i < NUM_BUCKETS; ++i) {
+        long count = counts.get(i);
+        if (count > 0) {
+          sb.append(i < NUM_BUCKETS - 1 ? " <=" + (1L << i) : " >" + (1L << (i - 1)))
+              .append('=').append(count);
         }
-        this.state = ContainerState.DONE;
       }
+      return sb.toString();
     }
   }
 
@@ -236,7 +272,12 @@ public class TezContainerLauncherImpl extends ContainerLauncher {
     this.limitOnPoolSize = conf.getInt(
         TezConfiguration.TEZ_AM_CONTAINERLAUNCHER_THREAD_COUNT_LIMIT,
         TezConfiguration.TEZ_AM_CONTAINERLAUNCHER_THREAD_COUNT_LIMIT_DEFAULT);
-    LOG.info("Upper limit on the thread pool size is " + this.limitOnPoolSize);
+    this.batchSize = conf.getInt(
+        TezConfiguration.TEZ_AM_CONTAINERLAUNCHER_BATCH_SIZE,
+        TezConfiguration.TEZ_AM_CONTAINERLAUNCHER_BATCH_SIZE_DEFAULT);
+    Preconditions.checkArgument(batchSize > 0, "Batch size must be > 0");
+    LOG.info("Upper limit on the thread pool size is " + this.limitOnPoolSize
+        + ", batch size: " + batchSize);
   }
 
   @Override
@@ -256,16 +297,19 @@ public class TezContainerLauncherImpl extends ContainerLauncher {
     eventHandlingThread = new Thread() {
       @Override
       public void run() {
-        ContainerOp event = null;
+        List<ContainerOp> events = new ArrayList<>();
         while (!Thread.currentThread().isInterrupted()) {
+          events.clear();
           try {
-            event = eventQueue.take();
+            events.add(eventQueue.take());
           } catch (InterruptedException e) {
             if(!serviceStopped.get()) {
               LOG.error("Returning, interrupted : " + e);
             }
             return;
           }
+          // Operations queued up meanwhile go out in batches per NodeManager
+          eventQueue.drainTo(events);
           int poolSize = launcherPool.getCorePoolSize();
 
           // See if we need up the pool size only if haven't reached the
@@ -290,12 +334,10 @@ public class TezContainerLauncherImpl extends ContainerLauncher {
             }
           }
 
-          // the events from the queue are handled in parallel
-          // using a thread pool
-          launcherPool.execute(createEventProcessor(event));
-
-          // TODO: Group launching of multiple containers to a single
-          // NodeManager into a single connection
+          // the batches are handled in parallel using a thread pool
+          for (NodeOperations nodeOperations : groupByNode(events)) {
+            launcherPool.execute(nodeOperations);
+          }
         }
       }
     };
@@ -315,10 +357,34 @@ public class TezContainerLauncherImpl extends ContainerLauncher {
     if (launcherPool != null) {
       launcherPool.shutdownNow();
     }
+    LOG.info(launchQueueLatencies.toString());
+    LOG.info(launchCallLatencies.toString());
   }
 
-  protected EventProcessor createEventProcessor(ContainerOp event) {
-    return new EventProcessor(event);
+  @VisibleForTesting
+  LatencyHistogram getLaunchQueueLatencies() {
+    return launchQueueLatencies;
+  }
+
+  @VisibleForTesting
+  LatencyHistogram getLaunchCallLatencies() {
+    return launchCallLatencies;
+  }
+
+  private Collection<NodeOperations> groupByNode(List<ContainerOp> events) {
+    List<NodeOperations> batches = new ArrayList<>();
+    Map<String, NodeOperations> openBatches = new HashMap<>();
+    for (ContainerOp event : events) {
+      String containerMgrAddress = event.getBaseOperation().getNodeId().toString();
+      NodeOperations nodeOperations = openBatches.get(containerMgrAddress);
+      if (nodeOperations == null || nodeOperations.size() >= batchSize) {
+        nodeOperations = new NodeOperations(containerMgrAddress);
+        openBatches.put(containerMgrAddress, nodeOperations);
+        batches.add(nodeOperations);
+      }
+      nodeOperations.add(event);
+    }
+    return batches;
   }
 
   protected ContainerManagementProtocolProxy.ContainerManagementProtocolProxyData getCMProxy(
@@ -328,35 +394,150 @@ public class TezContainerLauncherImpl extends ContainerLauncher {
   }
 
   /**
-   * Setup and start the container on remote nodemanager.
+   * Setup and start, or stop, containers on one remote nodemanager.
    */
-  class EventProcessor implements Runnable {
-    private ContainerOp event;
+  class NodeOperations implements Runnable {
+    private final String containerMgrAddress;
+    private final List<ContainerOp> launches = new ArrayList<>();
+    private final List<ContainerOp> stops = new ArrayList<>();
 
-    EventProcessor(ContainerOp event) {
-      this.event = event;
+    NodeOperations(String containerMgrAddress) {
+      this.containerMgrAddress = containerMgrAddress;
     }
 
-    @Override
-    public void run() {
-      // Load ContainerManager tokens before creating a connection.
-      // TODO: Do it only once per NodeManager.
-      ContainerId containerID = event.getBaseOperation().getContainerId();
-      if (LOG.isDebugEnabled()) {
-        LOG.debug("Processing ContainerOperation {}", event);
-      }
-
-      Container c = getContainer(event);
+    void add(ContainerOp event) {
       switch(event.getOpType()) {
         case LAUNCH_REQUEST:
-          ContainerLaunchRequest launchRequest = event.getLaunchRequest();
-          c.launch(launchRequest);
+          launches.add(event);
           break;
         case STOP_REQUEST:
-          c.kill();
+          stops.add(event);
           break;
       }
-      removeContainerIfDone(containerID);
+    }
+
+    int size() {
+      return launches.size() + stops.size();
+    }
+
+    @Override
+    public void run() {
+      if (LOG.isDebugEnabled()) {
+        LOG.debug("Processing " + launches.size() + " launches and " + stops.size()
+            + " stops on " + containerMgrAddress);
+      }
+      if (!launches.isEmpty()) {
+        launchContainers();
+      }
+      if (!stops.isEmpty()) {
+        List<Container> toStop = new ArrayList<>(stops.size());
+        for (ContainerOp event : stops) {
+          Container c = getContainer(event);
+          if (c.prepareStop()) {
+            toStop.add(c);
+          }
+        }
+        stopContainers(containerMgrAddress, toStop);
+        for (ContainerOp event : stops) {
+          removeContainerIfDone(event.getBaseOperation().getContainerId());
+        }
+      }
+    }
+
+    private void launchContainers() {
+      List<Container> toLaunch = new ArrayList<>(launches.size());
+      List<StartContainerRequest> startRequests = new ArrayList<>(launches.size());
+      long now = System.currentTimeMillis();
+      for (ContainerOp event : launches) {
+        ContainerLaunchRequest launchRequest = event.getLaunchRequest();
+        Container c = getContainer(event);
+        if (c.prepareLaunch(launchRequest)) {
+          launchQueueLatencies.record(now - event.getCreationTime());
+          toLaunch.add(c);
+          // Now launch the actual container
+          StartContainerRequest startRequest = Records
+            .newRecord(StartContainerRequest.class);
+          startRequest.setContainerToken(launchRequest.getContainerToken());
+          startRequest.setContainerLaunchContext(launchRequest.getContainerLaunchContext());
+          startRequests.add(startRequest);
+        }
+      }
+
+      if (!toLaunch.isEmpty()) {
+        Container first = toLaunch.get(0);
+        Map<ContainerId, SerializedException> failedRequests = null;
+        Throwable failure = null;
+        ContainerManagementProtocolProxyData proxy = null;
+        try {
+          proxy = getCMProxy(first.containerID, containerMgrAddress, first.containerToken);
+          long startTime = System.currentTimeMillis();
+          StartContainersResponse response =
+              proxy.getContainerManagementProtocol().startContainers(
+                  StartContainersRequest.newInstance(startRequests));
+          launchCallLatencies.record(System.currentTimeMillis() - startTime);
+          failedRequests = response.getFailedRequests();
+        } catch (Throwable t) {
+          failure = t;
+        } finally {
+          if (proxy != null) {
+            cmProxy.mayBeCloseProxy(proxy);
+          }
+        }
+
+        List<Container> toStop = new ArrayList<>();
+        for (Container c : toLaunch) {
+          if (failure != null) {
+            c.launchFailed(failure);
+          } else if (failedRequests != null && failedRequests.containsKey(c.containerID)) {
+            c.launchFailed(failedRequests.get(c.containerID).deSerialize());
+          } else if (c.launched() && c.prepareStop()) {
+            toStop.add(c);
+          }
+        }
+        stopContainers(containerMgrAddress, toStop);
+      }
+      for (ContainerOp event : launches) {
+        removeContainerIfDone(event.getBaseOperation().getContainerId());
+      }
+    }
+  }
+
+  private void stopContainers(String containerMgrAddress, List<Container> toStop) {
+    if (toStop.isEmpty()) {
+      return;
+    }
+    List<ContainerId> containerIds = new ArrayList<>(toStop.size());
+    for (Container c : toStop) {
+      containerIds.add(c.containerID);
+    }
+    Container first = toStop.get(0);
+    ContainerManagementProtocolProxyData proxy = null;
+    try {
+      proxy = getCMProxy(first.containerID, containerMgrAddress, first.containerToken);
+
+      // kill the remote containers if already launched
+      StopContainersRequest stopRequest = Records
+        .newRecord(StopContainersRequest.class);
+      stopRequest.setContainerIds(containerIds);
+
+      StopContainersResponse response =
+          proxy.getContainerManagementProtocol().stopContainers(stopRequest);
+      Map<ContainerId, SerializedException> failedRequests = response.getFailedRequests();
+      for (Container c : toStop) {
+        if (failedRequests != null && failedRequests.containsKey(c.containerID)) {
+          c.stopFailed(failedRequests.get(c.containerID).deSerialize());
+        } else {
+          c.stopped();
+        }
+      }
+    } catch (Throwable t) {
+      for (Container c : toStop) {
+        c.stopFailed(t);
+      }
+    } finally {
+      if (proxy != null) {
+        cmProxy.mayBeCloseProxy(proxy);
+      }
     }
   }
 
@@ -25,6 +25,7 @@ import org.apache.hadoop.yarn.api.records.ApplicationAttemptId;
 import org.apache.hadoop.yarn.api.records.Container;
 import org.apache.hadoop.yarn.api.records.ContainerId;
 import org.apache.hadoop.yarn.api.records.ContainerStatus;
+import org.apache.hadoop.yarn.api.records.NodeId;
 import org.apache.hadoop.yarn.api.records.NodeReport;
 import org.apache.hadoop.yarn.api.records.Resource;
 import org.apache.tez.common.ContainerSignatureMatcher;
@@ -133,6 +134,11 @@ public class TaskSchedulerContextImpl implements TaskSchedulerContext {
     return taskSchedulerManager.getContainerSignatureMatcher();
   }
 
+  @Override
+  public float getNodeHealthScore(NodeId nodeId) {
+    return appContext.getNodeTracker().getHealthScore(nodeId, schedulerId);
+  }
+
   @Override
   public ApplicationAttemptId getApplicationAttemptId() {
     return appContext.getApplicationAttemptId();
@@ -34,6 +34,7 @@ import org.apache.hadoop.yarn.api.records.ApplicationAttemptId;
 import org.apache.hadoop.yarn.api.records.Container;
 import org.apache.hadoop.yarn.api.records.ContainerId;
 import org.apache.hadoop.yarn.api.records.ContainerStatus;
+import org.apache.hadoop.yarn.api.records.NodeId;
 import org.apache.hadoop.yarn.api.records.NodeReport;
 import org.apache.hadoop.yarn.api.records.Resource;
 import org.apache.tez.common.ContainerSignatureMatcher;
@@ -156,6 +157,11 @@ class TaskSchedulerContextImplWrapper implements TaskSchedulerContext {
     return real.getContainerSignatureMatcher();
   }
 
+  @Override
+  public float getNodeHealthScore(NodeId nodeId) {
+    return real.getNodeHealthScore(nodeId);
+  }
+
   @Override
   public ApplicationAttemptId getApplicationAttemptId() {
     return real.getApplicationAttemptId();
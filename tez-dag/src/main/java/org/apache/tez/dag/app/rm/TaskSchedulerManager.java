@@ -421,9 +421,12 @@ public class TaskSchedulerManager extends AbstractService implements
     if (event.getUsedContainerId() != null) {
       sendEvent(new AMContainerEventTASucceeded(usedContainerId,
           event.getAttemptID()));
+      long launchTime = attempt.getLaunchTime();
+      long runtime = launchTime > 0 && attempt.getFinishTime() >= launchTime
+          ? attempt.getFinishTime() - launchTime : -1;
       sendEvent(new AMNodeEventTaskAttemptSucceeded(appContext.getAllContainers().
           get(usedContainerId).getContainer().getNodeId(), event.getSchedulerId(), usedContainerId,
-          event.getAttemptID()));
+          event.getAttemptID(), runtime));
     }
 
     boolean wasContainerAllocated = false;
@@ -145,6 +145,8 @@ public class YarnTaskSchedulerService extends TaskScheduler
   int sessionNumMinHeldContainers = 0;
   int preemptionPercentage = 0;
   long preemptionMaxWaitTime = 0;
+  float degradedNodeThreshold;
+  long degradedNodeSchedulingDelay;
   
   long highestWaitingRequestWaitStartTime = 0;
   Priority highestWaitingRequestPriority = null;
@@ -338,6 +340,15 @@ public class YarnTaskSchedulerService extends TaskScheduler
         TezConfiguration.TEZ_AM_PREEMPTION_MAX_WAIT_TIME_MS_DEFAULT);
     Preconditions.checkArgument(preemptionMaxWaitTime >=0, "Preemption max wait time must be >=0");
 
+    degradedNodeThreshold = conf.getFloat(
+        TezConfiguration.TEZ_AM_NODE_HEALTH_DEGRADED_THRESHOLD,
+        TezConfiguration.TEZ_AM_NODE_HEALTH_DEGRADED_THRESHOLD_DEFAULT);
+    degradedNodeSchedulingDelay = conf.getLong(
+        TezConfiguration.TEZ_AM_NODE_HEALTH_DEGRADED_SCHEDULING_DELAY_MILLIS,
+        TezConfiguration.TEZ_AM_NODE_HEALTH_DEGRADED_SCHEDULING_DELAY_MILLIS_DEFAULT);
+    Preconditions.checkArgument(degradedNodeSchedulingDelay >= 0,
+        "Degraded node scheduling delay should be >=0");
+
     delayedContainerManager = new DelayedContainerManager();
     LOG.info("YarnTaskScheduler initialized with configuration: " +
             "maxRMHeartbeatInterval: " + heartbeatIntervalMax +
@@ -350,7 +361,9 @@ public class YarnTaskSchedulerService extends TaskScheduler
             ", numHeartbeatsBetweenPreemptions: " + numHeartbeatsBetweenPreemptions +
             ", idleContainerMinTimeout: " + idleContainerTimeoutMin +
             ", idleContainerMaxTimeout: " + idleContainerTimeoutMax +
-            ", sessionMinHeldContainers: " + sessionNumMinHeldContainers);
+            ", sessionMinHeldContainers: " + sessionNumMinHeldContainers +
+            ", degradedNodeThreshold: " + degradedNodeThreshold +
+            ", degradedNodeSchedulingDelay: " + degradedNodeSchedulingDelay);
   }
 
   @Override
@@ -506,6 +519,17 @@ public class YarnTaskSchedulerService extends TaskScheduler
     synchronized (this) {
       if (!shouldReuseContainers) {
         List<Container> modifiableContainerList = Lists.newLinkedList(containers);
+        // Containers on healthy nodes get matched with the requests first
+        List<Container> degradedNodeContainers = Lists.newLinkedList();
+        Iterator<Container> iter = modifiableContainerList.iterator();
+        while (iter.hasNext()) {
+          Container container = iter.next();
+          if (isDegraded(container.getNodeId())) {
+            degradedNodeContainers.add(container);
+            iter.remove();
+          }
+        }
+        modifiableContainerList.addAll(degradedNodeContainers);
         assignedContainers = assignNewlyAllocatedContainers(
             modifiableContainerList);
       } else {
@@ -1058,7 +1082,12 @@ public class YarnTaskSchedulerService extends TaskScheduler
             if (idleContainerTimeoutMin > 0) {
               heldContainer.setContainerExpiryTime(getHeldContainerExpireTime(currentTime));
             }
-            assignedContainers = assignDelayedContainer(heldContainer);
+            if (isDegraded(container.getNodeId())) {
+              // Let containers on healthier nodes pick up the pending tasks first
+              delayedContainerManager.addDelayedContainer(container, currentTime);
+            } else {
+              assignedContainers = assignDelayedContainer(heldContainer);
+            }
           } else {
             // this is a non standard situation
             LOG.info("Skipping container after task deallocate as container is"
@@ -1423,6 +1452,11 @@ public class YarnTaskSchedulerService extends TaskScheduler
     return true;
   }
 
+  private boolean isDegraded(NodeId nodeId) {
+    return degradedNodeSchedulingDelay > 0
+        && getContext().getNodeHealthScore(nodeId) < degradedNodeThreshold;
+  }
+
   private boolean fitsIn(Resource toFit, Resource resource) {
     // YARN-893 prevents using correct library code
     //return Resources.fitsIn(toFit, resource);
@@ -2115,12 +2149,16 @@ public class YarnTaskSchedulerService extends TaskScheduler
         LOG.warn("Attempting to add a non-running container to the"
             + " delayed container list, containerId=" + container.getId());
         return;
-      } else {
-        delayedContainer.setNextScheduleTime(nextScheduleTime);
       }
       if (maxScheduleTimeSeen < nextScheduleTime) {
         maxScheduleTimeSeen = nextScheduleTime;
       }
+      // Containers on degraded nodes are considered after the others. Not part of
+      // maxScheduleTimeSeen, so that they do not delay new containers on other nodes.
+      if (isDegraded(container.getNodeId())) {
+        nextScheduleTime += degradedNodeSchedulingDelay;
+      }
+      delayedContainer.setNextScheduleTime(nextScheduleTime);
       if (LOG.isDebugEnabled()) {
         LOG.debug("Adding container to delayed queue"
           + ", containerId=" + delayedContainer.getContainer().getId()
@@ -63,6 +63,8 @@ import org.apache.tez.dag.app.dag.event.TaskAttemptEventNodeFailed;
 import org.apache.tez.dag.app.rm.AMSchedulerEventDeallocateContainer;
 import org.apache.tez.dag.app.rm.ContainerLauncherLaunchRequestEvent;
 import org.apache.tez.dag.app.rm.ContainerLauncherStopRequestEvent;
+import org.apache.tez.dag.app.rm.node.AMNodeEvent;
+import org.apache.tez.dag.app.rm.node.AMNodeEventType;
 import org.apache.tez.dag.history.DAGHistoryEvent;
 import org.apache.tez.dag.history.HistoryEventHandler;
 import org.apache.tez.dag.history.events.ContainerStoppedEvent;
@@ -669,6 +671,8 @@ public class AMContainerImpl implements AMContainer {
             event.getMessage(), TaskAttemptTerminationCause.CONTAINER_LAUNCH_FAILED);
       }
       container.unregisterFromTAListener(ContainerEndReason.LAUNCH_FAILED, event.getMessage());
+      container.sendEvent(new AMNodeEvent(container.getContainer().getNodeId(),
+          container.schedulerId, AMNodeEventType.N_CONTAINER_LAUNCH_FAILED));
       container.deAllocate();
     }
   }
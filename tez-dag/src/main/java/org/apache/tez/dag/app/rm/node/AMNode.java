@@ -33,4 +33,10 @@ public interface AMNode extends EventHandler<AMNodeEvent> {
   public boolean isUnhealthy();
   public boolean isBlacklisted();
   public boolean isUsable();
+
+  /**
+   * @return health of the node during the current DAG, from 0 for a node with nothing but
+   * problems to 1 for a healthy node
+   */
+  public float getHealthScore();
 }
@@ -26,12 +26,19 @@ public class AMNodeEventTaskAttemptSucceeded extends AMNodeEvent {
   // TODO These two parameters really aren't required in this event.
   private final ContainerId containerId;
   private final TezTaskAttemptID taskAttemptId;
+  private final long runtime;
 
   public AMNodeEventTaskAttemptSucceeded(NodeId nodeId, int sourceId,
       ContainerId containerId, TezTaskAttemptID taskAttemptId) {
+    this(nodeId, sourceId, containerId, taskAttemptId, -1);
+  }
+
+  public AMNodeEventTaskAttemptSucceeded(NodeId nodeId, int sourceId,
+      ContainerId containerId, TezTaskAttemptID taskAttemptId, long runtime) {
     super(nodeId, sourceId, AMNodeEventType.N_TA_SUCCEEDED);
     this.containerId = containerId;
     this.taskAttemptId = taskAttemptId;
+    this.runtime = runtime;
   }
 
   public ContainerId getContainerId() {
@@ -42,4 +49,11 @@ public class AMNodeEventTaskAttemptSucceeded extends AMNodeEvent {
     return this.taskAttemptId;
   }
 
+  /**
+   * @return time from the launch to the end of the attempt in ms, or -1 if not known
+   */
+  public long getRuntime() {
+    return this.runtime;
+  }
+
 }
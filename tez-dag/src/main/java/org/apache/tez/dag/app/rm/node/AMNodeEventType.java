@@ -27,6 +27,11 @@ public enum AMNodeEventType {
 
   // Producer: TaskSchedulerEventHnadler, Task(retroactive failure)
   N_TA_ENDED,
+
+  // Lower the health score of the node. Producers: AMNodeTracker, TaskAttempt, AMContainer
+  N_TA_SLOW,
+  N_TA_OUTPUT_FAILED,
+  N_CONTAINER_LAUNCH_FAILED,
   
   //Producer: TaskScheduler via TaskSchedulerEventHandler
   N_TURNED_UNHEALTHY,
@@ -38,10 +38,12 @@ import org.apache.hadoop.yarn.state.SingleArcTransition;
 import org.apache.hadoop.yarn.state.StateMachine;
 import org.apache.hadoop.yarn.state.StateMachineFactory;
 import org.apache.tez.dag.app.AppContext;
+import org.apache.tez.dag.app.dag.event.TaskAttemptEventNodeFailed;
 import org.apache.tez.dag.app.rm.AMSchedulerEventNodeBlacklistUpdate;
 import org.apache.tez.dag.app.rm.container.AMContainerEvent;
 import org.apache.tez.dag.app.rm.container.AMContainerEventNodeFailed;
 import org.apache.tez.dag.app.rm.container.AMContainerEventType;
+import org.apache.tez.dag.records.TaskAttemptTerminationCause;
 import org.apache.tez.dag.records.TezTaskAttemptID;
 
 import com.google.common.annotations.VisibleForTesting;
@@ -51,6 +53,13 @@ public class AMNodeImpl implements AMNode {
 
   private static final Logger LOG = LoggerFactory.getLogger(AMNodeImpl.class);
 
+  // Changes of the health score for the signals about the node
+  static final float TASK_FAILURE_PENALTY = 0.2f;
+  static final float CONTAINER_LAUNCH_FAILURE_PENALTY = 0.2f;
+  static final float OUTPUT_FAILURE_PENALTY = 0.1f;
+  static final float SLOW_ATTEMPT_PENALTY = 0.1f;
+  static final float TASK_SUCCESS_RECOVERY = 0.05f;
+
   private final ReadLock readLock;
   private final WriteLock writeLock;
   private final NodeId nodeId;
@@ -61,6 +70,10 @@ public class AMNodeImpl implements AMNode {
   private boolean ignoreBlacklisting = false;
   private boolean nodeUpdatesRescheduleEnabled;
   private Set<TezTaskAttemptID> failedAttemptIds = Sets.newHashSet();
+  private final int outputFailuresRescheduleThreshold;
+  // Succeeded attempts whose outputs are on the node, and those whose outputs failed to be fetched
+  private final Set<TezTaskAttemptID> succeededAttemptIds = Sets.newHashSet();
+  private final Set<TezTaskAttemptID> failedOutputAttemptIds = Sets.newHashSet();
 
   @SuppressWarnings("rawtypes")
   protected EventHandler eventHandler;
@@ -69,6 +82,7 @@ public class AMNodeImpl implements AMNode {
   final List<ContainerId> containers = new LinkedList<ContainerId>();
   int numFailedTAs = 0;
   int numSuccessfulTAs = 0;
+  float healthScore = 1.0f;
   
   //Book-keeping only. In case of Health status change.
   private final List<ContainerId> pastContainers = new LinkedList<ContainerId>();
@@ -77,6 +91,13 @@ public class AMNodeImpl implements AMNode {
 
   private final StateMachine<AMNodeState, AMNodeEventType, AMNodeEvent> stateMachine;
 
+  private static final Set<AMNodeEventType> HEALTH_PENALTY_EVENTS = EnumSet.of(
+      AMNodeEventType.N_TA_SLOW, AMNodeEventType.N_CONTAINER_LAUNCH_FAILED);
+  private static final HealthPenaltyTransition HEALTH_PENALTY_TRANSITION =
+      new HealthPenaltyTransition();
+  private static final TaskAttemptOutputFailedTransition OUTPUT_FAILED_TRANSITION =
+      new TaskAttemptOutputFailedTransition();
+
   private static StateMachineFactory
   <AMNodeImpl, AMNodeState, AMNodeEventType, AMNodeEvent>
   stateMachineFactory =
@@ -103,6 +124,10 @@ public class AMNodeImpl implements AMNode {
           new IgnoreBlacklistingStateChangeTransition(true))
       .addTransition(AMNodeState.ACTIVE, AMNodeState.ACTIVE,
           AMNodeEventType.N_TURNED_HEALTHY)
+      .addTransition(AMNodeState.ACTIVE, AMNodeState.ACTIVE,
+          HEALTH_PENALTY_EVENTS, HEALTH_PENALTY_TRANSITION)
+      .addTransition(AMNodeState.ACTIVE, AMNodeState.ACTIVE,
+          AMNodeEventType.N_TA_OUTPUT_FAILED, OUTPUT_FAILED_TRANSITION)
 
       // Transitions from BLACKLISTED state.
       .addTransition(AMNodeState.BLACKLISTED, AMNodeState.BLACKLISTED,
@@ -126,6 +151,10 @@ public class AMNodeImpl implements AMNode {
           EnumSet.of(AMNodeEventType.N_TURNED_HEALTHY,
               AMNodeEventType.N_IGNORE_BLACKLISTING_DISABLED),
           new GenericErrorTransition())
+      .addTransition(AMNodeState.BLACKLISTED, AMNodeState.BLACKLISTED,
+          HEALTH_PENALTY_EVENTS, HEALTH_PENALTY_TRANSITION)
+      .addTransition(AMNodeState.BLACKLISTED, AMNodeState.BLACKLISTED,
+          AMNodeEventType.N_TA_OUTPUT_FAILED, OUTPUT_FAILED_TRANSITION)
 
       // Transitions from FORCED_ACTIVE state.
       .addTransition(AMNodeState.FORCED_ACTIVE, AMNodeState.FORCED_ACTIVE,
@@ -148,6 +177,10 @@ public class AMNodeImpl implements AMNode {
           EnumSet.of(AMNodeEventType.N_TURNED_HEALTHY,
               AMNodeEventType.N_IGNORE_BLACKLISTING_ENABLED),
           new GenericErrorTransition())
+      .addTransition(AMNodeState.FORCED_ACTIVE, AMNodeState.FORCED_ACTIVE,
+          HEALTH_PENALTY_EVENTS, HEALTH_PENALTY_TRANSITION)
+      .addTransition(AMNodeState.FORCED_ACTIVE, AMNodeState.FORCED_ACTIVE,
+          AMNodeEventType.N_TA_OUTPUT_FAILED, OUTPUT_FAILED_TRANSITION)
 
       // Transitions from UNHEALTHY state.
       .addTransition(AMNodeState.UNHEALTHY, AMNodeState.UNHEALTHY,
@@ -158,6 +191,10 @@ public class AMNodeImpl implements AMNode {
           AMNodeState.UNHEALTHY,
           EnumSet
               .of(AMNodeEventType.N_TA_SUCCEEDED, AMNodeEventType.N_TA_ENDED))
+      .addTransition(AMNodeState.UNHEALTHY, AMNodeState.UNHEALTHY,
+          HEALTH_PENALTY_EVENTS)
+      .addTransition(AMNodeState.UNHEALTHY, AMNodeState.UNHEALTHY,
+          AMNodeEventType.N_TA_OUTPUT_FAILED)
       .addTransition(AMNodeState.UNHEALTHY, AMNodeState.UNHEALTHY,
           AMNodeEventType.N_IGNORE_BLACKLISTING_DISABLED,
           new IgnoreBlacklistingStateChangeTransition(false))
@@ -176,7 +213,8 @@ public class AMNodeImpl implements AMNode {
   @SuppressWarnings("rawtypes")
   public AMNodeImpl(NodeId nodeId, int schedulerId, int maxTaskFailuresPerNode,
       EventHandler eventHandler, boolean blacklistingEnabled,
-      boolean rescheduleOnUnhealthyNode, AppContext appContext) {
+      boolean rescheduleOnUnhealthyNode, int outputFailuresRescheduleThreshold,
+      AppContext appContext) {
     ReentrantReadWriteLock rwLock = new ReentrantReadWriteLock();
     this.readLock = rwLock.readLock();
     this.writeLock = rwLock.writeLock();
@@ -187,6 +225,7 @@ public class AMNodeImpl implements AMNode {
     this.blacklistingEnabled = blacklistingEnabled;
     this.nodeUpdatesRescheduleEnabled = rescheduleOnUnhealthyNode;
     this.maxTaskFailuresPerNode = maxTaskFailuresPerNode;
+    this.outputFailuresRescheduleThreshold = outputFailuresRescheduleThreshold;
     this.stateMachine = stateMachineFactory.make(this);
     // TODO Handle the case where a node is created due to the RM reporting it's
     // state as UNHEALTHY
@@ -264,6 +303,36 @@ public class AMNodeImpl implements AMNode {
     sendEvent(new AMSchedulerEventNodeBlacklistUpdate(getNodeId(), true, schedulerId));
   }
 
+  @Override
+  public float getHealthScore() {
+    this.readLock.lock();
+    try {
+      return healthScore;
+    } finally {
+      this.readLock.unlock();
+    }
+  }
+
+  /* Forget the signals and the outputs of previous DAGs */
+  void dagComplete() {
+    this.writeLock.lock();
+    try {
+      healthScore = 1.0f;
+      succeededAttemptIds.clear();
+      failedOutputAttemptIds.clear();
+    } finally {
+      this.writeLock.unlock();
+    }
+  }
+
+  private void updateHealthScore(float change, String reason) {
+    healthScore = Math.max(0.0f, Math.min(1.0f, healthScore + change));
+    if (LOG.isDebugEnabled()) {
+      LOG.debug("Health score of node " + nodeId + " changed by " + change + " to " + healthScore
+          + " because of " + reason);
+    }
+  }
+
   @SuppressWarnings("unchecked")
   private void sendEvent(Event<?> event) {
     this.eventHandler.handle(event);
@@ -287,6 +356,9 @@ public class AMNodeImpl implements AMNode {
     @Override
     public void transition(AMNodeImpl node, AMNodeEvent nEvent) {
       node.numSuccessfulTAs++;
+      node.succeededAttemptIds.add(
+          ((AMNodeEventTaskAttemptSucceeded) nEvent).getTaskAttemptId());
+      node.updateHealthScore(TASK_SUCCESS_RECOVERY, nEvent.getType().toString());
     }
   }
 
@@ -304,6 +376,7 @@ public class AMNodeImpl implements AMNode {
         if (node.failedAttemptIds.add(event.getTaskAttemptId())) {
           // new failed container on node
           node.numFailedTAs++;
+          node.updateHealthScore(-TASK_FAILURE_PENALTY, nEvent.getType().toString());
           if (node.qualifiesForBlacklisting()) {
             if (node.registerBadNodeAndShouldBlacklist()) {
               LOG.info("Too many task attempt failures. " +
@@ -391,6 +464,9 @@ public class AMNodeImpl implements AMNode {
     @Override
     public AMNodeState transition(AMNodeImpl node, AMNodeEvent nEvent) {
       node.numSuccessfulTAs++;
+      node.succeededAttemptIds.add(
+          ((AMNodeEventTaskAttemptSucceeded) nEvent).getTaskAttemptId());
+      node.updateHealthScore(TASK_SUCCESS_RECOVERY, nEvent.getType().toString());
       return AMNodeState.BLACKLISTED;
       // For now, always blacklisted. May change at a later point to re-enable
       // the node.
@@ -402,8 +478,67 @@ public class AMNodeImpl implements AMNode {
     @Override
     public void transition(AMNodeImpl node, AMNodeEvent nEvent) {
       AMNodeEventTaskAttemptEnded event = (AMNodeEventTaskAttemptEnded) nEvent;
-      if (event.failed())
+      if (event.failed()) {
         node.numFailedTAs++;
+        node.updateHealthScore(-TASK_FAILURE_PENALTY, nEvent.getType().toString());
+      }
+    }
+  }
+
+  protected static class HealthPenaltyTransition implements
+      SingleArcTransition<AMNodeImpl, AMNodeEvent> {
+    @Override
+    public void transition(AMNodeImpl node, AMNodeEvent nEvent) {
+      float penalty;
+      switch (nEvent.getType()) {
+        case N_TA_SLOW:
+          penalty = SLOW_ATTEMPT_PENALTY;
+          break;
+        case N_TA_OUTPUT_FAILED:
+          penalty = OUTPUT_FAILURE_PENALTY;
+          break;
+        case N_CONTAINER_LAUNCH_FAILED:
+          penalty = CONTAINER_LAUNCH_FAILURE_PENALTY;
+          break;
+        default:
+          throw new IllegalArgumentException("Unexpected event " + nEvent.getType());
+      }
+      node.updateHealthScore(-penalty, nEvent.getType().toString());
+    }
+  }
+
+  /*
+   * Consumers report fetch failures per output, and each output is re-executed only after enough
+   * of its consumers reported it. Once the outputs of enough distinct attempts on the node failed
+   * to be fetched, the node most likely lost all of them, so all the succeeded attempts on the node
+   * are re-executed at once. A single bad output, however many consumers report it, is left to the
+   * per output handling.
+   */
+  protected static class TaskAttemptOutputFailedTransition extends HealthPenaltyTransition {
+    @Override
+    public void transition(AMNodeImpl node, AMNodeEvent nEvent) {
+      super.transition(node, nEvent);
+      AMNodeEventTaskAttemptOutputFailed event = (AMNodeEventTaskAttemptOutputFailed) nEvent;
+      // Failures of outputs which are already being re-executed do not count
+      if (node.outputFailuresRescheduleThreshold <= 0
+          || !node.succeededAttemptIds.contains(event.getTaskAttemptId())) {
+        return;
+      }
+      node.failedOutputAttemptIds.add(event.getTaskAttemptId());
+      if (node.failedOutputAttemptIds.size() < node.outputFailuresRescheduleThreshold) {
+        return;
+      }
+      String message = "Outputs of " + node.failedOutputAttemptIds.size()
+          + " task attempts on node " + node.getNodeId() + " reported lost, last by "
+          + event.getConsumerTaskAttemptId();
+      LOG.info(message + ". Re-executing " + node.succeededAttemptIds.size()
+          + " succeeded task attempts");
+      for (TezTaskAttemptID taId : node.succeededAttemptIds) {
+        node.sendEvent(new TaskAttemptEventNodeFailed(taId, message,
+            TaskAttemptTerminationCause.OUTPUT_LOST));
+      }
+      node.succeededAttemptIds.clear();
+      node.failedOutputAttemptIds.clear();
     }
   }
 
@@ -18,6 +18,8 @@
 
 package org.apache.tez.dag.app.rm.node;
 
+import java.util.HashMap;
+import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 
@@ -32,6 +34,7 @@ import org.apache.hadoop.yarn.event.EventHandler;
 import org.apache.tez.dag.api.TezConfiguration;
 import org.apache.tez.dag.api.TezUncheckedException;
 import org.apache.tez.dag.app.AppContext;
+import org.apache.tez.dag.records.TezVertexID;
 
 import com.google.common.annotations.VisibleForTesting;
 
@@ -51,6 +54,14 @@ public class AMNodeTracker extends AbstractService implements
   private boolean nodeBlacklistingEnabled;
   private int blacklistDisablePercent;
   private boolean nodeUpdatesRescheduleEnabled;
+  private float degradedThreshold;
+  private float slowAttemptFactor;
+  private int outputFailuresRescheduleThreshold;
+
+  // Minimum number of succeeded attempts of a vertex to compare the next ones with
+  static final int MIN_PEER_ATTEMPTS = 3;
+  // Number and total runtime of the succeeded attempts of each vertex of the current DAG
+  private final Map<TezVertexID, long[]> vertexRuntimes = new HashMap<TezVertexID, long[]>();
 
   @SuppressWarnings("rawtypes")
   public AMNodeTracker(EventHandler eventHandler, AppContext appContext) {
@@ -75,10 +86,23 @@ public class AMNodeTracker extends AbstractService implements
           TezConfiguration.TEZ_AM_NODE_UNHEALTHY_RESCHEDULE_TASKS,
           TezConfiguration.TEZ_AM_NODE_UNHEALTHY_RESCHEDULE_TASKS_DEFAULT);
 
+    this.degradedThreshold = conf.getFloat(
+          TezConfiguration.TEZ_AM_NODE_HEALTH_DEGRADED_THRESHOLD,
+          TezConfiguration.TEZ_AM_NODE_HEALTH_DEGRADED_THRESHOLD_DEFAULT);
+    this.slowAttemptFactor = conf.getFloat(
+          TezConfiguration.TEZ_AM_NODE_HEALTH_SLOW_ATTEMPT_FACTOR,
+          TezConfiguration.TEZ_AM_NODE_HEALTH_SLOW_ATTEMPT_FACTOR_DEFAULT);
+    this.outputFailuresRescheduleThreshold = conf.getInt(
+          TezConfiguration.TEZ_AM_NODE_OUTPUT_FAILURES_RESCHEDULE_THRESHOLD,
+          TezConfiguration.TEZ_AM_NODE_OUTPUT_FAILURES_RESCHEDULE_THRESHOLD_DEFAULT);
+
     LOG.info("blacklistDisablePercent is " + blacklistDisablePercent +
         ", blacklistingEnabled: " + nodeBlacklistingEnabled +
         ", maxTaskFailuresPerNode: " + maxTaskFailuresPerNode +
-        ", nodeUpdatesRescheduleEnabled: " + nodeUpdatesRescheduleEnabled);
+        ", nodeUpdatesRescheduleEnabled: " + nodeUpdatesRescheduleEnabled +
+        ", degradedThreshold: " + degradedThreshold +
+        ", slowAttemptFactor: " + slowAttemptFactor +
+        ", outputFailuresRescheduleThreshold: " + outputFailuresRescheduleThreshold);
 
     if (blacklistDisablePercent < -1 || blacklistDisablePercent > 100) {
       throw new TezUncheckedException("Invalid blacklistDisablePercent: "
@@ -100,8 +124,14 @@ public class AMNodeTracker extends AbstractService implements
   public void handle(AMNodeEvent rEvent) {
     // No synchronization required until there's multiple dispatchers.
     switch (rEvent.getType()) {
-      case N_CONTAINER_ALLOCATED:
       case N_TA_SUCCEEDED:
+        perSourceNodeTrackers.get(rEvent.getSchedulerId()).handle(rEvent);
+        if (isSlowAttempt((AMNodeEventTaskAttemptSucceeded) rEvent)) {
+          perSourceNodeTrackers.get(rEvent.getSchedulerId()).handle(new AMNodeEvent(
+              rEvent.getNodeId(), rEvent.getSchedulerId(), AMNodeEventType.N_TA_SLOW));
+        }
+        break;
+      case N_CONTAINER_ALLOCATED:
       case N_TA_ENDED:
       case N_IGNORE_BLACKLISTING_ENABLED:
       case N_IGNORE_BLACKLISTING_DISABLED:
@@ -111,6 +141,9 @@ public class AMNodeTracker extends AbstractService implements
       case N_TURNED_UNHEALTHY:
       case N_TURNED_HEALTHY:
       case N_NODE_COUNT_UPDATED:
+      case N_TA_SLOW:
+      case N_TA_OUTPUT_FAILED:
+      case N_CONTAINER_LAUNCH_FAILED:
         // These events can be seen without a node having been marked as 'seen' before
         getAndCreateIfNeededPerSourceTracker(rEvent.getSchedulerId()).handle(rEvent);
         break;
@@ -139,8 +172,59 @@ public class AMNodeTracker extends AbstractService implements
     return perSourceNodeTrackers.get(schedulerId).isBlacklistingIgnored();
   }
 
+  /**
+   * @return health score of the node during the current DAG, 1 for nodes not known yet
+   */
+  public float getHealthScore(NodeId nodeId, int schedulerId) {
+    PerSourceNodeTracker nodeTracker = perSourceNodeTrackers.get(schedulerId);
+    AMNode amNode = nodeTracker == null ? null : nodeTracker.get(nodeId);
+    return amNode == null ? 1.0f : amNode.getHealthScore();
+  }
+
+  /**
+   * Degraded nodes are still used, but after the others.
+   */
+  public boolean isDegraded(NodeId nodeId, int schedulerId) {
+    return getHealthScore(nodeId, schedulerId) < degradedThreshold;
+  }
+
+  /*
+   * Compares the runtime of the attempt with those of the attempts of its vertex which succeeded
+   * before it, and records it for the next ones.
+   */
+  private boolean isSlowAttempt(AMNodeEventTaskAttemptSucceeded event) {
+    if (event.getRuntime() < 0) {
+      return false;
+    }
+    TezVertexID vertexId = event.getTaskAttemptId().getTaskID().getVertexID();
+    synchronized (vertexRuntimes) {
+      long[] runtimes = vertexRuntimes.get(vertexId);
+      if (runtimes == null) {
+        runtimes = new long[2];
+        vertexRuntimes.put(vertexId, runtimes);
+      }
+      boolean slow = runtimes[0] >= MIN_PEER_ATTEMPTS
+          && event.getRuntime() > slowAttemptFactor * runtimes[1] / runtimes[0];
+      runtimes[0]++;
+      runtimes[1] += event.getRuntime();
+      if (slow) {
+        LOG.info("Attempt " + event.getTaskAttemptId() + " on node " + event.getNodeId()
+            + " took " + event.getRuntime() + " ms, more than " + slowAttemptFactor
+            + " times the average of its vertex");
+      }
+      return slow;
+    }
+  }
+
   public void dagComplete(DAG dag) {
     // TODO TEZ-2337 Maybe reset failures from previous DAGs
+    // Health scores are per DAG, as the signals depend on what the DAG runs
+    for (PerSourceNodeTracker nodeTracker : perSourceNodeTrackers.values()) {
+      nodeTracker.dagComplete();
+    }
+    synchronized (vertexRuntimes) {
+      vertexRuntimes.clear();
+    }
   }
 
   private PerSourceNodeTracker getAndCreateIfNeededPerSourceTracker(int schedulerId) {
@@ -149,7 +233,7 @@ public class AMNodeTracker extends AbstractService implements
       nodeTracker =
           new PerSourceNodeTracker(schedulerId, eventHandler, appContext, maxTaskFailuresPerNode,
               nodeBlacklistingEnabled, blacklistDisablePercent,
-              nodeUpdatesRescheduleEnabled);
+              nodeUpdatesRescheduleEnabled, outputFailuresRescheduleThreshold);
       PerSourceNodeTracker old = perSourceNodeTrackers.putIfAbsent(schedulerId, nodeTracker);
       nodeTracker = old != null ? old : nodeTracker;
     }
@@ -32,7 +32,7 @@ public class PerSourceNodeTracker {
   static final Logger LOG = LoggerFactory.getLogger(PerSourceNodeTracker.class);
 
   private final int sourceId;
-  private final ConcurrentHashMap<NodeId, AMNode> nodeMap;
+  private final ConcurrentHashMap<NodeId, AMNodeImpl> nodeMap;
   private final ConcurrentHashMap<String, Set<NodeId>> blacklistMap;
 
   @SuppressWarnings("rawtypes")
@@ -43,6 +43,7 @@ public class PerSourceNodeTracker {
   private final boolean nodeBlacklistingEnabled;
   private final int blacklistDisablePercent;
   private final boolean nodeUpdatesRescheduleEnabled;
+  private final int outputFailuresRescheduleThreshold;
 
   private int numClusterNodes;
   float currentIgnoreBlacklistingCountThreshold = 0;
@@ -52,7 +53,8 @@ public class PerSourceNodeTracker {
   public PerSourceNodeTracker(int sourceId, EventHandler eventHandler, AppContext appContext,
                               int maxTaskFailuresPerNode, boolean nodeBlacklistingEnabled,
                               int blacklistDisablePercent,
-                              boolean nodeUpdatesRescheduleEnabled) {
+                              boolean nodeUpdatesRescheduleEnabled,
+                              int outputFailuresRescheduleThreshold) {
     this.sourceId = sourceId;
     this.nodeMap = new ConcurrentHashMap<>();
     this.blacklistMap = new ConcurrentHashMap<>();
@@ -63,6 +65,7 @@ public class PerSourceNodeTracker {
     this.nodeBlacklistingEnabled = nodeBlacklistingEnabled;
     this.blacklistDisablePercent = blacklistDisablePercent;
     this.nodeUpdatesRescheduleEnabled = nodeUpdatesRescheduleEnabled;
+    this.outputFailuresRescheduleThreshold = outputFailuresRescheduleThreshold;
   }
 
 
@@ -70,7 +73,7 @@ public class PerSourceNodeTracker {
   public void nodeSeen(NodeId nodeId) {
     if (nodeMap.putIfAbsent(nodeId, new AMNodeImpl(nodeId, sourceId, maxTaskFailuresPerNode,
         eventHandler, nodeBlacklistingEnabled, nodeUpdatesRescheduleEnabled,
-        appContext)) == null) {
+        outputFailuresRescheduleThreshold, appContext)) == null) {
       LOG.info("Adding new node {} to nodeTracker {}", nodeId, sourceId);
     }
   }
@@ -105,11 +108,28 @@ public class PerSourceNodeTracker {
           amNode.handle(rEvent);
         }
         break;
+      case N_TA_SLOW:
+      case N_TA_OUTPUT_FAILED:
+      case N_CONTAINER_LAUNCH_FAILED:
+        amNode = nodeMap.get(nodeId);
+        if (amNode == null) {
+          // e.g. outputs of attempts recovered from a previous app attempt
+          LOG.info("Ignoring " + rEvent.getType() + " for unknown node: " + nodeId);
+        } else {
+          amNode.handle(rEvent);
+        }
+        break;
       default:
         nodeMap.get(nodeId).handle(rEvent);
     }
   }
 
+  void dagComplete() {
+    for (AMNodeImpl amNode : nodeMap.values()) {
+      amNode.dagComplete();
+    }
+  }
+
   boolean registerBadNodeAndShouldBlacklist(AMNode amNode) {
     if (nodeBlacklistingEnabled) {
       addToBlackList(amNode.getNodeId());
@@ -62,6 +62,8 @@ import org.apache.tez.dag.app.dag.DAG;
 import org.apache.tez.dag.app.dag.Vertex;
 import org.apache.tez.dag.records.TezDAGID;
 import org.apache.tez.dag.records.TezVertexID;
+import org.apache.tez.runtime.api.impl.TaskMetricsSeries;
+import org.apache.tez.runtime.api.impl.TaskMetricsSeries.Metric;
 
 public class AMWebController extends Controller {
 
@@ -864,6 +866,90 @@ public class AMWebController extends Controller {
     renderJSON(ImmutableMap.of("attempts", attemptsInfo));
   }
 
+  /**
+   * Renders the response JSON for vertexMetrics API
+   * The JSON will have an array of vertex objects under the key vertices, each with the metrics
+   * series of its attempts (capped by limit across all vertices) under the key attempts.
+   */
+  public void getVertexMetrics() {
+    if (!setupResponse()) {
+      return;
+    }
+
+    DAG dag = checkAndGetDAGFromRequest();
+    if (dag == null) {
+      return;
+    }
+
+    Collection<Integer> requestedIDs = getVertexIDsFromRequest();
+    if (requestedIDs == null) {
+      return;
+    }
+
+    int limit = MAX_QUERIED;
+    try {
+      limit = getQueryParamInt(WebUIService.LIMIT);
+    } catch (NumberFormatException e) {
+      //Ignore
+    }
+
+    Collection<Vertex> vertexList;
+    if (requestedIDs.isEmpty()) {
+      vertexList = dag.getVertices().values();
+    } else {
+      vertexList = getVerticesByIdx(dag, requestedIDs);
+    }
+
+    int numAttempts = 0;
+    ArrayList<Map<String, Object>> verticesInfo = new ArrayList<Map<String, Object>>();
+    for (Vertex v : vertexList) {
+      ArrayList<Map<String, Object>> attemptsInfo = new ArrayList<Map<String, Object>>();
+      for (Task t : v.getTasks().values()) {
+        for (TaskAttempt a : t.getAttempts().values()) {
+          TaskMetricsSeries series = a.getMetricsSeries();
+          if (series == null || numAttempts >= limit) {
+            continue;
+          }
+          attemptsInfo.add(getAttemptMetricsMap(a, series));
+          numAttempts++;
+        }
+      }
+      verticesInfo.add(ImmutableMap.<String, Object>of(
+          "id", v.getVertexId().toString(),
+          "attempts", attemptsInfo
+      ));
+    }
+
+    renderJSON(ImmutableMap.of("vertices", verticesInfo));
+  }
+
+  private static Map<String, Object> getAttemptMetricsMap(TaskAttempt attempt,
+      TaskMetricsSeries series) {
+    Map<String, Object> attemptInfo = new HashMap<String, Object>();
+    attemptInfo.put("id", attempt.getID().toString());
+    attemptInfo.put("status", attempt.getState().toString());
+    attemptInfo.put("startTime", Long.toString(series.getStartTime()));
+    attemptInfo.put("intervalMillis", Long.toString(series.getIntervalMillis()));
+
+    List<Long> fetchRates = new ArrayList<Long>();
+    for (long bytes : series.getValues(Metric.FETCH_BYTES)) {
+      fetchRates.add(bytes * 1000 / series.getIntervalMillis());
+    }
+    attemptInfo.put("fetchBytesPerSec", fetchRates);
+    attemptInfo.put("mergeQueueDepth", toList(series.getValues(Metric.MERGE_QUEUE_DEPTH)));
+    attemptInfo.put("spills", toList(series.getValues(Metric.SPILLS)));
+    attemptInfo.put("cpuMillis", toList(series.getValues(Metric.CPU_MILLIS)));
+    return attemptInfo;
+  }
+
+  private static List<Long> toList(long[] values) {
+    List<Long> list = new ArrayList<Long>(values.length);
+    for (long value : values) {
+      list.add(value);
+    }
+    return list;
+  }
+
   @Override
   @VisibleForTesting
   public void renderJSON(Object object) {
@@ -199,6 +199,16 @@ public class WebUIService extends AbstractService {
        *          will be returned
        *      Data returned:
        *        - Full id, progress, status
+       *
+       *    /ui/ws/v2/tez/vertexMetrics
+       *      Query params:
+       *        - Accepts dagID, vertexID & limit
+       *        - vertexID is optional, all vertices in the DAG are returned if not specified
+       *        - limit caps the number of attempts returned across all vertices
+       *      Data returned:
+       *        - Vertex id, and for each attempt which samples metrics: full id, status,
+       *          startTime, intervalMillis and the series fetchBytesPerSec, mergeQueueDepth,
+       *          spills and cpuMillis, with one value per interval
        */
       route(WS_PREFIX_V2 + pajoin("dagInfo", DAG_ID), AMWebController.class, "getDagInfo");
       route(WS_PREFIX_V2 + pajoin("verticesInfo", VERTEX_ID, DAG_ID), AMWebController.class, "getVerticesInfo");
@@ -206,6 +216,8 @@ public class WebUIService extends AbstractService {
           "getTasksInfo");
       route(WS_PREFIX_V2 + pajoin("attemptsInfo", ATTEMPT_ID, DAG_ID), AMWebController.class,
           "getAttemptsInfo");
+      route(WS_PREFIX_V2 + pajoin("vertexMetrics", VERTEX_ID, DAG_ID), AMWebController.class,
+          "getVertexMetrics");
     }
   }
 }
@@ -28,6 +28,7 @@ import org.apache.tez.common.ReflectionUtils;
 import org.apache.tez.dag.api.TezConfiguration;
 import org.apache.tez.dag.app.AppContext;
 import org.apache.tez.dag.history.logging.HistoryLoggingService;
+import org.apache.tez.dag.history.recovery.RecoveryCheckpoint;
 import org.apache.tez.dag.history.recovery.RecoveryService;
 import org.apache.tez.dag.records.TezDAGID;
 
@@ -127,6 +128,15 @@ public class HistoryEventHandler extends CompositeService {
     }
   }
 
+  /**
+   * Seeds the recovery checkpoint of the DAG recovered from previous attempts.
+   */
+  public void setRecoveredCheckpoint(TezDAGID dagId, RecoveryCheckpoint checkpoint) {
+    if (recoveryEnabled) {
+      recoveryService.setRecoveredCheckpoint(dagId, checkpoint);
+    }
+  }
+
   public boolean hasRecoveryFailed() {
     if (recoveryEnabled) {
       return recoveryService.hasRecoveryFailed();
@@ -0,0 +1,538 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.tez.dag.history.logging.impl;
+
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+
+import org.apache.tez.common.ATSConstants;
+import org.apache.tez.dag.api.DagTypeConverters;
+import org.apache.tez.dag.api.EdgeProperty;
+import org.apache.tez.dag.api.records.DAGProtos.DAGPlan;
+import org.apache.tez.dag.history.HistoryEvent;
+import org.apache.tez.dag.history.HistoryEventType;
+import org.apache.tez.dag.history.events.AMLaunchedEvent;
+import org.apache.tez.dag.history.events.AMStartedEvent;
+import org.apache.tez.dag.history.events.AppLaunchedEvent;
+import org.apache.tez.dag.history.events.ContainerLaunchedEvent;
+import org.apache.tez.dag.history.events.ContainerStoppedEvent;
+import org.apache.tez.dag.history.events.DAGFinishedEvent;
+import org.apache.tez.dag.history.events.DAGInitializedEvent;
+import org.apache.tez.dag.history.events.DAGRecoveredEvent;
+import org.apache.tez.dag.history.events.DAGStartedEvent;
+import org.apache.tez.dag.history.events.DAGSubmittedEvent;
+import org.apache.tez.dag.history.events.TaskAttemptFinishedEvent;
+import org.apache.tez.dag.history.events.TaskAttemptStartedEvent;
+import org.apache.tez.dag.history.events.TaskFinishedEvent;
+import org.apache.tez.dag.history.events.TaskStartedEvent;
+import org.apache.tez.dag.history.events.VertexConfigurationDoneEvent;
+import org.apache.tez.dag.history.events.VertexFinishedEvent;
+import org.apache.tez.dag.history.events.VertexInitializedEvent;
+import org.apache.tez.dag.history.events.VertexStartedEvent;
+import org.apache.tez.dag.history.logging.EntityTypes;
+import org.apache.tez.dag.history.utils.DAGUtils;
+import org.apache.tez.dag.records.TezDAGID;
+import org.apache.tez.dag.records.TezTaskAttemptID;
+import org.apache.tez.dag.records.TezTaskID;
+import org.apache.tez.dag.records.TezVertexID;
+import org.apache.tez.dag.recovery.records.RecoveryProtos.HistoryLogEventProto;
+import org.apache.tez.dag.recovery.records.RecoveryProtos.HistoryLogRecordProto;
+import org.apache.tez.dag.recovery.records.RecoveryProtos.HistoryLogRelatedEntityProto;
+import org.apache.tez.dag.recovery.records.RecoveryProtos.HistoryLogValueProto;
+import org.codehaus.jettison.json.JSONException;
+import org.codehaus.jettison.json.JSONObject;
+
+/**
+ * Converts history events to the records written by {@link ProtoHistoryLoggingService}. The
+ * records hold the same entities, events and otherinfo keys as the JSON produced by
+ * {@link HistoryEventJsonConversion}, so that the binary log can be read with the same data
+ * model as the JSON one.
+ *
+ * Scalar values are stored as typed fields, and counters as {@code TezCountersProto}. Only
+ * nested values, such as the DAG plan, vertex stats or the info of a few events, are stored as
+ * JSON text.
+ */
+public class HistoryEventProtoConversion {
+
+  public static HistoryLogRecordProto convertToProto(HistoryEvent historyEvent)
+      throws JSONException {
+    if (!historyEvent.isHistoryEvent()) {
+      throw new UnsupportedOperationException("Invalid Event, does not support history"
+          + ", eventType=" + historyEvent.getEventType());
+    }
+    HistoryLogRecordProto.Builder builder;
+    switch (historyEvent.getEventType()) {
+      case APP_LAUNCHED:
+        builder = convertAppLaunchedEvent((AppLaunchedEvent) historyEvent);
+        break;
+      case AM_LAUNCHED:
+        builder = convertAMLaunchedEvent((AMLaunchedEvent) historyEvent);
+        break;
+      case AM_STARTED:
+        builder = convertAMStartedEvent((AMStartedEvent) historyEvent);
+        break;
+      case CONTAINER_LAUNCHED:
+        builder = convertContainerLaunchedEvent((ContainerLaunchedEvent) historyEvent);
+        break;
+      case CONTAINER_STOPPED:
+        builder = convertContainerStoppedEvent((ContainerStoppedEvent) historyEvent);
+        break;
+      case DAG_SUBMITTED:
+        builder = convertDAGSubmittedEvent((DAGSubmittedEvent) historyEvent);
+        break;
+      case DAG_INITIALIZED:
+        builder = convertDAGInitializedEvent((DAGInitializedEvent) historyEvent);
+        break;
+      case DAG_STARTED:
+        builder = convertDAGStartedEvent((DAGStartedEvent) historyEvent);
+        break;
+      case DAG_FINISHED:
+        builder = convertDAGFinishedEvent((DAGFinishedEvent) historyEvent);
+        break;
+      case VERTEX_INITIALIZED:
+        builder = convertVertexInitializedEvent((VertexInitializedEvent) historyEvent);
+        break;
+      case VERTEX_STARTED:
+        builder = convertVertexStartedEvent((VertexStartedEvent) historyEvent);
+        break;
+      case VERTEX_FINISHED:
+        builder = convertVertexFinishedEvent((VertexFinishedEvent) historyEvent);
+        break;
+      case TASK_STARTED:
+        builder = convertTaskStartedEvent((TaskStartedEvent) historyEvent);
+        break;
+      case TASK_FINISHED:
+        builder = convertTaskFinishedEvent((TaskFinishedEvent) historyEvent);
+        break;
+      case TASK_ATTEMPT_STARTED:
+        builder = convertTaskAttemptStartedEvent((TaskAttemptStartedEvent) historyEvent);
+        break;
+      case TASK_ATTEMPT_FINISHED:
+        builder = convertTaskAttemptFinishedEvent((TaskAttemptFinishedEvent) historyEvent);
+        break;
+      case VERTEX_CONFIGURE_DONE:
+        builder = convertVertexReconfigureDoneEvent(
+            (VertexConfigurationDoneEvent) historyEvent);
+        break;
+      case DAG_RECOVERED:
+        builder = convertDAGRecoveredEvent((DAGRecoveredEvent) historyEvent);
+        break;
+      case VERTEX_COMMIT_STARTED:
+      case VERTEX_GROUP_COMMIT_STARTED:
+      case VERTEX_GROUP_COMMIT_FINISHED:
+      case DAG_COMMIT_STARTED:
+        throw new UnsupportedOperationException("Invalid Event, does not support history"
+            + ", eventType=" + historyEvent.getEventType());
+      default:
+        throw new UnsupportedOperationException("Unhandled Event"
+            + ", eventType=" + historyEvent.getEventType());
+    }
+    return builder.build();
+  }
+
+  private static HistoryLogRecordProto.Builder convertDAGRecoveredEvent(DAGRecoveredEvent event)
+      throws JSONException {
+    HistoryLogRecordProto.Builder builder = newDAGRecord(event.getDagID());
+    JSONObject recoverEventInfo = new JSONObject();
+    recoverEventInfo.put(ATSConstants.APPLICATION_ATTEMPT_ID,
+        event.getApplicationAttemptId().toString());
+    if (event.getRecoveredDagState() != null) {
+      recoverEventInfo.put(ATSConstants.DAG_STATE, event.getRecoveredDagState().name());
+    }
+    if (event.getRecoveryFailureReason() != null) {
+      recoverEventInfo.put(ATSConstants.RECOVERY_FAILURE_REASON,
+          event.getRecoveryFailureReason());
+    }
+    builder.addEvents(newEvent(HistoryEventType.DAG_RECOVERED, event.getRecoveredTime())
+        .setEventInfoJson(recoverEventInfo.toString()));
+    return builder;
+  }
+
+  private static HistoryLogRecordProto.Builder convertAppLaunchedEvent(AppLaunchedEvent event) {
+    HistoryLogRecordProto.Builder builder = HistoryLogRecordProto.newBuilder()
+        .setEntity("tez_" + event.getApplicationId().toString())
+        .setEntityType(EntityTypes.TEZ_APPLICATION.name());
+    addOtherInfo(builder, ATSConstants.USER, event.getUser());
+    addOtherInfoJson(builder, ATSConstants.CONFIG,
+        new JSONObject(DAGUtils.convertConfigurationToATSMap(event.getConf())));
+    return builder;
+  }
+
+  private static HistoryLogRecordProto.Builder convertAMLaunchedEvent(AMLaunchedEvent event) {
+    HistoryLogRecordProto.Builder builder = HistoryLogRecordProto.newBuilder()
+        .setEntity("tez_" + event.getApplicationAttemptId().toString())
+        .setEntityType(EntityTypes.TEZ_APPLICATION_ATTEMPT.name());
+    addRelatedEntity(builder,
+        event.getApplicationAttemptId().getApplicationId().toString(),
+        ATSConstants.APPLICATION_ID);
+    addRelatedEntity(builder, event.getApplicationAttemptId().toString(),
+        ATSConstants.APPLICATION_ATTEMPT_ID);
+    builder.addEvents(newEvent(HistoryEventType.AM_LAUNCHED, event.getLaunchTime()));
+    addOtherInfo(builder, ATSConstants.APP_SUBMIT_TIME, event.getAppSubmitTime());
+    return builder;
+  }
+
+  private static HistoryLogRecordProto.Builder convertAMStartedEvent(AMStartedEvent event) {
+    HistoryLogRecordProto.Builder builder = HistoryLogRecordProto.newBuilder()
+        .setEntity("tez_" + event.getApplicationAttemptId().toString())
+        .setEntityType(EntityTypes.TEZ_APPLICATION_ATTEMPT.name());
+    addRelatedEntity(builder,
+        event.getApplicationAttemptId().getApplicationId().toString(),
+        ATSConstants.APPLICATION_ID);
+    addRelatedEntity(builder, event.getApplicationAttemptId().toString(),
+        ATSConstants.APPLICATION_ATTEMPT_ID);
+    builder.addEvents(newEvent(HistoryEventType.AM_STARTED, event.getStartTime()));
+    return builder;
+  }
+
+  private static HistoryLogRecordProto.Builder convertContainerLaunchedEvent(
+      ContainerLaunchedEvent event) {
+    HistoryLogRecordProto.Builder builder = HistoryLogRecordProto.newBuilder()
+        .setEntity("tez_" + event.getContainerId().toString())
+        .setEntityType(EntityTypes.TEZ_CONTAINER_ID.name());
+    addRelatedEntity(builder, event.getApplicationAttemptId().toString(),
+        EntityTypes.TEZ_APPLICATION_ATTEMPT.name());
+    addRelatedEntity(builder, event.getContainerId().toString(), ATSConstants.CONTAINER_ID);
+    builder.addEvents(newEvent(HistoryEventType.CONTAINER_LAUNCHED, event.getLaunchTime()));
+    return builder;
+  }
+
+  private static HistoryLogRecordProto.Builder convertContainerStoppedEvent(
+      ContainerStoppedEvent event) {
+    HistoryLogRecordProto.Builder builder = HistoryLogRecordProto.newBuilder()
+        .setEntity("tez_" + event.getContainerId().toString())
+        .setEntityType(EntityTypes.TEZ_CONTAINER_ID.name());
+    addRelatedEntity(builder, event.getApplicationAttemptId().toString(),
+        EntityTypes.TEZ_APPLICATION_ATTEMPT.name());
+    addRelatedEntity(builder, event.getContainerId().toString(), ATSConstants.CONTAINER_ID);
+    builder.addEvents(newEvent(HistoryEventType.CONTAINER_STOPPED, event.getStoppedTime()));
+    addOtherInfo(builder, ATSConstants.EXIT_STATUS, event.getExitStatus());
+    return builder;
+  }
+
+  private static HistoryLogRecordProto.Builder convertDAGFinishedEvent(DAGFinishedEvent event) {
+    HistoryLogRecordProto.Builder builder = newDAGRecord(event.getDagID());
+    builder.addEvents(newEvent(HistoryEventType.DAG_FINISHED, event.getFinishTime()));
+    addOtherInfo(builder, ATSConstants.START_TIME, event.getStartTime());
+    addOtherInfo(builder, ATSConstants.FINISH_TIME, event.getFinishTime());
+    addOtherInfo(builder, ATSConstants.TIME_TAKEN, event.getFinishTime() - event.getStartTime());
+    addOtherInfo(builder, ATSConstants.STATUS, event.getState().name());
+    addOtherInfo(builder, ATSConstants.DIAGNOSTICS, event.getDiagnostics());
+    addOtherInfo(builder, ATSConstants.COMPLETION_APPLICATION_ATTEMPT_ID,
+        event.getApplicationAttemptId().toString());
+    if (event.getTezCounters() != null) {
+      builder.setCounters(DagTypeConverters.convertTezCountersToProto(event.getTezCounters()));
+    }
+    final Map<String, Integer> dagTaskStats = event.getDagTaskStats();
+    if (dagTaskStats != null) {
+      for (Entry<String, Integer> entry : dagTaskStats.entrySet()) {
+        addOtherInfo(builder, entry.getKey(), entry.getValue().intValue());
+      }
+    }
+    return builder;
+  }
+
+  private static HistoryLogRecordProto.Builder convertDAGInitializedEvent(
+      DAGInitializedEvent event) {
+    HistoryLogRecordProto.Builder builder = newDAGRecord(event.getDagID());
+    builder.addEvents(newEvent(HistoryEventType.DAG_INITIALIZED, event.getInitTime()));
+    if (event.getVertexNameIDMap() != null) {
+      Map<String, String> nameIdStrMap = new TreeMap<String, String>();
+      for (Entry<String, TezVertexID> entry : event.getVertexNameIDMap().entrySet()) {
+        nameIdStrMap.put(entry.getKey(), entry.getValue().toString());
+      }
+      addOtherInfoJson(builder, ATSConstants.VERTEX_NAME_ID_MAPPING, new JSONObject(nameIdStrMap));
+    }
+    return builder;
+  }
+
+  private static HistoryLogRecordProto.Builder convertDAGStartedEvent(DAGStartedEvent event) {
+    HistoryLogRecordProto.Builder builder = newDAGRecord(event.getDagID());
+    builder.addEvents(newEvent(HistoryEventType.DAG_STARTED, event.getStartTime()));
+    return builder;
+  }
+
+  private static HistoryLogRecordProto.Builder convertDAGSubmittedEvent(DAGSubmittedEvent event)
+      throws JSONException {
+    HistoryLogRecordProto.Builder builder = newDAGRecord(event.getDagID());
+    addRelatedEntity(builder,
+        "tez_" + event.getApplicationAttemptId().getApplicationId().toString(),
+        EntityTypes.TEZ_APPLICATION.name());
+    addRelatedEntity(builder, "tez_" + event.getApplicationAttemptId().toString(),
+        EntityTypes.TEZ_APPLICATION_ATTEMPT.name());
+    addRelatedEntity(builder, event.getApplicationAttemptId().getApplicationId().toString(),
+        ATSConstants.APPLICATION_ID);
+    addRelatedEntity(builder, event.getApplicationAttemptId().toString(),
+        ATSConstants.APPLICATION_ATTEMPT_ID);
+    addRelatedEntity(builder, event.getUser(), ATSConstants.USER);
+
+    builder.addPrimaryFilters(newValue(ATSConstants.DAG_NAME).setStringValue(event.getDAGName()));
+    DAGPlan dagPlan = event.getDAGPlan();
+    boolean hasCallerContext = dagPlan.hasCallerContext()
+        && dagPlan.getCallerContext().hasCallerId()
+        && dagPlan.getCallerContext().hasCallerType();
+    if (hasCallerContext) {
+      builder.addPrimaryFilters(newValue(ATSConstants.CALLER_CONTEXT_ID)
+          .setStringValue(dagPlan.getCallerContext().getCallerId()));
+      builder.addPrimaryFilters(newValue(ATSConstants.CALLER_CONTEXT_TYPE)
+          .setStringValue(dagPlan.getCallerContext().getCallerType()));
+    }
+
+    builder.addEvents(newEvent(HistoryEventType.DAG_SUBMITTED, event.getSubmitTime()));
+
+    addOtherInfoJson(builder, ATSConstants.DAG_PLAN, DAGUtils.generateSimpleJSONPlan(dagPlan));
+    if (hasCallerContext) {
+      addOtherInfo(builder, ATSConstants.CALLER_CONTEXT_ID,
+          dagPlan.getCallerContext().getCallerId());
+      addOtherInfo(builder, ATSConstants.CALLER_CONTEXT_TYPE,
+          dagPlan.getCallerContext().getCallerType());
+    }
+    return builder;
+  }
+
+  private static HistoryLogRecordProto.Builder convertTaskAttemptFinishedEvent(
+      TaskAttemptFinishedEvent event) {
+    HistoryLogRecordProto.Builder builder = newTaskAttemptRecord(event.getTaskAttemptID());
+    builder.addEvents(newEvent(HistoryEventType.TASK_ATTEMPT_FINISHED, event.getFinishTime()));
+
+    addOtherInfo(builder, ATSConstants.CREATION_TIME, event.getCreationTime());
+    addOtherInfo(builder, ATSConstants.ALLOCATION_TIME, event.getAllocationTime());
+    addOtherInfo(builder, ATSConstants.START_TIME, event.getStartTime());
+    addOtherInfo(builder, ATSConstants.FINISH_TIME, event.getFinishTime());
+    addOtherInfo(builder, ATSConstants.TIME_TAKEN, event.getFinishTime() - event.getStartTime());
+    if (event.getCreationCausalTA() != null) {
+      addOtherInfo(builder, ATSConstants.CREATION_CAUSAL_ATTEMPT,
+          event.getCreationCausalTA().toString());
+    }
+    addOtherInfo(builder, ATSConstants.STATUS, event.getState().name());
+    if (event.getTaskAttemptError() != null) {
+      addOtherInfo(builder, ATSConstants.TASK_ATTEMPT_ERROR_ENUM,
+          event.getTaskAttemptError().name());
+    }
+    if (event.getTaskFailureType() != null) {
+      addOtherInfo(builder, ATSConstants.TASK_FAILURE_TYPE, event.getTaskFailureType().name());
+    }
+    addOtherInfo(builder, ATSConstants.DIAGNOSTICS, event.getDiagnostics());
+    if (event.getCounters() != null) {
+      builder.setCounters(DagTypeConverters.convertTezCountersToProto(event.getCounters()));
+    }
+    if (event.getDataEvents() != null && !event.getDataEvents().isEmpty()) {
+      addOtherInfoJson(builder, ATSConstants.LAST_DATA_EVENTS,
+          DAGUtils.convertDataEventDependencyInfoToJSON(event.getDataEvents()));
+    }
+    if (event.getNodeId() != null) {
+      addOtherInfo(builder, ATSConstants.NODE_ID, event.getNodeId().toString());
+    }
+    if (event.getContainerId() != null) {
+      addOtherInfo(builder, ATSConstants.CONTAINER_ID, event.getContainerId().toString());
+    }
+    addOtherInfo(builder, ATSConstants.IN_PROGRESS_LOGS_URL, event.getInProgressLogsUrl());
+    addOtherInfo(builder, ATSConstants.COMPLETED_LOGS_URL, event.getCompletedLogsUrl());
+    addOtherInfo(builder, ATSConstants.NODE_HTTP_ADDRESS, event.getNodeHttpAddress());
+    return builder;
+  }
+
+  private static HistoryLogRecordProto.Builder convertTaskAttemptStartedEvent(
+      TaskAttemptStartedEvent event) {
+    HistoryLogRecordProto.Builder builder = newTaskAttemptRecord(event.getTaskAttemptID());
+    addRelatedEntity(builder, event.getNodeId().toString(), ATSConstants.NODE_ID);
+    addRelatedEntity(builder, event.getContainerId().toString(), ATSConstants.CONTAINER_ID);
+    addRelatedEntity(builder, event.getTaskAttemptID().getTaskID().toString(),
+        EntityTypes.TEZ_TASK_ID.name());
+    builder.addEvents(newEvent(HistoryEventType.TASK_ATTEMPT_STARTED, event.getStartTime()));
+    addOtherInfo(builder, ATSConstants.IN_PROGRESS_LOGS_URL, event.getInProgressLogsUrl());
+    addOtherInfo(builder, ATSConstants.COMPLETED_LOGS_URL, event.getCompletedLogsUrl());
+    return builder;
+  }
+
+  private static HistoryLogRecordProto.Builder convertTaskFinishedEvent(TaskFinishedEvent event) {
+    HistoryLogRecordProto.Builder builder = newTaskRecord(event.getTaskID());
+    builder.addEvents(newEvent(HistoryEventType.TASK_FINISHED, event.getFinishTime()));
+    addOtherInfo(builder, ATSConstants.START_TIME, event.getStartTime());
+    addOtherInfo(builder, ATSConstants.FINISH_TIME, event.getFinishTime());
+    addOtherInfo(builder, ATSConstants.TIME_TAKEN, event.getFinishTime() - event.getStartTime());
+    addOtherInfo(builder, ATSConstants.STATUS, event.getState().name());
+    addOtherInfo(builder, ATSConstants.DIAGNOSTICS, event.getDiagnostics());
+    if (event.getTezCounters() != null) {
+      builder.setCounters(DagTypeConverters.convertTezCountersToProto(event.getTezCounters()));
+    }
+    if (event.getSuccessfulAttemptID() != null) {
+      addOtherInfo(builder, ATSConstants.SUCCESSFUL_ATTEMPT_ID,
+          event.getSuccessfulAttemptID().toString());
+    }
+    return builder;
+  }
+
+  private static HistoryLogRecordProto.Builder convertTaskStartedEvent(TaskStartedEvent event) {
+    HistoryLogRecordProto.Builder builder = newTaskRecord(event.getTaskID());
+    addRelatedEntity(builder, event.getTaskID().getVertexID().toString(),
+        EntityTypes.TEZ_VERTEX_ID.name());
+    builder.addEvents(newEvent(HistoryEventType.TASK_STARTED, event.getStartTime()));
+    addOtherInfo(builder, ATSConstants.START_TIME, event.getStartTime());
+    addOtherInfo(builder, ATSConstants.SCHEDULED_TIME, event.getScheduledTime());
+    return builder;
+  }
+
+  private static HistoryLogRecordProto.Builder convertVertexFinishedEvent(
+      VertexFinishedEvent event) throws JSONException {
+    HistoryLogRecordProto.Builder builder = newVertexRecord(event.getVertexID());
+    builder.addEvents(newEvent(HistoryEventType.VERTEX_FINISHED, event.getFinishTime()));
+    addOtherInfo(builder, ATSConstants.FINISH_TIME, event.getFinishTime());
+    addOtherInfo(builder, ATSConstants.TIME_TAKEN, event.getFinishTime() - event.getStartTime());
+    addOtherInfo(builder, ATSConstants.STATUS, event.getState().name());
+    addOtherInfo(builder, ATSConstants.DIAGNOSTICS, event.getDiagnostics());
+    if (event.getTezCounters() != null) {
+      builder.setCounters(DagTypeConverters.convertTezCountersToProto(event.getTezCounters()));
+    }
+    addOtherInfoJson(builder, ATSConstants.STATS,
+        DAGUtils.convertVertexStatsToJSON(event.getVertexStats()));
+    final Map<String, Integer> vertexTaskStats = event.getVertexTaskStats();
+    if (vertexTaskStats != null) {
+      for (Entry<String, Integer> entry : vertexTaskStats.entrySet()) {
+        addOtherInfo(builder, entry.getKey(), entry.getValue().intValue());
+      }
+    }
+    if (event.getServicePluginInfo() != null) {
+      addOtherInfoJson(builder, ATSConstants.SERVICE_PLUGIN,
+          DAGUtils.convertServicePluginToJSON(event.getServicePluginInfo()));
+    }
+    return builder;
+  }
+
+  private static HistoryLogRecordProto.Builder convertVertexReconfigureDoneEvent(
+      VertexConfigurationDoneEvent event) throws JSONException {
+    HistoryLogRecordProto.Builder builder = newVertexRecord(event.getVertexID());
+    JSONObject eventInfo = new JSONObject();
+    eventInfo.put(ATSConstants.NUM_TASKS, event.getNumTasks());
+    if (event.getSourceEdgeProperties() != null && !event.getSourceEdgeProperties().isEmpty()) {
+      JSONObject updatedEdgeManagers = new JSONObject();
+      for (Entry<String, EdgeProperty> entry : event.getSourceEdgeProperties().entrySet()) {
+        updatedEdgeManagers.put(entry.getKey(),
+            new JSONObject(DAGUtils.convertEdgeProperty(entry.getValue())));
+      }
+      eventInfo.put(ATSConstants.UPDATED_EDGE_MANAGERS, updatedEdgeManagers);
+    }
+    builder.addEvents(newEvent(HistoryEventType.VERTEX_CONFIGURE_DONE,
+        event.getReconfigureDoneTime()).setEventInfoJson(eventInfo.toString()));
+    return builder;
+  }
+
+  private static HistoryLogRecordProto.Builder convertVertexInitializedEvent(
+      VertexInitializedEvent event) {
+    HistoryLogRecordProto.Builder builder = newVertexRecord(event.getVertexID());
+    addRelatedEntity(builder, event.getVertexID().getDAGId().toString(),
+        EntityTypes.TEZ_DAG_ID.name());
+    builder.addEvents(newEvent(HistoryEventType.VERTEX_INITIALIZED, event.getInitedTime()));
+    addOtherInfo(builder, ATSConstants.VERTEX_NAME, event.getVertexName());
+    addOtherInfo(builder, ATSConstants.INIT_REQUESTED_TIME, event.getInitRequestedTime());
+    addOtherInfo(builder, ATSConstants.INIT_TIME, event.getInitedTime());
+    addOtherInfo(builder, ATSConstants.NUM_TASKS, event.getNumTasks());
+    addOtherInfo(builder, ATSConstants.PROCESSOR_CLASS_NAME, event.getProcessorName());
+    if (event.getServicePluginInfo() != null) {
+      addOtherInfoJson(builder, ATSConstants.SERVICE_PLUGIN,
+          DAGUtils.convertServicePluginToJSON(event.getServicePluginInfo()));
+    }
+    return builder;
+  }
+
+  private static HistoryLogRecordProto.Builder convertVertexStartedEvent(
+      VertexStartedEvent event) {
+    HistoryLogRecordProto.Builder builder = newVertexRecord(event.getVertexID());
+    addRelatedEntity(builder, event.getVertexID().getDAGId().toString(),
+        EntityTypes.TEZ_DAG_ID.name());
+    builder.addEvents(newEvent(HistoryEventType.VERTEX_STARTED, event.getStartTime()));
+    addOtherInfo(builder, ATSConstants.START_REQUESTED_TIME, event.getStartRequestedTime());
+    addOtherInfo(builder, ATSConstants.START_TIME, event.getStartTime());
+    return builder;
+  }
+
+  // The DAG and vertex ids are set on every record of a DAG, to index the log by them
+
+  private static HistoryLogRecordProto.Builder newDAGRecord(TezDAGID dagId) {
+    return HistoryLogRecordProto.newBuilder()
+        .setEntity(dagId.toString())
+        .setEntityType(EntityTypes.TEZ_DAG_ID.name())
+        .setDagId(dagId.toString());
+  }
+
+  private static HistoryLogRecordProto.Builder newVertexRecord(TezVertexID vertexId) {
+    return HistoryLogRecordProto.newBuilder()
+        .setEntity(vertexId.toString())
+        .setEntityType(EntityTypes.TEZ_VERTEX_ID.name())
+        .setDagId(vertexId.getDAGId().toString())
+        .setVertexId(vertexId.toString());
+  }
+
+  private static HistoryLogRecordProto.Builder newTaskRecord(TezTaskID taskId) {
+    return HistoryLogRecordProto.newBuilder()
+        .setEntity(taskId.toString())
+        .setEntityType(EntityTypes.TEZ_TASK_ID.name())
+        .setDagId(taskId.getVertexID().getDAGId().toString())
+        .setVertexId(taskId.getVertexID().toString());
+  }
+
+  private static HistoryLogRecordProto.Builder newTaskAttemptRecord(
+      TezTaskAttemptID taskAttemptId) {
+    TezVertexID vertexId = taskAttemptId.getTaskID().getVertexID();
+    return HistoryLogRecordProto.newBuilder()
+        .setEntity(taskAttemptId.toString())
+        .setEntityType(EntityTypes.TEZ_TASK_ATTEMPT_ID.name())
+        .setDagId(vertexId.getDAGId().toString())
+        .setVertexId(vertexId.toString());
+  }
+
+  private static void addRelatedEntity(HistoryLogRecordProto.Builder builder, String entity,
+      String entityType) {
+    builder.addRelatedEntities(HistoryLogRelatedEntityProto.newBuilder()
+        .setEntity(entity)
+        .setEntityType(entityType));
+  }
+
+  private static HistoryLogEventProto.Builder newEvent(HistoryEventType eventType,
+      long timestamp) {
+    return HistoryLogEventProto.newBuilder()
+        .setEventType(eventType.name())
+        .setTimestamp(timestamp);
+  }
+
+  private static HistoryLogValueProto.Builder newValue(String key) {
+    return HistoryLogValueProto.newBuilder().setKey(key);
+  }
+
+  // Null values are left out, as they are from the JSON entities
+  private static void addOtherInfo(HistoryLogRecordProto.Builder builder, String key,
+      String value) {
+    if (value != null) {
+      builder.addOtherInfo(newValue(key).setStringValue(value));
+    }
+  }
+
+  private static void addOtherInfo(HistoryLogRecordProto.Builder builder, String key,
+      long value) {
+    builder.addOtherInfo(newValue(key).setLongValue(value));
+  }
+
+  private static void addOtherInfoJson(HistoryLogRecordProto.Builder builder, String key,
+      JSONObject value) {
+    if (value != null) {
+      builder.addOtherInfo(newValue(key).setJsonValue(value.toString()));
+    }
+  }
+}
@@ -0,0 +1,139 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.tez.dag.history.logging.impl;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.tez.dag.api.TezConfiguration;
+import org.apache.tez.dag.history.DAGHistoryEvent;
+import org.apache.tez.dag.history.HistoryEventType;
+import org.apache.tez.dag.recovery.records.RecoveryProtos.HistoryLogBlockHeaderProto;
+import org.apache.tez.dag.recovery.records.RecoveryProtos.HistoryLogRecordProto;
+import org.codehaus.jettison.json.JSONException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * History logging service which writes a compact binary log, in the same location as
+ * {@link SimpleHistoryLoggingService}. The log holds the same entities as the JSON log, with
+ * typed values and counters, so analyzers can use it through the same data model while parsing
+ * far less text.
+ *
+ * The log starts with {@link #MAGIC} and {@link #VERSION}, followed by blocks of records. Each
+ * block is a delimited {@link HistoryLogBlockHeaderProto}, listing the DAGs and vertices the block
+ * has records for, followed by that many delimited {@link HistoryLogRecordProto}. Readers can use
+ * the headers to skip the blocks which are not relevant to them.
+ */
+public class ProtoHistoryLoggingService extends SimpleHistoryLoggingService {
+
+  private static final Logger LOG = LoggerFactory.getLogger(ProtoHistoryLoggingService.class);
+
+  public static final String LOG_FILE_NAME_PREFIX = "history.bin";
+  public static final byte[] MAGIC = new byte[] { 'T', 'E', 'Z', 'H', 'L', 'O', 'G' };
+  public static final int VERSION = 1;
+
+  private int blockSizeEvents;
+
+  // Guarded by this
+  private final ByteArrayOutputStream block = new ByteArrayOutputStream();
+  private final Set<String> blockDagIds = new LinkedHashSet<String>();
+  private final Set<String> blockVertexIds = new LinkedHashSet<String>();
+  private int blockNumRecords = 0;
+  private boolean headerWritten = false;
+
+  public ProtoHistoryLoggingService() {
+    super(ProtoHistoryLoggingService.class.getName());
+  }
+
+  @Override
+  protected void serviceInit(Configuration conf) throws Exception {
+    blockSizeEvents = Math.max(1, conf.getInt(
+        TezConfiguration.TEZ_PROTO_HISTORY_LOGGING_BLOCK_SIZE_EVENTS,
+        TezConfiguration.TEZ_PROTO_HISTORY_LOGGING_BLOCK_SIZE_EVENTS_DEFAULT));
+    LOG.info("Initializing ProtoHistoryLoggingService, blockSizeEvents=" + blockSizeEvents);
+    super.serviceInit(conf);
+  }
+
+  @Override
+  protected String getLogFileNamePrefix() {
+    return LOG_FILE_NAME_PREFIX;
+  }
+
+  @Override
+  protected synchronized void writeEvent(FSDataOutputStream outputStream, DAGHistoryEvent event)
+      throws IOException {
+    HistoryLogRecordProto record;
+    try {
+      record = HistoryEventProtoConversion.convertToProto(event.getHistoryEvent());
+    } catch (JSONException e) {
+      LOG.warn("Failed to convert event to proto", e);
+      return;
+    }
+    record.writeDelimitedTo(block);
+    ++blockNumRecords;
+    if (record.hasDagId()) {
+      blockDagIds.add(record.getDagId());
+    }
+    if (record.hasVertexId()) {
+      blockVertexIds.add(record.getVertexId());
+    }
+    if (blockNumRecords >= blockSizeEvents
+        || event.getHistoryEvent().getEventType() == HistoryEventType.DAG_FINISHED) {
+      writeBlock(outputStream);
+    }
+  }
+
+  @Override
+  protected synchronized void flushPending(FSDataOutputStream outputStream) throws IOException {
+    writeBlock(outputStream);
+  }
+
+  private void writeBlock(FSDataOutputStream outputStream) throws IOException {
+    if (!headerWritten) {
+      outputStream.write(MAGIC);
+      outputStream.writeInt(VERSION);
+      headerWritten = true;
+    }
+    if (blockNumRecords == 0) {
+      return;
+    }
+    HistoryLogBlockHeaderProto header = HistoryLogBlockHeaderProto.newBuilder()
+        .setNumRecords(blockNumRecords)
+        .setLength(block.size())
+        .addAllDagIds(blockDagIds)
+        .addAllVertexIds(blockVertexIds)
+        .build();
+    try {
+      header.writeDelimitedTo(outputStream);
+      block.writeTo(outputStream);
+      outputStream.hflush();
+    } finally {
+      // A failed block is dropped rather than written again with later records
+      block.reset();
+      blockDagIds.clear();
+      blockVertexIds.clear();
+      blockNumRecords = 0;
+    }
+  }
+}
@@ -57,10 +57,21 @@ public class SimpleHistoryLoggingService extends HistoryLoggingService {
     super(SimpleHistoryLoggingService.class.getName());
   }
 
+  protected SimpleHistoryLoggingService(String name) {
+    super(name);
+  }
+
+  /**
+   * @return prefix of the log file name, which is followed by the application attempt id
+   */
+  protected String getLogFileNamePrefix() {
+    return LOG_FILE_NAME_PREFIX;
+  }
+
   @Override
   protected void serviceInit(Configuration conf) throws Exception {
     String logDirPath = conf.get(TezConfiguration.TEZ_SIMPLE_HISTORY_LOGGING_DIR);
-    final String logFileName = LOG_FILE_NAME_PREFIX + "." + appContext.getApplicationAttemptId();
+    final String logFileName = getLogFileNamePrefix() + "." + appContext.getApplicationAttemptId();
     if (logDirPath == null || logDirPath.isEmpty()) {
       String logDir = appContext.getLogDirs()[new Random().nextInt(appContext.getLogDirs().length)];
       LOG.info("Log file location for SimpleHistoryLoggingService not specified, defaulting to"
@@ -130,6 +141,7 @@ public class SimpleHistoryLoggingService extends HistoryLoggingService {
     }
     try {
       if (outputStream != null) {
+        flushPending(outputStream);
         outputStream.hflush();
         outputStream.close();
       }
@@ -152,13 +164,7 @@ public class SimpleHistoryLoggingService extends HistoryLoggingService {
       LOG.trace("Writing event " + event.getHistoryEvent().getEventType() + " to history file");
     }
     try {
-      try {
-        JSONObject eventJson = HistoryEventJsonConversion.convertToJson(event.getHistoryEvent());
-        outputStream.writeBytes(eventJson.toString());
-        outputStream.writeBytes(RECORD_SEPARATOR);
-      } catch (JSONException e) {
-        LOG.warn("Failed to convert event to json", e);
-      }
+      writeEvent(outputStream, event);
       consecutiveErrors = 0;
     } catch (IOException ioe) {
       ++consecutiveErrors;
@@ -172,4 +178,24 @@ public class SimpleHistoryLoggingService extends HistoryLoggingService {
     }
 
   }
+
+  /**
+   * Writes a single event to the log file. Events which cannot be converted are skipped.
+   */
+  protected void writeEvent(FSDataOutputStream outputStream, DAGHistoryEvent event)
+      throws IOException {
+    try {
+      JSONObject eventJson = HistoryEventJsonConversion.convertToJson(event.getHistoryEvent());
+      outputStream.writeBytes(eventJson.toString());
+      outputStream.writeBytes(RECORD_SEPARATOR);
+    } catch (JSONException e) {
+      LOG.warn("Failed to convert event to json", e);
+    }
+  }
+
+  /**
+   * Writes out whatever has been buffered by {@link #writeEvent}, before the log file is closed.
+   */
+  protected void flushPending(FSDataOutputStream outputStream) throws IOException {
+  }
 }
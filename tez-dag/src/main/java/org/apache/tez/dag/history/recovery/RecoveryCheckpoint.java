@@ -0,0 +1,235 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.tez.dag.history.recovery;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.tez.dag.app.RecoveryParser;
+import org.apache.tez.dag.history.HistoryEvent;
+import org.apache.tez.dag.history.HistoryEventType;
+import org.apache.tez.dag.history.events.TaskAttemptFinishedEvent;
+import org.apache.tez.dag.history.events.TaskAttemptStartedEvent;
+import org.apache.tez.dag.history.events.TaskFinishedEvent;
+import org.apache.tez.dag.history.events.TaskStartedEvent;
+import org.apache.tez.dag.history.events.VertexConfigurationDoneEvent;
+import org.apache.tez.dag.history.events.VertexFinishedEvent;
+import org.apache.tez.dag.history.events.VertexInitializedEvent;
+import org.apache.tez.dag.history.events.VertexStartedEvent;
+import org.apache.tez.dag.records.TezTaskAttemptID;
+import org.apache.tez.dag.records.TezTaskID;
+import org.apache.tez.dag.records.TezVertexID;
+
+/**
+ * Compact recovery state of a DAG, i.e. the latest event of each kind recorded for the DAG and
+ * each of its vertices, tasks and task attempts. Events which do not contribute to the recovered
+ * state are dropped, and the events are kept in the order in which they were first seen, so that
+ * replaying them rebuilds the same state as replaying the full recovery log.
+ *
+ * A checkpoint also records how much of the recovery log it covers: all DAG recovery files of
+ * attempts before the covered attempt, and the recovery file of the covered attempt up to the
+ * covered offset. Only the events after that offset need to be replayed on top of it.
+ *
+ * Not thread safe, a checkpoint is only updated by the writer of its DAG recovery file.
+ */
+public class RecoveryCheckpoint {
+
+  public static final int VERSION = 1;
+
+  private final Map<Key, HistoryEvent> events = new LinkedHashMap<Key, HistoryEvent>();
+  private boolean dagFinished = false;
+  private int eventsSinceWrite = 0;
+  private int coveredAttemptId;
+  private long coveredOffset;
+
+  /**
+   * @param coveredAttemptId
+   *          attempt whose recovery file the checkpoint is being built from
+   * @param coveredOffset
+   *          offset in that recovery file up to which events have been added
+   */
+  public RecoveryCheckpoint(int coveredAttemptId, long coveredOffset) {
+    this.coveredAttemptId = coveredAttemptId;
+    this.coveredOffset = coveredOffset;
+  }
+
+  /**
+   * Adds an event read from, or written to, the DAG recovery file.
+   */
+  public void add(HistoryEvent event) {
+    if (dagFinished) {
+      // Recovery ignores whatever follows the DAG_FINISHED event
+      return;
+    }
+    Key key = getKey(event);
+    if (key == null) {
+      return;
+    }
+    events.put(key, event);
+    ++eventsSinceWrite;
+    if (event.getEventType() == HistoryEventType.DAG_FINISHED) {
+      dagFinished = true;
+    }
+  }
+
+  /**
+   * Drops the events of the given vertices, and of their tasks and task attempts.
+   */
+  public void removeVertices(Set<TezVertexID> vertexIds) {
+    Iterator<Key> keys = events.keySet().iterator();
+    while (keys.hasNext()) {
+      Object id = keys.next().id;
+      TezVertexID vertexId = null;
+      if (id instanceof TezVertexID) {
+        vertexId = (TezVertexID) id;
+      } else if (id instanceof TezTaskID) {
+        vertexId = ((TezTaskID) id).getVertexID();
+      } else if (id instanceof TezTaskAttemptID) {
+        vertexId = ((TezTaskAttemptID) id).getTaskID().getVertexID();
+      }
+      if (vertexId != null && vertexIds.contains(vertexId)) {
+        keys.remove();
+      }
+    }
+  }
+
+  public List<HistoryEvent> getEvents() {
+    return new ArrayList<HistoryEvent>(events.values());
+  }
+
+  public int getCoveredAttemptId() {
+    return coveredAttemptId;
+  }
+
+  public long getCoveredOffset() {
+    return coveredOffset;
+  }
+
+  /**
+   * @return number of events added since the checkpoint was last written or read
+   */
+  public int getEventsSinceWrite() {
+    return eventsSinceWrite;
+  }
+
+  /**
+   * Writes the checkpoint, covering the given attempt's recovery file up to the given offset.
+   */
+  public void write(FSDataOutputStream outputStream, int attemptId, long offset)
+      throws IOException {
+    outputStream.writeInt(VERSION);
+    outputStream.writeInt(attemptId);
+    outputStream.writeLong(offset);
+    outputStream.writeInt(events.size());
+    for (HistoryEvent event : events.values()) {
+      outputStream.writeInt(event.getEventType().ordinal());
+      event.toProtoStream(outputStream);
+    }
+    coveredAttemptId = attemptId;
+    coveredOffset = offset;
+    eventsSinceWrite = 0;
+  }
+
+  public static RecoveryCheckpoint read(FSDataInputStream inputStream) throws IOException {
+    int version = inputStream.readInt();
+    if (version != VERSION) {
+      throw new IOException("Unsupported recovery checkpoint version " + version);
+    }
+    int attemptId = inputStream.readInt();
+    long offset = inputStream.readLong();
+    int numEvents = inputStream.readInt();
+    RecoveryCheckpoint checkpoint = new RecoveryCheckpoint(attemptId, offset);
+    for (int i = 0; i < numEvents; ++i) {
+      HistoryEvent event = RecoveryParser.getNextEvent(inputStream);
+      if (event == null) {
+        throw new IOException("Truncated recovery checkpoint, expected " + numEvents
+            + " events, found " + i);
+      }
+      checkpoint.add(event);
+    }
+    checkpoint.eventsSinceWrite = 0;
+    return checkpoint;
+  }
+
+  private static Key getKey(HistoryEvent event) {
+    HistoryEventType eventType = event.getEventType();
+    switch (eventType) {
+      case DAG_SUBMITTED:
+      case DAG_INITIALIZED:
+      case DAG_STARTED:
+      case DAG_FINISHED:
+        return new Key(eventType, null);
+      case VERTEX_INITIALIZED:
+        return new Key(eventType, ((VertexInitializedEvent) event).getVertexID());
+      case VERTEX_CONFIGURE_DONE:
+        return new Key(eventType, ((VertexConfigurationDoneEvent) event).getVertexID());
+      case VERTEX_STARTED:
+        return new Key(eventType, ((VertexStartedEvent) event).getVertexID());
+      case VERTEX_FINISHED:
+        return new Key(eventType, ((VertexFinishedEvent) event).getVertexID());
+      case TASK_STARTED:
+        return new Key(eventType, ((TaskStartedEvent) event).getTaskID());
+      case TASK_FINISHED:
+        return new Key(eventType, ((TaskFinishedEvent) event).getTaskID());
+      case TASK_ATTEMPT_STARTED:
+        return new Key(eventType, ((TaskAttemptStartedEvent) event).getTaskAttemptID());
+      case TASK_ATTEMPT_FINISHED:
+        return new Key(eventType, ((TaskAttemptFinishedEvent) event).getTaskAttemptID());
+      default:
+        // Commit and container events are not used to rebuild the DAG state
+        return null;
+    }
+  }
+
+  private static final class Key {
+    private final HistoryEventType eventType;
+    // null for DAG level events
+    private final Object id;
+
+    Key(HistoryEventType eventType, Object id) {
+      this.eventType = eventType;
+      this.id = id;
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * eventType.hashCode() + (id == null ? 0 : id.hashCode());
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (this == obj) {
+        return true;
+      }
+      if (!(obj instanceof Key)) {
+        return false;
+      }
+      Key other = (Key) obj;
+      return eventType == other.eventType
+          && (id == null ? other.id == null : id.equals(other.id));
+    }
+  }
+}
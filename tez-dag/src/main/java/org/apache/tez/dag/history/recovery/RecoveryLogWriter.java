@@ -0,0 +1,288 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.tez.dag.history.recovery;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.yarn.util.Clock;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.SettableFuture;
+
+/**
+ * Writes records to a single recovery file with group commit. Records are appended from any
+ * thread and written in order on a shared executor. All records which are ready when the writer
+ * runs are written as one batch, followed by a single hflush if any of them asked for one, or if
+ * the unflushed event count or flush interval has been exceeded.
+ *
+ * A record can depend on another write, e.g. on the corresponding summary record, in which case
+ * it, and all records after it, are only written once the dependency completes. Records whose
+ * dependency failed are not written, and fail with the same cause.
+ */
+class RecoveryLogWriter implements Runnable {
+
+  private static final Logger LOG = LoggerFactory.getLogger(RecoveryLogWriter.class);
+
+  interface StreamOpener {
+    FSDataOutputStream open() throws IOException;
+  }
+
+  interface Record {
+    void write(FSDataOutputStream outputStream) throws IOException;
+  }
+
+  private static class Entry {
+    // null for the entry closing the writer
+    private final Record record;
+    private final boolean sync;
+    private final ListenableFuture<?> dependency;
+    private final SettableFuture<Void> future = SettableFuture.create();
+
+    Entry(Record record, boolean sync, ListenableFuture<?> dependency) {
+      this.record = record;
+      this.sync = sync;
+      this.dependency = dependency;
+    }
+  }
+
+  private final String name;
+  private final ScheduledExecutorService executor;
+  private final StreamOpener streamOpener;
+  private final Clock clock;
+  private final long windowMs;
+  private final int maxUnflushedEvents;
+  private final long flushIntervalMs;
+
+  private final Runnable rescheduler = new Runnable() {
+    @Override
+    public void run() {
+      synchronized (RecoveryLogWriter.this) {
+        if (scheduled) {
+          return;
+        }
+        scheduled = true;
+      }
+      schedule(0);
+    }
+  };
+
+  // Guarded by this
+  private final Deque<Entry> pending = new ArrayDeque<Entry>();
+  private boolean scheduled = false;
+
+  // Only accessed while running, which happens on one thread at a time
+  private FSDataOutputStream outputStream;
+  private boolean closed = false;
+  private int unflushedEventsCount = 0;
+  private long lastFlushTime;
+
+  RecoveryLogWriter(String name, ScheduledExecutorService executor, StreamOpener streamOpener,
+      Clock clock, long windowMs, int maxUnflushedEvents, long flushIntervalMs) {
+    this.name = name;
+    this.executor = executor;
+    this.streamOpener = streamOpener;
+    this.clock = clock;
+    this.windowMs = windowMs;
+    this.maxUnflushedEvents = maxUnflushedEvents;
+    this.flushIntervalMs = flushIntervalMs;
+    this.lastFlushTime = clock.getTime();
+  }
+
+  /**
+   * Appends a record to the log.
+   *
+   * @param record record to write
+   * @param sync whether the record must be flushed before the returned future completes
+   * @param dependency future which must complete before the record is written, or null
+   * @return future which completes once the record has been written, and flushed if requested
+   */
+  ListenableFuture<Void> append(Record record, boolean sync, ListenableFuture<?> dependency) {
+    return enqueue(new Entry(record, sync, dependency));
+  }
+
+  /**
+   * Flushes and closes the log, once all records appended so far have been written. Records
+   * appended afterwards are ignored.
+   */
+  ListenableFuture<Void> close() {
+    return enqueue(new Entry(null, true, null));
+  }
+
+  private ListenableFuture<Void> enqueue(Entry entry) {
+    boolean schedule;
+    synchronized (this) {
+      pending.add(entry);
+      schedule = !scheduled;
+      scheduled = true;
+    }
+    if (schedule) {
+      schedule(windowMs);
+    }
+    return entry.future;
+  }
+
+  private void schedule(long delayMs) {
+    try {
+      if (delayMs > 0) {
+        executor.schedule(this, delayMs, TimeUnit.MILLISECONDS);
+      } else {
+        executor.execute(this);
+      }
+    } catch (RejectedExecutionException e) {
+      LOG.warn("Recovery writer for " + name + " could not be scheduled, failing pending writes",
+          e);
+      List<Entry> failed;
+      synchronized (this) {
+        failed = new ArrayList<Entry>(pending);
+        pending.clear();
+        scheduled = false;
+      }
+      for (Entry entry : failed) {
+        entry.future.setException(e);
+      }
+    }
+  }
+
+  @Override
+  public void run() {
+    while (true) {
+      List<Entry> batch = new ArrayList<Entry>();
+      ListenableFuture<?> blockedOn = null;
+      synchronized (this) {
+        while (!pending.isEmpty()) {
+          Entry head = pending.peek();
+          if (head.dependency != null && !head.dependency.isDone()) {
+            break;
+          }
+          batch.add(pending.poll());
+        }
+        if (batch.isEmpty()) {
+          scheduled = false;
+          if (!pending.isEmpty()) {
+            blockedOn = pending.peek().dependency;
+          }
+        }
+      }
+      if (batch.isEmpty()) {
+        if (blockedOn != null) {
+          blockedOn.addListener(rescheduler, MoreExecutors.sameThreadExecutor());
+        }
+        return;
+      }
+      writeBatch(batch);
+    }
+  }
+
+  private void writeBatch(List<Entry> batch) {
+    List<Entry> written = new ArrayList<Entry>(batch.size());
+    boolean syncRequested = false;
+    try {
+      for (Entry entry : batch) {
+        Throwable dependencyFailure = getFailure(entry.dependency);
+        if (dependencyFailure != null) {
+          entry.future.setException(dependencyFailure);
+        } else if (closed) {
+          // Nothing more is recorded once closed, e.g. events of a completed DAG
+          entry.future.set(null);
+        } else if (entry.record == null) {
+          if (outputStream != null) {
+            outputStream.hflush();
+            outputStream.close();
+            outputStream = null;
+          }
+          closed = true;
+          complete(written);
+          entry.future.set(null);
+        } else {
+          if (outputStream == null) {
+            outputStream = streamOpener.open();
+          }
+          entry.record.write(outputStream);
+          ++unflushedEventsCount;
+          syncRequested |= entry.sync;
+          written.add(entry);
+        }
+      }
+      if (!written.isEmpty()) {
+        long currentTime = clock.getTime();
+        if (syncRequested || shouldFlush(currentTime)) {
+          outputStream.hflush();
+          if (LOG.isDebugEnabled()) {
+            LOG.debug("Flushed recovery log " + name
+                + ", batchSize=" + batch.size()
+                + ", unflushedEventsCount=" + unflushedEventsCount
+                + ", timeSinceLastFlush=" + (currentTime - lastFlushTime));
+          }
+          unflushedEventsCount = 0;
+          lastFlushTime = currentTime;
+        }
+        complete(written);
+      }
+    } catch (IOException e) {
+      LOG.warn("Error writing recovery log " + name, e);
+      // Fails whatever has not been completed yet
+      for (Entry entry : batch) {
+        entry.future.setException(e);
+      }
+    }
+  }
+
+  private boolean shouldFlush(long currentTime) {
+    return (maxUnflushedEvents >= 0 && unflushedEventsCount >= maxUnflushedEvents)
+        || (flushIntervalMs >= 0 && (currentTime - lastFlushTime) >= flushIntervalMs);
+  }
+
+  private static void complete(List<Entry> entries) {
+    for (Entry entry : entries) {
+      entry.future.set(null);
+    }
+    entries.clear();
+  }
+
+  private static Throwable getFailure(ListenableFuture<?> future) {
+    if (future == null) {
+      return null;
+    }
+    try {
+      future.get();
+      return null;
+    } catch (ExecutionException e) {
+      return e.getCause();
+    } catch (CancellationException e) {
+      return e;
+    } catch (InterruptedException e) {
+      // Not expected, the future is done
+      Thread.currentThread().interrupt();
+      return e;
+    }
+  }
+}
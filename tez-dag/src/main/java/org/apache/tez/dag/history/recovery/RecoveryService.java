@@ -19,13 +19,20 @@
 package org.apache.tez.dag.history.recovery;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.apache.hadoop.conf.Configuration;
@@ -39,6 +46,7 @@ import org.apache.tez.dag.api.TezConfiguration;
 import org.apache.tez.dag.api.TezConstants;
 import org.apache.tez.dag.app.AppContext;
 import org.apache.tez.dag.history.DAGHistoryEvent;
+import org.apache.tez.dag.history.HistoryEvent;
 import org.apache.tez.dag.history.HistoryEventType;
 import org.apache.tez.dag.history.SummaryEvent;
 import org.apache.tez.dag.history.events.DAGSubmittedEvent;
@@ -47,6 +55,11 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Preconditions;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 
 public class RecoveryService extends AbstractService {
 
@@ -69,6 +82,17 @@ public class RecoveryService extends AbstractService {
   @VisibleForTesting
   public static final boolean TEZ_TEST_RECOVERY_DRAIN_EVENTS_WHEN_STOPPED_DEFAULT = true;
 
+  /**
+   * With group commit, the events which must be durable before {@link #handle} returns, as the
+   * AM acts on them right after: the client is told about the submission, commits are started,
+   * and the completion of the DAG is reported. Later events of a DAG are written after these, so
+   * the other events are recorded in the background.
+   */
+  private static final Set<HistoryEventType> DURABLE_BEFORE_RETURN_EVENTS = EnumSet.of(
+      HistoryEventType.DAG_SUBMITTED, HistoryEventType.DAG_COMMIT_STARTED,
+      HistoryEventType.VERTEX_COMMIT_STARTED, HistoryEventType.VERTEX_GROUP_COMMIT_STARTED,
+      HistoryEventType.DAG_FINISHED);
+
   private LinkedBlockingQueue<DAGHistoryEvent> eventQueue =
       new LinkedBlockingQueue<DAGHistoryEvent>();
   private Set<TezDAGID> completedDAGs = new HashSet<TezDAGID>();
@@ -95,6 +119,21 @@ public class RecoveryService extends AbstractService {
   private AtomicBoolean recoveryFatalErrorOccurred = new AtomicBoolean(false);
   private boolean drainEventsFlag;
 
+  private boolean groupCommitEnabled;
+  private long groupCommitWindowMs;
+  private int groupCommitWriterThreads;
+  private ScheduledExecutorService writerExecutor;
+  // Group commit writers, guarded by lock
+  private RecoveryLogWriter summaryWriter;
+  private final Map<TezDAGID, RecoveryLogWriter> dagWriters =
+      new HashMap<TezDAGID, RecoveryLogWriter>();
+
+  private int checkpointIntervalEvents;
+  // Checkpoints of the DAGs whose full recovery state is known to this attempt. Each one is only
+  // updated by the writer of its DAG recovery file.
+  private final Map<TezDAGID, RecoveryCheckpoint> checkpoints =
+      new ConcurrentHashMap<TezDAGID, RecoveryCheckpoint>();
+
   // Indicates all the remaining events on stop have been drained
   // and processed.
   private volatile boolean drained = true;
@@ -121,16 +160,37 @@ public class RecoveryService extends AbstractService {
         TEZ_TEST_RECOVERY_DRAIN_EVENTS_WHEN_STOPPED,
         TEZ_TEST_RECOVERY_DRAIN_EVENTS_WHEN_STOPPED_DEFAULT);
 
+    groupCommitEnabled = conf.getBoolean(TezConfiguration.DAG_RECOVERY_GROUP_COMMIT_ENABLED,
+        TezConfiguration.DAG_RECOVERY_GROUP_COMMIT_ENABLED_DEFAULT);
+    groupCommitWindowMs = conf.getLong(TezConfiguration.DAG_RECOVERY_GROUP_COMMIT_WINDOW_MS,
+        TezConfiguration.DAG_RECOVERY_GROUP_COMMIT_WINDOW_MS_DEFAULT);
+    groupCommitWriterThreads = conf.getInt(
+        TezConfiguration.DAG_RECOVERY_GROUP_COMMIT_WRITER_THREADS,
+        TezConfiguration.DAG_RECOVERY_GROUP_COMMIT_WRITER_THREADS_DEFAULT);
+    Preconditions.checkArgument(groupCommitWriterThreads > 0,
+        TezConfiguration.DAG_RECOVERY_GROUP_COMMIT_WRITER_THREADS + " should be positive");
+    checkpointIntervalEvents = conf.getInt(
+        TezConfiguration.DAG_RECOVERY_CHECKPOINT_INTERVAL_EVENTS,
+        TezConfiguration.DAG_RECOVERY_CHECKPOINT_INTERVAL_EVENTS_DEFAULT);
+
     LOG.info("RecoveryService initialized with "
       + "recoveryPath=" + recoveryPath
       + ", bufferSize(bytes)=" + bufferSize
       + ", flushInterval(s)=" + flushInterval
-      + ", maxUnflushedEvents=" + maxUnflushedEvents);
+      + ", maxUnflushedEvents=" + maxUnflushedEvents
+      + ", groupCommitEnabled=" + groupCommitEnabled
+      + (groupCommitEnabled ? ", groupCommitWindow(ms)=" + groupCommitWindowMs
+          + ", groupCommitWriterThreads=" + groupCommitWriterThreads : "")
+      + ", checkpointIntervalEvents=" + checkpointIntervalEvents);
   }
 
   @Override
   public void serviceStart() {
     lastFlushTime = appContext.getClock().getTime();
+    if (groupCommitEnabled) {
+      startGroupCommit();
+      return;
+    }
     eventHandlingThread = new Thread(new Runnable() {
       @Override
       public void run() {
@@ -191,9 +251,73 @@ public class RecoveryService extends AbstractService {
     started.set(true);
   }
 
+  private void startGroupCommit() {
+    writerExecutor = new ScheduledThreadPoolExecutor(groupCommitWriterThreads,
+        new ThreadFactoryBuilder().setDaemon(true).setNameFormat("RecoveryWriter #%d").build());
+    final Path summaryPath = TezCommonUtils.getSummaryRecoveryPath(recoveryPath);
+    summaryWriter = createWriter("summary", summaryPath);
+    synchronized (lock) {
+      started.set(true);
+      // Events which came in before the service started
+      List<DAGHistoryEvent> queuedEvents = new ArrayList<DAGHistoryEvent>(eventQueue);
+      eventQueue.clear();
+      for (DAGHistoryEvent event : queuedEvents) {
+        if (!isSkipped(event)) {
+          appendEvent(event);
+        }
+      }
+      drained = true;
+    }
+  }
+
+  private RecoveryLogWriter createWriter(String name, final Path path) {
+    return new RecoveryLogWriter(name, writerExecutor, new RecoveryLogWriter.StreamOpener() {
+      @Override
+      public FSDataOutputStream open() throws IOException {
+        if (recoveryDirFS.exists(path)) {
+          createFatalErrorFlagDir();
+          throw new IOException("Recovery file already exists, path=" + path);
+        }
+        if (LOG.isDebugEnabled()) {
+          LOG.debug("Opening recovery file in create mode, filePath=" + path);
+        }
+        return recoveryDirFS.create(path, false, bufferSize);
+      }
+    }, appContext.getClock(), groupCommitWindowMs, maxUnflushedEvents, flushInterval * 1000L);
+  }
+
+  private void stopGroupCommit() throws InterruptedException {
+    List<ListenableFuture<Void>> closeFutures = new ArrayList<ListenableFuture<Void>>();
+    synchronized (lock) {
+      stopped.set(true);
+      if (summaryWriter != null) {
+        closeFutures.add(summaryWriter.close());
+      }
+      for (RecoveryLogWriter dagWriter : dagWriters.values()) {
+        closeFutures.add(dagWriter.close());
+      }
+      dagWriters.clear();
+    }
+    for (ListenableFuture<Void> closeFuture : closeFutures) {
+      try {
+        closeFuture.get();
+      } catch (ExecutionException e) {
+        LOG.warn("Error when closing recovery file", e.getCause());
+      }
+    }
+    if (writerExecutor != null) {
+      writerExecutor.shutdown();
+      writerExecutor.awaitTermination(10, TimeUnit.SECONDS);
+    }
+  }
+
   @Override
   public void serviceStop() throws Exception {
     LOG.info("Stopping RecoveryService");
+    if (groupCommitEnabled) {
+      stopGroupCommit();
+      return;
+    }
 
     if (drainEventsFlag) {
       LOG.info("Handle the remaining events in queue, queue size=" + eventQueue.size());
@@ -257,6 +381,10 @@ public class RecoveryService extends AbstractService {
   }
 
   public void handle(DAGHistoryEvent event) throws IOException {
+    if (groupCommitEnabled) {
+      awaitSummaryEvent(event, handleAsync(event));
+      return;
+    }
     if (stopped.get()) {
       LOG.warn("Igoring event as service stopped, eventType"
           + event.getHistoryEvent().getEventType());
@@ -276,26 +404,7 @@ public class RecoveryService extends AbstractService {
     }
 
     TezDAGID dagId = event.getDagID();
-    if (eventType.equals(HistoryEventType.DAG_SUBMITTED)) {
-      DAGSubmittedEvent dagSubmittedEvent =
-          (DAGSubmittedEvent) event.getHistoryEvent();
-      String dagName = dagSubmittedEvent.getDAGName();
-      if (dagName != null
-          && dagName.startsWith(
-              TezConstants.TEZ_PREWARM_DAG_NAME_PREFIX)) {
-        // Skip recording pre-warm DAG events
-        skippedDAGs.add(dagId);
-        return;
-      }
-    }
-    if (dagId == null || skippedDAGs.contains(dagId)) {
-      if (LOG.isDebugEnabled()) {
-        LOG.debug("Skipping event for DAG"
-            + ", eventType=" + eventType
-            + ", dagId=" + (dagId == null ? "null" : dagId.toString())
-            + ", isSkippedDAG=" + (dagId == null ? "null"
-            : skippedDAGs.contains(dagId)));
-      }
+    if (isSkipped(event)) {
       return;
     }
 
@@ -357,6 +466,274 @@ public class RecoveryService extends AbstractService {
     }
   }
 
+  /**
+   * Checks whether the event should not be recorded, i.e. whether it does not belong to a DAG,
+   * or belongs to a pre-warm DAG.
+   */
+  private boolean isSkipped(DAGHistoryEvent event) {
+    HistoryEventType eventType = event.getHistoryEvent().getEventType();
+    TezDAGID dagId = event.getDagID();
+    if (eventType.equals(HistoryEventType.DAG_SUBMITTED)) {
+      DAGSubmittedEvent dagSubmittedEvent =
+          (DAGSubmittedEvent) event.getHistoryEvent();
+      String dagName = dagSubmittedEvent.getDAGName();
+      if (dagName != null
+          && dagName.startsWith(
+              TezConstants.TEZ_PREWARM_DAG_NAME_PREFIX)) {
+        // Skip recording pre-warm DAG events
+        skippedDAGs.add(dagId);
+        return true;
+      }
+    }
+    if (dagId == null || skippedDAGs.contains(dagId)) {
+      if (LOG.isDebugEnabled()) {
+        LOG.debug("Skipping event for DAG"
+            + ", eventType=" + eventType
+            + ", dagId=" + (dagId == null ? "null" : dagId.toString())
+            + ", isSkippedDAG=" + (dagId == null ? "null"
+            : skippedDAGs.contains(dagId)));
+      }
+      return true;
+    }
+    return false;
+  }
+
+  /**
+   * Records the event through group commit, without waiting for it to be written. Only valid if
+   * {@link TezConfiguration#DAG_RECOVERY_GROUP_COMMIT_ENABLED} is set. {@link #handle} only waits
+   * on the returned future for the events in {@link #DURABLE_BEFORE_RETURN_EVENTS}.
+   *
+   * @return future which completes once the event is durable, for summary events which are
+   * written to the DAG recovery file immediately, or once the summary record is durable, for
+   * other summary events. For all other events, it completes once the event is written.
+   */
+  @VisibleForTesting
+  ListenableFuture<Void> handleAsync(DAGHistoryEvent event) {
+    Preconditions.checkState(groupCommitEnabled, "Group commit is not enabled");
+    HistoryEventType eventType = event.getHistoryEvent().getEventType();
+    if (stopped.get()) {
+      LOG.warn("Ignoring event as service stopped, eventType=" + eventType);
+      return Futures.immediateFuture(null);
+    }
+    if (recoveryFatalErrorOccurred.get()) {
+      return Futures.immediateFuture(null);
+    }
+    synchronized (lock) {
+      if (stopped.get()) {
+        LOG.warn("Ignoring event as service stopped, eventType=" + eventType);
+        return Futures.immediateFuture(null);
+      }
+      if (!started.get()) {
+        LOG.warn("Adding event of type " + eventType
+            + " to queue as service not started");
+        addToEventQueue(event);
+        return Futures.immediateFuture(null);
+      }
+      if (isSkipped(event)) {
+        return Futures.immediateFuture(null);
+      }
+      return appendEvent(event);
+    }
+  }
+
+  // Called with lock held
+  private ListenableFuture<Void> appendEvent(final DAGHistoryEvent event) {
+    final TezDAGID dagId = event.getDagID();
+    final HistoryEventType eventType = event.getHistoryEvent().getEventType();
+    if (!(event.getHistoryEvent() instanceof SummaryEvent)) {
+      if (completedDAGs.contains(dagId)) {
+        return Futures.immediateFuture(null);
+      }
+      final ListenableFuture<Void> future =
+          getDAGWriter(dagId).append(createDAGRecord(event), false, null);
+      future.addListener(new Runnable() {
+        @Override
+        public void run() {
+          try {
+            future.get();
+          } catch (Exception e) {
+            // For now, ignore any such errors as these are non-critical
+            LOG.warn("Error handling recovery event, eventType=" + eventType, e);
+          }
+        }
+      }, MoreExecutors.sameThreadExecutor());
+      return future;
+    }
+
+    final SummaryEvent summaryEvent = (SummaryEvent) event.getHistoryEvent();
+    ListenableFuture<Void> summaryFuture = summaryWriter.append(new RecoveryLogWriter.Record() {
+      @Override
+      public void write(FSDataOutputStream outputStream) throws IOException {
+        if (LOG.isDebugEnabled()) {
+          LOG.debug("Writing recovery event to summary stream"
+              + ", dagId=" + dagId
+              + ", eventType=" + eventType);
+        }
+        summaryEvent.toSummaryProtoStream(outputStream);
+      }
+    }, true, null);
+    ListenableFuture<Void> result = summaryFuture;
+    if (!completedDAGs.contains(dagId)) {
+      // Written after the summary record, as without group commit
+      ListenableFuture<Void> dagFuture = getDAGWriter(dagId).append(createDAGRecord(event),
+          summaryEvent.writeToRecoveryImmediately(), summaryFuture);
+      if (summaryEvent.writeToRecoveryImmediately()) {
+        result = dagFuture;
+      }
+    }
+    if (eventType.equals(HistoryEventType.DAG_FINISHED)) {
+      LOG.info("DAG completed"
+          + ", dagId=" + dagId);
+      completedDAGs.add(dagId);
+      RecoveryLogWriter dagWriter = dagWriters.remove(dagId);
+      if (dagWriter != null) {
+        dagWriter.close();
+      }
+    }
+    final ListenableFuture<Void> criticalFuture = result;
+    criticalFuture.addListener(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          criticalFuture.get();
+        } catch (Exception e) {
+          LOG.error("Error handling summary event, eventType=" + eventType, e);
+          try {
+            createFatalErrorFlagDir();
+          } catch (IOException ioe) {
+            LOG.error("Error flagging recovery failure", ioe);
+          }
+        }
+      }
+    }, MoreExecutors.sameThreadExecutor());
+    return criticalFuture;
+  }
+
+  private RecoveryLogWriter getDAGWriter(TezDAGID dagId) {
+    RecoveryLogWriter dagWriter = dagWriters.get(dagId);
+    if (dagWriter == null) {
+      dagWriter = createWriter(dagId.toString(),
+          TezCommonUtils.getDAGRecoveryPath(recoveryPath, dagId.toString()));
+      dagWriters.put(dagId, dagWriter);
+    }
+    return dagWriter;
+  }
+
+  private RecoveryLogWriter.Record createDAGRecord(final DAGHistoryEvent event) {
+    return new RecoveryLogWriter.Record() {
+      @Override
+      public void write(FSDataOutputStream outputStream) throws IOException {
+        if (LOG.isDebugEnabled()) {
+          LOG.debug("Writing recovery event to output stream"
+              + ", dagId=" + event.getDagID()
+              + ", eventType=" + event.getHistoryEvent().getEventType());
+        }
+        outputStream.writeInt(event.getHistoryEvent().getEventType().ordinal());
+        event.getHistoryEvent().toProtoStream(outputStream);
+        maybeCheckpoint(event.getDagID(), event.getHistoryEvent(), outputStream);
+      }
+    };
+  }
+
+  /**
+   * Seeds the checkpoint of a DAG recovered from previous attempts, so that the checkpoints
+   * written by this attempt also cover the recovery files of the previous attempts.
+   */
+  public void setRecoveredCheckpoint(TezDAGID dagId, RecoveryCheckpoint checkpoint) {
+    if (checkpointIntervalEvents > 0) {
+      checkpoints.put(dagId, checkpoint);
+    }
+  }
+
+  /**
+   * Adds an event which has just been written to the DAG recovery file to the checkpoint of
+   * the DAG, and writes the checkpoint once enough events have been added since the last one.
+   * Only DAGs submitted in this attempt, or recovered with a seeded checkpoint, are checkpointed,
+   * as the checkpoint has to cover all the recovery files of the DAG.
+   */
+  private void maybeCheckpoint(TezDAGID dagId, HistoryEvent event,
+      FSDataOutputStream outputStream) {
+    if (checkpointIntervalEvents <= 0) {
+      return;
+    }
+    RecoveryCheckpoint checkpoint = checkpoints.get(dagId);
+    if (checkpoint == null) {
+      if (event.getEventType() != HistoryEventType.DAG_SUBMITTED) {
+        return;
+      }
+      checkpoint = new RecoveryCheckpoint(getAttemptId(), 0);
+      checkpoints.put(dagId, checkpoint);
+    }
+    checkpoint.add(event);
+    if (event.getEventType() == HistoryEventType.DAG_FINISHED) {
+      // The recovery file is complete, nothing to gain from a checkpoint
+      checkpoints.remove(dagId);
+      return;
+    }
+    if (checkpoint.getEventsSinceWrite() < checkpointIntervalEvents) {
+      return;
+    }
+    Path checkpointPath =
+        TezCommonUtils.getDAGRecoveryCheckpointPath(recoveryPath, dagId.toString());
+    Path tmpPath = checkpointPath.suffix(".tmp");
+    try {
+      // The checkpoint must not cover events which are not durable yet
+      outputStream.hflush();
+      long offset = outputStream.getPos();
+      FSDataOutputStream checkpointStream = recoveryDirFS.create(tmpPath, true, bufferSize);
+      try {
+        checkpoint.write(checkpointStream, getAttemptId(), offset);
+      } finally {
+        checkpointStream.close();
+      }
+      if (recoveryDirFS.exists(checkpointPath)) {
+        recoveryDirFS.delete(checkpointPath, false);
+      }
+      if (!recoveryDirFS.rename(tmpPath, checkpointPath)) {
+        throw new IOException("Failed to rename " + tmpPath + " to " + checkpointPath);
+      }
+      if (LOG.isDebugEnabled()) {
+        LOG.debug("Wrote recovery checkpoint"
+            + ", dagId=" + dagId
+            + ", offset=" + offset
+            + ", numEvents=" + checkpoint.getEvents().size());
+      }
+    } catch (IOException e) {
+      // Not critical, recovery falls back to an older checkpoint or to the full recovery log
+      LOG.warn("Error writing recovery checkpoint, dagId=" + dagId, e);
+    }
+  }
+
+  private int getAttemptId() {
+    return appContext.getApplicationAttemptId().getAttemptId();
+  }
+
+  /**
+   * Waits for the events which the AM acts on to be recorded, and fails the submission of a DAG
+   * whose submission could not be recorded. Failures to record other events are only flagged.
+   */
+  private void awaitSummaryEvent(DAGHistoryEvent event, ListenableFuture<Void> future)
+      throws IOException {
+    if (!DURABLE_BEFORE_RETURN_EVENTS.contains(event.getHistoryEvent().getEventType())) {
+      return;
+    }
+    try {
+      future.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      if (event.getHistoryEvent().getEventType().equals(HistoryEventType.DAG_SUBMITTED)) {
+        throw new IOException("Interrupted while recording DAG submission", e);
+      }
+    } catch (ExecutionException e) {
+      // Already logged and flagged as a fatal error
+      if (event.getHistoryEvent().getEventType().equals(HistoryEventType.DAG_SUBMITTED)) {
+        // Throw error to tell client that dag submission failed
+        throw e.getCause() instanceof IOException ? (IOException) e.getCause()
+            : new IOException(e.getCause());
+      }
+    }
+  }
+
   private void createFatalErrorFlagDir() throws IOException {
     Path fatalErrorDir = new Path(recoveryPath, RECOVERY_FATAL_OCCURRED_DIR);
     try {
@@ -454,6 +831,7 @@ public class RecoveryService extends AbstractService {
     ++unflushedEventsCount;
     outputStream.writeInt(event.getHistoryEvent().getEventType().ordinal());
     event.getHistoryEvent().toProtoStream(outputStream);
+    maybeCheckpoint(dagID, event.getHistoryEvent(), outputStream);
     if (!EnumSet.of(HistoryEventType.DAG_SUBMITTED,
         HistoryEventType.DAG_FINISHED).contains(eventType)) {
       maybeFlush(outputStream);
@@ -0,0 +1,152 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.tez.dag.api.client;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.EnumSet;
+import java.util.Set;
+
+import org.apache.tez.common.counters.TezCounters;
+import org.apache.tez.dag.api.records.DAGProtos.DAGStatusProto;
+import org.apache.tez.dag.api.records.DAGProtos.DAGStatusStateProto;
+import org.apache.tez.dag.api.records.DAGProtos.ProgressProto;
+import org.apache.tez.dag.api.records.DAGProtos.StringProgressPairProto;
+import org.apache.tez.dag.app.dag.DAG;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+public class TestDAGStatusTracker {
+
+  @SuppressWarnings("unchecked")
+  @Test(timeout = 5000)
+  public void testUpdatesCarryOnlyChanges() throws Exception {
+    DAGStatusProto running = createStatus(DAGStatusStateProto.DAG_RUNNING, 1, 0);
+    DAGStatusProto v2Progressed = createStatus(DAGStatusStateProto.DAG_RUNNING, 1, 2);
+    DAGStatusProto succeeded = createStatus(DAGStatusStateProto.DAG_SUCCEEDED, 3, 3);
+    DAGStatusBuilder statusBuilder = mock(DAGStatusBuilder.class);
+    DAG dag = createDAG();
+    when(dag.getDAGStatus(any(Set.class))).thenReturn(statusBuilder);
+    DAGStatusTracker tracker = new DAGStatusTracker(dag);
+    Set<StatusGetOpts> opts = EnumSet.noneOf(StatusGetOpts.class);
+
+    // The first update is the full status
+    when(statusBuilder.getProto()).thenReturn(running);
+    when(dag.getStatusChangeCount()).thenReturn(1L);
+    DAGStatusTracker.Update update = tracker.getUpdate(opts, 0, 1000);
+    Assert.assertEquals(1, update.getVersion());
+    Assert.assertEquals(running, update.getStatus());
+
+    // Only v2 progressed
+    when(statusBuilder.getProto()).thenReturn(v2Progressed);
+    when(dag.getStatusChangeCount()).thenReturn(2L);
+    update = tracker.getUpdate(opts, 1, 1000);
+    Assert.assertEquals(2, update.getVersion());
+    Assert.assertEquals(0, update.getStatus().getDiagnosticsCount());
+    Assert.assertEquals(1, update.getStatus().getVertexProgressCount());
+    Assert.assertEquals("v2", update.getStatus().getVertexProgress(0).getKey());
+
+    // Nothing changed until the timeout expired
+    update = tracker.getUpdate(opts, 2, 50);
+    Assert.assertEquals(2, update.getVersion());
+    Assert.assertEquals(DAGStatusStateProto.DAG_RUNNING, update.getStatus().getState());
+    Assert.assertEquals(0, update.getStatus().getVertexProgressCount());
+
+    when(statusBuilder.getProto()).thenReturn(succeeded);
+    when(dag.getStatusChangeCount()).thenReturn(3L);
+    update = tracker.getUpdate(opts, 2, 1000);
+    Assert.assertEquals(3, update.getVersion());
+    Assert.assertEquals(DAGStatusStateProto.DAG_SUCCEEDED, update.getStatus().getState());
+    Assert.assertEquals(2, update.getStatus().getVertexProgressCount());
+    // The status is built once per change of the DAG, and never with the counters
+    verify(dag, times(3)).getDAGStatus(any(Set.class));
+    verify(dag, never()).getAllCounters();
+  }
+
+  @SuppressWarnings("unchecked")
+  @Test(timeout = 5000)
+  public void testCountersSentOnlyWhenChanged() throws Exception {
+    DAGStatusBuilder statusBuilder = mock(DAGStatusBuilder.class);
+    DAG dag = createDAG();
+    when(dag.getDAGStatus(any(Set.class))).thenReturn(statusBuilder);
+    when(dag.getAllCounters()).thenReturn(new TezCounters());
+    DAGStatusTracker tracker = new DAGStatusTracker(dag);
+    Set<StatusGetOpts> opts = EnumSet.of(StatusGetOpts.GET_COUNTERS);
+
+    when(statusBuilder.getProto()).thenReturn(
+        createStatus(DAGStatusStateProto.DAG_RUNNING, 1, 0));
+    when(dag.getStatusChangeCount()).thenReturn(1L);
+    DAGStatusTracker.Update update = tracker.getUpdate(opts, 0, 1000);
+    Assert.assertTrue(update.getStatus().hasDagCounters());
+    verify(dag, times(1)).getAllCounters();
+
+    // A change is returned without delay, the client spaces out its requests
+    when(statusBuilder.getProto()).thenReturn(
+        createStatus(DAGStatusStateProto.DAG_RUNNING, 2, 0));
+    when(dag.getStatusChangeCount()).thenReturn(2L);
+    long start = System.currentTimeMillis();
+    update = tracker.getUpdate(opts, update.getVersion(), 1000);
+    Assert.assertTrue(System.currentTimeMillis() - start < 1000);
+    Assert.assertEquals(1, update.getStatus().getVertexProgressCount());
+    // Unchanged counters are not sent again
+    Assert.assertFalse(update.getStatus().hasDagCounters());
+    verify(dag, times(2)).getAllCounters();
+  }
+
+  private static DAG createDAG() throws Exception {
+    DAG dag = mock(DAG.class);
+    // Waits for the timeout, as no change is notified
+    when(dag.awaitStatusChange(anyLong(), anyLong())).thenAnswer(new Answer<Long>() {
+      @Override
+      public Long answer(InvocationOnMock invocation) throws Throwable {
+        Thread.sleep((Long) invocation.getArguments()[1]);
+        return (Long) invocation.getArguments()[0];
+      }
+    });
+    return dag;
+  }
+
+  private static DAGStatusProto createStatus(DAGStatusStateProto state, int v1Succeeded,
+      int v2Succeeded) {
+    return DAGStatusProto.newBuilder()
+        .setState(state)
+        .addDiagnostics("Diagnostics_0")
+        .setDAGProgress(createProgress(v1Succeeded + v2Succeeded))
+        .addVertexProgress(StringProgressPairProto.newBuilder().setKey("v1")
+            .setProgress(createProgress(v1Succeeded)))
+        .addVertexProgress(StringProgressPairProto.newBuilder().setKey("v2")
+            .setProgress(createProgress(v2Succeeded)))
+        .build();
+  }
+
+  private static ProgressProto createProgress(int succeeded) {
+    return ProgressProto.newBuilder()
+        .setTotalTaskCount(6)
+        .setSucceededTaskCount(succeeded)
+        .build();
+  }
+}
@@ -20,6 +20,7 @@ package org.apache.tez.dag.app;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -27,6 +28,8 @@ import java.util.Map;
 import java.util.Random;
 
 import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FSDataOutputStream;
 import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.yarn.api.records.ApplicationAttemptId;
@@ -36,6 +39,8 @@ import org.apache.hadoop.yarn.api.records.NodeId;
 import org.apache.hadoop.yarn.util.SystemClock;
 import org.apache.log4j.Level;
 import org.apache.log4j.LogManager;
+import org.apache.tez.common.TezCommonUtils;
+import org.apache.tez.dag.api.TezConfiguration;
 import org.apache.tez.dag.api.oldrecords.TaskAttemptState;
 import org.apache.tez.dag.api.oldrecords.TaskState;
 import org.apache.tez.dag.api.records.DAGProtos.DAGPlan;
@@ -49,6 +54,8 @@ import org.apache.tez.dag.app.dag.VertexState;
 import org.apache.tez.dag.app.dag.impl.DAGImpl;
 import org.apache.tez.dag.app.dag.impl.TestDAGImpl;
 import org.apache.tez.dag.history.DAGHistoryEvent;
+import org.apache.tez.dag.history.HistoryEvent;
+import org.apache.tez.dag.history.HistoryEventType;
 import org.apache.tez.dag.history.events.DAGCommitStartedEvent;
 import org.apache.tez.dag.history.events.DAGFinishedEvent;
 import org.apache.tez.dag.history.events.DAGInitializedEvent;
@@ -64,6 +71,7 @@ import org.apache.tez.dag.history.events.VertexGroupCommitFinishedEvent;
 import org.apache.tez.dag.history.events.VertexGroupCommitStartedEvent;
 import org.apache.tez.dag.history.events.VertexInitializedEvent;
 import org.apache.tez.dag.history.events.VertexStartedEvent;
+import org.apache.tez.dag.history.recovery.RecoveryCheckpoint;
 import org.apache.tez.dag.history.recovery.RecoveryService;
 import org.apache.tez.dag.records.TezDAGID;
 import org.apache.tez.dag.records.TezTaskAttemptID;
@@ -752,6 +760,173 @@ public class TestRecoveryParser {
     assertEquals(ta0t2v2FinishedEvent.getFinishTime(), ta0t2v2Data.getTaskAttemptFinishedEvent().getFinishTime());
   }
 
+  @Test(timeout=5000)
+  public void testRecoveryFromCheckpoint() throws IOException {
+    ApplicationId appId = ApplicationId.newInstance(System.currentTimeMillis(), 1);
+    TezDAGID dagID = TezDAGID.getInstance(appId, 1);
+    ApplicationAttemptId appAttemptId = ApplicationAttemptId.newInstance(appId, 1);
+    AppContext appContext = mock(AppContext.class);
+    when(appContext.getCurrentRecoveryDir()).thenReturn(new Path(recoveryPath+"/1"));
+    when(appContext.getClock()).thenReturn(new SystemClock());
+    when(appContext.getApplicationAttemptId()).thenReturn(appAttemptId);
+    when(mockDAGImpl.getID()).thenReturn(dagID);
+    when(appContext.getHadoopShim()).thenReturn(new DefaultHadoopShim());
+    when(appContext.getApplicationID()).thenReturn(appId);
+
+    RecoveryService rService = new RecoveryService(appContext);
+    Configuration conf = new Configuration();
+    conf.setBoolean(RecoveryService.TEZ_TEST_RECOVERY_DRAIN_EVENTS_WHEN_STOPPED, true);
+    conf.setInt(TezConfiguration.DAG_RECOVERY_CHECKPOINT_INTERVAL_EVENTS, 3);
+    rService.init(conf);
+    rService.start();
+
+    DAGPlan dagPlan = TestDAGImpl.createTestDAGPlan();
+    rService.handle(new DAGHistoryEvent(dagID,
+        new DAGSubmittedEvent(dagID, 1L, dagPlan, appAttemptId,
+            null, "user", new Configuration(), null)));
+    DAGInitializedEvent dagInitedEvent = new DAGInitializedEvent(dagID, 100L,
+        "user", "dagName", null);
+    rService.handle(new DAGHistoryEvent(dagID, dagInitedEvent));
+    rService.handle(new DAGHistoryEvent(dagID,
+        new DAGStartedEvent(dagID, 0L, "user", "dagName")));
+    TezVertexID v0Id = TezVertexID.getInstance(dagID, 0);
+    VertexInitializedEvent v0InitedEvent = new VertexInitializedEvent(
+        v0Id, "v0", 200L, 400L, 1, null, null, null, null);
+    rService.handle(new DAGHistoryEvent(dagID, v0InitedEvent));
+    VertexStartedEvent v0StartedEvent = new VertexStartedEvent(v0Id, 500L, 600L);
+    rService.handle(new DAGHistoryEvent(dagID, v0StartedEvent));
+    TezTaskID t0v0Id = TezTaskID.getInstance(v0Id, 0);
+    TaskStartedEvent t0v0StartedEvent = new TaskStartedEvent(t0v0Id, "v0", 700L, 800L);
+    rService.handle(new DAGHistoryEvent(dagID, t0v0StartedEvent));
+    // written after the last checkpoint
+    TezTaskAttemptID ta0t0v0Id = TezTaskAttemptID.getInstance(t0v0Id, 0);
+    TaskAttemptStartedEvent ta0t0v0StartedEvent = new TaskAttemptStartedEvent(ta0t0v0Id, "v0",
+        900L, ContainerId.newInstance(appAttemptId, 1), NodeId.newInstance("localhost", 9999),
+        "", "", "");
+    rService.handle(new DAGHistoryEvent(dagID, ta0t0v0StartedEvent));
+    rService.stop();
+
+    Path attemptPath = new Path(recoveryPath + "/1");
+    Path checkpointPath =
+        TezCommonUtils.getDAGRecoveryCheckpointPath(attemptPath, dagID.toString());
+    assertTrue(localFS.exists(checkpointPath));
+    FSDataInputStream checkpointStream = localFS.open(checkpointPath);
+    RecoveryCheckpoint checkpoint = RecoveryCheckpoint.read(checkpointStream);
+    checkpointStream.close();
+    assertEquals(1, checkpoint.getCoveredAttemptId());
+    assertEquals(6, checkpoint.getEvents().size());
+
+    // Corrupt the events covered by the checkpoint, they must not be read again
+    Path dagRecoveryPath = TezCommonUtils.getDAGRecoveryPath(attemptPath, dagID.toString());
+    byte[] data = new byte[(int) localFS.getFileStatus(dagRecoveryPath).getLen()];
+    FSDataInputStream in = localFS.open(dagRecoveryPath);
+    in.readFully(data);
+    in.close();
+    Arrays.fill(data, 0, (int) checkpoint.getCoveredOffset(), (byte) 0xff);
+    FSDataOutputStream out = localFS.create(dagRecoveryPath, true);
+    out.write(data);
+    out.close();
+
+    when(mockAppMaster.getConfig()).thenReturn(conf);
+    parser = new RecoveryParser(mockAppMaster, localFS, recoveryPath, 3);
+    DAGRecoveryData dagData = parser.parseRecoveryData();
+    assertFalse(dagData.nonRecoverable);
+    verify(mockAppMaster).createDAG(any(DAGPlan.class), any(TezDAGID.class));
+    assertEquals(dagInitedEvent.getInitTime(), dagData.getDAGInitializedEvent().getInitTime());
+    VertexRecoveryData v0Data = dagData.getVertexRecoveryData(v0Id);
+    assertEquals(v0StartedEvent.getStartTime(), v0Data.getVertexStartedEvent().getStartTime());
+    TaskRecoveryData t0v0Data = dagData.getTaskRecoveryData(t0v0Id);
+    assertEquals(t0v0StartedEvent.getStartTime(), t0v0Data.getTaskStartedEvent().getStartTime());
+    TaskAttemptRecoveryData ta0t0v0Data = dagData.getTaskAttemptRecoveryData(ta0t0v0Id);
+    assertEquals(ta0t0v0StartedEvent.getStartTime(),
+        ta0t0v0Data.getTaskAttemptStartedEvent().getStartTime());
+    // The recovered state seeds the checkpoints of the next attempt
+    assertEquals(7, dagData.checkpoint.getEvents().size());
+    assertEquals(3, dagData.checkpoint.getCoveredAttemptId());
+  }
+
+  @Test(timeout=5000)
+  public void testRecoveryDataOfVertexStartedBeforeInited() throws IOException {
+    ApplicationId appId = ApplicationId.newInstance(System.currentTimeMillis(), 1);
+    TezDAGID dagID = TezDAGID.getInstance(appId, 1);
+    ApplicationAttemptId appAttemptId = ApplicationAttemptId.newInstance(appId, 1);
+    AppContext appContext = mock(AppContext.class);
+    when(appContext.getCurrentRecoveryDir()).thenReturn(new Path(recoveryPath+"/1"));
+    when(appContext.getClock()).thenReturn(new SystemClock());
+    when(mockDAGImpl.getID()).thenReturn(dagID);
+    when(appContext.getHadoopShim()).thenReturn(new DefaultHadoopShim());
+    when(appContext.getApplicationID()).thenReturn(appId);
+
+    // write data in attempt_1
+    RecoveryService rService = new RecoveryService(appContext);
+    Configuration conf = new Configuration();
+    conf.setBoolean(RecoveryService.TEZ_TEST_RECOVERY_DRAIN_EVENTS_WHEN_STOPPED, true);
+    conf.setInt(TezConfiguration.DAG_RECOVERY_CHECKPOINT_INTERVAL_EVENTS, 100);
+    rService.init(conf);
+    rService.start();
+    DAGPlan dagPlan = TestDAGImpl.createTestDAGPlan();
+    rService.handle(new DAGHistoryEvent(dagID,
+        new DAGSubmittedEvent(dagID, 1L, dagPlan, appAttemptId,
+            null, "user", new Configuration(), null)));
+    rService.handle(new DAGHistoryEvent(dagID,
+        new DAGInitializedEvent(dagID, 100L, "user", "dagName", null)));
+    rService.handle(new DAGHistoryEvent(dagID,
+        new DAGStartedEvent(dagID, 0L, "user", "dagName")));
+    // v0 -> v2 -> v3, v1 -> v2
+    TezVertexID v0Id = TezVertexID.getInstance(dagID, 0);
+    TezVertexID v1Id = TezVertexID.getInstance(dagID, 1);
+    TezVertexID v2Id = TezVertexID.getInstance(dagID, 2);
+    TezVertexID v3Id = TezVertexID.getInstance(dagID, 3);
+    // v0 started while its initializer was still streaming its events
+    rService.handle(new DAGHistoryEvent(dagID, new VertexStartedEvent(v0Id, 200L, 300L)));
+    TezTaskID t0v0Id = TezTaskID.getInstance(v0Id, 0);
+    rService.handle(new DAGHistoryEvent(dagID, new TaskStartedEvent(t0v0Id, "v0", 300L, 400L)));
+    rService.handle(new DAGHistoryEvent(dagID,
+        new VertexInitializedEvent(v1Id, "v1", 200L, 300L, 1, null, null, null, null)));
+    rService.handle(new DAGHistoryEvent(dagID, new VertexStartedEvent(v1Id, 300L, 400L)));
+    rService.handle(new DAGHistoryEvent(dagID,
+        new VertexInitializedEvent(v2Id, "v2", 200L, 300L, 1, null, null, null, null)));
+    rService.handle(new DAGHistoryEvent(dagID,
+        new VertexInitializedEvent(v3Id, "v3", 200L, 300L, 1, null, null, null, null)));
+    rService.stop();
+
+    // write data in attempt_2, where v0 is initialized and started again
+    when(appContext.getCurrentRecoveryDir()).thenReturn(new Path(recoveryPath+"/2"));
+    rService = new RecoveryService(appContext);
+    rService.init(conf);
+    rService.start();
+    VertexInitializedEvent v0InitedEvent = new VertexInitializedEvent(
+        v0Id, "v0", 1200L, 1300L, 1, null, null, null, null);
+    rService.handle(new DAGHistoryEvent(dagID, v0InitedEvent));
+    VertexStartedEvent v0StartedEvent = new VertexStartedEvent(v0Id, 1400L, 1500L);
+    rService.handle(new DAGHistoryEvent(dagID, v0StartedEvent));
+    TaskStartedEvent t0v0StartedEvent = new TaskStartedEvent(t0v0Id, "v0", 1600L, 1700L);
+    rService.handle(new DAGHistoryEvent(dagID, t0v0StartedEvent));
+    rService.stop();
+
+    when(mockAppMaster.getConfig()).thenReturn(conf);
+    parser = new RecoveryParser(mockAppMaster, localFS, recoveryPath, 3);
+    DAGRecoveryData dagData = parser.parseRecoveryData();
+    assertFalse(dagData.nonRecoverable);
+    // v0 is recovered from the events of attempt_2 only
+    VertexRecoveryData v0Data = dagData.getVertexRecoveryData(v0Id);
+    assertEquals(v0InitedEvent.getInitedTime(), v0Data.getVertexInitedEvent().getInitedTime());
+    assertEquals(v0StartedEvent.getStartTime(), v0Data.getVertexStartedEvent().getStartTime());
+    assertEquals(t0v0StartedEvent.getStartTime(),
+        dagData.getTaskRecoveryData(t0v0Id).getTaskStartedEvent().getStartTime());
+    // v1 is not downstream of v0
+    assertNotNull(dagData.getVertexRecoveryData(v1Id));
+    // vertices downstream of v0 run again
+    assertNull(dagData.getVertexRecoveryData(v2Id));
+    assertNull(dagData.getVertexRecoveryData(v3Id));
+    for (HistoryEvent event : dagData.checkpoint.getEvents()) {
+      if (event.getEventType() == HistoryEventType.VERTEX_INITIALIZED) {
+        TezVertexID vertexId = ((VertexInitializedEvent) event).getVertexID();
+        assertFalse(vertexId.equals(v2Id) || vertexId.equals(v3Id));
+      }
+    }
+  }
+
   // Simulate the behavior that summary event is written 
   // but non-summary is not written to hdfs
   public static class MockRecoveryService extends RecoveryService{
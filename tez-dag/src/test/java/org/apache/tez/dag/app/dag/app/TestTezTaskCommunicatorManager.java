@@ -14,12 +14,20 @@
 
 package org.apache.tez.dag.app.dag.app;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNull;
+import static org.mockito.Matchers.any;
 import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
 import static org.mockito.Mockito.verify;
 
 import java.io.IOException;
+import java.util.Collections;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.security.Credentials;
@@ -28,10 +36,22 @@ import org.apache.hadoop.yarn.api.records.ApplicationId;
 import org.apache.hadoop.yarn.api.records.ContainerId;
 import org.apache.tez.common.ContainerContext;
 import org.apache.tez.common.ContainerTask;
+import org.apache.tez.common.TezTaskUmbilicalProtocol;
 import org.apache.tez.common.TezUtils;
+import org.apache.tez.dag.api.TezConfiguration;
 import org.apache.tez.dag.api.UserPayload;
 import org.apache.tez.dag.app.TezTaskCommunicatorImpl;
+import org.apache.tez.dag.records.TezDAGID;
+import org.apache.tez.dag.records.TezTaskAttemptID;
+import org.apache.tez.dag.records.TezTaskID;
+import org.apache.tez.dag.records.TezVertexID;
+import org.apache.tez.runtime.api.impl.TaskSpec;
+import org.apache.tez.runtime.api.impl.TezEvent;
+import org.apache.tez.runtime.api.impl.TezHeartbeatRequest;
+import org.apache.tez.runtime.api.impl.TezHeartbeatResponse;
 import org.apache.tez.serviceplugins.api.TaskCommunicatorContext;
+import org.apache.tez.serviceplugins.api.TaskHeartbeatRequest;
+import org.apache.tez.serviceplugins.api.TaskHeartbeatResponse;
 import org.junit.Test;
 
 public class TestTezTaskCommunicatorManager {
@@ -64,6 +84,59 @@ public class TestTezTaskCommunicatorManager {
     verify(context).containerAlive(containerId);
   }
 
+  @Test (timeout = 5000)
+  public void testHeldHeartbeatReleased() throws Exception {
+    TaskCommunicatorContext context = mock(TaskCommunicatorContext.class);
+    Configuration conf = new Configuration(false);
+    // Held for longer than the test timeout, unless released
+    conf.setInt(TezConfiguration.TEZ_TASK_AM_HEARTBEAT_LONG_POLL_TIMEOUT_MS, 60000);
+    conf.setInt(TezConfiguration.TEZ_TASK_AM_HEARTBEAT_LONG_POLL_CHECK_INTERVAL_MS, 60000);
+    UserPayload userPayload = TezUtils.createUserPayloadFromConf(conf);
+
+    ApplicationId appId = ApplicationId.newInstance(1000, 1);
+    ApplicationAttemptId appAttemptId = ApplicationAttemptId.newInstance(appId, 1);
+    final ContainerId containerId = createContainerId(appId, 1);
+    final TezTaskAttemptID taskAttemptId = TezTaskAttemptID.getInstance(TezTaskID.getInstance(
+        TezVertexID.getInstance(TezDAGID.getInstance(appId, 1), 1), 1), 1);
+
+    doReturn(appAttemptId).when(context).getApplicationAttemptId();
+    doReturn(userPayload).when(context).getInitialUserPayload();
+    doReturn(new Credentials()).when(context).getAMCredentials();
+    doReturn(new TaskHeartbeatResponse(false, Collections.<TezEvent>emptyList(), 0, 0))
+        .when(context).heartbeat(any(TaskHeartbeatRequest.class));
+
+    TezTaskCommunicatorImpl taskComm = new TezTaskCommunicatorImpl(context);
+    final TezTaskUmbilicalProtocol umbilical = taskComm.getUmbilical();
+    TaskSpec taskSpec = mock(TaskSpec.class);
+    doReturn(taskAttemptId).when(taskSpec).getTaskAttemptID();
+    taskComm.registerRunningContainer(containerId, "fakehost", 0);
+    taskComm.registerRunningTaskAttempt(containerId, taskSpec, null, null, false, 0);
+
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      Future<TezHeartbeatResponse> heldHeartbeat = executor.submit(
+          new Callable<TezHeartbeatResponse>() {
+            @Override
+            public TezHeartbeatResponse call() throws Exception {
+              return umbilical.heartbeat(new TezHeartbeatRequest(1,
+                  Collections.<TezEvent>emptyList(), 0, containerId.toString(), taskAttemptId,
+                  0, 100));
+            }
+          });
+      verify(context, timeout(2000)).heartbeat(any(TaskHeartbeatRequest.class));
+      umbilical.releaseHeartbeat(containerId.toString(), 1);
+      assertEquals(1, heldHeartbeat.get().getLastRequestId());
+
+      // Released before it arrives, the heartbeat is not held at all
+      umbilical.releaseHeartbeat(containerId.toString(), 2);
+      assertEquals(2, umbilical.heartbeat(new TezHeartbeatRequest(2,
+          Collections.<TezEvent>emptyList(), 0, containerId.toString(), taskAttemptId, 0, 100))
+          .getLastRequestId());
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
   @SuppressWarnings("deprecation")
   private ContainerId createContainerId(ApplicationId applicationId, int containerIdx) {
     ApplicationAttemptId appAttemptId = ApplicationAttemptId.newInstance(applicationId, 1);
@@ -719,6 +719,35 @@ public class TestDAGRecovery {
     assertEquals(VertexState.INITED, v3.getState());
   }
   
+  /**
+   * RecoveryEvents:
+   *  DAG:  DAGInitedEvent -> DAGStartedEvent 
+   *  V1:   VertexReconfigrationDoneEvent
+   * 
+   * As logged by an AM which stopped while an initializer of V1 was still streaming its events:
+   * the VertexInitializedEvent, and so the start of V1, wait for the last batch.
+   * Reinitialize V1 again, so that no task runs with events missing from the recovery log.
+   */
+  @Test(timeout=5000)
+  public void testVertexRecoverFromReconfigureDoneWithoutInited() {
+    initMockDAGRecoveryDataForVertex();
+    VertexConfigurationDoneEvent v1ReconfigureDoneEvent = new VertexConfigurationDoneEvent(v1Id, 
+        0L, v1NumTask, null, null, null, true);
+    VertexRecoveryData vertexRecoveryData = new VertexRecoveryData(null,
+        v1ReconfigureDoneEvent, null, null, new HashMap<TezTaskID, TaskRecoveryData>(), false);
+    doReturn(vertexRecoveryData).when(dagRecoveryData).getVertexRecoveryData(v1Id);
+
+    DAGEventRecoverEvent recoveryEvent = new DAGEventRecoverEvent(dagId, dagRecoveryData);
+    dag.handle(recoveryEvent);
+    dispatcher.await();
+
+    assertEquals(DAGState.RUNNING, dag.getState());
+    VertexImpl v1 = (VertexImpl)dag.getVertex("vertex1");
+    VertexImpl v3 = (VertexImpl)dag.getVertex("vertex3");
+    assertEquals(VertexState.INITIALIZING, v1.getState());
+    assertEquals(VertexState.INITED, v3.getState());
+  }
+
   /**
    * RecoveryEvents:
    *  DAG:  DAGInitedEvent -> DAGStartedEvent 
@@ -35,7 +35,11 @@ import com.google.common.collect.Lists;
 
 import static org.mockito.Mockito.*;
 
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 public class TestDAGScheduler {
 
@@ -195,7 +199,71 @@ public class TestDAGScheduler {
     scheduled++;
 
   }
-  
-  
-  
+
+  @Test(timeout=5000)
+  public void testDAGSchedulerCriticalPath() {
+    MockEventHandler mockEventHandler = new MockEventHandler();
+    DAG mockDag = mock(DAG.class);
+    // v0 is a leaf, v1 feeds the larger v2
+    Vertex v0 = createMockVertex(mockDag, 0, 0, 10);
+    Vertex v1 = createMockVertex(mockDag, 1, 0, 2);
+    Vertex v2 = createMockVertex(mockDag, 2, 1, 20);
+    Map<TezVertexID, Vertex> vertices = new HashMap<TezVertexID, Vertex>();
+    for (Vertex v : Arrays.asList(v0, v1, v2)) {
+      vertices.put(v.getVertexId(), v);
+    }
+    when(mockDag.getVertices()).thenReturn(vertices);
+    when(v1.getOutputVertices()).thenReturn(Collections.<Vertex, Edge>singletonMap(v2, null));
+    when(mockDag.getSuccessfulVertices()).thenReturn(0);
+
+    DAGScheduler scheduler = new DAGSchedulerCriticalPath(mockDag, mockEventHandler);
+    // By task counts, the path through v1 is the critical one
+    scheduler.scheduleTaskEx(createScheduleEvent(v1));
+    Assert.assertEquals(1, mockEventHandler.event.getPriorityHighLimit());
+    Assert.assertEquals(3, mockEventHandler.event.getPriorityLowLimit());
+    scheduler.scheduleTaskEx(createScheduleEvent(v0));
+    Assert.assertEquals(7, mockEventHandler.event.getPriorityHighLimit());
+    Assert.assertEquals(9, mockEventHandler.event.getPriorityLowLimit());
+
+    // v1 completes. Half of v2 is done with short tasks, half of v0 with long ones
+    when(v1.getCompletedTasks()).thenReturn(2);
+    when(v0.getCompletedTasks()).thenReturn(5);
+    when(v0.getVertexStats()).thenReturn(createVertexStats(5, 10000));
+    when(v2.getCompletedTasks()).thenReturn(10);
+    when(v2.getVertexStats()).thenReturn(createVertexStats(10, 10));
+    when(mockDag.getSuccessfulVertices()).thenReturn(1);
+    scheduler.scheduleTaskEx(createScheduleEvent(v2));
+    Assert.assertEquals(7, mockEventHandler.event.getPriorityHighLimit());
+    Assert.assertEquals(9, mockEventHandler.event.getPriorityLowLimit());
+    scheduler.scheduleTaskEx(createScheduleEvent(v0));
+    Assert.assertEquals(1, mockEventHandler.event.getPriorityHighLimit());
+    Assert.assertEquals(3, mockEventHandler.event.getPriorityLowLimit());
+  }
+
+  private Vertex createMockVertex(DAG mockDag, int id, int distanceFromRoot, int numTasks) {
+    TezVertexID vId = TezVertexID.fromString("vertex_1436907267600_195589_1_0" + id);
+    Vertex mockVertex = mock(Vertex.class);
+    when(mockVertex.getVertexId()).thenReturn(vId);
+    when(mockVertex.getDistanceFromRoot()).thenReturn(distanceFromRoot);
+    when(mockVertex.getTotalTasks()).thenReturn(numTasks);
+    when(mockVertex.getOutputVertices()).thenReturn(Collections.<Vertex, Edge>emptyMap());
+    when(mockDag.getVertex(vId)).thenReturn(mockVertex);
+    return mockVertex;
+  }
+
+  private DAGEventSchedulerUpdate createScheduleEvent(Vertex vertex) {
+    TaskAttempt mockAttempt = mock(TaskAttempt.class);
+    TezTaskID taskId = TezTaskID.getInstance(vertex.getVertexId(), 0);
+    when(mockAttempt.getID()).thenReturn(TezTaskAttemptID.getInstance(taskId, 0));
+    when(mockAttempt.getVertexID()).thenReturn(vertex.getVertexId());
+    return new DAGEventSchedulerUpdate(
+        DAGEventSchedulerUpdate.UpdateType.TA_SCHEDULE, mockAttempt);
+  }
+
+  private VertexStats createVertexStats(int numSucceededTasks, double avgTaskDuration) {
+    VertexStats stats = new VertexStats();
+    stats.numSuccessfulTasks = numSucceededTasks;
+    stats.avgTaskDuration = avgTaskDuration;
+    return stats;
+  }
 }
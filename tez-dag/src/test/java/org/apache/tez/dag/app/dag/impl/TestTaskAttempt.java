@@ -103,6 +103,7 @@ import org.apache.tez.dag.app.rm.AMSchedulerEventTAEnded;
 import org.apache.tez.dag.app.rm.AMSchedulerEventTALaunchRequest;
 import org.apache.tez.dag.app.rm.container.AMContainerMap;
 import org.apache.tez.dag.app.rm.container.ContainerContextMatcher;
+import org.apache.tez.dag.app.rm.node.AMNodeEventType;
 import org.apache.tez.dag.history.DAGHistoryEvent;
 import org.apache.tez.dag.history.HistoryEventHandler;
 import org.apache.tez.dag.history.events.TaskAttemptFinishedEvent;
@@ -1553,9 +1554,18 @@ public class TestTaskAttempt {
     Assert.assertEquals(finishTime, newFinishTime);
 
     assertEquals(true, taImpl.inputFailedReported);
-    int expectedEventsAfterFetchFailure = expectedEventsTillSucceeded + 2;
+    // Includes one node event per destination reporting an error
+    int expectedEventsAfterFetchFailure = expectedEventsTillSucceeded + 4;
     arg.getAllValues().clear();
     verify(eventHandler, times(expectedEventsAfterFetchFailure)).handle(arg.capture());
+    int nodeEvents = 0;
+    for (Event event : arg.getAllValues().subList(expectedEventsTillSucceeded,
+        expectedEventsAfterFetchFailure)) {
+      if (event.getType() == AMNodeEventType.N_TA_OUTPUT_FAILED) {
+        nodeEvents++;
+      }
+    }
+    assertEquals(2, nodeEvents);
     Event e = verifyEventType(
         arg.getAllValues().subList(expectedEventsTillSucceeded,
             expectedEventsAfterFetchFailure), TaskEventTAFailed.class, 1);
@@ -171,6 +171,7 @@ import org.apache.tez.dag.app.rm.container.ContainerContextMatcher;
 import org.apache.tez.dag.history.DAGHistoryEvent;
 import org.apache.tez.dag.history.HistoryEventHandler;
 import org.apache.tez.dag.history.HistoryEventType;
+import org.apache.tez.dag.history.events.VertexInitializedEvent;
 import org.apache.tez.dag.library.vertexmanager.InputReadyVertexManager;
 import org.apache.tez.dag.library.vertexmanager.ShuffleVertexManager;
 import org.apache.tez.dag.records.TaskAttemptTerminationCause;
@@ -209,6 +210,7 @@ import org.junit.Before;
 import org.junit.BeforeClass;
 import org.junit.Ignore;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mockito;
 import org.mockito.internal.util.collections.Sets;
 
@@ -5242,6 +5244,122 @@ public class TestVertexImpl {
     Assert.assertEquals(2, v1.numInitializerCompletionsHandled);
   }
 
+  @Test(timeout = 5000)
+  public void testVertexWithStreamingInitializer() throws Exception {
+    useCustomInitializer = true;
+    setupPreDagCreation();
+    dagPlan = createDAGPlanWithInputInitializer("TestInputInitializer");
+    setupPostDagCreation();
+
+    VertexImplWithControlledInitializerManager v1 = (VertexImplWithControlledInitializerManager) vertices
+        .get("vertex1");
+    dispatcher.getEventHandler().handle(
+        new VertexEvent(v1.getVertexId(), VertexEventType.V_INIT));
+    dispatcher.await();
+    Assert.assertEquals(VertexState.INITIALIZING, v1.getState());
+    RootInputInitializerManagerControlled initializerManager1 = v1.getRootInputInitializerManager();
+
+    // first batch configures the parallelism, and carries the splits of 2 tasks
+    List<Event> events = Lists.newLinkedList();
+    events.add(InputConfigureVertexTasksEvent.create(5,
+        VertexLocationHint.create(createTaskLocationHints(5)), null));
+    for (int i = 0; i < 2; i++) {
+      events.add(InputDataInformationEvent.createWithSerializedPayload(i, null));
+    }
+    initializerManager1.sendInputEvents(0, events, true);
+    Assert.assertEquals(VertexState.INITED, v1.getState());
+    Assert.assertEquals(5, v1.getTotalTasks());
+    Assert.assertEquals(false, initializerManager1.hasShutDown);
+
+    // the vertex starts, and its manager schedules its tasks, while its initializer is still
+    // streaming
+    dispatcher.getEventHandler().handle(new VertexEvent(v1.getVertexId(), VertexEventType.V_START));
+    dispatcher.await();
+    Assert.assertEquals(VertexState.RUNNING, v1.getState());
+    for (int i=0; i<v1.getTotalTasks(); ++i) {
+      Assert.assertEquals(TaskState.SCHEDULED, v1.getTask(i).getState());
+      Assert.assertEquals(i < 2 ? 1 : 0,
+          v1.getTaskAttemptTezEvents(TezTaskAttemptID.getInstance(v1.getTask(i).getTaskId(), 0),
+              0, 0, 100).getEvents().size());
+    }
+    Assert.assertEquals(false, initializerManager1.hasShutDown);
+    ArgumentCaptor<DAGHistoryEvent> argCaptor = ArgumentCaptor.forClass(DAGHistoryEvent.class);
+    verify(historyEventHandler, atLeast(1)).handle(argCaptor.capture());
+    verifyHistoryEvents(argCaptor.getAllValues(), HistoryEventType.VERTEX_INITIALIZED, 0);
+    verifyHistoryEvents(argCaptor.getAllValues(), HistoryEventType.VERTEX_STARTED, 1);
+
+    // a further batch is routed to the scheduled tasks
+    events = Lists.newLinkedList();
+    for (int i = 2; i < 5; i++) {
+      events.add(InputDataInformationEvent.createWithSerializedPayload(i, null));
+    }
+    initializerManager1.sendInputEvents(0, events, true);
+    Assert.assertEquals(VertexState.RUNNING, v1.getState());
+    for (int i=0; i<v1.getTotalTasks(); ++i) {
+      Assert.assertEquals(1,
+          v1.getTaskAttemptTezEvents(TezTaskAttemptID.getInstance(v1.getTask(i).getTaskId(), 0),
+              0, 0, 100).getEvents().size());
+    }
+
+    // the vertex does not succeed before its initializer completes
+    completeAllTasksSuccessfully(v1);
+    Assert.assertEquals(VertexState.RUNNING, v1.getState());
+
+    // last batch, returned by initialize(), logs the VertexInitializedEvent
+    initializerManager1.sendInputEvents(0, Lists.<Event>newLinkedList(), false);
+    Assert.assertEquals(VertexState.SUCCEEDED, v1.getState());
+    Assert.assertEquals(true, initializerManager1.hasShutDown);
+
+    argCaptor = ArgumentCaptor.forClass(DAGHistoryEvent.class);
+    verify(historyEventHandler, atLeast(1)).handle(argCaptor.capture());
+    List<DAGHistoryEvent> historyEvents = argCaptor.getAllValues();
+    verifyHistoryEvents(historyEvents, HistoryEventType.VERTEX_INITIALIZED, 1);
+    verifyHistoryEvents(historyEvents, HistoryEventType.VERTEX_STARTED, 1);
+    for (DAGHistoryEvent historyEvent : historyEvents) {
+      if (historyEvent.getHistoryEvent().getEventType() == HistoryEventType.VERTEX_INITIALIZED) {
+        // recovery of the vertex gets every event generated by the initializer
+        Assert.assertEquals(5, ((VertexInitializedEvent) historyEvent.getHistoryEvent())
+            .getInitGeneratedEvents().size());
+      }
+    }
+  }
+
+  @Test(timeout = 5000)
+  public void testStreamingInitializerKilledWhileRunning() throws Exception {
+    useCustomInitializer = true;
+    setupPreDagCreation();
+    dagPlan = createDAGPlanWithInputInitializer("TestInputInitializer");
+    setupPostDagCreation();
+
+    VertexImplWithControlledInitializerManager v1 = (VertexImplWithControlledInitializerManager) vertices
+        .get("vertex1");
+    dispatcher.getEventHandler().handle(
+        new VertexEvent(v1.getVertexId(), VertexEventType.V_INIT));
+    dispatcher.await();
+    RootInputInitializerManagerControlled initializerManager1 = v1.getRootInputInitializerManager();
+    List<Event> events = Lists.newLinkedList();
+    events.add(InputConfigureVertexTasksEvent.create(2,
+        VertexLocationHint.create(createTaskLocationHints(2)), null));
+    events.add(InputDataInformationEvent.createWithSerializedPayload(0, null));
+    initializerManager1.sendInputEvents(0, events, true);
+    dispatcher.getEventHandler().handle(new VertexEvent(v1.getVertexId(), VertexEventType.V_START));
+    dispatcher.await();
+    Assert.assertEquals(VertexState.RUNNING, v1.getState());
+
+    v1.handle(new VertexEventTermination(v1.getVertexId(), VertexTerminationCause.DAG_TERMINATED));
+    dispatcher.await();
+    Assert.assertEquals(VertexState.KILLED, v1.getState());
+
+    // the last batch arrives after the kill and is dropped
+    events = Lists.newLinkedList();
+    events.add(InputDataInformationEvent.createWithSerializedPayload(1, null));
+    initializerManager1.sendInputEvents(0, events, false);
+    Assert.assertEquals(VertexState.KILLED, v1.getState());
+    ArgumentCaptor<DAGHistoryEvent> argCaptor = ArgumentCaptor.forClass(DAGHistoryEvent.class);
+    verify(historyEventHandler, atLeast(1)).handle(argCaptor.capture());
+    verifyHistoryEvents(argCaptor.getAllValues(), HistoryEventType.VERTEX_INITIALIZED, 0);
+  }
+
   @Test(timeout = 500000)
   public void testVertexWithInitializerSuccess() throws Exception {
     useCustomInitializer = true;
@@ -5746,6 +5864,12 @@ public class TestVertexImpl {
       dispatcher.await();
     }
 
+    public void sendInputEvents(int initializerIndex, List<Event> events, boolean partial) {
+      eventHandler.handle(new VertexEventRootInputInitialized(vertexID, inputs
+          .get(initializerIndex).getName(), events, partial));
+      dispatcher.await();
+    }
+
     public void completeInputInitialization(int initializerIndex, int targetTasks,
         List<TaskLocationHint> locationHints) {
       List<Event> events = Lists.newArrayListWithCapacity(targetTasks + 1);
@@ -0,0 +1,124 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.tez.dag.app.launcher;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.util.Collections;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.yarn.api.ContainerManagementProtocol;
+import org.apache.hadoop.yarn.api.protocolrecords.StartContainersRequest;
+import org.apache.hadoop.yarn.api.protocolrecords.StartContainersResponse;
+import org.apache.hadoop.yarn.api.protocolrecords.StopContainersRequest;
+import org.apache.hadoop.yarn.api.protocolrecords.StopContainersResponse;
+import org.apache.hadoop.yarn.api.records.ApplicationAttemptId;
+import org.apache.hadoop.yarn.api.records.ApplicationId;
+import org.apache.hadoop.yarn.api.records.ContainerId;
+import org.apache.hadoop.yarn.api.records.ContainerLaunchContext;
+import org.apache.hadoop.yarn.api.records.NodeId;
+import org.apache.hadoop.yarn.api.records.SerializedException;
+import org.apache.hadoop.yarn.api.records.Token;
+import org.apache.hadoop.yarn.client.api.impl.ContainerManagementProtocolProxy.ContainerManagementProtocolProxyData;
+import org.apache.hadoop.yarn.util.Records;
+import org.apache.tez.common.TezUtils;
+import org.apache.tez.dag.api.TezConfiguration;
+import org.apache.tez.serviceplugins.api.ContainerLaunchRequest;
+import org.apache.tez.serviceplugins.api.ContainerLauncherContext;
+import org.apache.tez.serviceplugins.api.ContainerStopRequest;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+public class TestTezContainerLauncherImpl {
+
+  private static class TezContainerLauncherForTest extends TezContainerLauncherImpl {
+    private final ContainerManagementProtocolProxyData proxy;
+
+    TezContainerLauncherForTest(ContainerLauncherContext context,
+        ContainerManagementProtocolProxyData proxy) {
+      super(context);
+      this.proxy = proxy;
+    }
+
+    @Override
+    protected ContainerManagementProtocolProxyData getCMProxy(ContainerId containerID,
+        String containerManagerBindAddr, Token containerToken) throws IOException {
+      return proxy;
+    }
+  }
+
+  @Test(timeout = 10000)
+  public void testBatchedLaunchesAndStops() throws Exception {
+    Configuration conf = new Configuration(false);
+    conf.setInt(TezConfiguration.TEZ_AM_CONTAINERLAUNCHER_BATCH_SIZE, 10);
+    ContainerLauncherContext context = mock(ContainerLauncherContext.class);
+    when(context.getInitialUserPayload()).thenReturn(TezUtils.createUserPayloadFromConf(conf));
+    when(context.getNumNodes(anyString())).thenReturn(1);
+
+    ContainerManagementProtocol protocol = mock(ContainerManagementProtocol.class);
+    StartContainersResponse startResponse = mock(StartContainersResponse.class);
+    when(startResponse.getFailedRequests())
+        .thenReturn(Collections.<ContainerId, SerializedException>emptyMap());
+    when(protocol.startContainers(any(StartContainersRequest.class))).thenReturn(startResponse);
+    StopContainersResponse stopResponse = mock(StopContainersResponse.class);
+    when(stopResponse.getFailedRequests())
+        .thenReturn(Collections.<ContainerId, SerializedException>emptyMap());
+    when(protocol.stopContainers(any(StopContainersRequest.class))).thenReturn(stopResponse);
+    ContainerManagementProtocolProxyData proxy = mock(ContainerManagementProtocolProxyData.class);
+    when(proxy.getContainerManagementProtocol()).thenReturn(protocol);
+
+    TezContainerLauncherImpl launcher = new TezContainerLauncherForTest(context, proxy);
+    ApplicationAttemptId attemptId =
+        ApplicationAttemptId.newInstance(ApplicationId.newInstance(1000, 1), 1);
+    NodeId nodeId = NodeId.newInstance("host", 1234);
+    Token token = mock(Token.class);
+    // Queued before the launcher starts, so that all of them are taken at once
+    for (int i = 1; i <= 3; ++i) {
+      launcher.launchContainer(new ContainerLaunchRequest(nodeId,
+          ContainerId.newInstance(attemptId, i), token,
+          Records.newRecord(ContainerLaunchContext.class), null, "scheduler", "taskComm"));
+    }
+    for (int i = 1; i <= 3; ++i) {
+      launcher.stopContainer(new ContainerStopRequest(nodeId,
+          ContainerId.newInstance(attemptId, i), token, "scheduler", "taskComm"));
+    }
+    launcher.start();
+    try {
+      verify(context, timeout(5000).times(3)).containerStopRequested(any(ContainerId.class));
+      ArgumentCaptor<StopContainersRequest> stopCaptor =
+          ArgumentCaptor.forClass(StopContainersRequest.class);
+      verify(protocol, times(1)).stopContainers(stopCaptor.capture());
+      assertEquals(3, stopCaptor.getValue().getContainerIds().size());
+
+      ArgumentCaptor<StartContainersRequest> startCaptor =
+          ArgumentCaptor.forClass(StartContainersRequest.class);
+      verify(protocol, times(1)).startContainers(startCaptor.capture());
+      assertEquals(3, startCaptor.getValue().getStartContainerRequests().size());
+      verify(context, times(3)).containerLaunched(any(ContainerId.class));
+      assertEquals(3, launcher.getLaunchQueueLatencies().getCount());
+      assertEquals(1, launcher.getLaunchCallLatencies().getCount());
+    } finally {
+      launcher.shutdown();
+    }
+  }
+}
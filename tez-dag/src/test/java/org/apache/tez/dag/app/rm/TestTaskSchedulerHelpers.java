@@ -20,6 +20,7 @@ package org.apache.tez.dag.app.rm;
 
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.spy;
 import static org.mockito.Mockito.when;
@@ -56,6 +57,7 @@ import org.apache.hadoop.yarn.api.records.ContainerId;
 import org.apache.hadoop.yarn.api.records.ContainerStatus;
 import org.apache.hadoop.yarn.api.records.FinalApplicationStatus;
 import org.apache.hadoop.yarn.api.records.LocalResource;
+import org.apache.hadoop.yarn.api.records.NodeId;
 import org.apache.hadoop.yarn.api.records.NodeReport;
 import org.apache.hadoop.yarn.api.records.Resource;
 import org.apache.hadoop.yarn.client.api.AMRMClient;
@@ -327,6 +329,11 @@ class TestTaskSchedulerHelpers {
       return real.getContainerSignatureMatcher();
     }
 
+    @Override
+    public float getNodeHealthScore(NodeId nodeId) {
+      return real.getNodeHealthScore(nodeId);
+    }
+
     @Override
     public ApplicationAttemptId getApplicationAttemptId() {
       return real.getApplicationAttemptId();
@@ -558,6 +565,7 @@ class TestTaskSchedulerHelpers {
     }
     when(mockContext.getInitialUserPayload()).thenReturn(userPayload);
     when(mockContext.isSession()).thenReturn(isSession);
+    when(mockContext.getNodeHealthScore(any(NodeId.class))).thenReturn(1.0f);
     if (containerSignatureMatcher != null) {
       when(mockContext.getContainerSignatureMatcher())
           .thenReturn(containerSignatureMatcher);
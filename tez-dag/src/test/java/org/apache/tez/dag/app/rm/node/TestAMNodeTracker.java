@@ -28,10 +28,12 @@ import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.mock;
 
 import java.util.List;
+import java.util.Set;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.yarn.api.records.ApplicationId;
 import org.apache.hadoop.yarn.api.records.ContainerId;
 import org.apache.hadoop.yarn.api.records.NodeId;
 import org.apache.hadoop.yarn.api.records.NodeReport;
@@ -42,18 +44,25 @@ import org.apache.hadoop.yarn.event.Event;
 import org.apache.hadoop.yarn.event.EventHandler;
 import org.apache.tez.dag.api.TezConfiguration;
 import org.apache.tez.dag.app.AppContext;
+import org.apache.tez.dag.app.dag.event.TaskAttemptEventNodeFailed;
+import org.apache.tez.dag.app.dag.event.TaskAttemptEventType;
 import org.apache.tez.dag.app.rm.AMSchedulerEventNodeBlacklistUpdate;
 import org.apache.tez.dag.app.rm.AMSchedulerEventType;
 import org.apache.tez.dag.app.rm.TaskSchedulerManager;
 import org.apache.tez.dag.app.rm.container.AMContainerEventNodeFailed;
 import org.apache.tez.dag.app.rm.container.AMContainerEventType;
 import org.apache.tez.dag.app.rm.container.AMContainerMap;
+import org.apache.tez.dag.records.TaskAttemptTerminationCause;
+import org.apache.tez.dag.records.TezDAGID;
 import org.apache.tez.dag.records.TezTaskAttemptID;
+import org.apache.tez.dag.records.TezTaskID;
+import org.apache.tez.dag.records.TezVertexID;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 
 import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
 
 @SuppressWarnings({ "resource", "rawtypes" })
 public class TestAMNodeTracker {
@@ -125,6 +134,146 @@ public class TestAMNodeTracker {
     // the log message for verification.
   }
 
+  @Test(timeout=5000)
+  public void testNodeHealthScore() {
+    AppContext appContext = mock(AppContext.class);
+    AMNodeTracker amNodeTracker = new AMNodeTracker(eventHandler, appContext);
+    doReturn(amNodeTracker).when(appContext).getNodeTracker();
+    amNodeTracker.init(new Configuration(false));
+    amNodeTracker.start();
+
+    NodeId nodeId = NodeId.newInstance("host1", 2342);
+    NodeId nodeId2 = NodeId.newInstance("host2", 2342);
+    amNodeTracker.nodeSeen(nodeId, 0);
+    amNodeTracker.nodeSeen(nodeId2, 0);
+    assertEquals(1.0f, amNodeTracker.getHealthScore(nodeId, 0), 0.001f);
+    // Unknown nodes are considered healthy
+    assertEquals(1.0f, amNodeTracker.getHealthScore(NodeId.newInstance("host3", 2342), 0), 0.001f);
+
+    TezVertexID vertexId = TezVertexID.getInstance(
+        TezDAGID.getInstance(ApplicationId.newInstance(1000, 1), 1), 1);
+    ContainerId cId = mock(ContainerId.class);
+    amNodeTracker.handle(new AMNodeEventContainerAllocated(nodeId, 0, cId));
+    amNodeTracker.handle(new AMNodeEventTaskAttemptEnded(nodeId, 0, cId,
+        TezTaskAttemptID.getInstance(TezTaskID.getInstance(vertexId, 0), 0), true));
+    amNodeTracker.handle(new AMNodeEvent(nodeId, 0, AMNodeEventType.N_CONTAINER_LAUNCH_FAILED));
+    dispatcher.await();
+    assertEquals(0.6f, amNodeTracker.getHealthScore(nodeId, 0), 0.001f);
+    assertFalse(amNodeTracker.isDegraded(nodeId, 0));
+
+    // An attempt much slower than its peers of the same vertex is penalized
+    for (int i = 1; i <= AMNodeTracker.MIN_PEER_ATTEMPTS; ++i) {
+      amNodeTracker.handle(new AMNodeEventTaskAttemptSucceeded(nodeId2, 0, cId,
+          TezTaskAttemptID.getInstance(TezTaskID.getInstance(vertexId, i), 0), 1000));
+    }
+    TezTaskAttemptID slowAttempt =
+        TezTaskAttemptID.getInstance(TezTaskID.getInstance(vertexId, 10), 0);
+    amNodeTracker.handle(new AMNodeEventTaskAttemptSucceeded(nodeId, 0, cId, slowAttempt, 5000));
+    amNodeTracker.handle(new AMNodeEventTaskAttemptOutputFailed(nodeId, 0, slowAttempt,
+        TezTaskAttemptID.getInstance(TezTaskID.getInstance(vertexId, 20), 0)));
+    dispatcher.await();
+    // Recovery from the success, penalties for the slow attempt and the failed output
+    assertEquals(0.45f, amNodeTracker.getHealthScore(nodeId, 0), 0.001f);
+    assertTrue(amNodeTracker.isDegraded(nodeId, 0));
+    assertEquals(1.0f, amNodeTracker.getHealthScore(nodeId2, 0), 0.001f);
+
+    amNodeTracker.dagComplete(null);
+    assertEquals(1.0f, amNodeTracker.getHealthScore(nodeId, 0), 0.001f);
+    assertFalse(amNodeTracker.isDegraded(nodeId, 0));
+    amNodeTracker.stop();
+  }
+
+  @Test(timeout=5000)
+  public void testOutputsOnNodeRescheduled() {
+    AppContext appContext = mock(AppContext.class);
+    Configuration conf = new Configuration(false);
+    conf.setInt(TezConfiguration.TEZ_AM_NODE_OUTPUT_FAILURES_RESCHEDULE_THRESHOLD, 2);
+    TestEventHandler handler = new TestEventHandler();
+    AMNodeTracker amNodeTracker = new AMNodeTracker(handler, appContext);
+    doReturn(amNodeTracker).when(appContext).getNodeTracker();
+    dispatcher.register(TaskAttemptEventType.class, mock(EventHandler.class));
+    amNodeTracker.init(conf);
+    amNodeTracker.start();
+
+    NodeId nodeId = NodeId.newInstance("host1", 2342);
+    amNodeTracker.nodeSeen(nodeId, 0);
+    TezVertexID producerVertexId = TezVertexID.getInstance(
+        TezDAGID.getInstance(ApplicationId.newInstance(1000, 1), 1), 1);
+    TezVertexID consumerVertexId = TezVertexID.getInstance(producerVertexId.getDAGId(), 2);
+    TezTaskAttemptID ta1 =
+        TezTaskAttemptID.getInstance(TezTaskID.getInstance(producerVertexId, 0), 0);
+    TezTaskAttemptID ta2 =
+        TezTaskAttemptID.getInstance(TezTaskID.getInstance(producerVertexId, 1), 0);
+    TezTaskAttemptID ta3 =
+        TezTaskAttemptID.getInstance(TezTaskID.getInstance(producerVertexId, 2), 0);
+    ContainerId cId = mock(ContainerId.class);
+    amNodeTracker.handle(new AMNodeEventContainerAllocated(nodeId, 0, cId));
+    amNodeTracker.handle(new AMNodeEventTaskAttemptSucceeded(nodeId, 0, cId, ta1));
+    amNodeTracker.handle(new AMNodeEventTaskAttemptSucceeded(nodeId, 0, cId, ta2));
+    amNodeTracker.handle(new AMNodeEventTaskAttemptSucceeded(nodeId, 0, cId, ta3));
+
+    // A single bad output does not re-execute the node, however many consumers report it
+    for (int i = 0; i < 10; i++) {
+      amNodeTracker.handle(new AMNodeEventTaskAttemptOutputFailed(nodeId, 0, ta1,
+          TezTaskAttemptID.getInstance(TezTaskID.getInstance(consumerVertexId, i), 0)));
+    }
+    dispatcher.await();
+    assertEquals(0, handler.events.size());
+
+    // The output of a second attempt failing re-executes all outputs on the node
+    amNodeTracker.handle(new AMNodeEventTaskAttemptOutputFailed(nodeId, 0, ta2,
+        TezTaskAttemptID.getInstance(TezTaskID.getInstance(consumerVertexId, 0), 0)));
+    dispatcher.await();
+    assertEquals(3, handler.events.size());
+    Set<TezTaskAttemptID> rescheduled = Sets.newHashSet();
+    for (Event event : handler.events) {
+      assertEquals(TaskAttemptEventType.TA_NODE_FAILED, event.getType());
+      TaskAttemptEventNodeFailed nodeFailed = (TaskAttemptEventNodeFailed) event;
+      assertEquals(TaskAttemptTerminationCause.OUTPUT_LOST, nodeFailed.getTerminationCause());
+      rescheduled.add(nodeFailed.getTaskAttemptID());
+    }
+    assertEquals(Sets.newHashSet(ta1, ta2, ta3), rescheduled);
+
+    // Late reports about outputs already re-executed are ignored
+    handler.events.clear();
+    amNodeTracker.handle(new AMNodeEventTaskAttemptOutputFailed(nodeId, 0, ta2,
+        TezTaskAttemptID.getInstance(TezTaskID.getInstance(consumerVertexId, 2), 0)));
+    amNodeTracker.handle(new AMNodeEventTaskAttemptOutputFailed(nodeId, 0, ta3,
+        TezTaskAttemptID.getInstance(TezTaskID.getInstance(consumerVertexId, 3), 0)));
+    dispatcher.await();
+    assertEquals(0, handler.events.size());
+    amNodeTracker.stop();
+  }
+
+  @Test(timeout=5000)
+  public void testOutputsOnNodeNotRescheduledByDefault() {
+    AppContext appContext = mock(AppContext.class);
+    TestEventHandler handler = new TestEventHandler();
+    AMNodeTracker amNodeTracker = new AMNodeTracker(handler, appContext);
+    doReturn(amNodeTracker).when(appContext).getNodeTracker();
+    dispatcher.register(TaskAttemptEventType.class, mock(EventHandler.class));
+    amNodeTracker.init(new Configuration(false));
+    amNodeTracker.start();
+
+    NodeId nodeId = NodeId.newInstance("host1", 2342);
+    amNodeTracker.nodeSeen(nodeId, 0);
+    TezVertexID producerVertexId = TezVertexID.getInstance(
+        TezDAGID.getInstance(ApplicationId.newInstance(1000, 1), 1), 1);
+    TezVertexID consumerVertexId = TezVertexID.getInstance(producerVertexId.getDAGId(), 2);
+    ContainerId cId = mock(ContainerId.class);
+    amNodeTracker.handle(new AMNodeEventContainerAllocated(nodeId, 0, cId));
+    for (int i = 0; i < 10; i++) {
+      TezTaskAttemptID taId =
+          TezTaskAttemptID.getInstance(TezTaskID.getInstance(producerVertexId, i), 0);
+      amNodeTracker.handle(new AMNodeEventTaskAttemptSucceeded(nodeId, 0, cId, taId));
+      amNodeTracker.handle(new AMNodeEventTaskAttemptOutputFailed(nodeId, 0, taId,
+          TezTaskAttemptID.getInstance(TezTaskID.getInstance(consumerVertexId, i), 0)));
+    }
+    dispatcher.await();
+    assertEquals(0, handler.events.size());
+    amNodeTracker.stop();
+  }
+
   @Test (timeout = 5000)
   public void testMultipleSourcesNodeRegistration() {
     AppContext appContext = mock(AppContext.class);
@@ -65,6 +65,8 @@ import org.apache.tez.dag.records.TezDAGID;
 import org.apache.tez.dag.records.TezTaskAttemptID;
 import org.apache.tez.dag.records.TezTaskID;
 import org.apache.tez.dag.records.TezVertexID;
+import org.apache.tez.runtime.api.impl.TaskMetricsSeries;
+import org.apache.tez.runtime.api.impl.TaskMetricsSeries.Metric;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
@@ -818,6 +820,86 @@ public class TestAMWebController {
     return mockAttempt;
   }
 
+  @Test(timeout = 5000)
+  public void testGetVertexMetrics() {
+    List<TaskAttempt> attempts = createMockAttempts();
+    TaskMetricsSeries series = new TaskMetricsSeries(1000, 500, 4);
+    series.add(Metric.FETCH_BYTES, 1000, 1900, 1000);
+    series.set(Metric.MERGE_QUEUE_DEPTH, 1200, 3);
+    series.add(Metric.SPILLS, 1000, 1900, 2);
+    series.add(Metric.CPU_MILLIS, 1000, 1400, 300);
+    doReturn(series).when(attempts.get(0)).getMetricsSeries();
+    doReturn(series).when(attempts.get(1)).getMetricsSeries();
+
+    Map<String, Object> result = getVertexMetricsTestHelper(attempts, AMWebController.MAX_QUERIED);
+
+    Assert.assertEquals(1, result.size());
+    List<Map<String, Object>> verticesInfo = (List<Map<String, Object>>) result.get("vertices");
+    Assert.assertEquals(1, verticesInfo.size());
+    Assert.assertEquals("vertex_1441301219877_0109_1_00", verticesInfo.get(0).get("id"));
+    List<Map<String, Object>> attemptsInfo =
+        (List<Map<String, Object>>) verticesInfo.get(0).get("attempts");
+    // Attempts which do not sample metrics are left out
+    Assert.assertEquals(2, attemptsInfo.size());
+    Map<String, Map<String, Object>> attemptsById = new HashMap<String, Map<String, Object>>();
+    for (Map<String, Object> attemptInfo : attemptsInfo) {
+      attemptsById.put((String) attemptInfo.get("id"), attemptInfo);
+    }
+    Map<String, Object> attemptInfo = attemptsById.get(attempts.get(0).getID().toString());
+    Assert.assertEquals(attempts.get(0).getState().toString(), attemptInfo.get("status"));
+    Assert.assertEquals("1000", attemptInfo.get("startTime"));
+    Assert.assertEquals("500", attemptInfo.get("intervalMillis"));
+    // 500 and 500 bytes fetched per interval of 500ms
+    Assert.assertEquals(Arrays.asList(1000L, 1000L), attemptInfo.get("fetchBytesPerSec"));
+    Assert.assertEquals(Arrays.asList(3L, 0L), attemptInfo.get("mergeQueueDepth"));
+    Assert.assertEquals(Arrays.asList(1L, 1L), attemptInfo.get("spills"));
+    Assert.assertEquals(Arrays.asList(300L, 0L), attemptInfo.get("cpuMillis"));
+    Assert.assertTrue(attemptsById.containsKey(attempts.get(1).getID().toString()));
+
+    // With limit
+    result = getVertexMetricsTestHelper(attempts, 1);
+    verticesInfo = (List<Map<String, Object>>) result.get("vertices");
+    attemptsInfo = (List<Map<String, Object>>) verticesInfo.get(0).get("attempts");
+    Assert.assertEquals(1, attemptsInfo.size());
+  }
+
+  Map<String, Object> getVertexMetricsTestHelper(List<TaskAttempt> attempts, Integer limit) {
+    DAG mockDAG = mock(DAG.class);
+    doReturn(TezDAGID.fromString("dag_1441301219877_0109_1")).when(mockDAG).getID();
+
+    TezVertexID vertexID = TezVertexID.fromString("vertex_1441301219877_0109_1_00");
+    Vertex mockVertex = mock(Vertex.class);
+    doReturn(vertexID).when(mockVertex).getVertexId();
+    doReturn(ImmutableMap.of(
+        vertexID, mockVertex
+    )).when(mockDAG).getVertices();
+
+    TezTaskID taskID = TezTaskID.fromString("task_1441301219877_0109_1_00_000000");
+    Task mockTask = mock(Task.class);
+    doReturn(ImmutableMap.of(
+        taskID, mockTask
+    )).when(mockVertex).getTasks();
+    Map<TezTaskAttemptID, TaskAttempt> attemptsMap = Maps.newHashMap();
+    for (TaskAttempt attempt : attempts) {
+      attemptsMap.put(attempt.getID(), attempt);
+    }
+    doReturn(attemptsMap).when(mockTask).getAttempts();
+
+    AMWebController amWebController = new AMWebController(mockRequestContext, mockAppContext,
+        "TEST_HISTORY_URL");
+    AMWebController spy = spy(amWebController);
+    doReturn(true).when(spy).setupResponse();
+    doNothing().when(spy).renderJSON(any());
+    doReturn(limit).when(spy).getQueryParamInt(WebUIService.LIMIT);
+    doReturn(Collections.<Integer>emptyList()).when(spy).getVertexIDsFromRequest();
+    doReturn(mockDAG).when(spy).checkAndGetDAGFromRequest();
+
+    spy.getVertexMetrics();
+    verify(spy).renderJSON(returnResultCaptor.capture());
+
+    return returnResultCaptor.getValue();
+  }
+
   private void verifySingleAttemptResult(TaskAttempt mockTask, Map<String, String> taskResult) {
     Assert.assertEquals(3, taskResult.size());
     Assert.assertEquals(mockTask.getID().toString(), taskResult.get("id"));
@@ -19,6 +19,7 @@
 package org.apache.tez.dag.history.logging.impl;
 
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.Map;
 import java.util.Random;
 
@@ -28,6 +29,8 @@ import org.apache.hadoop.yarn.api.records.ApplicationId;
 import org.apache.hadoop.yarn.api.records.ContainerId;
 import org.apache.hadoop.yarn.api.records.NodeId;
 import org.apache.tez.common.ATSConstants;
+import org.apache.tez.common.counters.TezCounters;
+import org.apache.tez.dag.api.DagTypeConverters;
 import org.apache.tez.dag.api.EdgeManagerPluginDescriptor;
 import org.apache.tez.dag.api.EdgeProperty;
 import org.apache.tez.dag.api.EdgeProperty.DataMovementType;
@@ -71,9 +74,14 @@ import org.apache.tez.dag.records.TezDAGID;
 import org.apache.tez.dag.records.TezTaskAttemptID;
 import org.apache.tez.dag.records.TezTaskID;
 import org.apache.tez.dag.records.TezVertexID;
+import org.apache.tez.dag.recovery.records.RecoveryProtos.HistoryLogEventProto;
+import org.apache.tez.dag.recovery.records.RecoveryProtos.HistoryLogRecordProto;
+import org.apache.tez.dag.recovery.records.RecoveryProtos.HistoryLogRelatedEntityProto;
+import org.apache.tez.dag.recovery.records.RecoveryProtos.HistoryLogValueProto;
 import org.codehaus.jettison.json.JSONArray;
 import org.codehaus.jettison.json.JSONException;
 import org.codehaus.jettison.json.JSONObject;
+import org.codehaus.jettison.json.JSONTokener;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
@@ -246,5 +254,123 @@ public class TestHistoryEventJsonConversion {
 
   }
 
+  @Test(timeout = 5000)
+  public void testProtoConversion() throws JSONException {
+    TezCounters counters = new TezCounters();
+    counters.findCounter("g1", "c1").increment(10);
+    counters.findCounter("g2", "c2").increment(20);
+    Map<String, Integer> taskStats = new HashMap<String, Integer>();
+    taskStats.put("FOO", 100);
+    HistoryEvent[] events = new HistoryEvent[] {
+        new DAGSubmittedEvent(tezDAGID, random.nextInt(), dagPlan, applicationAttemptId,
+            null, user, null, null),
+        new DAGFinishedEvent(tezDAGID, random.nextInt(), random.nextInt(), DAGState.SUCCEEDED,
+            "diag", counters, user, dagPlan.getName(), taskStats, applicationAttemptId, dagPlan),
+        new TaskAttemptStartedEvent(tezTaskAttemptID, "v1", random.nextInt(), containerId,
+            nodeId, null, null, "nodeHttpAddress"),
+        new TaskAttemptFinishedEvent(tezTaskAttemptID, "v1", random.nextInt(),
+            random.nextInt(), TaskAttemptState.SUCCEEDED, null, null, null, counters, null, null,
+            0, null, 0, containerId, nodeId, null, null, "nodeHttpAddress")
+    };
+    for (HistoryEvent event : events) {
+      HistoryLogRecordProto proto = HistoryEventProtoConversion.convertToProto(event);
+      Assert.assertEquals(event.getEventType() == HistoryEventType.DAG_FINISHED
+          || event.getEventType() == HistoryEventType.TASK_ATTEMPT_FINISHED, proto.hasCounters());
+      Assert.assertEquals(tezDAGID.toString(), proto.getDagId());
+      if (event.getEventType().name().startsWith("TASK_ATTEMPT")) {
+        Assert.assertEquals(tezVertexID.toString(), proto.getVertexId());
+      } else {
+        Assert.assertFalse(proto.hasVertexId());
+      }
+      assertProtoEquals(HistoryEventJsonConversion.convertToJson(event), proto);
+    }
+  }
+
+  // The proto holds the same entity as the JSON, with typed values and counters
+  private static void assertProtoEquals(JSONObject expected, HistoryLogRecordProto actual)
+      throws JSONException {
+    Assert.assertEquals(expected.getString(ATSConstants.ENTITY), actual.getEntity());
+    Assert.assertEquals(expected.getString(ATSConstants.ENTITY_TYPE), actual.getEntityType());
+
+    JSONArray relatedEntities = expected.optJSONArray(ATSConstants.RELATED_ENTITIES);
+    Assert.assertEquals(relatedEntities == null ? 0 : relatedEntities.length(),
+        actual.getRelatedEntitiesCount());
+    for (int i = 0; i < actual.getRelatedEntitiesCount(); ++i) {
+      HistoryLogRelatedEntityProto relatedEntity = actual.getRelatedEntities(i);
+      Assert.assertEquals(relatedEntities.getJSONObject(i).getString(ATSConstants.ENTITY),
+          relatedEntity.getEntity());
+      Assert.assertEquals(relatedEntities.getJSONObject(i).getString(ATSConstants.ENTITY_TYPE),
+          relatedEntity.getEntityType());
+    }
+
+    JSONArray events = expected.getJSONArray(ATSConstants.EVENTS);
+    Assert.assertEquals(events.length(), actual.getEventsCount());
+    for (int i = 0; i < actual.getEventsCount(); ++i) {
+      HistoryLogEventProto event = actual.getEvents(i);
+      Assert.assertEquals(events.getJSONObject(i).getString(ATSConstants.EVENT_TYPE),
+          event.getEventType());
+      Assert.assertEquals(events.getJSONObject(i).getLong(ATSConstants.TIMESTAMP),
+          event.getTimestamp());
+      JSONObject eventInfo = events.getJSONObject(i).optJSONObject(ATSConstants.EVENT_INFO);
+      Assert.assertEquals(eventInfo != null, event.hasEventInfoJson());
+      if (eventInfo != null) {
+        assertJsonEquals(eventInfo, new JSONObject(event.getEventInfoJson()));
+      }
+    }
+
+    JSONObject primaryFilters = expected.optJSONObject(ATSConstants.PRIMARY_FILTERS);
+    Assert.assertEquals(primaryFilters == null ? 0 : primaryFilters.length(),
+        actual.getPrimaryFiltersCount());
+    for (HistoryLogValueProto value : actual.getPrimaryFiltersList()) {
+      Assert.assertEquals(primaryFilters.getString(value.getKey()), value.getStringValue());
+    }
+
+    JSONObject otherInfo = expected.optJSONObject(ATSConstants.OTHER_INFO);
+    int numOtherInfo = otherInfo == null ? 0 : otherInfo.length();
+    if (actual.hasCounters()) {
+      assertJsonEquals(otherInfo.getJSONObject(ATSConstants.COUNTERS),
+          DAGUtils.convertCountersToJSON(
+              DagTypeConverters.convertTezCountersFromProto(actual.getCounters())));
+      --numOtherInfo;
+    }
+    Assert.assertEquals(numOtherInfo, actual.getOtherInfoCount());
+    for (HistoryLogValueProto value : actual.getOtherInfoList()) {
+      Object expectedValue = otherInfo.get(value.getKey());
+      if (value.hasStringValue()) {
+        Assert.assertEquals(expectedValue, value.getStringValue());
+      } else if (value.hasLongValue()) {
+        Assert.assertEquals(((Number) expectedValue).longValue(), value.getLongValue());
+      } else {
+        assertJsonEquals(expectedValue, new JSONTokener(value.getJsonValue()).nextValue());
+      }
+    }
+  }
+
+  // Key order and numeric types are not preserved by the proto conversion
+  private static void assertJsonEquals(Object expected, Object actual) throws JSONException {
+    if (expected instanceof JSONObject) {
+      Assert.assertTrue(actual instanceof JSONObject);
+      JSONObject expectedObject = (JSONObject) expected;
+      JSONObject actualObject = (JSONObject) actual;
+      Assert.assertEquals(expectedObject.length(), actualObject.length());
+      for (Iterator<?> it = expectedObject.keys(); it.hasNext(); ) {
+        String key = (String) it.next();
+        Assert.assertTrue("Missing " + key, actualObject.has(key));
+        assertJsonEquals(expectedObject.get(key), actualObject.get(key));
+      }
+    } else if (expected instanceof JSONArray) {
+      Assert.assertTrue(actual instanceof JSONArray);
+      JSONArray expectedArray = (JSONArray) expected;
+      JSONArray actualArray = (JSONArray) actual;
+      Assert.assertEquals(expectedArray.length(), actualArray.length());
+      for (int i = 0; i < expectedArray.length(); ++i) {
+        assertJsonEquals(expectedArray.get(i), actualArray.get(i));
+      }
+    } else if (expected instanceof Number && actual instanceof Number) {
+      Assert.assertEquals(((Number) expected).doubleValue(), ((Number) actual).doubleValue(), 0);
+    } else {
+      Assert.assertEquals(String.valueOf(expected), String.valueOf(actual));
+    }
+  }
 
 }
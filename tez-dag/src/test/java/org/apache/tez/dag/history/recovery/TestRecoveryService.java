@@ -17,22 +17,31 @@
  */
 package org.apache.tez.dag.history.recovery;
 
+import java.io.EOFException;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Random;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataInputStream;
 import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.yarn.api.records.ApplicationAttemptId;
 import org.apache.hadoop.yarn.api.records.ApplicationId;
 import org.apache.hadoop.yarn.util.SystemClock;
 import org.apache.tez.common.TezCommonUtils;
+import org.apache.tez.dag.api.TezConfiguration;
 import org.apache.tez.dag.app.AppContext;
 import org.apache.tez.dag.app.dag.DAGState;
 import org.apache.tez.dag.history.DAGHistoryEvent;
+import org.apache.tez.dag.history.HistoryEventType;
 import org.apache.tez.dag.history.events.DAGFinishedEvent;
 import org.apache.tez.dag.history.events.TaskStartedEvent;
+import org.apache.tez.dag.history.events.VertexGroupCommitFinishedEvent;
+import org.apache.tez.dag.history.events.VertexGroupCommitStartedEvent;
 import org.apache.tez.dag.records.TezDAGID;
 import org.apache.tez.dag.records.TezTaskID;
 import org.apache.tez.dag.records.TezVertexID;
@@ -40,6 +49,8 @@ import org.apache.tez.hadoop.shim.DefaultHadoopShim;
 import org.junit.Before;
 import org.junit.Test;
 
+import com.google.common.util.concurrent.ListenableFuture;
+
 import static org.mockito.Mockito.*;
 import static org.junit.Assert.*;
 
@@ -176,6 +187,138 @@ public class TestRecoveryService {
         new TaskStartedEvent(TezTaskID.getInstance(TezVertexID.getInstance(dagId, 1), 1), "v1", 0L, 0L)));
   }
 
+  @Test(timeout = 5000)
+  public void testGroupCommit() throws Exception {
+    Configuration conf = new Configuration();
+    ApplicationId appId = ApplicationId.newInstance(System.currentTimeMillis(), 1);
+    ApplicationAttemptId appAttemptId = ApplicationAttemptId.newInstance(appId, 1);
+    AppContext appContext = mock(AppContext.class);
+    when(appContext.getCurrentRecoveryDir()).thenReturn(new Path(TEST_ROOT_DIR));
+    when(appContext.getClock()).thenReturn(new SystemClock());
+    when(appContext.getHadoopShim()).thenReturn(new DefaultHadoopShim());
+    when(appContext.getApplicationID()).thenReturn(appId);
+
+    RecoveryService recoveryService = new RecoveryService(appContext);
+    conf.setBoolean(TezConfiguration.DAG_RECOVERY_GROUP_COMMIT_ENABLED, true);
+    recoveryService.init(conf);
+    recoveryService.start();
+    TezDAGID dagId = TezDAGID.getInstance(appId, 1);
+    TezVertexID vertexId = TezVertexID.getInstance(dagId, 1);
+    int eventCount = 100;
+    List<ListenableFuture<Void>> futures = new ArrayList<ListenableFuture<Void>>();
+    for (int i = 0; i < eventCount; ++i) {
+      futures.add(recoveryService.handleAsync(new DAGHistoryEvent(dagId,
+          new TaskStartedEvent(TezTaskID.getInstance(vertexId, i), "v1", 0L, 0L))));
+    }
+    for (ListenableFuture<Void> future : futures) {
+      future.get();
+    }
+    recoveryService.handle(new DAGHistoryEvent(dagId,
+        new DAGFinishedEvent(dagId, 1L, 2L, DAGState.SUCCEEDED, "diag", null, "user", "dag1",
+            null, appAttemptId, null)));
+    // Not recorded once the DAG has finished
+    recoveryService.handleAsync(new DAGHistoryEvent(dagId,
+        new TaskStartedEvent(TezTaskID.getInstance(vertexId, eventCount), "v1", 0L, 0L))).get();
+    recoveryService.stop();
+    assertFalse(recoveryService.hasRecoveryFailed());
+
+    FileSystem fs = FileSystem.getLocal(conf);
+    FSDataInputStream in = fs.open(
+        TezCommonUtils.getDAGRecoveryPath(recoveryService.recoveryPath, dagId.toString()));
+    int numTaskStarted = 0;
+    int numDAGFinished = 0;
+    try {
+      while (true) {
+        int eventType;
+        try {
+          eventType = in.readInt();
+        } catch (EOFException e) {
+          break;
+        }
+        if (eventType == HistoryEventType.TASK_STARTED.ordinal()) {
+          TaskStartedEvent event = new TaskStartedEvent();
+          event.fromProtoStream(in);
+          // Written in order
+          assertEquals(numTaskStarted, event.getTaskID().getId());
+          ++numTaskStarted;
+        } else {
+          assertEquals(HistoryEventType.DAG_FINISHED.ordinal(), eventType);
+          new DAGFinishedEvent().fromProtoStream(in);
+          ++numDAGFinished;
+        }
+      }
+    } finally {
+      in.close();
+    }
+    assertEquals(eventCount, numTaskStarted);
+    assertEquals(1, numDAGFinished);
+    assertTrue(fs.getFileStatus(
+        TezCommonUtils.getSummaryRecoveryPath(recoveryService.recoveryPath)).getLen() > 0);
+  }
+
+  @Test(timeout = 10000)
+  public void testGroupCommitOnlyWaitsForCriticalEvents() throws Exception {
+    Configuration conf = new Configuration();
+    ApplicationId appId = ApplicationId.newInstance(System.currentTimeMillis(), 1);
+    AppContext appContext = mock(AppContext.class);
+    when(appContext.getCurrentRecoveryDir()).thenReturn(new Path(TEST_ROOT_DIR));
+    when(appContext.getClock()).thenReturn(new SystemClock());
+    when(appContext.getHadoopShim()).thenReturn(new DefaultHadoopShim());
+    when(appContext.getApplicationID()).thenReturn(appId);
+
+    RecoveryService recoveryService = new RecoveryService(appContext);
+    conf.setBoolean(TezConfiguration.DAG_RECOVERY_GROUP_COMMIT_ENABLED, true);
+    conf.setLong(TezConfiguration.DAG_RECOVERY_GROUP_COMMIT_WINDOW_MS, 3000);
+    recoveryService.init(conf);
+    recoveryService.start();
+    TezDAGID dagId = TezDAGID.getInstance(appId, 1);
+    List<TezVertexID> vertexIds = Collections.singletonList(TezVertexID.getInstance(dagId, 1));
+
+    // Recorded in the background, without waiting for the window
+    long start = System.currentTimeMillis();
+    recoveryService.handle(new DAGHistoryEvent(dagId,
+        new VertexGroupCommitFinishedEvent(dagId, "g1", vertexIds, 0L)));
+    assertTrue(System.currentTimeMillis() - start < 3000);
+
+    // Commits only start once the commit start is durable
+    recoveryService.handle(new DAGHistoryEvent(dagId,
+        new VertexGroupCommitStartedEvent(dagId, "g2", vertexIds, 0L)));
+    assertTrue(System.currentTimeMillis() - start >= 3000);
+    recoveryService.stop();
+    assertFalse(recoveryService.hasRecoveryFailed());
+  }
+
+  @Test(timeout = 5000)
+  public void testGroupCommitRecoveryPathExisted() throws Exception {
+    Configuration conf = new Configuration();
+    ApplicationId appId = ApplicationId.newInstance(System.currentTimeMillis(), 1);
+    AppContext appContext = mock(AppContext.class);
+    when(appContext.getCurrentRecoveryDir()).thenReturn(new Path(TEST_ROOT_DIR));
+    when(appContext.getClock()).thenReturn(new SystemClock());
+    when(appContext.getHadoopShim()).thenReturn(new DefaultHadoopShim());
+    when(appContext.getApplicationID()).thenReturn(appId);
+
+    RecoveryService recoveryService = new RecoveryService(appContext);
+    conf.setBoolean(TezConfiguration.DAG_RECOVERY_GROUP_COMMIT_ENABLED, true);
+    recoveryService.init(conf);
+    recoveryService.start();
+    TezDAGID dagId = TezDAGID.getInstance(appId, 1);
+    Path dagRecoveryPath =
+        TezCommonUtils.getDAGRecoveryPath(recoveryService.recoveryPath, dagId.toString());
+    touchFile(dagRecoveryPath);
+    ListenableFuture<Void> future = recoveryService.handleAsync(new DAGHistoryEvent(dagId,
+        new TaskStartedEvent(TezTaskID.getInstance(TezVertexID.getInstance(dagId, 1), 1), "v1",
+            0L, 0L)));
+    try {
+      future.get();
+      fail("Expected the write to fail");
+    } catch (Exception e) {
+      // expected
+    }
+    assertTrue(recoveryService.hasRecoveryFailed());
+    recoveryService.stop();
+  }
+
   private void touchFile(Path path) throws IOException {
     FileSystem fs = FileSystem.getLocal(new Configuration());
     fs.create(path).close();
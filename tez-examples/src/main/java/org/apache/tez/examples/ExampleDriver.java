@@ -58,6 +58,8 @@ public class ExampleDriver {
           "Generate data to run the joinexample");
       pgd.addClass("joinvalidate", JoinValidate.class,
           "Validate data generated by joinexample and joindatagen");
+      pgd.addClass("joinbenchmark", JoinBenchmark.class,
+          "Time hash, broadcast hash and sort merge joins on generated data with skewed keys");
       exitCode = pgd.run(argv);
     } catch(Throwable e){
       e.printStackTrace();
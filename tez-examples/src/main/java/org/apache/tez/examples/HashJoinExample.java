@@ -18,9 +18,8 @@
 
 package org.apache.tez.examples;
 
+import java.io.File;
 import java.io.IOException;
-import java.util.HashSet;
-import java.util.Set;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -50,6 +49,9 @@ import org.apache.tez.runtime.library.api.KeyValueReader;
 import org.apache.tez.runtime.library.api.KeyValueWriter;
 import org.apache.tez.runtime.library.conf.UnorderedKVEdgeConfig;
 import org.apache.tez.runtime.library.conf.UnorderedPartitionedKVEdgeConfig;
+import org.apache.tez.runtime.library.join.BroadcastHashJoin;
+import org.apache.tez.runtime.library.join.JoinWriter;
+import org.apache.tez.runtime.library.join.PartitionedHashJoin;
 import org.apache.tez.runtime.library.partitioner.HashPartitioner;
 import org.apache.tez.runtime.library.processor.SimpleProcessor;
 
@@ -59,17 +61,23 @@ import com.google.common.base.Preconditions;
  * Simple example of joining 2 data sets using <a
  * href="http://en.wikipedia.org/wiki/Hash_join">Hash Join</a>.<br>
  * The example shows a vertex with multiple inputs that represent the two data
- * sets that need to be joined. This HashJoinExample assume that keys in the
- * second dataset (hashSide) is unique.<br>
+ * sets that need to be joined. Keys may repeat in both datasets, in which case
+ * each pair of matching keys is output.<br>
+ * Note that this changes the output of earlier versions of this example, which
+ * required the keys of the hashFile to be unique and output each matching key
+ * of the streamFile once. A key repeated in the hashFile is now output once for
+ * each of its occurrences in the hashFile.<br>
  * The join can be performed using a broadcast (or replicate-fragment) join in
  * which the small side of the join is broadcast in total to fragments of the
  * larger side. Each fragment of the larger side can perform the join operation
  * independently using the full data of the smaller side. This shows the usage
- * of the broadcast edge property in Tez. <br>
+ * of the broadcast edge property in Tez. The hash table of the small side is
+ * built once per container and shared by the join tasks running in it. <br>
  * The join can be performed using the regular repartition join where both sides
  * are partitioned according to the same scheme into the same number of
  * fragments. Then the keys in the same fragment are joined with each other.
- * This is the default join strategy.
+ * This is the default join strategy. The hash side of each fragment is held in
+ * memory up to a limit, beyond which its partitions are spilled to local disk.
  */
 public class HashJoinExample extends TezExampleBase {
 
@@ -185,7 +193,9 @@ public class HashJoinExample extends TezExampleBase {
      */
     Vertex joinVertex =
         Vertex.create(joiner,
-            ProcessorDescriptor.create(HashJoinProcessor.class.getName()),
+            ProcessorDescriptor.create(doBroadcast
+                ? BroadcastHashJoinProcessor.class.getName()
+                : HashJoinProcessor.class.getName()),
             numPartitions).addDataSink(
             joinOutput,
             MROutput.createConfigBuilder(new Configuration(tezConf),
@@ -298,13 +308,17 @@ public class HashJoinExample extends TezExampleBase {
   /**
    * Join 2 inputs using Hash Join algorithm. Check the algorithm here <a
    * href="http://en.wikipedia.org/wiki/Hash_join">Hash Join</a> <br>
-   * It would output all the occurrences keys in the streamFile which also exist
-   * in the hashFile. This require the keys in hashFile should be unique
-   * <br>Disclaimer: The join code here is written as a tutorial for the APIs and
-   * not for performance.
+   * It would output all the occurrences of keys in the streamFile which also
+   * exist in the hashFile, once for each occurrence in the hashFile. The
+   * hashFile fragment is held in memory up to a fraction of the task memory,
+   * beyond which it is partitioned to local disk by {@link PartitionedHashJoin}.
    */
   public static class HashJoinProcessor extends SimpleMRProcessor {
 
+    // Fraction of the task memory used for the hash table
+    private static final double MEMORY_FRACTION = 0.3;
+    private static final int NUM_SPILL_PARTITIONS = 16;
+
     public HashJoinProcessor(ProcessorContext context) {
       super(context);
     }
@@ -324,21 +338,61 @@ public class HashJoinExample extends TezExampleBase {
       Preconditions.checkState(lo.getWriter() instanceof KeyValueWriter);
       KeyValueWriter writer = (KeyValueWriter) lo.getWriter();
 
-      // create a hash table for the hash side
-      KeyValueReader hashKvReader = (KeyValueReader) rawHashReader;
-      Set<Text> keySet = new HashSet<Text>();
-      while (hashKvReader.next()) {
-        keySet.add(new Text((Text) hashKvReader.getCurrentKey()));
-      }
+      long memoryLimit =
+          (long) (getContext().getTotalMemoryAvailableToTask() * MEMORY_FRACTION);
+      PartitionedHashJoin join = new PartitionedHashJoin(memoryLimit,
+          NUM_SPILL_PARTITIONS, new File(getContext().getWorkDirs()[0]),
+          new Configuration(false));
+      join.join((KeyValueReader) rawHashReader, (KeyValueReader) rawStreamReader,
+          new KeyJoinWriter(writer));
+    }
+  }
 
-      // read the stream side and join it using the hash table
-      KeyValueReader streamKvReader = (KeyValueReader) rawStreamReader;
-      while (streamKvReader.next()) {
-        Text key = (Text) streamKvReader.getCurrentKey();
-        if (keySet.contains(key)) {
-          writer.write(key, NullWritable.get());
-        }
-      }
+  /**
+   * Join the streamFile fragment with the whole of the broadcast hashFile. The
+   * hash table of the hashFile is built by the first join task running in a
+   * container and reused by the following ones, see {@link BroadcastHashJoin}.
+   */
+  public static class BroadcastHashJoinProcessor extends SimpleMRProcessor {
+
+    public BroadcastHashJoinProcessor(ProcessorContext context) {
+      super(context);
+    }
+
+    @Override
+    public void run() throws Exception {
+      Preconditions.checkState(getInputs().size() == 2);
+      Preconditions.checkState(getOutputs().size() == 1);
+      LogicalInput streamInput = getInputs().get(streamingSide);
+      LogicalInput hashInput = getInputs().get(hashSide);
+      Reader rawStreamReader = streamInput.getReader();
+      Preconditions.checkState(rawStreamReader instanceof KeyValueReader);
+      LogicalOutput lo = getOutputs().get(joinOutput);
+      Preconditions.checkState(lo.getWriter() instanceof KeyValueWriter);
+      KeyValueWriter writer = (KeyValueWriter) lo.getWriter();
+
+      BroadcastHashJoin join =
+          BroadcastHashJoin.create(getContext().getObjectRegistry(), hashSide, hashInput);
+      join.join((KeyValueReader) rawStreamReader, new KeyJoinWriter(writer));
+    }
+  }
+
+  /**
+   * Writes the key of each match with a null value, since the data to be
+   * joined is the key itself and the values of both sides are null.
+   */
+  static class KeyJoinWriter extends JoinWriter {
+
+    private final KeyValueWriter writer;
+
+    KeyJoinWriter(KeyValueWriter writer) {
+      this.writer = writer;
+    }
+
+    @Override
+    public void write(Object key, Object leftValue, Object rightValue)
+        throws IOException {
+      writer.write(key, NullWritable.get());
     }
   }
 }
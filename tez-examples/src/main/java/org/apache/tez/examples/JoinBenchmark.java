@@ -0,0 +1,140 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.tez.examples;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.util.ToolRunner;
+import org.apache.tez.client.TezClient;
+import org.apache.tez.dag.api.TezConfiguration;
+
+/**
+ * Compares the join strategies of {@link HashJoinExample} and
+ * {@link SortMergeJoinExample} on the same data. The data is generated by
+ * {@link JoinDataGen}, with a fraction of the larger side made of a few hot keys
+ * to exercise skew, and the output of each join is checked with
+ * {@link JoinValidate}. The time taken by each join is printed at the end.
+ */
+public class JoinBenchmark extends TezExampleBase {
+
+  private static final Logger LOG = LoggerFactory.getLogger(JoinBenchmark.class);
+
+  public static void main(String[] args) throws Exception {
+    JoinBenchmark benchmark = new JoinBenchmark();
+    int status = ToolRunner.run(new Configuration(), benchmark, args);
+    System.exit(status);
+  }
+
+  @Override
+  protected void printUsage() {
+    System.err.println("Usage: "
+        + "joinbenchmark <workDir> <streamSize> <hashSize> <numTasks> [skewFraction]");
+  }
+
+  @Override
+  protected int validateArgs(String[] otherArgs) {
+    if (otherArgs.length != 4 && otherArgs.length != 5) {
+      return 2;
+    }
+    return 0;
+  }
+
+  @Override
+  protected int runJob(String[] args, TezConfiguration tezConf,
+      TezClient tezClient) throws Exception {
+    Path workDir = new Path(args[0]);
+    String streamSize = args[1];
+    String hashSize = args[2];
+    String numTasks = args[3];
+    String skewFraction = args.length == 5 ? args[4] : "0";
+
+    FileSystem fs = FileSystem.get(tezConf);
+    if (fs.exists(workDir)) {
+      System.err.println("Work directory: " + workDir + " already exists");
+      return 3;
+    }
+    String streamPath = new Path(workDir, "stream").toString();
+    String hashPath = new Path(workDir, "hash").toString();
+    String expectedPath = new Path(workDir, "expected").toString();
+
+    LOG.info("Running JoinBenchmark with skewFraction=" + skewFraction);
+    int res = new JoinDataGen().run(tezConf, new String[] { streamPath, streamSize, hashPath,
+        hashSize, expectedPath, numTasks, skewFraction }, tezClient);
+    if (res != 0) {
+      LOG.error("JoinDataGen failed with " + res);
+      return res;
+    }
+
+    Map<String, Long> timings = new LinkedHashMap<String, Long>();
+    String outPath = new Path(workDir, "hashjoin").toString();
+    res = runJoin("hashjoin", new HashJoinExample(), new String[] { streamPath, hashPath,
+        numTasks, outPath }, expectedPath, outPath, tezConf, tezClient, timings);
+    if (res != 0) {
+      return res;
+    }
+    outPath = new Path(workDir, "broadcasthashjoin").toString();
+    res = runJoin("broadcasthashjoin", new HashJoinExample(), new String[] { streamPath,
+        hashPath, numTasks, outPath, "doBroadcast" }, expectedPath, outPath, tezConf, tezClient,
+        timings);
+    if (res != 0) {
+      return res;
+    }
+    outPath = new Path(workDir, "sortmergejoin").toString();
+    res = runJoin("sortmergejoin", new SortMergeJoinExample(), new String[] { streamPath,
+        hashPath, numTasks, outPath }, expectedPath, outPath, tezConf, tezClient, timings);
+    if (res != 0) {
+      return res;
+    }
+
+    System.out.println("JoinBenchmark streamSize=" + streamSize + ", hashSize=" + hashSize
+        + ", numTasks=" + numTasks + ", skewFraction=" + skewFraction);
+    for (Map.Entry<String, Long> entry : timings.entrySet()) {
+      System.out.println(entry.getKey() + ": " + entry.getValue() + " ms");
+    }
+    return 0;
+  }
+
+  private int runJoin(String name, TezExampleBase join, String[] joinArgs, String expectedPath,
+      String outPath, TezConfiguration tezConf, TezClient tezClient, Map<String, Long> timings)
+      throws Exception {
+    long start = System.currentTimeMillis();
+    int res = join.run(tezConf, joinArgs, tezClient);
+    long timeTaken = System.currentTimeMillis() - start;
+    if (res != 0) {
+      LOG.error(name + " failed with " + res);
+      return res;
+    }
+    // The join output is validated with as many tasks as the join used
+    res = new JoinValidate().run(tezConf, new String[] { expectedPath, outPath, joinArgs[2] },
+        tezClient);
+    if (res != 0) {
+      LOG.error("Validation of " + name + " failed with " + res);
+      return res;
+    }
+    LOG.info(name + " took " + timeTaken + " ms");
+    timings.put(name, timeTaken);
+    return 0;
+  }
+}
@@ -66,7 +66,8 @@ public class JoinDataGen extends TezExampleBase {
   protected void printUsage() {
     System.err
         .println("Usage: "
-            + "joindatagen <outPath1> <path1Size> <outPath2> <path2Size> <expectedResultPath> <numTasks>");
+            + "joindatagen <outPath1> <path1Size> <outPath2> <path2Size> <expectedResultPath> <numTasks>"
+            + " [skewFraction]");
     ToolRunner.printGenericCommandUsage(System.err);
   }
 
@@ -81,6 +82,7 @@ public class JoinDataGen extends TezExampleBase {
     long outDir2Size = Long.parseLong(args[3]);
     String expectedOutputDir = args[4];
     int numTasks = Integer.parseInt(args[5]);
+    float skewFraction = args.length == 7 ? Float.parseFloat(args[6]) : 0.0f;
 
     Path largeOutPath = null;
     Path smallOutPath = null;
@@ -114,24 +116,28 @@ public class JoinDataGen extends TezExampleBase {
       System.err.println("NumTasks must be > 0");
       return 4;
     }
+    if (skewFraction < 0.0f || skewFraction >= 1.0f) {
+      System.err.println("SkewFraction must be >= 0 and < 1");
+      return 5;
+    }
 
     DAG dag = createDag(tezConf, largeOutPath, smallOutPath, expectedOutputPath, numTasks,
-        largeOutSize, smallOutSize);
+        largeOutSize, smallOutSize, skewFraction);
 
     return runDag(dag, isCountersLog(), LOG);
   }
 
   @Override
   protected int validateArgs(String[] otherArgs) {
-    if (otherArgs.length != 6) {
+    if (otherArgs.length != 6 && otherArgs.length != 7) {
       return 2;
     }
     return 0;
   }
 
   private DAG createDag(TezConfiguration tezConf, Path largeOutPath, Path smallOutPath,
-      Path expectedOutputPath, int numTasks, long largeOutSize, long smallOutSize)
-      throws IOException {
+      Path expectedOutputPath, int numTasks, long largeOutSize, long smallOutSize,
+      float skewFraction) throws IOException {
 
     long largeOutSizePerTask = largeOutSize / numTasks;
     long smallOutSizePerTask = smallOutSize / numTasks;
@@ -141,7 +147,7 @@ public class JoinDataGen extends TezExampleBase {
     Vertex genDataVertex = Vertex.create("datagen", ProcessorDescriptor.create(
         GenDataProcessor.class.getName()).setUserPayload(
         UserPayload.create(ByteBuffer.wrap(GenDataProcessor.createConfiguration(largeOutSizePerTask,
-            smallOutSizePerTask)))), numTasks);
+            smallOutSizePerTask, skewFraction)))), numTasks);
     genDataVertex.addDataSink(STREAM_OUTPUT_NAME, 
         MROutput.createConfigBuilder(new Configuration(tezConf),
             TextOutputFormat.class, largeOutPath.toUri().toString()).build());
@@ -161,9 +167,15 @@ public class JoinDataGen extends TezExampleBase {
 
     private static final Logger LOG = LoggerFactory.getLogger(GenDataProcessor.class);
 
+    // Keys making up the skewFraction of the stream file, each repeated in the hash file
+    private static final int NUM_HOT_KEYS = 4;
+    private static final int HOT_KEY_HASH_COPIES = 2;
+
     long streamOutputFileSize;
     long hashOutputFileSize;
+    float skewFraction;
     float overlapApprox = 0.2f;
+    private final Random random = new Random();
 
     public GenDataProcessor(ProcessorContext context) {
       super(context);
@@ -171,10 +183,16 @@ public class JoinDataGen extends TezExampleBase {
 
     public static byte[] createConfiguration(long streamOutputFileSize, long hashOutputFileSize)
         throws IOException {
+      return createConfiguration(streamOutputFileSize, hashOutputFileSize, 0.0f);
+    }
+
+    public static byte[] createConfiguration(long streamOutputFileSize, long hashOutputFileSize,
+        float skewFraction) throws IOException {
       ByteArrayOutputStream bos = new ByteArrayOutputStream();
       DataOutputStream dos = new DataOutputStream(bos);
       dos.writeLong(streamOutputFileSize);
       dos.writeLong(hashOutputFileSize);
+      dos.writeFloat(skewFraction);
       dos.close();
       bos.close();
       return bos.toByteArray();
@@ -187,8 +205,9 @@ public class JoinDataGen extends TezExampleBase {
       DataInputStream dis = new DataInputStream(bis);
       streamOutputFileSize = dis.readLong();
       hashOutputFileSize = dis.readLong();
+      skewFraction = dis.readFloat();
       LOG.info("Initialized with largeFileTargetSize=" + streamOutputFileSize
-          + ", smallFileTragetSize=" + hashOutputFileSize);
+          + ", smallFileTragetSize=" + hashOutputFileSize + ", skewFraction=" + skewFraction);
       dis.close();
       bis.close();
     }
@@ -225,7 +244,33 @@ public class JoinDataGen extends TezExampleBase {
       long numLargeFileKeys = 0;
       long numSmallFileKeys = 0;
       long numExpectedKeys = 0;
+      Text[] hotKeys = new Text[NUM_HOT_KEYS];
+      for (int i = 0; i < NUM_HOT_KEYS; i++) {
+        hotKeys[i] = new Text("hotkey_" + i);
+      }
+      if (skewFraction > 0.0f && getContext().getTaskIndex() == 0) {
+        // The hot keys are written to the hash file by a single task, so that every task
+        // knows how many times they join
+        for (Text hotKey : hotKeys) {
+          for (int i = 0; i < HOT_KEY_HASH_COPIES; i++) {
+            hashOutputWriter.write(hotKey, NullWritable.get());
+            sizeSmall += hotKey.getLength();
+            numSmallFileKeys++;
+          }
+        }
+      }
       while (sizeLarge < streamOutputFileSize) {
+        if (skewFraction > 0.0f && random.nextFloat() < skewFraction) {
+          Text hotKey = hotKeys[random.nextInt(NUM_HOT_KEYS)];
+          streamOutputWriter.write(hotKey, NullWritable.get());
+          sizeLarge += hotKey.getLength();
+          numLargeFileKeys++;
+          for (int i = 0; i < HOT_KEY_HASH_COPIES; i++) {
+            expectedOutputWriter.write(hotKey, NullWritable.get());
+            numExpectedKeys++;
+          }
+          continue;
+        }
         String str = createOverlapString(13, count);
         Text text = new Text(str);
         int size = text.getLength();
@@ -255,7 +300,6 @@ public class JoinDataGen extends TezExampleBase {
 
     private String createOverlapString(int size, long count) {
       StringBuilder sb = new StringBuilder();
-      Random random = new Random();
       for (int i = 0; i < size; i++) {
         int r = random.nextInt(Integer.MAX_VALUE) % 26;
         // Random a-z followed by the count
@@ -267,7 +311,6 @@ public class JoinDataGen extends TezExampleBase {
 
     private String createNonOverlaptring(int size, long count) {
       StringBuilder sb = new StringBuilder();
-      Random random = new Random();
       for (int i = 0; i < size; i++) {
         int r = random.nextInt(Integer.MAX_VALUE) % 26;
         // Random A-Z followed by the count
@@ -18,6 +18,7 @@
 
 package org.apache.tez.examples;
 
+import java.io.File;
 import java.io.IOException;
 
 import org.slf4j.Logger;
@@ -38,6 +39,7 @@ import org.apache.tez.dag.api.TezConfiguration;
 import org.apache.tez.dag.api.Vertex;
 import org.apache.tez.dag.library.vertexmanager.ShuffleVertexManager;
 import org.apache.tez.examples.HashJoinExample.ForwardingProcessor;
+import org.apache.tez.examples.HashJoinExample.KeyJoinWriter;
 import org.apache.tez.mapreduce.input.MRInput;
 import org.apache.tez.mapreduce.output.MROutput;
 import org.apache.tez.mapreduce.processor.SimpleMRProcessor;
@@ -48,6 +50,7 @@ import org.apache.tez.runtime.api.Reader;
 import org.apache.tez.runtime.library.api.KeyValueWriter;
 import org.apache.tez.runtime.library.api.KeyValuesReader;
 import org.apache.tez.runtime.library.conf.OrderedPartitionedKVEdgeConfig;
+import org.apache.tez.runtime.library.join.SortMergeJoin;
 import org.apache.tez.runtime.library.partitioner.HashPartitioner;
 
 import com.google.common.base.Preconditions;
@@ -65,9 +68,10 @@ import com.google.common.base.Preconditions;
  * two inputs in {@link SortMergeJoinProcessor} to find the joined keys since
  * they are both sorted already. <br> <li>Because of the sort implemention
  * difference we describe above, the data requirement is also different for
- * these 2 sort algorithms. For {@link HashJoinExample} It is required that keys
- * in the hashFile are unique. while for {@link SortMergeJoinExample} it is
- * required that keys in the both 2 datasets are unique.
+ * these 2 sort algorithms. {@link HashJoinExample} spills the hashFile to local
+ * disk once it outgrows memory, while {@link SortMergeJoinExample} relies on the
+ * sort of both datasets. In both, keys may repeat in either dataset, in which
+ * case each pair of matching keys is output.
  */
 public class SortMergeJoinExample extends TezExampleBase {
 
@@ -236,12 +240,13 @@ public class SortMergeJoinExample extends TezExampleBase {
   /**
    * Join 2 inputs which has already been sorted. Check the algorithm here <a
    * href="http://en.wikipedia.org/wiki/Sort-merge_join">Sort-Merge Join</a><br>
-   * It require the keys in both datasets are unique. <br>
-   * Disclaimer: The join code here is written as a tutorial for the APIs and
-   * not for performance.
+   * Keys may repeat in both datasets, see {@link SortMergeJoin}.
    */
   public static class SortMergeJoinProcessor extends SimpleMRProcessor {
 
+    // Fraction of the task memory used for the values of a key group
+    private static final double MEMORY_FRACTION = 0.3;
+
     public SortMergeJoinProcessor(ProcessorContext context) {
       super(context);
     }
@@ -261,52 +266,12 @@ public class SortMergeJoinExample extends TezExampleBase {
       Preconditions.checkState(lo.getWriter() instanceof KeyValueWriter);
       KeyValueWriter writer = (KeyValueWriter) lo.getWriter();
 
-      join((KeyValuesReader) inputReader1, (KeyValuesReader) inputReader2,
-          writer);
-    }
-
-    /**
-     * Join 2 sorted inputs both from {@link KeyValuesReader} and write output
-     * using {@link KeyValueWriter}
-     * 
-     * @param inputReader1
-     * @param inputReader2
-     * @param writer
-     * @throws IOException
-     */
-    private void join(KeyValuesReader inputReader1,
-        KeyValuesReader inputReader2, KeyValueWriter writer) throws IOException {
-
-      while (inputReader1.next() && inputReader2.next()) {
-        Text value1 = (Text) inputReader1.getCurrentKey();
-        Text value2 = (Text) inputReader2.getCurrentKey();
-        boolean reachEnd = false;
-        // move the cursor of 2 inputs forward until find the same values or one
-        // of them reach the end.
-        while (value1.compareTo(value2) != 0) {
-          if (value1.compareTo(value2) > 0) {
-            if (inputReader2.next()) {
-              value2 = (Text) inputReader2.getCurrentKey();
-            } else {
-              reachEnd = true;
-              break;
-            }
-          } else {
-            if (inputReader1.next()) {
-              value1 = (Text) inputReader1.getCurrentKey();
-            } else {
-              reachEnd = true;
-              break;
-            }
-          }
-        }
-
-        if (reachEnd) {
-          break;
-        } else {
-          writer.write(value1, NullWritable.get());
-        }
-      }
+      long memoryLimit =
+          (long) (getContext().getTotalMemoryAvailableToTask() * MEMORY_FRACTION);
+      SortMergeJoin join = new SortMergeJoin(memoryLimit,
+          new File(getContext().getWorkDirs()[0]), new Configuration(false));
+      join.join((KeyValuesReader) inputReader1, (KeyValuesReader) inputReader2,
+          new KeyJoinWriter(writer));
     }
   }
 }
@@ -17,6 +17,8 @@ package org.apache.tez.mapreduce.grouper;
 import javax.annotation.Nullable;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedList;
@@ -24,6 +26,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeMap;
+import java.util.TreeSet;
 
 import com.google.common.base.Preconditions;
 import org.apache.hadoop.conf.Configuration;
@@ -101,6 +104,20 @@ public abstract class TezSplitGrouper {
   public static final String TEZ_GROUPING_NODE_LOCAL_ONLY = "tez.grouping.node.local.only";
   public static final boolean TEZ_GROUPING_NODE_LOCAL_ONLY_DEFAULT = false;
 
+  /**
+   * Algorithm used to group splits.
+   * {@link #TEZ_GROUPING_ALGORITHM_LOCALITY} (the default) greedily builds groups node by node,
+   * falling back to rack local groups.
+   * {@link #TEZ_GROUPING_ALGORITHM_BIN_PACKING} packs the largest splits first into the desired
+   * number of groups, placing each split in a group on one of its nodes when there is room, and
+   * only then in the least loaded group. This produces groups of more even size, at the cost of
+   * some splits not being node local.
+   */
+  public static final String TEZ_GROUPING_ALGORITHM = "tez.grouping.algorithm";
+  public static final String TEZ_GROUPING_ALGORITHM_LOCALITY = "locality";
+  public static final String TEZ_GROUPING_ALGORITHM_BIN_PACKING = "bin-packing";
+  public static final String TEZ_GROUPING_ALGORITHM_DEFAULT = TEZ_GROUPING_ALGORITHM_LOCALITY;
+
 
   static class LocationHolder {
     List<SplitContainer> splits;
@@ -285,6 +302,18 @@ public abstract class TezSplitGrouper {
       return groupedSplits;
     }
 
+    String algorithm = conf.get(TEZ_GROUPING_ALGORITHM, TEZ_GROUPING_ALGORITHM_DEFAULT);
+    if (TEZ_GROUPING_ALGORITHM_BIN_PACKING.equals(algorithm)) {
+      groupedSplits = groupByBinPacking(conf, originalSplits, desiredNumSplits,
+          wrappedInputFormatName, estimator, locationProvider);
+      logGroupingStats(groupedSplits, estimator, locationProvider);
+      return groupedSplits;
+    } else if (!TEZ_GROUPING_ALGORITHM_LOCALITY.equals(algorithm)) {
+      throw new TezUncheckedException("Unknown grouping algorithm: " + algorithm
+          + ". Expected one of " + TEZ_GROUPING_ALGORITHM_LOCALITY + ", "
+          + TEZ_GROUPING_ALGORITHM_BIN_PACKING);
+    }
+
     long lengthPerGroup = totalLength/desiredNumSplits;
     int numNodeLocations = distinctLocations.size();
     int numSplitsPerLocation = originalSplits.size()/numNodeLocations;
@@ -550,9 +579,317 @@ public abstract class TezSplitGrouper {
     LOG.info("Number of splits desired: " + desiredNumSplits +
         " created: " + groupedSplits.size() +
         " splitsProcessed: " + splitsProcessed);
+    // The stats take another pass over the sizes and locations of the splits
+    if (LOG.isDebugEnabled()) {
+      logGroupingStats(groupedSplits, estimator, locationProvider);
+    }
+    return groupedSplits;
+  }
+
+  private static final String EMPTY_LOCATION = "EmptyLocation";
+
+  private static final class WeightedSplit {
+    final SplitContainer split;
+    final int position;
+    final long weight;
+    final String[] locations;
+
+    WeightedSplit(SplitContainer split, int position, long weight, String[] locations) {
+      this.split = split;
+      this.position = position;
+      this.weight = weight;
+      this.locations = locations;
+    }
+  }
+
+  private static final class Bin {
+    final int index;
+    final String location;
+    final List<WeightedSplit> splits = new ArrayList<WeightedSplit>();
+    long load = 0;
+
+    Bin(int index, String location) {
+      this.index = index;
+      this.location = location;
+    }
+  }
+
+  private static final Comparator<Bin> LEAST_LOADED_BIN = new Comparator<Bin>() {
+    @Override
+    public int compare(Bin o1, Bin o2) {
+      if (o1.load != o2.load) {
+        return o1.load < o2.load ? -1 : 1;
+      }
+      return o1.index - o2.index;
+    }
+  };
+
+  private static final Comparator<WeightedSplit> LARGEST_SPLIT = new Comparator<WeightedSplit>() {
+    @Override
+    public int compare(WeightedSplit o1, WeightedSplit o2) {
+      if (o1.weight != o2.weight) {
+        return o1.weight > o2.weight ? -1 : 1;
+      }
+      return o1.position - o2.position;
+    }
+  };
+
+  private static final Comparator<WeightedSplit> SPLIT_POSITION = new Comparator<WeightedSplit>() {
+    @Override
+    public int compare(WeightedSplit o1, WeightedSplit o2) {
+      return o1.position - o2.position;
+    }
+  };
+
+  /**
+   * First fit decreasing bin packing of the splits into desiredNumSplits groups of equal target
+   * size. Each split, largest first, goes into the fullest group on one of its nodes which still
+   * has room, or opens a new group on the least used of its nodes while fewer than
+   * desiredNumSplits groups exist. Splits which fit nowhere go into the least loaded group on
+   * their rack if it has room, and else into the least loaded group overall. With node local
+   * only grouping such splits open additional groups on their nodes instead.
+   */
+  private List<GroupedSplitContainer> groupByBinPacking(Configuration conf,
+      List<SplitContainer> originalSplits, int desiredNumSplits, String wrappedInputFormatName,
+      SplitSizeEstimatorWrapper estimator, SplitLocationProviderWrapper locationProvider)
+      throws IOException, InterruptedException {
+    boolean groupByLength = conf.getBoolean(
+        TEZ_GROUPING_SPLIT_BY_LENGTH,
+        TEZ_GROUPING_SPLIT_BY_LENGTH_DEFAULT);
+    boolean groupByCount = conf.getBoolean(
+        TEZ_GROUPING_SPLIT_BY_COUNT,
+        TEZ_GROUPING_SPLIT_BY_COUNT_DEFAULT);
+    boolean nodeLocalOnly = conf.getBoolean(
+        TEZ_GROUPING_NODE_LOCAL_ONLY,
+        TEZ_GROUPING_NODE_LOCAL_ONLY_DEFAULT);
+    if (!(groupByLength || groupByCount)) {
+      throw new TezUncheckedException(
+          "None of the grouping parameters are true: "
+              + TEZ_GROUPING_SPLIT_BY_LENGTH + ", "
+              + TEZ_GROUPING_SPLIT_BY_COUNT);
+    }
+
+    // Splits are weighed by length, or all count the same when only grouping by count
+    List<WeightedSplit> splits = new ArrayList<WeightedSplit>(originalSplits.size());
+    long totalWeight = 0;
+    for (SplitContainer split : originalSplits) {
+      long weight = groupByLength ? estimator.getEstimatedSize(split) : 1;
+      String[] locations = cleanupLocations(locationProvider.getPreferredLocations(split));
+      if (locations == null) {
+        locations = new String[] {EMPTY_LOCATION};
+      }
+      splits.add(new WeightedSplit(split, splits.size(), weight, locations));
+      totalWeight += weight;
+    }
+    long target = Math.max(1, (totalWeight + desiredNumSplits - 1) / desiredNumSplits);
+    Collections.sort(splits, LARGEST_SPLIT);
+
+    List<Bin> bins = new ArrayList<Bin>(desiredNumSplits);
+    Map<String, List<Bin>> binsByLocation = new HashMap<String, List<Bin>>();
+    List<WeightedSplit> remainingSplits = new ArrayList<WeightedSplit>();
+    for (WeightedSplit split : splits) {
+      Bin best = null;
+      for (String location : split.locations) {
+        List<Bin> locationBins = binsByLocation.get(location);
+        if (locationBins == null) {
+          continue;
+        }
+        for (Bin bin : locationBins) {
+          if (bin.load + split.weight <= target && (best == null || bin.load > best.load)) {
+            best = bin;
+          }
+        }
+      }
+      if (best == null && bins.size() < desiredNumSplits) {
+        best = newBin(leastUsedLocation(split.locations, binsByLocation), bins, binsByLocation);
+      }
+      if (best == null) {
+        remainingSplits.add(split);
+      } else {
+        best.splits.add(split);
+        best.load += split.weight;
+      }
+    }
+
+    if (!remainingSplits.isEmpty()) {
+      LOG.info("Placing " + remainingSplits.size() + " of " + splits.size()
+          + " splits which did not fit in a node local group. nodeLocalOnly: " + nodeLocalOnly);
+      if (nodeLocalOnly) {
+        for (WeightedSplit split : remainingSplits) {
+          Bin best = null;
+          for (String location : split.locations) {
+            List<Bin> locationBins = binsByLocation.get(location);
+            if (locationBins == null) {
+              continue;
+            }
+            for (Bin bin : locationBins) {
+              if (best == null || LEAST_LOADED_BIN.compare(bin, best) < 0) {
+                best = bin;
+              }
+            }
+          }
+          if (best == null || best.load + split.weight > target) {
+            best = newBin(leastUsedLocation(split.locations, binsByLocation), bins,
+                binsByLocation);
+          }
+          best.splits.add(split);
+          best.load += split.weight;
+        }
+      } else {
+        RackResolver.init(conf);
+        Map<String, String> locToRackMap = new HashMap<String, String>();
+        Map<String, TreeSet<Bin>> binsByRack = new HashMap<String, TreeSet<Bin>>();
+        TreeSet<Bin> allBins = new TreeSet<Bin>(LEAST_LOADED_BIN);
+        for (Bin bin : bins) {
+          String rack = resolveRack(bin.location, locToRackMap);
+          TreeSet<Bin> rackBins = binsByRack.get(rack);
+          if (rackBins == null) {
+            rackBins = new TreeSet<Bin>(LEAST_LOADED_BIN);
+            binsByRack.put(rack, rackBins);
+          }
+          rackBins.add(bin);
+          allBins.add(bin);
+        }
+        for (WeightedSplit split : remainingSplits) {
+          Bin best = null;
+          for (String location : split.locations) {
+            TreeSet<Bin> rackBins = binsByRack.get(resolveRack(location, locToRackMap));
+            if (rackBins != null && (best == null
+                || LEAST_LOADED_BIN.compare(rackBins.first(), best) < 0)) {
+              best = rackBins.first();
+            }
+          }
+          if (best == null || best.load + split.weight > target) {
+            best = allBins.first();
+          }
+          // Re-insert so the sets stay ordered by load
+          TreeSet<Bin> rackBins = binsByRack.get(resolveRack(best.location, locToRackMap));
+          rackBins.remove(best);
+          allBins.remove(best);
+          best.splits.add(split);
+          best.load += split.weight;
+          rackBins.add(best);
+          allBins.add(best);
+        }
+      }
+    }
+
+    List<GroupedSplitContainer> groupedSplits = new ArrayList<GroupedSplitContainer>(bins.size());
+    for (Bin bin : bins) {
+      // splits in a group maintain their original order
+      Collections.sort(bin.splits, SPLIT_POSITION);
+      String[] groupLocation = EMPTY_LOCATION.equals(bin.location) ? null
+          : new String[] {bin.location};
+      GroupedSplitContainer groupedSplit = new GroupedSplitContainer(bin.splits.size(),
+          wrappedInputFormatName, groupLocation, null);
+      for (WeightedSplit split : bin.splits) {
+        groupedSplit.addSplit(split.split);
+        Preconditions.checkState(split.split.isProcessed() == false,
+            "Duplicates in grouping at location: " + bin.location);
+        split.split.setIsProcessed(true);
+      }
+      groupedSplits.add(groupedSplit);
+    }
+    LOG.info("Number of splits desired: " + desiredNumSplits +
+        " created: " + groupedSplits.size() +
+        " targetWeightPerGroup: " + target +
+        " groupByLength: " + groupByLength +
+        " numOriginalSplits: " + originalSplits.size());
     return groupedSplits;
   }
 
+  private static Bin newBin(String location, List<Bin> bins,
+      Map<String, List<Bin>> binsByLocation) {
+    Bin bin = new Bin(bins.size(), location);
+    bins.add(bin);
+    List<Bin> locationBins = binsByLocation.get(location);
+    if (locationBins == null) {
+      locationBins = new ArrayList<Bin>();
+      binsByLocation.put(location, locationBins);
+    }
+    locationBins.add(bin);
+    return bin;
+  }
+
+  private static String leastUsedLocation(String[] locations,
+      Map<String, List<Bin>> binsByLocation) {
+    String leastUsed = null;
+    int leastBins = Integer.MAX_VALUE;
+    for (String location : locations) {
+      List<Bin> locationBins = binsByLocation.get(location);
+      int numBins = locationBins == null ? 0 : locationBins.size();
+      if (numBins < leastBins) {
+        leastUsed = location;
+        leastBins = numBins;
+      }
+    }
+    return leastUsed;
+  }
+
+  private static String resolveRack(String location, Map<String, String> locToRackMap) {
+    String rack = locToRackMap.get(location);
+    if (rack == null) {
+      rack = EMPTY_LOCATION.equals(location) ? EMPTY_LOCATION
+          : RackResolver.resolve(location).getNetworkLocation();
+      locToRackMap.put(location, rack);
+    }
+    return rack;
+  }
+
+  /**
+   * Logs the spread of the estimated group sizes, which bounds how much longer the slowest
+   * task of the wave is expected to run than the average one, and the fraction of splits
+   * placed in a group on one of their nodes.
+   */
+  private static void logGroupingStats(List<GroupedSplitContainer> groupedSplits,
+      SplitSizeEstimatorWrapper estimator, SplitLocationProviderWrapper locationProvider)
+      throws IOException, InterruptedException {
+    if (groupedSplits.isEmpty()) {
+      return;
+    }
+    long minSize = Long.MAX_VALUE;
+    long maxSize = 0;
+    double sum = 0;
+    double sumOfSquares = 0;
+    int numSplits = 0;
+    int numNodeLocalSplits = 0;
+    for (GroupedSplitContainer groupedSplit : groupedSplits) {
+      long size = 0;
+      for (SplitContainer split : groupedSplit.getWrappedSplitContainers()) {
+        size += estimator.getEstimatedSize(split);
+        numSplits++;
+        if (isNodeLocal(groupedSplit.getLocations(),
+            locationProvider.getPreferredLocations(split))) {
+          numNodeLocalSplits++;
+        }
+      }
+      minSize = Math.min(minSize, size);
+      maxSize = Math.max(maxSize, size);
+      sum += size;
+      sumOfSquares += (double) size * size;
+    }
+    double mean = sum / groupedSplits.size();
+    double variance = Math.max(0, sumOfSquares / groupedSplits.size() - mean * mean);
+    LOG.info(String.format("Grouped split sizes: groups: %d mean: %.0f stdDev: %.0f"
+            + " min: %d max: %d maxToMean: %.2f nodeLocalSplits: %d/%d",
+        groupedSplits.size(), mean, Math.sqrt(variance), minSize, maxSize,
+        mean > 0 ? maxSize / mean : 1.0, numNodeLocalSplits, numSplits));
+  }
+
+  private static boolean isNodeLocal(String[] groupLocations, String[] splitLocations) {
+    if (groupLocations == null || splitLocations == null) {
+      return false;
+    }
+    for (String groupLocation : groupLocations) {
+      for (String splitLocation : splitLocations) {
+        if (groupLocation != null && groupLocation.equals(splitLocation)) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
   private String[] cleanupLocations(String[] locations) {
     if (locations == null || locations.length == 0) {
       return null;
@@ -639,6 +976,18 @@ public abstract class TezSplitGrouper {
       return this;
     }
 
+    /**
+     * Grouping algorithm, one of {@link #TEZ_GROUPING_ALGORITHM_LOCALITY} or
+     * {@link #TEZ_GROUPING_ALGORITHM_BIN_PACKING}
+     */
+    public TezMRSplitsGrouperConfigBuilder setGroupingAlgorithm(String algorithm) {
+      Preconditions.checkArgument(TEZ_GROUPING_ALGORITHM_LOCALITY.equals(algorithm)
+          || TEZ_GROUPING_ALGORITHM_BIN_PACKING.equals(algorithm),
+          "Unknown grouping algorithm: " + algorithm);
+      this.conf.set(TEZ_GROUPING_ALGORITHM, algorithm);
+      return this;
+    }
+
     /**
      * upper and lower bounds for the splits
      */
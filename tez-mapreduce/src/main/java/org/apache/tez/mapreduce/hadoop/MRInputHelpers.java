@@ -408,8 +408,18 @@ public class MRInputHelpers {
       finalInputFormat = inputFormat;
     }
 
-    List<org.apache.hadoop.mapreduce.InputSplit> array = finalInputFormat
-        .getSplits(jobContext);
+    List<org.apache.hadoop.mapreduce.InputSplit> array;
+    PathSplitGenerator pathSplitGenerator = new PathSplitGenerator(conf);
+    if (pathSplitGenerator.isEnabledFor(inputFormat)) {
+      array = pathSplitGenerator.getNewSplits(inputFormat, jobContext);
+      if (groupSplits) {
+        // Same as TezGroupedSplitsInputFormat, on top of the splits generated per path
+        array = new org.apache.hadoop.mapreduce.split.TezMapReduceSplitsGrouper().getGroupedSplits(
+            conf, array, numTasks, inputFormat.getClass().getName(), null, null);
+      }
+    } else {
+      array = finalInputFormat.getSplits(jobContext);
+    }
     org.apache.hadoop.mapreduce.InputSplit[] splits = (org.apache.hadoop.mapreduce.InputSplit[]) array
         .toArray(new org.apache.hadoop.mapreduce.InputSplit[array.size()]);
 
@@ -443,8 +453,18 @@ public class MRInputHelpers {
     } else {
       finalInputFormat = inputFormat;
     }
-    org.apache.hadoop.mapred.InputSplit[] splits = finalInputFormat
-        .getSplits(jobConf, jobConf.getNumMapTasks());
+    org.apache.hadoop.mapred.InputSplit[] splits;
+    PathSplitGenerator pathSplitGenerator = new PathSplitGenerator(jobConf);
+    if (pathSplitGenerator.isEnabledFor(inputFormat)) {
+      splits = pathSplitGenerator.getOldSplits(inputFormat, jobConf);
+      if (groupSplits) {
+        // Same as TezGroupedSplitsInputFormat, on top of the splits generated per path
+        splits = new org.apache.hadoop.mapred.split.TezMapredSplitsGrouper().getGroupedSplits(
+            jobConf, splits, numTasks, inputFormat.getClass().getName(), null, null);
+      }
+    } else {
+      splits = finalInputFormat.getSplits(jobConf, jobConf.getNumMapTasks());
+    }
     // sort the splits into order based on size, so that the biggest
     // go first
     Arrays.sort(splits, new OldInputSplitComparator());
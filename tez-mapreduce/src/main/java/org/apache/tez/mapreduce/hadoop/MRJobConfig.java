@@ -633,5 +633,29 @@ public interface MRJobConfig {
   public static final String MR_TEZ_INPUT_INITIALIZER_SERIALIZE_EVENT_PAYLOAD = MR_TEZ_PREFIX
       + "input.initializer.serialize.event.payload";
   public static final boolean MR_TEZ_INPUT_INITIALIZER_SERIALIZE_EVENT_PAYLOAD_DEFAULT = true;
+
+  /**
+   * Number of threads used to generate splits for the input paths of a FileInputFormat in
+   * parallel, one path at a time. 1 generates splits for all paths in one call, as before.
+   */
+  public static final String MR_TEZ_SPLIT_GENERATION_THREADS = MR_TEZ_PREFIX
+      + "input.initializer.split.generation.threads";
+  public static final int MR_TEZ_SPLIT_GENERATION_THREADS_DEFAULT = 1;
+
+  /**
+   * Whether the splits of each input path are cached in the AM, keyed by the path and its
+   * modification time, so DAGs in a session reading the same unchanged paths do not list them
+   * again.
+   */
+  public static final String MR_TEZ_SPLIT_CACHE_ENABLED = MR_TEZ_PREFIX
+      + "input.initializer.split.cache.enabled";
+  public static final boolean MR_TEZ_SPLIT_CACHE_ENABLED_DEFAULT = false;
+
+  /**
+   * Max no. of input paths whose splits are cached, least recently used paths are evicted first.
+   */
+  public static final String MR_TEZ_SPLIT_CACHE_MAX_ENTRIES = MR_TEZ_PREFIX
+      + "input.initializer.split.cache.max-entries";
+  public static final int MR_TEZ_SPLIT_CACHE_MAX_ENTRIES_DEFAULT = 1000;
   
 }
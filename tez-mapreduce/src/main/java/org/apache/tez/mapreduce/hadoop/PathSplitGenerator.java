@@ -0,0 +1,304 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.tez.mapreduce.hadoop;
+
+import java.io.IOException;
+import java.security.PrivilegedExceptionAction;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.hadoop.classification.InterfaceAudience.Private;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.mapred.JobConf;
+import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.mapreduce.JobContext;
+import org.apache.hadoop.mapreduce.lib.input.FileInputFormat;
+import org.apache.hadoop.security.UserGroupInformation;
+import org.apache.hadoop.util.ReflectionUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Generates the splits of a file based InputFormat one input path at a time, so that paths can
+ * be listed in parallel, and the splits of each path cached across the DAGs of a session.
+ *
+ * Splits are cached by the path, its modification time, the InputFormat and the settings which
+ * affect how a path is split. A path which is rewritten gets a new modification time, but
+ * changes below the top level of a recursively listed directory are not detected.
+ *
+ * For mapred InputFormats, each path is split with a numSplits hint of 1, i.e. splits are sized
+ * by the block size and the configured min/max split sizes only.
+ */
+@Private
+public class PathSplitGenerator {
+
+  private static final Logger LOG = LoggerFactory.getLogger(PathSplitGenerator.class);
+
+  // Lives as long as the AM, i.e. for all DAGs of a session
+  private static final SplitCache CACHE = new SplitCache();
+
+  private final Configuration conf;
+  private final int numThreads;
+  private final boolean cacheEnabled;
+
+  private interface PathSplitter<T> {
+    List<T> getSplits(Path path) throws IOException, InterruptedException;
+  }
+
+  public PathSplitGenerator(Configuration conf) {
+    this.conf = conf;
+    this.numThreads = conf.getInt(MRJobConfig.MR_TEZ_SPLIT_GENERATION_THREADS,
+        MRJobConfig.MR_TEZ_SPLIT_GENERATION_THREADS_DEFAULT);
+    this.cacheEnabled = conf.getBoolean(MRJobConfig.MR_TEZ_SPLIT_CACHE_ENABLED,
+        MRJobConfig.MR_TEZ_SPLIT_CACHE_ENABLED_DEFAULT);
+    if (cacheEnabled) {
+      CACHE.setMaxEntries(conf.getInt(MRJobConfig.MR_TEZ_SPLIT_CACHE_MAX_ENTRIES,
+          MRJobConfig.MR_TEZ_SPLIT_CACHE_MAX_ENTRIES_DEFAULT));
+    }
+  }
+
+  /**
+   * @return whether splits of the given InputFormat are generated per path
+   */
+  public boolean isEnabledFor(Object inputFormat) {
+    if (numThreads <= 1 && !cacheEnabled) {
+      return false;
+    }
+    // Combining splits across paths is what these formats are for
+    return (inputFormat instanceof FileInputFormat
+        && !(inputFormat instanceof org.apache.hadoop.mapreduce.lib.input.CombineFileInputFormat))
+        || (inputFormat instanceof org.apache.hadoop.mapred.FileInputFormat
+        && !(inputFormat instanceof org.apache.hadoop.mapred.lib.CombineFileInputFormat));
+  }
+
+  public List<org.apache.hadoop.mapreduce.InputSplit> getNewSplits(
+      final org.apache.hadoop.mapreduce.InputFormat<?, ?> inputFormat, JobContext jobContext)
+      throws IOException, InterruptedException {
+    final Configuration jobConf = jobContext.getConfiguration();
+    Path[] paths = FileInputFormat.getInputPaths(jobContext);
+    return generate(paths, inputFormat.getClass().getName(),
+        new PathSplitter<org.apache.hadoop.mapreduce.InputSplit>() {
+          @Override
+          public List<org.apache.hadoop.mapreduce.InputSplit> getSplits(Path path)
+              throws IOException, InterruptedException {
+            Job job = Job.getInstance(jobConf);
+            FileInputFormat.setInputPaths(job, path);
+            org.apache.hadoop.mapreduce.InputFormat<?, ?> pathInputFormat =
+                ReflectionUtils.newInstance(inputFormat.getClass(), job.getConfiguration());
+            return pathInputFormat.getSplits(job);
+          }
+        });
+  }
+
+  @SuppressWarnings("rawtypes")
+  public org.apache.hadoop.mapred.InputSplit[] getOldSplits(
+      final org.apache.hadoop.mapred.InputFormat inputFormat, final JobConf jobConf)
+      throws IOException {
+    Path[] paths = org.apache.hadoop.mapred.FileInputFormat.getInputPaths(jobConf);
+    List<org.apache.hadoop.mapred.InputSplit> splits;
+    try {
+      splits = generate(paths, inputFormat.getClass().getName(),
+          new PathSplitter<org.apache.hadoop.mapred.InputSplit>() {
+            @Override
+            public List<org.apache.hadoop.mapred.InputSplit> getSplits(Path path)
+                throws IOException {
+              JobConf pathConf = new JobConf(jobConf);
+              org.apache.hadoop.mapred.FileInputFormat.setInputPaths(pathConf, path);
+              org.apache.hadoop.mapred.InputFormat pathInputFormat =
+                  ReflectionUtils.newInstance(inputFormat.getClass(), pathConf);
+              return Arrays.asList(pathInputFormat.getSplits(pathConf, 1));
+            }
+          });
+    } catch (InterruptedException e) {
+      throw new IOException("Interrupted while generating splits", e);
+    }
+    return splits.toArray(new org.apache.hadoop.mapred.InputSplit[splits.size()]);
+  }
+
+  private <T> List<T> generate(Path[] paths, String inputFormatName,
+      final PathSplitter<T> splitter) throws IOException, InterruptedException {
+    List<List<T>> pathSplits = new ArrayList<List<T>>(paths.length);
+    String[] cacheKeys = new String[paths.length];
+    List<Integer> pending = new ArrayList<Integer>();
+    for (int i = 0; i < paths.length; ++i) {
+      List<T> cached = null;
+      if (cacheEnabled) {
+        cacheKeys[i] = getCacheKey(paths[i], inputFormatName);
+        if (cacheKeys[i] != null) {
+          cached = CACHE.get(cacheKeys[i]);
+        }
+      }
+      pathSplits.add(cached);
+      if (cached == null) {
+        pending.add(i);
+      }
+    }
+    LOG.info("Generating splits for " + pending.size() + " of " + paths.length
+        + " input paths, numThreads=" + numThreads + ", cacheEnabled=" + cacheEnabled);
+
+    if (numThreads <= 1 || pending.size() <= 1) {
+      for (int i : pending) {
+        pathSplits.set(i, splitter.getSplits(paths[i]));
+      }
+    } else {
+      final UserGroupInformation ugi = UserGroupInformation.getCurrentUser();
+      ExecutorService executor = Executors.newFixedThreadPool(
+          Math.min(numThreads, pending.size()),
+          new ThreadFactoryBuilder().setDaemon(true).setNameFormat("SplitGenerator #%d").build());
+      try {
+        List<Future<List<T>>> futures = new ArrayList<Future<List<T>>>(pending.size());
+        for (int i : pending) {
+          final Path path = paths[i];
+          futures.add(executor.submit(new Callable<List<T>>() {
+            @Override
+            public List<T> call() throws Exception {
+              return ugi.doAs(new PrivilegedExceptionAction<List<T>>() {
+                @Override
+                public List<T> run() throws Exception {
+                  return splitter.getSplits(path);
+                }
+              });
+            }
+          }));
+        }
+        for (int j = 0; j < pending.size(); ++j) {
+          pathSplits.set(pending.get(j), getResult(futures.get(j)));
+        }
+      } finally {
+        executor.shutdownNow();
+      }
+    }
+
+    List<T> splits = new ArrayList<T>();
+    for (int i = 0; i < paths.length; ++i) {
+      List<T> splitsOfPath = pathSplits.get(i);
+      if (cacheKeys[i] != null) {
+        CACHE.put(cacheKeys[i], splitsOfPath);
+      }
+      splits.addAll(splitsOfPath);
+    }
+    return splits;
+  }
+
+  private static <T> List<T> getResult(Future<List<T>> future)
+      throws IOException, InterruptedException {
+    try {
+      return future.get();
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof IOException) {
+        throw (IOException) cause;
+      } else if (cause instanceof InterruptedException) {
+        throw (InterruptedException) cause;
+      } else if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      throw new IOException("Failed to generate splits", cause);
+    }
+  }
+
+  /**
+   * @return the cache key of the path, or null if the path cannot be cached, e.g. a glob
+   */
+  private String getCacheKey(Path path, String inputFormatName) {
+    long modificationTime;
+    try {
+      FileSystem fs = path.getFileSystem(conf);
+      path = fs.makeQualified(path);
+      modificationTime = fs.getFileStatus(path).getModificationTime();
+    } catch (IOException e) {
+      LOG.debug("Not caching splits of " + path, e);
+      return null;
+    }
+    return inputFormatName
+        + "," + path
+        + "," + modificationTime
+        + "," + conf.get(FileInputFormat.SPLIT_MINSIZE)
+        + "," + conf.get(FileInputFormat.SPLIT_MAXSIZE)
+        + "," + conf.get(FileInputFormat.INPUT_DIR_RECURSIVE)
+        + "," + conf.get(FileInputFormat.PATHFILTER_CLASS);
+  }
+
+  @VisibleForTesting
+  static void clearCache() {
+    CACHE.clear();
+  }
+
+  @VisibleForTesting
+  static long getCacheHits() {
+    return CACHE.getHits();
+  }
+
+  private static class SplitCache {
+    // Guarded by this
+    private final Map<String, List<?>> splits = new LinkedHashMap<String, List<?>>(16, 0.75f, true);
+    private int maxEntries = MRJobConfig.MR_TEZ_SPLIT_CACHE_MAX_ENTRIES_DEFAULT;
+    private long hits = 0;
+
+    synchronized void setMaxEntries(int maxEntries) {
+      this.maxEntries = maxEntries;
+      evict();
+    }
+
+    @SuppressWarnings("unchecked")
+    synchronized <T> List<T> get(String key) {
+      List<T> cached = (List<T>) splits.get(key);
+      if (cached != null) {
+        ++hits;
+      }
+      return cached;
+    }
+
+    synchronized void put(String key, List<?> value) {
+      splits.put(key, value);
+      evict();
+    }
+
+    synchronized void clear() {
+      splits.clear();
+      hits = 0;
+    }
+
+    synchronized long getHits() {
+      return hits;
+    }
+
+    private void evict() {
+      Iterator<String> it = splits.keySet().iterator();
+      while (splits.size() > maxEntries && it.hasNext()) {
+        it.next();
+        it.remove();
+      }
+    }
+  }
+}
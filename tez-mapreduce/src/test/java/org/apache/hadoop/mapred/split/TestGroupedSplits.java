@@ -54,6 +54,7 @@ import org.apache.hadoop.mapred.Reporter;
 import org.apache.hadoop.mapred.TextInputFormat;
 import org.apache.hadoop.util.ReflectionUtils;
 import org.apache.tez.common.MockDNSToSwitchMapping;
+import org.apache.tez.dag.api.TezUncheckedException;
 import org.junit.Assert;
 import org.junit.BeforeClass;
 import org.junit.Test;
@@ -894,6 +895,75 @@ public class TestGroupedSplits {
     assertEquals(0, exp.size());
   }
 
+  @Test(timeout = 5000)
+  public void testBinPackingGrouping() throws IOException {
+    int numLocations = 3;
+    long[] splitLengths = {100, 200, 300, 400, 500, 500, 400, 300, 200, 100};
+    InputSplit[] rawSplits = new InputSplit[numLocations * splitLengths.length];
+    for (int i = 0; i < rawSplits.length; i++) {
+      String[] splitLoc = {"node" + (i / splitLengths.length)};
+      rawSplits[i] = new TestInputSplit(splitLengths[i % splitLengths.length], splitLoc, i);
+    }
+
+    TezMapredSplitsGrouper grouper = new TezMapredSplitsGrouper();
+    JobConf conf = (JobConf) TezSplitGrouper.newConfigBuilder(new JobConf(defaultConf))
+        .setGroupingSplitSize(1, 100000)
+        .setGroupingAlgorithm(TezSplitGrouper.TEZ_GROUPING_ALGORITHM_BIN_PACKING)
+        .build();
+
+    // 3000 per node packs exactly into 2 node local groups of 1500 each
+    InputSplit[] groupedSplits = grouper.getGroupedSplits(conf, rawSplits, 6, "InputFormat");
+    assertEquals(6, groupedSplits.length);
+    BitSet seen = new BitSet(rawSplits.length);
+    for (InputSplit groupedSplit : groupedSplits) {
+      TezGroupedSplit group = (TezGroupedSplit) groupedSplit;
+      assertEquals(1500, group.getLength());
+      assertEquals(1, group.getLocations().length);
+      int pos = -1;
+      for (InputSplit innerSplit : group.getGroupedSplits()) {
+        TestInputSplit split = (TestInputSplit) innerSplit;
+        // node local, in original order, and grouped once
+        assertEquals(group.getLocations()[0], split.getLocations()[0]);
+        assertTrue(pos < split.getPosition());
+        pos = split.getPosition();
+        assertFalse(seen.get(pos));
+        seen.set(pos);
+      }
+    }
+    assertEquals(rawSplits.length, seen.cardinality());
+
+    // 9000 does not pack exactly into 4 groups, the splits which do not fit in a node local
+    // group are spread over the least loaded groups
+    groupedSplits = grouper.getGroupedSplits(conf, rawSplits, 4, "InputFormat");
+    assertEquals(4, groupedSplits.length);
+    int numGroupedSplits = 0;
+    for (InputSplit groupedSplit : groupedSplits) {
+      TezGroupedSplit group = (TezGroupedSplit) groupedSplit;
+      assertTrue(group.getLength() >= 2200 && group.getLength() <= 2300);
+      numGroupedSplits += group.getGroupedSplits().size();
+    }
+    assertEquals(rawSplits.length, numGroupedSplits);
+  }
+
+  @Test(timeout = 5000)
+  public void testUnknownGroupingAlgorithm() throws IOException {
+    InputSplit[] rawSplits = new InputSplit[4];
+    for (int i = 0; i < rawSplits.length; i++) {
+      rawSplits[i] = new TestInputSplit(100, new String[] {"node0"}, i);
+    }
+    JobConf conf = new JobConf(defaultConf);
+    conf.set(TezSplitGrouper.TEZ_GROUPING_ALGORITHM, "random");
+    conf = (JobConf) TezSplitGrouper.newConfigBuilder(conf)
+        .setGroupingSplitSize(1, 100000)
+        .build();
+    try {
+      new TezMapredSplitsGrouper().getGroupedSplits(conf, rawSplits, 2, "InputFormat");
+      Assert.fail("Expected failure for an unknown grouping algorithm");
+    } catch (TezUncheckedException e) {
+      assertTrue(e.getMessage().contains("random"));
+    }
+  }
+
   private void verifySplitsFortestAllowSmallSplitsEarly(InputSplit[] groupedSplits) throws
       IOException {
     Map<String, MutableInt> matchedLocations = new HashMap<>();
@@ -35,6 +35,7 @@ import org.apache.hadoop.fs.RemoteIterator;
 import org.apache.hadoop.hdfs.MiniDFSCluster;
 import org.apache.hadoop.mapred.JobConf;
 import org.apache.hadoop.mapreduce.InputFormat;
+import org.apache.hadoop.mapreduce.Job;
 import org.apache.hadoop.mapreduce.JobID;
 import org.apache.hadoop.mapreduce.lib.input.TextInputFormat;
 import org.apache.hadoop.mapreduce.split.JobSplit;
@@ -176,6 +177,49 @@ public class TestMRInputHelpers {
     verifyLocationHints(oldSplitsDir, dataSource.getLocationHint().getTaskLocationHints());
   }
 
+  @Test(timeout = 10000)
+  public void testSplitsPerPathWithCache() throws Exception {
+    Path[] paths = new Path[4];
+    for (int i = 0; i < paths.length; ++i) {
+      paths[i] = remoteFs.makeQualified(new Path("/tmp/multiInput/p" + i));
+      createFile(new Path(paths[i], "f0"));
+    }
+    Job job = Job.getInstance(remoteFs.getConf());
+    job.setInputFormatClass(TextInputFormat.class);
+    org.apache.hadoop.mapreduce.lib.input.FileInputFormat.setInputPaths(job, paths);
+    JobConf jobConf = new JobConf(job.getConfiguration());
+    jobConf.setUseNewMapper(true);
+
+    int numSplits = MRInputHelpers.generateInputSplitsToMem(jobConf, false, 0).getNumTasks();
+    Assert.assertEquals(paths.length, numSplits);
+
+    PathSplitGenerator.clearCache();
+    jobConf.setInt(MRJobConfig.MR_TEZ_SPLIT_GENERATION_THREADS, 4);
+    jobConf.setBoolean(MRJobConfig.MR_TEZ_SPLIT_CACHE_ENABLED, true);
+    Assert.assertEquals(numSplits,
+        MRInputHelpers.generateInputSplitsToMem(jobConf, false, 0).getNumTasks());
+    Assert.assertEquals(0, PathSplitGenerator.getCacheHits());
+    Assert.assertEquals(numSplits,
+        MRInputHelpers.generateInputSplitsToMem(jobConf, false, 0).getNumTasks());
+    Assert.assertEquals(paths.length, PathSplitGenerator.getCacheHits());
+
+    // Adding a file changes the modification time of the path
+    createFile(new Path(paths[0], "f1"));
+    Assert.assertEquals(numSplits + 1,
+        MRInputHelpers.generateInputSplitsToMem(jobConf, false, 0).getNumTasks());
+    Assert.assertEquals(2 * paths.length - 1, PathSplitGenerator.getCacheHits());
+    PathSplitGenerator.clearCache();
+  }
+
+  private static void createFile(Path path) throws IOException {
+    FSDataOutputStream out = remoteFs.create(path, true);
+    try {
+      out.writeBytes("line1\nline2\n");
+    } finally {
+      out.close();
+    }
+  }
+
   @Test(timeout = 5000)
   public void testInputSplitLocalResourceCreation() throws Exception {
     DataSourceDescriptor dataSource = generateDataSourceDescriptorMapRed(oldSplitsDir);
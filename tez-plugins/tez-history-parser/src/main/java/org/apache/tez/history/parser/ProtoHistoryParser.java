@@ -0,0 +1,422 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p/>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p/>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.tez.history.parser;
+
+import com.google.common.base.Preconditions;
+import com.google.common.base.Strings;
+import com.google.common.collect.AbstractIterator;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.io.ByteStreams;
+import com.google.protobuf.InvalidProtocolBufferException;
+import org.apache.hadoop.io.IOUtils;
+import org.apache.tez.common.counters.TezCounters;
+import org.apache.tez.dag.api.DagTypeConverters;
+import org.apache.tez.dag.api.TezException;
+import org.apache.tez.dag.api.TezUncheckedException;
+import org.apache.tez.dag.api.records.DAGProtos.TezCountersProto;
+import org.apache.tez.dag.history.HistoryEventType;
+import org.apache.tez.dag.history.logging.impl.ProtoHistoryLoggingService;
+import org.apache.tez.dag.recovery.records.RecoveryProtos.HistoryLogBlockHeaderProto;
+import org.apache.tez.dag.recovery.records.RecoveryProtos.HistoryLogEventProto;
+import org.apache.tez.dag.recovery.records.RecoveryProtos.HistoryLogRecordProto;
+import org.apache.tez.dag.recovery.records.RecoveryProtos.HistoryLogRelatedEntityProto;
+import org.apache.tez.dag.recovery.records.RecoveryProtos.HistoryLogValueProto;
+import org.apache.tez.history.parser.datamodel.Constants;
+import org.apache.tez.history.parser.datamodel.DagInfo;
+import org.apache.tez.history.parser.datamodel.TaskAttemptInfo;
+import org.apache.tez.history.parser.datamodel.TaskInfo;
+import org.apache.tez.history.parser.datamodel.VertexInfo;
+import org.codehaus.jettison.json.JSONArray;
+import org.codehaus.jettison.json.JSONException;
+import org.codehaus.jettison.json.JSONObject;
+import org.codehaus.jettison.json.JSONTokener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Parser utility to parse data generated by ProtoHistoryLogging to the same in-memory datamodel
+ * as {@link SimpleHistoryParser}.
+ * <p/>
+ * The records of an entity are merged as protos, and each entity is only turned into the JSON
+ * expected by the datamodel once all its records have been read. Typed values are used as they
+ * are, counters are set from their proto, and only nested values such as the DAG plan are
+ * parsed from JSON text.
+ * <p/>
+ * Blocks of the log which have no records for the requested DAG, or vertex, are skipped without
+ * being decoded. Task attempts of a vertex can also be streamed with
+ * {@link #getTaskAttempts(String)}, which only holds the attempts still running at the current
+ * position of the log in memory.
+ */
+public class ProtoHistoryParser extends SimpleHistoryParser {
+  private static final Logger LOG = LoggerFactory.getLogger(ProtoHistoryParser.class);
+  private final File historyFile;
+
+  // Entities of the DAG being parsed, by entity id
+  private final Map<String, EntityRecords> entities = Maps.newLinkedHashMap();
+
+  public ProtoHistoryParser(File historyFile) {
+    super(historyFile);
+    this.historyFile = historyFile;
+  }
+
+  @Override
+  protected void parseContents(File historyFile, String dagId)
+      throws JSONException, IOException, TezException {
+    entities.clear();
+    DataInputStream in = open(historyFile);
+    try {
+      HistoryLogBlockHeaderProto header;
+      while ((header = readBlockHeader(in)) != null) {
+        if (!header.getDagIdsList().contains(dagId)) {
+          if (!skipBlock(in, header)) {
+            break;
+          }
+          continue;
+        }
+        InputStream block = readBlock(in, header);
+        if (block == null) {
+          break;
+        }
+        for (int i = 0; i < header.getNumRecords(); ++i) {
+          HistoryLogRecordProto record = HistoryLogRecordProto.parseDelimitedFrom(block);
+          if (dagId.equals(record.getDagId())) {
+            addRecord(entities, record);
+          }
+        }
+      }
+    } finally {
+      IOUtils.closeStream(in);
+    }
+    buildDataModel(dagId);
+  }
+
+  @Override
+  protected void buildDataModel(String dagId) throws JSONException, TezException {
+    EntityRecords dagRecords = entities.get(dagId);
+    if (dagRecords == null) {
+      LOG.error("Dag is not yet parsed. Looks like partial file.");
+      throw new TezException(
+          "Please provide a valid/complete history log file containing " + dagId);
+    }
+    this.dagInfo = DagInfo.create(dagRecords.toJson());
+    setTezCounters(dagInfo, dagRecords.getCounters());
+    setUserName(dagRecords.getRelatedEntity(Constants.USER));
+    for (EntityRecords records : entities.values()) {
+      String entityType = records.first.getEntityType();
+      if (entityType.equals(Constants.TEZ_VERTEX_ID)) {
+        VertexInfo vertexInfo = VertexInfo.create(records.toJson());
+        setTezCounters(vertexInfo, records.getCounters());
+        this.vertexList.add(vertexInfo);
+        LOG.debug("Parsed vertex {}", vertexInfo.getVertexName());
+      } else if (entityType.equals(Constants.TEZ_TASK_ID)) {
+        TaskInfo taskInfo = TaskInfo.create(records.toJson());
+        setTezCounters(taskInfo, records.getCounters());
+        this.taskList.add(taskInfo);
+        LOG.debug("Parsed task {}", taskInfo.getTaskId());
+      } else if (entityType.equals(Constants.TEZ_TASK_ATTEMPT_ID)) {
+        TaskAttemptInfo attemptInfo = createTaskAttempt(records);
+        this.attemptList.add(attemptInfo);
+        LOG.debug("Parsed task attempt {}", attemptInfo.getTaskAttemptId());
+      }
+    }
+  }
+
+  /**
+   * Streams the task attempts of a vertex, in the order in which they finished. Attempts which
+   * had not finished by the end of the log are returned last.
+   * <p/>
+   * The returned attempts are not linked to their tasks and vertex, use
+   * {@link #getDAGData(String)} for the fully linked datamodel.
+   *
+   * @param vertexId vertex whose attempts are returned
+   * @return iterator over the attempts, which closes the log once exhausted
+   * @throws IOException
+   */
+  public Iterator<TaskAttemptInfo> getTaskAttempts(String vertexId) throws IOException {
+    Preconditions.checkArgument(!Strings.isNullOrEmpty(vertexId), "Please provide valid vertexId");
+    return new TaskAttemptIterator(open(historyFile), vertexId.trim());
+  }
+
+  private static DataInputStream open(File historyFile) throws IOException {
+    DataInputStream in = new DataInputStream(
+        new BufferedInputStream(new FileInputStream(historyFile)));
+    try {
+      byte[] magic = new byte[ProtoHistoryLoggingService.MAGIC.length];
+      in.readFully(magic);
+      if (!Arrays.equals(magic, ProtoHistoryLoggingService.MAGIC)) {
+        throw new IOException(historyFile + " is not a proto history log");
+      }
+      int version = in.readInt();
+      if (version != ProtoHistoryLoggingService.VERSION) {
+        throw new IOException("Unsupported proto history log version " + version
+            + " in " + historyFile);
+      }
+      return in;
+    } catch (IOException e) {
+      IOUtils.closeStream(in);
+      throw e;
+    }
+  }
+
+  /**
+   * @return the next block header, or null at the end of the log. A truncated header, e.g. from
+   * an AM which did not shut down cleanly, is treated as the end of the log.
+   */
+  private static HistoryLogBlockHeaderProto readBlockHeader(DataInputStream in)
+      throws IOException {
+    try {
+      return HistoryLogBlockHeaderProto.parseDelimitedFrom(in);
+    } catch (InvalidProtocolBufferException e) {
+      LOG.warn("Ignoring truncated block at the end of the history log", e);
+      return null;
+    }
+  }
+
+  /**
+   * @return the records of the block, or null if the block is truncated
+   */
+  private static InputStream readBlock(DataInputStream in, HistoryLogBlockHeaderProto header)
+      throws IOException {
+    byte[] block = new byte[header.getLength()];
+    try {
+      in.readFully(block);
+    } catch (EOFException e) {
+      LOG.warn("Ignoring truncated block at the end of the history log", e);
+      return null;
+    }
+    return new ByteArrayInputStream(block);
+  }
+
+  /**
+   * Skips a block without decoding it.
+   *
+   * @return false if the block is truncated
+   */
+  private static boolean skipBlock(DataInputStream in, HistoryLogBlockHeaderProto header)
+      throws IOException {
+    try {
+      ByteStreams.skipFully(in, header.getLength());
+      return true;
+    } catch (EOFException e) {
+      LOG.warn("Ignoring truncated block at the end of the history log", e);
+      return false;
+    }
+  }
+
+  private static void addRecord(Map<String, EntityRecords> entities,
+      HistoryLogRecordProto record) {
+    EntityRecords records = entities.get(record.getEntity());
+    if (records == null) {
+      records = new EntityRecords(record);
+      entities.put(record.getEntity(), records);
+    } else {
+      records.add(record);
+    }
+  }
+
+  private static TaskAttemptInfo createTaskAttempt(EntityRecords records) throws JSONException {
+    JSONObject jsonObject = records.toJson();
+    // Node and container are related entities of the attempt in the log, and otherinfo of the
+    // attempt in the datamodel
+    JSONObject otherInfo = jsonObject.getJSONObject(Constants.OTHER_INFO);
+    String nodeId = records.getRelatedEntity(Constants.NODE_ID);
+    if (nodeId != null) {
+      otherInfo.put(Constants.NODE_ID, nodeId);
+    }
+    String containerId = records.getRelatedEntity(Constants.CONTAINER_ID);
+    if (containerId != null) {
+      otherInfo.put(Constants.CONTAINER_ID, containerId);
+    }
+    TaskAttemptInfo attemptInfo = TaskAttemptInfo.create(jsonObject);
+    setTezCounters(attemptInfo, records.getCounters());
+    return attemptInfo;
+  }
+
+  /**
+   * The records of a single entity. As with {@link SimpleHistoryParser}, the otherinfo of later
+   * records is merged into that of the first one, and later values win.
+   */
+  private static class EntityRecords {
+    final HistoryLogRecordProto first;
+    final List<HistoryLogRelatedEntityProto> relatedEntities = Lists.newArrayList();
+    final List<HistoryLogEventProto> events = Lists.newArrayList();
+    final Map<String, HistoryLogValueProto> otherInfo = Maps.newLinkedHashMap();
+    TezCountersProto counters;
+
+    EntityRecords(HistoryLogRecordProto first) {
+      this.first = first;
+      add(first);
+    }
+
+    void add(HistoryLogRecordProto record) {
+      relatedEntities.addAll(record.getRelatedEntitiesList());
+      events.addAll(record.getEventsList());
+      for (HistoryLogValueProto value : record.getOtherInfoList()) {
+        otherInfo.put(value.getKey(), value);
+      }
+      if (record.hasCounters()) {
+        counters = record.getCounters();
+      }
+    }
+
+    boolean isFinished() {
+      for (HistoryLogEventProto event : events) {
+        if (event.getEventType().equals(HistoryEventType.TASK_ATTEMPT_FINISHED.name())) {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    String getRelatedEntity(String entityType) {
+      for (HistoryLogRelatedEntityProto relatedEntity : relatedEntities) {
+        if (relatedEntity.getEntityType().equals(entityType)) {
+          return relatedEntity.getEntity();
+        }
+      }
+      return null;
+    }
+
+    TezCounters getCounters() {
+      return counters == null ? new TezCounters()
+          : DagTypeConverters.convertTezCountersFromProto(counters);
+    }
+
+    /**
+     * @return the entity in the JSON layout read by the datamodel, without its counters
+     */
+    JSONObject toJson() throws JSONException {
+      JSONObject jsonObject = new JSONObject();
+      jsonObject.put(Constants.ENTITY, first.getEntity());
+      jsonObject.put(Constants.ENTITY_TYPE, first.getEntityType());
+      JSONArray eventsJson = new JSONArray();
+      for (HistoryLogEventProto event : events) {
+        JSONObject eventJson = new JSONObject();
+        eventJson.put(Constants.EVENT_TIME_STAMP, event.getTimestamp());
+        eventJson.put(Constants.EVENT_TYPE, event.getEventType());
+        if (event.hasEventInfoJson()) {
+          // Kept as text, which is how the datamodel holds the info of events
+          eventJson.put(Constants.EVENT_INFO, event.getEventInfoJson());
+        }
+        eventsJson.put(eventJson);
+      }
+      jsonObject.put(Constants.EVENTS, eventsJson);
+      JSONObject otherInfoJson = new JSONObject();
+      for (HistoryLogValueProto value : otherInfo.values()) {
+        if (value.hasStringValue()) {
+          otherInfoJson.put(value.getKey(), value.getStringValue());
+        } else if (value.hasLongValue()) {
+          otherInfoJson.put(value.getKey(), value.getLongValue());
+        } else if (value.hasJsonValue()) {
+          otherInfoJson.put(value.getKey(), new JSONTokener(value.getJsonValue()).nextValue());
+        }
+      }
+      jsonObject.put(Constants.OTHER_INFO, otherInfoJson);
+      return jsonObject;
+    }
+  }
+
+  private static class TaskAttemptIterator extends AbstractIterator<TaskAttemptInfo> {
+    private final DataInputStream in;
+    private final String vertexId;
+    // Attempts seen but not finished yet
+    private final Map<String, EntityRecords> runningAttempts = Maps.newLinkedHashMap();
+    private final Deque<EntityRecords> finishedAttempts = new ArrayDeque<EntityRecords>();
+    private InputStream block;
+    private int remainingRecords = 0;
+    private boolean eof = false;
+
+    TaskAttemptIterator(DataInputStream in, String vertexId) {
+      this.in = in;
+      this.vertexId = vertexId;
+    }
+
+    @Override
+    protected TaskAttemptInfo computeNext() {
+      try {
+        while (finishedAttempts.isEmpty()) {
+          if (eof) {
+            return endOfData();
+          }
+          if (remainingRecords > 0) {
+            --remainingRecords;
+            handleRecord(HistoryLogRecordProto.parseDelimitedFrom(block));
+          } else {
+            nextBlock();
+          }
+        }
+        return createTaskAttempt(finishedAttempts.poll());
+      } catch (IOException e) {
+        IOUtils.closeStream(in);
+        throw new TezUncheckedException(e);
+      } catch (JSONException e) {
+        IOUtils.closeStream(in);
+        throw new TezUncheckedException(e);
+      }
+    }
+
+    private void nextBlock() throws IOException {
+      HistoryLogBlockHeaderProto header;
+      while ((header = readBlockHeader(in)) != null) {
+        if (header.getVertexIdsList().contains(vertexId)) {
+          block = readBlock(in, header);
+          if (block == null) {
+            break;
+          }
+          remainingRecords = header.getNumRecords();
+          return;
+        }
+        if (!skipBlock(in, header)) {
+          break;
+        }
+      }
+      eof = true;
+      IOUtils.closeStream(in);
+      finishedAttempts.addAll(runningAttempts.values());
+      runningAttempts.clear();
+    }
+
+    private void handleRecord(HistoryLogRecordProto record) {
+      if (!vertexId.equals(record.getVertexId())
+          || !record.getEntityType().equals(Constants.TEZ_TASK_ATTEMPT_ID)) {
+        return;
+      }
+      addRecord(runningAttempts, record);
+      EntityRecords attempt = runningAttempts.get(record.getEntity());
+      if (attempt.isFinished()) {
+        finishedAttempts.add(runningAttempts.remove(record.getEntity()));
+      }
+    }
+  }
+}
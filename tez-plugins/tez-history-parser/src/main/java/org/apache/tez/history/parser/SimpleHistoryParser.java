@@ -39,7 +39,6 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.File;
-import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.util.Iterator;
 import java.util.Map;
@@ -58,6 +57,14 @@ public class SimpleHistoryParser extends BaseParser {
   private static final String UTF8 = "UTF-8";
   private final File historyFile;
 
+  // Entities of the DAG being parsed, with the otherinfo of all their records merged
+  private JSONObject dagJson;
+  private String userName;
+  private TezDAGID tezDAGID;
+  private final Map<String, JSONObject> vertexJsonMap = Maps.newHashMap();
+  private final Map<String, JSONObject> taskJsonMap = Maps.newHashMap();
+  private final Map<String, JSONObject> attemptJsonMap = Maps.newHashMap();
+
 
   public SimpleHistoryParser(File historyFile) {
     super();
@@ -87,7 +94,8 @@ public class SimpleHistoryParser extends BaseParser {
     }
   }
 
-  private void populateOtherInfo(JSONObject source, JSONObject destination) throws JSONException {
+  protected static void populateOtherInfo(JSONObject source, JSONObject destination)
+      throws JSONException {
     if (source == null || destination == null) {
       return;
     }
@@ -105,95 +113,114 @@ public class SimpleHistoryParser extends BaseParser {
     populateOtherInfo(source, destOtherInfo);
   }
 
-  private void parseContents(File historyFile, String dagId)
-      throws JSONException, FileNotFoundException, TezException {
+  protected void parseContents(File historyFile, String dagId)
+      throws JSONException, IOException, TezException {
     Scanner scanner = new Scanner(historyFile, UTF8);
     scanner.useDelimiter(SimpleHistoryLoggingService.RECORD_SEPARATOR);
-    JSONObject dagJson = null;
-    Map<String, JSONObject> vertexJsonMap = Maps.newHashMap();
-    Map<String, JSONObject> taskJsonMap = Maps.newHashMap();
-    Map<String, JSONObject> attemptJsonMap = Maps.newHashMap();
-    TezDAGID tezDAGID = TezDAGID.fromString(dagId);
-    String userName = null;
+    resetParsedContents(dagId);
     while (scanner.hasNext()) {
       String line = scanner.next();
-      JSONObject jsonObject = new JSONObject(line);
-      String entity = jsonObject.getString(Constants.ENTITY);
-      String entityType = jsonObject.getString(Constants.ENTITY_TYPE);
-      switch (entityType) {
-      case Constants.TEZ_DAG_ID:
-        if (!dagId.equals(entity)) {
-          LOG.warn(dagId + " is not matching with " + entity);
-          continue;
-        }
-        // Club all DAG related information together (DAG_INIT, DAG_FINISH etc). Each of them
-        // would have a set of entities in otherinfo (e.g vertex mapping, dagPlan, start/finish
-        // time etc).
-        if (dagJson == null) {
-          dagJson = jsonObject;
-        }
-        JSONObject otherInfo = jsonObject.optJSONObject(Constants.OTHER_INFO);
-        JSONObject dagOtherInfo = dagJson.getJSONObject(Constants.OTHER_INFO);
-        JSONArray relatedEntities = dagJson.optJSONArray(Constants
-            .RELATED_ENTITIES);
-        //UserName is present in related entities
-        // {"entity":"userXYZ","entitytype":"user"}
-        if (relatedEntities != null) {
-          for (int i = 0; i < relatedEntities.length(); i++) {
-            JSONObject subEntity = relatedEntities.getJSONObject(i);
-            String subEntityType = subEntity.optString(Constants.ENTITY_TYPE);
-            if (subEntityType != null && subEntityType.equals(Constants.USER)) {
-              userName = subEntity.getString(Constants.ENTITY);
-              break;
-            }
+      handleRecord(new JSONObject(line), dagId);
+    }
+    scanner.close();
+    buildDataModel(dagId);
+  }
+
+  protected void resetParsedContents(String dagId) {
+    dagJson = null;
+    userName = null;
+    vertexJsonMap.clear();
+    taskJsonMap.clear();
+    attemptJsonMap.clear();
+    tezDAGID = TezDAGID.fromString(dagId);
+  }
+
+  /**
+   * Merges a single history record of the DAG into the entities parsed so far. Records of other
+   * DAGs are ignored.
+   */
+  protected void handleRecord(JSONObject jsonObject, String dagId) throws JSONException {
+    String entity = jsonObject.getString(Constants.ENTITY);
+    String entityType = jsonObject.getString(Constants.ENTITY_TYPE);
+    switch (entityType) {
+    case Constants.TEZ_DAG_ID:
+      if (!dagId.equals(entity)) {
+        LOG.warn(dagId + " is not matching with " + entity);
+        return;
+      }
+      // Club all DAG related information together (DAG_INIT, DAG_FINISH etc). Each of them
+      // would have a set of entities in otherinfo (e.g vertex mapping, dagPlan, start/finish
+      // time etc).
+      if (dagJson == null) {
+        dagJson = jsonObject;
+      }
+      JSONObject otherInfo = jsonObject.optJSONObject(Constants.OTHER_INFO);
+      JSONObject dagOtherInfo = dagJson.getJSONObject(Constants.OTHER_INFO);
+      JSONArray relatedEntities = dagJson.optJSONArray(Constants
+          .RELATED_ENTITIES);
+      //UserName is present in related entities
+      // {"entity":"userXYZ","entitytype":"user"}
+      if (relatedEntities != null) {
+        for (int i = 0; i < relatedEntities.length(); i++) {
+          JSONObject subEntity = relatedEntities.getJSONObject(i);
+          String subEntityType = subEntity.optString(Constants.ENTITY_TYPE);
+          if (subEntityType != null && subEntityType.equals(Constants.USER)) {
+            userName = subEntity.getString(Constants.ENTITY);
+            break;
           }
         }
-        populateOtherInfo(otherInfo, dagOtherInfo);
-        break;
-      case Constants.TEZ_VERTEX_ID:
-        String vertexName = entity;
-        TezVertexID tezVertexID = TezVertexID.fromString(vertexName);
-        if (!tezDAGID.equals(tezVertexID.getDAGId())) {
-          LOG.warn(vertexName + " does not belong to " + tezDAGID);
-          continue;
-        }
-        if (!vertexJsonMap.containsKey(vertexName)) {
-          vertexJsonMap.put(vertexName, jsonObject);
-        }
-        otherInfo = jsonObject.optJSONObject(Constants.OTHER_INFO);
-        populateOtherInfo(otherInfo, vertexName, vertexJsonMap);
-        break;
-      case Constants.TEZ_TASK_ID:
-        String taskName = entity;
-        TezTaskID tezTaskID = TezTaskID.fromString(taskName);
-        if (!tezDAGID.equals(tezTaskID.getVertexID().getDAGId())) {
-          LOG.warn(taskName + " does not belong to " + tezDAGID);
-          continue;
-        }
-        if (!taskJsonMap.containsKey(taskName)) {
-          taskJsonMap.put(taskName, jsonObject);
-        }
-        otherInfo = jsonObject.optJSONObject(Constants.OTHER_INFO);
-        populateOtherInfo(otherInfo, taskName, taskJsonMap);
-        break;
-      case Constants.TEZ_TASK_ATTEMPT_ID:
-        String taskAttemptName = entity;
-        TezTaskAttemptID tezAttemptId = TezTaskAttemptID.fromString(taskAttemptName);
-        if (!tezDAGID.equals(tezAttemptId.getTaskID().getVertexID().getDAGId())) {
-          LOG.warn(taskAttemptName + " does not belong to " + tezDAGID);
-          continue;
-        }
-        if (!attemptJsonMap.containsKey(taskAttemptName)) {
-          attemptJsonMap.put(taskAttemptName, jsonObject);
-        }
-        otherInfo = jsonObject.optJSONObject(Constants.OTHER_INFO);
-        populateOtherInfo(otherInfo, taskAttemptName, attemptJsonMap);
-        break;
-      default:
-        break;
       }
+      populateOtherInfo(otherInfo, dagOtherInfo);
+      break;
+    case Constants.TEZ_VERTEX_ID:
+      String vertexName = entity;
+      TezVertexID tezVertexID = TezVertexID.fromString(vertexName);
+      if (!tezDAGID.equals(tezVertexID.getDAGId())) {
+        LOG.warn(vertexName + " does not belong to " + tezDAGID);
+        return;
+      }
+      if (!vertexJsonMap.containsKey(vertexName)) {
+        vertexJsonMap.put(vertexName, jsonObject);
+      }
+      otherInfo = jsonObject.optJSONObject(Constants.OTHER_INFO);
+      populateOtherInfo(otherInfo, vertexName, vertexJsonMap);
+      break;
+    case Constants.TEZ_TASK_ID:
+      String taskName = entity;
+      TezTaskID tezTaskID = TezTaskID.fromString(taskName);
+      if (!tezDAGID.equals(tezTaskID.getVertexID().getDAGId())) {
+        LOG.warn(taskName + " does not belong to " + tezDAGID);
+        return;
+      }
+      if (!taskJsonMap.containsKey(taskName)) {
+        taskJsonMap.put(taskName, jsonObject);
+      }
+      otherInfo = jsonObject.optJSONObject(Constants.OTHER_INFO);
+      populateOtherInfo(otherInfo, taskName, taskJsonMap);
+      break;
+    case Constants.TEZ_TASK_ATTEMPT_ID:
+      String taskAttemptName = entity;
+      TezTaskAttemptID tezAttemptId = TezTaskAttemptID.fromString(taskAttemptName);
+      if (!tezDAGID.equals(tezAttemptId.getTaskID().getVertexID().getDAGId())) {
+        LOG.warn(taskAttemptName + " does not belong to " + tezDAGID);
+        return;
+      }
+      if (!attemptJsonMap.containsKey(taskAttemptName)) {
+        attemptJsonMap.put(taskAttemptName, jsonObject);
+      }
+      otherInfo = jsonObject.optJSONObject(Constants.OTHER_INFO);
+      populateOtherInfo(otherInfo, taskAttemptName, attemptJsonMap);
+      break;
+    default:
+      break;
     }
-    scanner.close();
+  }
+
+  /**
+   * Builds the in-memory datamodel from the entities merged by
+   * {@link #handleRecord(JSONObject, String)}.
+   */
+  protected void buildDataModel(String dagId) throws JSONException, TezException {
     if (dagJson != null) {
       this.dagInfo = DagInfo.create(dagJson);
       setUserName(userName);
@@ -213,50 +240,55 @@ public class SimpleHistoryParser extends BaseParser {
       LOG.debug("Parsed task {}", taskInfo.getTaskId());
     }
     for (JSONObject jsonObject : attemptJsonMap.values()) {
-      /**
-       * For converting SimpleHistoryLogging to in-memory representation
-       *
-       * We need to get "relatedEntities":[{"entity":"cn055-10.l42scl.hortonworks.com:58690",
-       * "entitytype":"nodeId"},{"entity":"container_1438652049951_0008_01_000152",
-       * "entitytype":"containerId"} and populate it in otherInfo object so that in-memory
-       * representation can parse it correctly
-       */
-      JSONArray relatedEntities = jsonObject.optJSONArray(Constants.RELATED_ENTITIES);
-      if (relatedEntities == null) {
-        //This can happen when CONTAINER_EXITED abruptly. (e.g Container failed, exitCode=1)
-        LOG.debug("entity {} did not have related entities",
-            jsonObject.optJSONObject(Constants.ENTITY));
-      } else {
-        JSONObject subJsonObject = relatedEntities.optJSONObject(0);
-        if (subJsonObject != null) {
-          String nodeId = subJsonObject.optString(Constants.ENTITY_TYPE);
-          if (!Strings.isNullOrEmpty(nodeId) && nodeId.equalsIgnoreCase(Constants.NODE_ID)) {
-            //populate it in otherInfo
-            JSONObject otherInfo = jsonObject.optJSONObject(Constants.OTHER_INFO);
-            String nodeIdVal = subJsonObject.optString(Constants.ENTITY);
-            if (otherInfo != null && nodeIdVal != null) {
-              otherInfo.put(Constants.NODE_ID, nodeIdVal);
-            }
+      populateAttemptRelatedEntities(jsonObject);
+      TaskAttemptInfo attemptInfo = TaskAttemptInfo.create(jsonObject);
+      this.attemptList.add(attemptInfo);
+      LOG.debug("Parsed task attempt {}", attemptInfo.getTaskAttemptId());
+    }
+  }
+
+  /**
+   * For converting SimpleHistoryLogging to in-memory representation
+   *
+   * We need to get "relatedEntities":[{"entity":"cn055-10.l42scl.hortonworks.com:58690",
+   * "entitytype":"nodeId"},{"entity":"container_1438652049951_0008_01_000152",
+   * "entitytype":"containerId"} and populate it in otherInfo object so that in-memory
+   * representation can parse it correctly
+   */
+  protected static void populateAttemptRelatedEntities(JSONObject jsonObject)
+      throws JSONException {
+    JSONArray relatedEntities = jsonObject.optJSONArray(Constants.RELATED_ENTITIES);
+    if (relatedEntities == null) {
+      //This can happen when CONTAINER_EXITED abruptly. (e.g Container failed, exitCode=1)
+      LOG.debug("entity {} did not have related entities",
+          jsonObject.optJSONObject(Constants.ENTITY));
+    } else {
+      JSONObject subJsonObject = relatedEntities.optJSONObject(0);
+      if (subJsonObject != null) {
+        String nodeId = subJsonObject.optString(Constants.ENTITY_TYPE);
+        if (!Strings.isNullOrEmpty(nodeId) && nodeId.equalsIgnoreCase(Constants.NODE_ID)) {
+          //populate it in otherInfo
+          JSONObject otherInfo = jsonObject.optJSONObject(Constants.OTHER_INFO);
+          String nodeIdVal = subJsonObject.optString(Constants.ENTITY);
+          if (otherInfo != null && nodeIdVal != null) {
+            otherInfo.put(Constants.NODE_ID, nodeIdVal);
           }
         }
+      }
 
-        subJsonObject = relatedEntities.optJSONObject(1);
-        if (subJsonObject != null) {
-          String containerId = subJsonObject.optString(Constants.ENTITY_TYPE);
-          if (!Strings.isNullOrEmpty(containerId) && containerId
-              .equalsIgnoreCase(Constants.CONTAINER_ID)) {
-            //populate it in otherInfo
-            JSONObject otherInfo = jsonObject.optJSONObject(Constants.OTHER_INFO);
-            String containerIdVal = subJsonObject.optString(Constants.ENTITY);
-            if (otherInfo != null && containerIdVal != null) {
-              otherInfo.put(Constants.CONTAINER_ID, containerIdVal);
-            }
+      subJsonObject = relatedEntities.optJSONObject(1);
+      if (subJsonObject != null) {
+        String containerId = subJsonObject.optString(Constants.ENTITY_TYPE);
+        if (!Strings.isNullOrEmpty(containerId) && containerId
+            .equalsIgnoreCase(Constants.CONTAINER_ID)) {
+          //populate it in otherInfo
+          JSONObject otherInfo = jsonObject.optJSONObject(Constants.OTHER_INFO);
+          String containerIdVal = subJsonObject.optString(Constants.ENTITY);
+          if (otherInfo != null && containerIdVal != null) {
+            otherInfo.put(Constants.CONTAINER_ID, containerIdVal);
           }
         }
       }
-      TaskAttemptInfo attemptInfo = TaskAttemptInfo.create(jsonObject);
-      this.attemptList.add(attemptInfo);
-      LOG.debug("Parsed task attempt {}", attemptInfo.getTaskAttemptId());
     }
   }
-}
\ No newline at end of file
+}
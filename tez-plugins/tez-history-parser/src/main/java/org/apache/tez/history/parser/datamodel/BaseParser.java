@@ -22,6 +22,7 @@ import com.google.common.base.Preconditions;
 import com.google.common.base.Predicate;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
+import org.apache.tez.common.counters.TezCounters;
 import org.apache.tez.dag.records.TezTaskAttemptID;
 import org.apache.tez.dag.records.TezTaskID;
 
@@ -119,4 +120,14 @@ public abstract class BaseParser {
     Preconditions.checkArgument(dagInfo != null, "DagInfo can not be null");
     dagInfo.setUserName(userName);
   }
+
+  /**
+   * Set counters which were not parsed from the JSON of the entity, e.g. read from a proto
+   *
+   * @param info
+   * @param tezCounters
+   */
+  protected static void setTezCounters(BaseInfo info, TezCounters tezCounters) {
+    info.tezCounters = tezCounters;
+  }
 }
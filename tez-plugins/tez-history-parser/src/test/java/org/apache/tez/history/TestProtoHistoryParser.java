@@ -0,0 +1,362 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.tez.history;
+
+import com.google.common.io.CountingInputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileUtil;
+import org.apache.hadoop.io.IOUtils;
+import org.apache.hadoop.yarn.api.records.ApplicationAttemptId;
+import org.apache.hadoop.yarn.api.records.ApplicationId;
+import org.apache.hadoop.yarn.api.records.ContainerId;
+import org.apache.hadoop.yarn.api.records.NodeId;
+import org.apache.tez.common.counters.TezCounters;
+import org.apache.tez.dag.api.TezConfiguration;
+import org.apache.tez.dag.api.TezException;
+import org.apache.tez.dag.api.oldrecords.TaskAttemptState;
+import org.apache.tez.dag.api.oldrecords.TaskState;
+import org.apache.tez.dag.api.records.DAGProtos.DAGPlan;
+import org.apache.tez.dag.api.records.DAGProtos.PlanTaskConfiguration;
+import org.apache.tez.dag.api.records.DAGProtos.PlanVertexType;
+import org.apache.tez.dag.api.records.DAGProtos.VertexPlan;
+import org.apache.tez.dag.app.AppContext;
+import org.apache.tez.dag.app.dag.DAGState;
+import org.apache.tez.dag.app.dag.VertexState;
+import org.apache.tez.dag.history.DAGHistoryEvent;
+import org.apache.tez.dag.history.HistoryEvent;
+import org.apache.tez.dag.history.events.DAGFinishedEvent;
+import org.apache.tez.dag.history.events.DAGInitializedEvent;
+import org.apache.tez.dag.history.events.DAGStartedEvent;
+import org.apache.tez.dag.history.events.DAGSubmittedEvent;
+import org.apache.tez.dag.history.events.TaskAttemptFinishedEvent;
+import org.apache.tez.dag.history.events.TaskAttemptStartedEvent;
+import org.apache.tez.dag.history.events.TaskFinishedEvent;
+import org.apache.tez.dag.history.events.TaskStartedEvent;
+import org.apache.tez.dag.history.events.VertexFinishedEvent;
+import org.apache.tez.dag.history.events.VertexInitializedEvent;
+import org.apache.tez.dag.history.events.VertexStartedEvent;
+import org.apache.tez.dag.history.logging.impl.ProtoHistoryLoggingService;
+import org.apache.tez.dag.records.TezDAGID;
+import org.apache.tez.dag.records.TezTaskAttemptID;
+import org.apache.tez.dag.records.TezTaskID;
+import org.apache.tez.dag.records.TezVertexID;
+import org.apache.tez.dag.recovery.records.RecoveryProtos.HistoryLogBlockHeaderProto;
+import org.apache.tez.history.parser.ProtoHistoryParser;
+import org.apache.tez.history.parser.datamodel.DagInfo;
+import org.apache.tez.history.parser.datamodel.TaskAttemptInfo;
+import org.apache.tez.history.parser.datamodel.TaskInfo;
+import org.apache.tez.history.parser.datamodel.VertexInfo;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestProtoHistoryParser {
+
+  private static final String USER = "user";
+  private static final String DAG_NAME = "dag";
+  private static final String VERTEX_NAME = "v1";
+  private static final String COUNTER_GROUP = "group";
+  private static final String COUNTER_NAME = "counter";
+  private static final NodeId NODE_ID = NodeId.newInstance("node", 1234);
+
+  private File logDir;
+  private ApplicationAttemptId appAttemptId;
+  private DAGPlan dagPlan;
+
+  @Before
+  public void setup() {
+    logDir = new File(System.getProperty("test.build.data", "target"),
+        TestProtoHistoryParser.class.getName());
+    FileUtil.fullyDelete(logDir);
+    assertTrue(logDir.mkdirs());
+    appAttemptId = ApplicationAttemptId.newInstance(ApplicationId.newInstance(1000, 1), 1);
+    dagPlan = DAGPlan.newBuilder()
+        .setName(DAG_NAME)
+        .addVertex(VertexPlan.newBuilder()
+            .setName(VERTEX_NAME)
+            .setType(PlanVertexType.NORMAL)
+            .setTaskConfig(PlanTaskConfiguration.newBuilder()
+                .setNumTasks(-1)
+                .setMemoryMb(1)
+                .setVirtualCores(1)
+                .setJavaOpts("")
+                .setTaskModule("")))
+        .build();
+  }
+
+  @After
+  public void cleanup() {
+    FileUtil.fullyDelete(logDir);
+  }
+
+  @Test(timeout = 10000)
+  public void testParseDAG() throws Exception {
+    TezDAGID dagId1 = TezDAGID.getInstance(appAttemptId.getApplicationId(), 1);
+    TezDAGID dagId2 = TezDAGID.getInstance(appAttemptId.getApplicationId(), 2);
+    List<HistoryEvent> events = createDAGEvents(dagId1, 3, false);
+    events.addAll(createDAGEvents(dagId2, 5, false));
+    File log = writeLog(4, events);
+
+    assertDAG(new ProtoHistoryParser(log).getDAGData(dagId1.toString()), 3);
+    assertDAG(new ProtoHistoryParser(log).getDAGData(dagId2.toString()), 5);
+  }
+
+  @Test(timeout = 10000)
+  public void testParseSkipsBlocksOfOtherDAGs() throws Exception {
+    TezDAGID dagId1 = TezDAGID.getInstance(appAttemptId.getApplicationId(), 1);
+    TezDAGID dagId2 = TezDAGID.getInstance(appAttemptId.getApplicationId(), 2);
+    List<HistoryEvent> events = createDAGEvents(dagId1, 3, false);
+    events.addAll(createDAGEvents(dagId2, 3, false));
+    // Each DAG is a single block, which is written once the DAG finishes
+    File log = writeLog(1000, events);
+
+    // Corrupt the records of the first DAG, which are not decoded when parsing the second one
+    DataInputStream in = new DataInputStream(new FileInputStream(log));
+    long blockOffset;
+    int blockLength;
+    try {
+      IOUtils.skipFully(in, ProtoHistoryLoggingService.MAGIC.length);
+      assertEquals(ProtoHistoryLoggingService.VERSION, in.readInt());
+      CountingInputStream countingIn = new CountingInputStream(in);
+      HistoryLogBlockHeaderProto header =
+          HistoryLogBlockHeaderProto.parseDelimitedFrom(countingIn);
+      assertEquals(Collections.singletonList(dagId1.toString()), header.getDagIdsList());
+      blockOffset = ProtoHistoryLoggingService.MAGIC.length + 4 + countingIn.getCount();
+      blockLength = header.getLength();
+    } finally {
+      IOUtils.closeStream(in);
+    }
+    byte[] garbage = new byte[blockLength];
+    Arrays.fill(garbage, (byte) 0xFF);
+    RandomAccessFile file = new RandomAccessFile(log, "rw");
+    try {
+      file.seek(blockOffset);
+      file.write(garbage);
+    } finally {
+      file.close();
+    }
+
+    assertDAG(new ProtoHistoryParser(log).getDAGData(dagId2.toString()), 3);
+    try {
+      new ProtoHistoryParser(log).getDAGData(dagId1.toString());
+      fail("Expected the corrupt block to fail the parse");
+    } catch (TezException e) {
+      // Expected
+    }
+  }
+
+  @Test(timeout = 10000)
+  public void testParseTruncatedLog() throws Exception {
+    TezDAGID dagId1 = TezDAGID.getInstance(appAttemptId.getApplicationId(), 1);
+    TezDAGID dagId2 = TezDAGID.getInstance(appAttemptId.getApplicationId(), 2);
+    List<HistoryEvent> events = createDAGEvents(dagId1, 3, false);
+    events.addAll(createDAGEvents(dagId2, 3, false));
+    File log = writeLog(1000, events);
+
+    // As left by an AM which did not shut down cleanly, in the middle of the last block
+    RandomAccessFile file = new RandomAccessFile(log, "rw");
+    try {
+      file.setLength(file.length() - 10);
+    } finally {
+      file.close();
+    }
+
+    // The truncated block of the second DAG is skipped
+    assertDAG(new ProtoHistoryParser(log).getDAGData(dagId1.toString()), 3);
+    Iterator<TaskAttemptInfo> attempts = new ProtoHistoryParser(log).getTaskAttempts(
+        TezVertexID.getInstance(dagId1, 0).toString());
+    int numAttempts = 0;
+    while (attempts.hasNext()) {
+      attempts.next();
+      ++numAttempts;
+    }
+    assertEquals(3, numAttempts);
+
+    try {
+      new ProtoHistoryParser(log).getDAGData(dagId2.toString());
+      fail("Expected the truncated DAG to be reported as missing");
+    } catch (TezException e) {
+      assertTrue(e.getMessage().contains(dagId2.toString()));
+    }
+  }
+
+  @Test(timeout = 10000)
+  public void testTaskAttemptIterator() throws Exception {
+    TezDAGID dagId1 = TezDAGID.getInstance(appAttemptId.getApplicationId(), 1);
+    TezDAGID dagId2 = TezDAGID.getInstance(appAttemptId.getApplicationId(), 2);
+    List<HistoryEvent> events = createDAGEvents(dagId1, 3, true);
+    events.addAll(createDAGEvents(dagId2, 4, false));
+    File log = writeLog(2, events);
+
+    TezVertexID vertexId = TezVertexID.getInstance(dagId1, 0);
+    Iterator<TaskAttemptInfo> attempts =
+        new ProtoHistoryParser(log).getTaskAttempts(vertexId.toString());
+    // Attempts are returned as they finish, and the attempt which never finished comes last
+    for (int taskIndex = 2; taskIndex >= 0; --taskIndex) {
+      assertTrue(attempts.hasNext());
+      assertAttempt(attempts.next(), TezTaskID.getInstance(vertexId, taskIndex));
+    }
+    assertTrue(attempts.hasNext());
+    TaskAttemptInfo runningAttempt = attempts.next();
+    assertEquals(TezTaskAttemptID.getInstance(TezTaskID.getInstance(vertexId, 0), 1).toString(),
+        runningAttempt.getTaskAttemptId());
+    assertEquals("", runningAttempt.getStatus());
+    assertEquals(createContainerId(3).toString(), runningAttempt.getContainer().getId());
+    assertFalse(attempts.hasNext());
+
+    attempts = new ProtoHistoryParser(log).getTaskAttempts(
+        TezVertexID.getInstance(dagId2, 0).toString());
+    int numAttempts = 0;
+    while (attempts.hasNext()) {
+      TaskAttemptInfo attempt = attempts.next();
+      assertEquals(dagId2, TezTaskAttemptID.fromString(attempt.getTaskAttemptId())
+          .getTaskID().getVertexID().getDAGId());
+      ++numAttempts;
+    }
+    assertEquals(4, numAttempts);
+  }
+
+  private void assertDAG(DagInfo dagInfo, int numTasks) {
+    assertEquals(DAG_NAME, dagInfo.getName());
+    assertEquals(USER, dagInfo.getUserName());
+    assertEquals(DAGState.SUCCEEDED.name(), dagInfo.getStatus());
+    assertEquals(3, dagInfo.getStartTime());
+    assertEquals(21, dagInfo.getFinishTime());
+    assertEquals(numTasks,
+        dagInfo.getTezCounters().findCounter(COUNTER_GROUP, COUNTER_NAME).getValue());
+
+    assertEquals(1, dagInfo.getVertices().size());
+    VertexInfo vertexInfo = dagInfo.getVertex(VERTEX_NAME);
+    assertEquals(VertexState.SUCCEEDED.name(), vertexInfo.getStatus());
+    assertEquals(numTasks,
+        vertexInfo.getTezCounters().findCounter(COUNTER_GROUP, COUNTER_NAME).getValue());
+    assertEquals(numTasks, vertexInfo.getTasks().size());
+    for (TaskInfo taskInfo : vertexInfo.getTasks()) {
+      TezTaskID taskId = TezTaskID.fromString(taskInfo.getTaskId());
+      assertEquals(TaskState.SUCCEEDED.name(), taskInfo.getStatus());
+      assertEquals(taskId.getId(),
+          taskInfo.getTezCounters().findCounter(COUNTER_GROUP, COUNTER_NAME).getValue());
+      assertEquals(1, taskInfo.getTaskAttempts().size());
+      assertAttempt(taskInfo.getTaskAttempts().get(0), taskId);
+    }
+  }
+
+  private void assertAttempt(TaskAttemptInfo attemptInfo, TezTaskID taskId) {
+    assertEquals(TezTaskAttemptID.getInstance(taskId, 0).toString(),
+        attemptInfo.getTaskAttemptId());
+    assertEquals(TaskAttemptState.SUCCEEDED.name(), attemptInfo.getStatus());
+    assertEquals(createContainerId(taskId.getId()).toString(),
+        attemptInfo.getContainer().getId());
+    assertEquals(NODE_ID.getHost(), attemptInfo.getNodeId());
+    assertEquals(taskId.getId(),
+        attemptInfo.getTezCounters().findCounter(COUNTER_GROUP, COUNTER_NAME).getValue());
+  }
+
+  private File writeLog(int blockSizeEvents, List<HistoryEvent> events) throws Exception {
+    Configuration conf = new Configuration();
+    conf.set(TezConfiguration.TEZ_SIMPLE_HISTORY_LOGGING_DIR, logDir.getAbsolutePath());
+    conf.setInt(TezConfiguration.TEZ_PROTO_HISTORY_LOGGING_BLOCK_SIZE_EVENTS, blockSizeEvents);
+    AppContext appContext = mock(AppContext.class);
+    when(appContext.getApplicationAttemptId()).thenReturn(appAttemptId);
+    ProtoHistoryLoggingService service = new ProtoHistoryLoggingService();
+    service.setAppContext(appContext);
+    service.init(conf);
+    service.start();
+    for (HistoryEvent event : events) {
+      service.handle(new DAGHistoryEvent(event));
+    }
+    service.stop();
+    File log = new File(logDir,
+        ProtoHistoryLoggingService.LOG_FILE_NAME_PREFIX + "." + appAttemptId);
+    assertTrue(log.exists());
+    return log;
+  }
+
+  /**
+   * Events of a DAG with a single vertex. The attempts of the tasks finish in the reverse order
+   * of their start, and the counters of each task count its index.
+   */
+  private List<HistoryEvent> createDAGEvents(TezDAGID dagId, int numTasks,
+      boolean withRunningAttempt) {
+    TezVertexID vertexId = TezVertexID.getInstance(dagId, 0);
+    List<HistoryEvent> events = new ArrayList<HistoryEvent>();
+    events.add(new DAGSubmittedEvent(dagId, 1, dagPlan, appAttemptId, null, USER, null, null));
+    events.add(new DAGInitializedEvent(dagId, 2, USER, DAG_NAME,
+        Collections.singletonMap(VERTEX_NAME, vertexId)));
+    events.add(new DAGStartedEvent(dagId, 3, USER, DAG_NAME));
+    events.add(new VertexInitializedEvent(vertexId, VERTEX_NAME, 3, 4, numTasks, "proc",
+        null, null, null));
+    events.add(new VertexStartedEvent(vertexId, 4, 5));
+    for (int i = 0; i < numTasks; ++i) {
+      TezTaskID taskId = TezTaskID.getInstance(vertexId, i);
+      events.add(new TaskStartedEvent(taskId, VERTEX_NAME, 5, 6));
+      events.add(new TaskAttemptStartedEvent(TezTaskAttemptID.getInstance(taskId, 0),
+          VERTEX_NAME, 6, createContainerId(i), NODE_ID, null, null, null));
+    }
+    if (withRunningAttempt) {
+      events.add(new TaskAttemptStartedEvent(
+          TezTaskAttemptID.getInstance(TezTaskID.getInstance(vertexId, 0), 1),
+          VERTEX_NAME, 7, createContainerId(numTasks), NODE_ID, null, null, null));
+    }
+    for (int i = numTasks - 1; i >= 0; --i) {
+      TezTaskID taskId = TezTaskID.getInstance(vertexId, i);
+      TezTaskAttemptID attemptId = TezTaskAttemptID.getInstance(taskId, 0);
+      long finishTime = 10 + numTasks - i;
+      events.add(new TaskAttemptFinishedEvent(attemptId, VERTEX_NAME, 6, finishTime,
+          TaskAttemptState.SUCCEEDED, null, null, "", createCounters(i), null, null, 5, null, 6,
+          createContainerId(i), NODE_ID, null, null, null));
+      events.add(new TaskFinishedEvent(taskId, VERTEX_NAME, 6, finishTime, attemptId,
+          TaskState.SUCCEEDED, "", createCounters(i), 0));
+    }
+    events.add(new VertexFinishedEvent(vertexId, VERTEX_NAME, numTasks, 3, 4, 4, 5, 20,
+        VertexState.SUCCEEDED, "", createCounters(numTasks), null, null, null));
+    events.add(new DAGFinishedEvent(dagId, 3, 21, DAGState.SUCCEEDED, "",
+        createCounters(numTasks), USER, DAG_NAME, null, appAttemptId, dagPlan));
+    return events;
+  }
+
+  @SuppressWarnings("deprecation")
+  private ContainerId createContainerId(int index) {
+    return ContainerId.newInstance(appAttemptId, index + 1);
+  }
+
+  private static TezCounters createCounters(long value) {
+    TezCounters counters = new TezCounters();
+    counters.findCounter(COUNTER_GROUP, COUNTER_NAME).setValue(value);
+    return counters;
+  }
+}
@@ -18,6 +18,9 @@
 
 package org.apache.tez.dag.history.logging.ats;
 
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedList;
@@ -26,6 +29,7 @@ import java.util.Map;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.tez.dag.history.events.DAGRecoveredEvent;
 import org.slf4j.Logger;
@@ -45,19 +49,30 @@ import org.apache.tez.dag.api.TezUncheckedException;
 import org.apache.tez.dag.history.DAGHistoryEvent;
 import org.apache.tez.dag.history.HistoryEventType;
 import org.apache.tez.dag.history.events.DAGSubmittedEvent;
+import org.apache.tez.dag.history.logging.EntityTypes;
 import org.apache.tez.dag.history.logging.HistoryLoggingService;
 import org.apache.tez.dag.records.TezDAGID;
 
 import com.google.common.annotations.VisibleForTesting;
 
+/**
+ * Publishes history events to ATS. Events are converted to timeline entities, with the updates
+ * to a task attempt within a batch coalesced into one entity, on a separate thread from the one
+ * sending them to ATS. Events waiting to be converted are held in a bounded queue, and converted
+ * batches which cannot be sent yet are compressed and spilled to local disk once the in-memory
+ * limit is reached, so a slow timeline server does not grow the AM heap.
+ */
 public class ATSHistoryLoggingService extends HistoryLoggingService {
 
   private static final Logger LOG = LoggerFactory.getLogger(ATSHistoryLoggingService.class);
 
-  private LinkedBlockingQueue<DAGHistoryEvent> eventQueue =
-      new LinkedBlockingQueue<DAGHistoryEvent>();
+  private static final long PUBLISH_POLL_INTERVAL_MILLIS = 100;
+
+  private LinkedBlockingQueue<QueuedEvent> eventQueue;
+  private SpillableBatchQueue pendingBatches;
 
   private Thread eventHandlingThread;
+  private Thread eventPublishingThread;
   private AtomicBoolean stopped = new AtomicBoolean(false);
   private int eventCounter = 0;
   private int eventsProcessed = 0;
@@ -75,6 +90,11 @@ public class ATSHistoryLoggingService extends HistoryLoggingService {
   private int maxEventsPerBatch;
   private long maxPollingTimeMillis;
 
+  private final AtomicLong eventsPublished = new AtomicLong();
+  private final AtomicLong eventsBlocked = new AtomicLong();
+  private volatile long publishLagMillis = 0;
+  private volatile long maxPublishLagMillis = 0;
+
   private String sessionDomainId;
   private static final String atsHistoryLoggingServiceClassName =
       "org.apache.tez.dag.history.logging.ats.ATSHistoryLoggingService";
@@ -86,6 +106,16 @@ public class ATSHistoryLoggingService extends HistoryLoggingService {
     super(ATSHistoryLoggingService.class.getName());
   }
 
+  private static class QueuedEvent {
+    private final DAGHistoryEvent event;
+    private final long queueTime;
+
+    QueuedEvent(DAGHistoryEvent event, long queueTime) {
+      this.event = event;
+      this.queueTime = queueTime;
+    }
+  }
+
   @Override
   public void serviceInit(Configuration conf) throws Exception {
     historyLoggingEnabled = conf.getBoolean(TezConfiguration.TEZ_AM_HISTORY_LOGGING_ENABLED,
@@ -122,10 +152,21 @@ public class ATSHistoryLoggingService extends HistoryLoggingService {
       waitForeverOnShutdown = true;
     }
     sessionDomainId = conf.get(TezConfiguration.YARN_ATS_ACL_SESSION_DOMAIN_ID);
+    int maxQueueSize = conf.getInt(TezConfiguration.YARN_ATS_EVENT_QUEUE_MAX_SIZE,
+        TezConfiguration.YARN_ATS_EVENT_QUEUE_MAX_SIZE_DEFAULT);
+    int maxPendingBatches = conf.getInt(TezConfiguration.YARN_ATS_MAX_PENDING_BATCHES,
+        TezConfiguration.YARN_ATS_MAX_PENDING_BATCHES_DEFAULT);
+    String spillDir = conf.get(TezConfiguration.YARN_ATS_SPILL_DIR,
+        System.getProperty("user.dir"));
+    eventQueue = new LinkedBlockingQueue<QueuedEvent>(Math.max(1, maxQueueSize));
+    pendingBatches = new SpillableBatchQueue(Math.max(1, maxPendingBatches), new File(spillDir));
 
     LOG.info("Initializing " + ATSHistoryLoggingService.class.getSimpleName() + " with "
       + "maxEventsPerBatch=" + maxEventsPerBatch
       + ", maxPollingTime(ms)=" + maxPollingTimeMillis
+      + ", maxQueueSize=" + maxQueueSize
+      + ", maxPendingBatches=" + maxPendingBatches
+      + ", spillDir=" + spillDir
       + ", waitTimeForShutdown(ms)=" + maxTimeToWaitOnShutdown
       + ", TimelineACLManagerClass=" + atsHistoryACLManagerClassName);
 
@@ -155,7 +196,7 @@ public class ATSHistoryLoggingService extends HistoryLoggingService {
     eventHandlingThread = new Thread(new Runnable() {
       @Override
       public void run() {
-        List<DAGHistoryEvent> events = new LinkedList<DAGHistoryEvent>();
+        List<QueuedEvent> events = new LinkedList<QueuedEvent>();
         boolean interrupted = false;
         while (!stopped.get() && !Thread.currentThread().isInterrupted()
               && !interrupted) {
@@ -165,7 +206,11 @@ public class ATSHistoryLoggingService extends HistoryLoggingService {
             if (eventsProcessed != 0 && !events.isEmpty()) {
               LOG.info("Event queue stats"
                   + ", eventsProcessedSinceLastUpdate=" + eventsProcessed
-                  + ", eventQueueSize=" + eventQueue.size());
+                  + ", eventQueueSize=" + eventQueue.size()
+                  + ", pendingBatches=" + pendingBatches.getInMemoryBatches()
+                  + ", spilledBatches=" + pendingBatches.getSpilledBatches()
+                  + ", pendingEvents=" + pendingBatches.getPendingEvents()
+                  + ", publishLag(ms)=" + publishLagMillis);
             }
             eventCounter = 0;
             eventsProcessed = 0;
@@ -187,7 +232,7 @@ public class ATSHistoryLoggingService extends HistoryLoggingService {
 
             eventsProcessed += events.size();
             try {
-              handleEvents(events);
+              pendingBatches.add(convertEvents(events));
             } catch (Exception e) {
               LOG.warn("Error handling events", e);
             }
@@ -195,7 +240,27 @@ public class ATSHistoryLoggingService extends HistoryLoggingService {
         }
       }
     }, "HistoryEventHandlingThread");
+    eventPublishingThread = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        while (!stopped.get() && !Thread.currentThread().isInterrupted()) {
+          TimelineEntityBatch batch;
+          try {
+            batch = pendingBatches.poll(PUBLISH_POLL_INTERVAL_MILLIS);
+          } catch (InterruptedException e) {
+            return;
+          } catch (IOException e) {
+            LOG.warn("Error reading spilled events", e);
+            continue;
+          }
+          if (batch != null) {
+            publishBatch(batch);
+          }
+        }
+      }
+    }, "HistoryEventPublishingThread");
     eventHandlingThread.start();
+    eventPublishingThread.start();
   }
 
   @Override
@@ -204,33 +269,47 @@ public class ATSHistoryLoggingService extends HistoryLoggingService {
       return;
     }
     LOG.info("Stopping ATSService"
-        + ", eventQueueBacklog=" + eventQueue.size());
+        + ", eventQueueBacklog=" + eventQueue.size()
+        + ", pendingEvents=" + pendingBatches.getPendingEvents());
     stopped.set(true);
     if (eventHandlingThread != null) {
       eventHandlingThread.interrupt();
     }
+    if (eventPublishingThread != null) {
+      eventPublishingThread.interrupt();
+      try {
+        eventPublishingThread.join(waitForeverOnShutdown ? 0 : maxTimeToWaitOnShutdown);
+      } catch (InterruptedException e) {
+        LOG.info("ATSService interrupted while waiting for the publishing thread to exit");
+      }
+    }
     synchronized (lock) {
-      if (!eventQueue.isEmpty()) {
+      if (!eventQueue.isEmpty() || !pendingBatches.isEmpty()) {
         LOG.warn("ATSService being stopped"
             + ", eventQueueBacklog=" + eventQueue.size()
+            + ", pendingEvents=" + pendingBatches.getPendingEvents()
             + ", maxTimeLeftToFlush=" + maxTimeToWaitOnShutdown
             + ", waitForever=" + waitForeverOnShutdown);
         long startTime = appContext.getClock().getTime();
         long endTime = startTime + maxTimeToWaitOnShutdown;
-        List<DAGHistoryEvent> events = new LinkedList<DAGHistoryEvent>();
+        List<QueuedEvent> events = new LinkedList<QueuedEvent>();
         while (waitForeverOnShutdown || (endTime >= appContext.getClock().getTime())) {
           try {
-            getEventBatch(events);
+            // Batches which were queued earlier are sent first
+            TimelineEntityBatch batch = pendingBatches.poll(0);
+            if (batch == null) {
+              getEventBatch(events);
+              if (events.isEmpty()) {
+                LOG.info("Event queue empty, stopping ATS Service");
+                break;
+              }
+              batch = convertEvents(events);
+            }
+            publishBatch(batch);
           } catch (InterruptedException e) {
             LOG.info("ATSService interrupted while shutting down. Exiting."
                   + " EventQueueBacklog=" + eventQueue.size());
-          }
-          if (events.isEmpty()) {
-            LOG.info("Event queue empty, stopping ATS Service");
             break;
-          }
-          try {
-            handleEvents(events);
           } catch (Exception e) {
             LOG.warn("Error handling event", e);
             break;
@@ -238,29 +317,32 @@ public class ATSHistoryLoggingService extends HistoryLoggingService {
         }
       }
     }
-    if (!eventQueue.isEmpty()) {
+    if (!eventQueue.isEmpty() || !pendingBatches.isEmpty()) {
       LOG.warn("Did not finish flushing eventQueue before stopping ATSService"
-          + ", eventQueueBacklog=" + eventQueue.size());
+          + ", eventQueueBacklog=" + eventQueue.size()
+          + ", pendingEvents=" + pendingBatches.getPendingEvents());
     }
+    pendingBatches.close();
     timelineClient.stop();
     if (historyACLPolicyManager != null) {
       historyACLPolicyManager.close();
     }
   }
 
-  private void getEventBatch(List<DAGHistoryEvent> events) throws InterruptedException {
+  private void getEventBatch(List<QueuedEvent> events) throws InterruptedException {
     events.clear();
     int counter = 0;
     while (counter < maxEventsPerBatch) {
-      DAGHistoryEvent event = eventQueue.poll(maxPollingTimeMillis, TimeUnit.MILLISECONDS);
-      if (event == null) {
+      QueuedEvent queuedEvent = eventQueue.poll(maxPollingTimeMillis, TimeUnit.MILLISECONDS);
+      if (queuedEvent == null) {
         break;
       }
+      DAGHistoryEvent event = queuedEvent.event;
       if (!isValidEvent(event)) {
         continue;
       }
       ++counter;
-      events.add(event);
+      events.add(queuedEvent);
       if (event.getHistoryEvent().getEventType().equals(HistoryEventType.DAG_SUBMITTED)) {
         // Special case this as it might be a large payload
         break;
@@ -270,7 +352,24 @@ public class ATSHistoryLoggingService extends HistoryLoggingService {
 
   public void handle(DAGHistoryEvent event) {
     if (historyLoggingEnabled && timelineClient != null) {
-      eventQueue.add(event);
+      QueuedEvent queuedEvent = new QueuedEvent(event, appContext.getClock().getTime());
+      if (eventQueue.offer(queuedEvent)) {
+        return;
+      }
+      if (stopped.get()) {
+        LOG.warn("Dropping history event after ATSService stopped, eventType="
+            + event.getHistoryEvent().getEventType());
+        return;
+      }
+      // Conversion has fallen behind, wait for it rather than growing the queue
+      eventsBlocked.incrementAndGet();
+      try {
+        eventQueue.put(queuedEvent);
+      } catch (InterruptedException e) {
+        LOG.warn("Interrupted while queueing history event, eventType="
+            + event.getHistoryEvent().getEventType());
+        Thread.currentThread().interrupt();
+      }
     }
   }
 
@@ -320,10 +419,14 @@ public class ATSHistoryLoggingService extends HistoryLoggingService {
     return true;
   }
 
-  private void handleEvents(List<DAGHistoryEvent> events) {
-    TimelineEntity[] entities = new TimelineEntity[events.size()];
-    for (int i = 0; i < events.size(); ++i) {
-      DAGHistoryEvent event = events.get(i);
+  private TimelineEntityBatch convertEvents(List<QueuedEvent> events) {
+    List<TimelineEntity> entities = new ArrayList<TimelineEntity>(events.size());
+    // Updates to the same task attempt are sent as a single entity
+    Map<String, TimelineEntity> attemptEntities = new HashMap<String, TimelineEntity>();
+    long queueTime = Long.MAX_VALUE;
+    for (QueuedEvent queuedEvent : events) {
+      DAGHistoryEvent event = queuedEvent.event;
+      queueTime = Math.min(queueTime, queuedEvent.queueTime);
       String domainId = sessionDomainId;
 
       TezDAGID dagId = event.getDagID();
@@ -334,24 +437,50 @@ public class ATSHistoryLoggingService extends HistoryLoggingService {
         }
       }
 
-      entities[i] = HistoryEventTimelineConversion.convertToTimelineEntity(event.getHistoryEvent());
+      TimelineEntity entity =
+          HistoryEventTimelineConversion.convertToTimelineEntity(event.getHistoryEvent());
 
       if (historyACLPolicyManager != null) {
         if (HistoryEventType.isDAGSpecificEvent(event.getHistoryEvent().getEventType())) {
           if (domainId != null && !domainId.isEmpty()) {
-            historyACLPolicyManager.updateTimelineEntityDomain(entities[i], domainId);
+            historyACLPolicyManager.updateTimelineEntityDomain(entity, domainId);
           }
         } else {
           if (sessionDomainId != null && !sessionDomainId.isEmpty()) {
-            historyACLPolicyManager.updateTimelineEntityDomain(entities[i], sessionDomainId);
+            historyACLPolicyManager.updateTimelineEntityDomain(entity, sessionDomainId);
           }
         }
       }
 
+      if (EntityTypes.TEZ_TASK_ATTEMPT_ID.name().equals(entity.getEntityType())) {
+        TimelineEntity attemptEntity = attemptEntities.get(entity.getEntityId());
+        if (attemptEntity != null) {
+          mergeEntity(attemptEntity, entity);
+          continue;
+        }
+        attemptEntities.put(entity.getEntityId(), entity);
+      }
+      entities.add(entity);
+    }
+    return new TimelineEntityBatch(entities.toArray(new TimelineEntity[entities.size()]),
+        events.size(), queueTime);
+  }
+
+  private static void mergeEntity(TimelineEntity target, TimelineEntity source) {
+    if (target.getStartTime() == null) {
+      target.setStartTime(source.getStartTime());
     }
+    target.addEvents(source.getEvents());
+    target.addRelatedEntities(source.getRelatedEntities());
+    target.addPrimaryFilters(source.getPrimaryFilters());
+    target.addOtherInfo(source.getOtherInfo());
+  }
 
+  private void publishBatch(TimelineEntityBatch batch) {
+    TimelineEntity[] entities = batch.getEntities();
     if (LOG.isDebugEnabled()) {
-      LOG.debug("Sending event batch to Timeline, batchSize=" + events.size());
+      LOG.debug("Sending event batch to Timeline, batchSize=" + entities.length
+          + ", numEvents=" + batch.getNumEvents());
     }
     try {
       TimelinePutResponse response =
@@ -373,6 +502,53 @@ public class ATSHistoryLoggingService extends HistoryLoggingService {
     } catch (Exception e) {
       LOG.warn("Could not handle history events", e);
     }
+    eventsPublished.addAndGet(batch.getNumEvents());
+    publishLagMillis = appContext.getClock().getTime() - batch.getQueueTime();
+    maxPublishLagMillis = Math.max(maxPublishLagMillis, publishLagMillis);
+  }
+
+  /**
+   * @return number of history events waiting to be converted
+   */
+  public int getEventQueueSize() {
+    return eventQueue == null ? 0 : eventQueue.size();
+  }
+
+  /**
+   * @return number of converted history events waiting to be sent, in memory or spilled
+   */
+  public int getPendingEvents() {
+    return pendingBatches == null ? 0 : pendingBatches.getPendingEvents();
+  }
+
+  /**
+   * @return number of entity batches spilled to disk since the service started
+   */
+  public long getTotalSpilledBatches() {
+    return pendingBatches == null ? 0 : pendingBatches.getTotalSpilledBatches();
+  }
+
+  public long getEventsPublished() {
+    return eventsPublished.get();
+  }
+
+  /**
+   * @return number of history events which had to wait for space in the event queue
+   */
+  public long getEventsBlocked() {
+    return eventsBlocked.get();
+  }
+
+  /**
+   * @return time between the oldest event of the last batch sent being queued, and the batch
+   * being sent
+   */
+  public long getPublishLagMillis() {
+    return publishLagMillis;
+  }
+
+  public long getMaxPublishLagMillis() {
+    return maxPublishLagMillis;
   }
 
 }
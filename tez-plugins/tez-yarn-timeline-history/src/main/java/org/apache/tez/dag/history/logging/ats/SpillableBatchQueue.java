@@ -0,0 +1,193 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.tez.dag.history.logging.ats;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+import org.apache.hadoop.io.IOUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * FIFO queue of entity batches waiting to be sent to ATS. Up to a fixed number of batches are
+ * held in memory, further batches are compressed and appended to a spill file, and read back
+ * once the batches before them have been taken. The spill file is removed whenever it has been
+ * fully read, so disk usage is bounded by the backlog.
+ */
+class SpillableBatchQueue {
+
+  private static final Logger LOG = LoggerFactory.getLogger(SpillableBatchQueue.class);
+
+  private final int maxInMemoryBatches;
+  private final File spillDir;
+
+  // Guarded by this
+  private final Deque<TimelineEntityBatch> inMemoryBatches = new ArrayDeque<TimelineEntityBatch>();
+  private File spillFile;
+  private DataOutputStream spillOutputStream;
+  private RandomAccessFile spillInputFile;
+  private int spilledBatches = 0;
+  private int spilledEvents = 0;
+  private long totalSpilledBatches = 0;
+  private int pendingEvents = 0;
+
+  SpillableBatchQueue(int maxInMemoryBatches, File spillDir) {
+    this.maxInMemoryBatches = maxInMemoryBatches;
+    this.spillDir = spillDir;
+  }
+
+  /**
+   * Adds a batch, spilling it if the in-memory limit has been reached, or if earlier batches have
+   * been spilled, so that batches are taken in the order in which they were added.
+   */
+  synchronized void add(TimelineEntityBatch batch) throws IOException {
+    if (spilledBatches == 0 && inMemoryBatches.size() < maxInMemoryBatches) {
+      inMemoryBatches.add(batch);
+    } else {
+      spill(batch);
+    }
+    pendingEvents += batch.getNumEvents();
+    notifyAll();
+  }
+
+  /**
+   * @return the oldest batch, or null if none is added within the timeout
+   */
+  synchronized TimelineEntityBatch poll(long timeoutMillis)
+      throws InterruptedException, IOException {
+    long endTime = System.currentTimeMillis() + timeoutMillis;
+    while (isEmpty()) {
+      long remaining = endTime - System.currentTimeMillis();
+      if (remaining <= 0) {
+        return null;
+      }
+      wait(remaining);
+    }
+    TimelineEntityBatch batch = inMemoryBatches.poll();
+    if (batch == null) {
+      batch = unspill();
+    }
+    pendingEvents -= batch.getNumEvents();
+    return batch;
+  }
+
+  synchronized boolean isEmpty() {
+    return inMemoryBatches.isEmpty() && spilledBatches == 0;
+  }
+
+  synchronized int getInMemoryBatches() {
+    return inMemoryBatches.size();
+  }
+
+  synchronized int getSpilledBatches() {
+    return spilledBatches;
+  }
+
+  synchronized long getTotalSpilledBatches() {
+    return totalSpilledBatches;
+  }
+
+  /**
+   * @return number of history events in the queued batches
+   */
+  synchronized int getPendingEvents() {
+    return pendingEvents;
+  }
+
+  /**
+   * Drops whatever is still queued and removes the spill file.
+   */
+  synchronized void close() {
+    inMemoryBatches.clear();
+    spilledBatches = 0;
+    spilledEvents = 0;
+    pendingEvents = 0;
+    deleteSpillFile();
+  }
+
+  private void spill(TimelineEntityBatch batch) throws IOException {
+    byte[] bytes = batch.toBytes();
+    if (spillFile == null) {
+      spillFile = File.createTempFile("tez-ats-spill", ".bin", spillDir);
+      spillFile.deleteOnExit();
+      spillOutputStream = new DataOutputStream(new FileOutputStream(spillFile));
+      spillInputFile = new RandomAccessFile(spillFile, "r");
+      LOG.info("Spilling timeline entity batches to " + spillFile);
+    }
+    try {
+      spillOutputStream.writeInt(bytes.length);
+      spillOutputStream.write(bytes);
+      spillOutputStream.flush();
+    } catch (IOException e) {
+      // A partial write leaves the spill file unreadable past the last complete batch
+      dropSpilledBatches("writing", e);
+      throw e;
+    }
+    ++spilledBatches;
+    spilledEvents += batch.getNumEvents();
+    ++totalSpilledBatches;
+  }
+
+  private TimelineEntityBatch unspill() throws IOException {
+    TimelineEntityBatch batch;
+    try {
+      byte[] bytes = new byte[spillInputFile.readInt()];
+      spillInputFile.readFully(bytes);
+      batch = TimelineEntityBatch.fromBytes(bytes);
+    } catch (IOException e) {
+      // The batches after a bad one cannot be located reliably
+      dropSpilledBatches("reading", e);
+      throw e;
+    }
+    spilledEvents -= batch.getNumEvents();
+    if (--spilledBatches == 0) {
+      deleteSpillFile();
+    }
+    return batch;
+  }
+
+  private void dropSpilledBatches(String operation, IOException e) {
+    LOG.warn("Dropping " + spilledBatches + " spilled batches, with " + spilledEvents
+        + " events, after failure " + operation + " " + spillFile, e);
+    pendingEvents -= spilledEvents;
+    spilledBatches = 0;
+    spilledEvents = 0;
+    deleteSpillFile();
+  }
+
+  private void deleteSpillFile() {
+    if (spillFile == null) {
+      return;
+    }
+    IOUtils.closeStream(spillOutputStream);
+    IOUtils.closeStream(spillInputFile);
+    if (!spillFile.delete()) {
+      LOG.warn("Failed to delete spill file " + spillFile);
+    }
+    spillFile = null;
+    spillOutputStream = null;
+    spillInputFile = null;
+  }
+}
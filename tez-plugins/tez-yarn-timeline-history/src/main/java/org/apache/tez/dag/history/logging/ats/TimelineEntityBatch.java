@@ -0,0 +1,134 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.tez.dag.history.logging.ats;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.hadoop.yarn.api.records.timeline.TimelineEntity;
+import org.apache.hadoop.yarn.api.records.timeline.TimelineEvent;
+
+/**
+ * Entities to be sent to ATS in a single put, along with the time at which the oldest of the
+ * history events they were converted from was queued.
+ */
+class TimelineEntityBatch {
+
+  private final TimelineEntity[] entities;
+  private final int numEvents;
+  private final long queueTime;
+
+  TimelineEntityBatch(TimelineEntity[] entities, int numEvents, long queueTime) {
+    this.entities = entities;
+    this.numEvents = numEvents;
+    this.queueTime = queueTime;
+  }
+
+  TimelineEntity[] getEntities() {
+    return entities;
+  }
+
+  /**
+   * @return number of history events the entities were converted from
+   */
+  int getNumEvents() {
+    return numEvents;
+  }
+
+  long getQueueTime() {
+    return queueTime;
+  }
+
+  /**
+   * Serializes the batch in compressed form, for spilling to disk. Entity values are written with
+   * java serialization, which covers the strings, numbers, maps and lists produced by
+   * {@link HistoryEventTimelineConversion}.
+   */
+  byte[] toBytes() throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    ObjectOutputStream out = new ObjectOutputStream(new GZIPOutputStream(bytes));
+    try {
+      out.writeInt(numEvents);
+      out.writeLong(queueTime);
+      out.writeInt(entities.length);
+      for (TimelineEntity entity : entities) {
+        out.writeObject(entity.getEntityType());
+        out.writeObject(entity.getEntityId());
+        out.writeObject(entity.getStartTime());
+        out.writeObject(entity.getDomainId());
+        out.writeObject(entity.getRelatedEntities());
+        out.writeObject(entity.getPrimaryFilters());
+        out.writeObject(entity.getOtherInfo());
+        List<TimelineEvent> events = entity.getEvents();
+        out.writeInt(events.size());
+        for (TimelineEvent event : events) {
+          out.writeLong(event.getTimestamp());
+          out.writeObject(event.getEventType());
+          out.writeObject(event.getEventInfo());
+        }
+      }
+    } finally {
+      out.close();
+    }
+    return bytes.toByteArray();
+  }
+
+  @SuppressWarnings("unchecked")
+  static TimelineEntityBatch fromBytes(byte[] bytes) throws IOException {
+    ObjectInputStream in = new ObjectInputStream(
+        new GZIPInputStream(new ByteArrayInputStream(bytes)));
+    try {
+      int numEvents = in.readInt();
+      long queueTime = in.readLong();
+      TimelineEntity[] entities = new TimelineEntity[in.readInt()];
+      for (int i = 0; i < entities.length; ++i) {
+        TimelineEntity entity = new TimelineEntity();
+        entity.setEntityType((String) in.readObject());
+        entity.setEntityId((String) in.readObject());
+        entity.setStartTime((Long) in.readObject());
+        entity.setDomainId((String) in.readObject());
+        entity.setRelatedEntities((Map<String, Set<String>>) in.readObject());
+        entity.setPrimaryFilters((Map<String, Set<Object>>) in.readObject());
+        entity.setOtherInfo((Map<String, Object>) in.readObject());
+        int numEntityEvents = in.readInt();
+        for (int j = 0; j < numEntityEvents; ++j) {
+          TimelineEvent event = new TimelineEvent();
+          event.setTimestamp(in.readLong());
+          event.setEventType((String) in.readObject());
+          event.setEventInfo((Map<String, Object>) in.readObject());
+          entity.addEvent(event);
+        }
+        entities[i] = entity;
+      }
+      return new TimelineEntityBatch(entities, numEvents, queueTime);
+    } catch (ClassNotFoundException e) {
+      throw new IOException("Failed to read spilled timeline entities", e);
+    } finally {
+      in.close();
+    }
+  }
+}
@@ -18,19 +18,34 @@
 
 package org.apache.tez.dag.history.logging.ats;
 
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.yarn.api.records.ApplicationAttemptId;
 import org.apache.hadoop.yarn.api.records.ApplicationId;
+import org.apache.hadoop.yarn.api.records.ContainerId;
+import org.apache.hadoop.yarn.api.records.NodeId;
 import org.apache.hadoop.yarn.api.records.timeline.TimelineEntity;
 import org.apache.hadoop.yarn.client.api.TimelineClient;
 import org.apache.hadoop.yarn.util.SystemClock;
 import org.apache.hadoop.yarn.conf.YarnConfiguration;
 import org.apache.tez.dag.api.TezConfiguration;
+import org.apache.tez.dag.api.oldrecords.TaskAttemptState;
 import org.apache.tez.dag.app.AppContext;
 import org.apache.tez.dag.history.DAGHistoryEvent;
 import org.apache.tez.dag.history.events.DAGStartedEvent;
+import org.apache.tez.dag.history.events.TaskAttemptFinishedEvent;
+import org.apache.tez.dag.history.events.TaskAttemptStartedEvent;
+import org.apache.tez.dag.records.TaskAttemptTerminationCause;
 import org.apache.tez.dag.records.TezDAGID;
+import org.apache.tez.dag.records.TezTaskAttemptID;
+import org.apache.tez.dag.records.TezTaskID;
+import org.apache.tez.dag.records.TezVertexID;
+import org.apache.tez.runtime.api.TaskFailureType;
 import org.junit.After;
 import org.junit.Assert;
 import org.junit.Before;
@@ -192,4 +207,68 @@ public class TestATSHistoryLoggingService {
     Assert.assertNull(atsHistoryLoggingService1.timelineClient);
     
   }
+
+  @SuppressWarnings("deprecation")
+  @Test(timeout=20000)
+  public void testATSEventSpillAndCoalesce() throws Exception {
+    File spillDir = new File(System.getProperty("test.build.data", "target"),
+        TestATSHistoryLoggingService.class.getName() + "-spill").getAbsoluteFile();
+    spillDir.mkdirs();
+    ATSHistoryLoggingService atsService = new ATSHistoryLoggingService();
+    atsService.setAppContext(appContext);
+    conf.setInt(TezConfiguration.YARN_ATS_MAX_PENDING_BATCHES, 1);
+    conf.set(TezConfiguration.YARN_ATS_SPILL_DIR, spillDir.getPath());
+    atsService.init(conf);
+    atsService.timelineClient = mock(TimelineClient.class);
+    final List<TimelineEntity> sentEntities = new ArrayList<TimelineEntity>();
+    when(atsService.timelineClient.putEntities(
+        Matchers.<TimelineEntity[]>anyVararg())).thenAnswer(
+        new Answer<Object>() {
+          @Override
+          public Object answer(InvocationOnMock invocation) throws Throwable {
+            for (Object entity : invocation.getArguments()) {
+              sentEntities.add((TimelineEntity) entity);
+            }
+            Thread.sleep(100l);
+            return null;
+          }
+        }
+    );
+    atsService.start();
+
+    TezDAGID tezDAGID = TezDAGID.getInstance(ApplicationId.newInstance(100l, 1), 1);
+    TezTaskID tezTaskID = TezTaskID.getInstance(TezVertexID.getInstance(tezDAGID, 1), 1);
+    ContainerId containerId = ContainerId.newInstance(
+        ApplicationAttemptId.newInstance(tezDAGID.getApplicationId(), 1), 1);
+    NodeId nodeId = NodeId.newInstance("host", 1);
+    int numAttempts = 10;
+    for (int i = 0; i < numAttempts; ++i) {
+      TezTaskAttemptID attemptID = TezTaskAttemptID.getInstance(tezTaskID, i);
+      atsService.handle(new DAGHistoryEvent(tezDAGID,
+          new TaskAttemptStartedEvent(attemptID, "v1", 1000l, containerId, nodeId, null, null,
+              "nodeHttpAddress")));
+      atsService.handle(new DAGHistoryEvent(tezDAGID,
+          new TaskAttemptFinishedEvent(attemptID, "v1", 1000l, 2000l, TaskAttemptState.FAILED,
+              TaskFailureType.NON_FATAL, TaskAttemptTerminationCause.OUTPUT_LOST, null, null,
+              null, null, 0, null, 0, containerId, nodeId, null, null, "nodeHttpAddress")));
+    }
+    while (atsService.getEventsPublished() < 2 * numAttempts) {
+      Thread.sleep(50l);
+    }
+    atsService.stop();
+
+    // Each batch holds the started and finished events of one attempt, in a single entity
+    Assert.assertTrue(atsService.getTotalSpilledBatches() > 0);
+    Assert.assertEquals(numAttempts, sentEntities.size());
+    for (int i = 0; i < numAttempts; ++i) {
+      TimelineEntity entity = sentEntities.get(i);
+      Assert.assertEquals(TezTaskAttemptID.getInstance(tezTaskID, i).toString(),
+          entity.getEntityId());
+      Assert.assertEquals(2, entity.getEvents().size());
+    }
+    Assert.assertEquals(0, atsService.getPendingEvents());
+    String[] spillFiles = spillDir.list();
+    Assert.assertNotNull(spillFiles);
+    Assert.assertEquals(0, spillFiles.length);
+  }
 }
@@ -23,9 +23,13 @@ import java.io.IOException;
 import java.util.Map;
 import java.util.Map.Entry;
 
+import javax.annotation.Nullable;
+
 import org.apache.hadoop.io.Writable;
 import org.apache.hadoop.security.Credentials;
+import org.apache.tez.dag.api.UserPayload;
 import org.apache.tez.runtime.api.impl.TaskSpec;
+import org.apache.tez.runtime.api.impl.UserPayloadStore;
 
 import com.google.common.collect.Maps;
 
@@ -36,17 +40,35 @@ public class ContainerTask implements Writable {
   private Map<String, TezLocalResource> additionalResources;
   private Credentials credentials;
   private boolean credentialsChanged;
+  // Payloads the container does not have yet, null if the TaskSpec is sent with its payloads
+  private Map<String, UserPayload> newPayloads;
+  private boolean resetPayloads;
 
   public ContainerTask() {
   }
 
   public ContainerTask(TaskSpec taskSpec, boolean shouldDie,
       Map<String, TezLocalResource> additionalResources, Credentials credentials, boolean credentialsChanged) {
+    this(taskSpec, shouldDie, additionalResources, credentials, credentialsChanged, null, false);
+  }
+
+  /**
+   * @param newPayloads payloads of the TaskSpec descriptors which have not been sent to the
+   *          container yet, keyed by their hash. The other payloads are referred to by their hash
+   *          only. If null, the TaskSpec is sent with all its payloads.
+   * @param resetPayloads whether the container should drop the payloads it received before
+   */
+  public ContainerTask(TaskSpec taskSpec, boolean shouldDie,
+      Map<String, TezLocalResource> additionalResources, Credentials credentials,
+      boolean credentialsChanged, @Nullable Map<String, UserPayload> newPayloads,
+      boolean resetPayloads) {
     this.taskSpec = taskSpec;
     this.shouldDie = shouldDie;
     this.additionalResources = additionalResources;
     this.credentials = credentials;
     this.credentialsChanged = credentialsChanged;
+    this.newPayloads = newPayloads;
+    this.resetPayloads = resetPayloads;
   }
 
   public TaskSpec getTaskSpec() {
@@ -74,7 +96,13 @@ public class ContainerTask implements Writable {
     out.writeBoolean(shouldDie);
     if (taskSpec != null) {
       out.writeBoolean(true);
-      taskSpec.write(out);
+      out.writeBoolean(newPayloads != null);
+      if (newPayloads != null) {
+        UserPayloadStore.writePayloads(out, resetPayloads, newPayloads);
+        taskSpec.writeWithPayloadRefs(out);
+      } else {
+        taskSpec.write(out);
+      }
     } else {
       out.writeBoolean(false);
     }
@@ -102,7 +130,15 @@ public class ContainerTask implements Writable {
     boolean taskComing = in.readBoolean();
     if (taskComing) {
       taskSpec = new TaskSpec();
-      taskSpec.readFields(in);
+      boolean payloadRefs = in.readBoolean();
+      if (payloadRefs) {
+        // Payloads are kept by the container across tasks
+        UserPayloadStore store = UserPayloadStore.getContainerStore();
+        store.readPayloads(in);
+        taskSpec.readFieldsWithPayloadRefs(in, store);
+      } else {
+        taskSpec.readFields(in);
+      }
     }
     int numAdditionalResources = in.readInt();
     additionalResources = Maps.newHashMap();
@@ -140,6 +176,10 @@ public class ContainerTask implements Writable {
     } else {
       sb.append(additionalResources);
     }
+    if (newPayloads != null) {
+      sb.append(", newPayloads: ").append(newPayloads.size());
+      sb.append(", resetPayloads: ").append(resetPayloads);
+    }
     sb.append(", credentialsChanged: ").append(credentialsChanged);
     sb.append(", credentials: ");
     if (credentials == null) {
@@ -41,7 +41,7 @@ import org.apache.tez.runtime.common.security.JobTokenSelector;
 //@ProtocolInfo(protocolName = "TezTaskUmbilicalProtocol", protocolVersion = 1)
 public interface TezTaskUmbilicalProtocol extends VersionedProtocol {
 
-  public static final long versionID = 19L;
+  public static final long versionID = 20L;
 
   ContainerTask getTask(ContainerContext containerContext) throws IOException;
 
@@ -53,4 +53,10 @@ public interface TezTaskUmbilicalProtocol extends VersionedProtocol {
   public TezHeartbeatResponse heartbeat(TezHeartbeatRequest request)
       throws IOException, TezException;
 
+  /**
+   * Asks the AM to return the heartbeat of the container with the given request id right away,
+   * if it is holding it while waiting for events, so that the container can send its own events.
+   */
+  public void releaseHeartbeat(String containerIdentifier, long requestId) throws IOException;
+
 }
@@ -43,6 +43,8 @@ import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.commons.lang.exception.ExceptionUtils;
 import org.apache.tez.hadoop.shim.HadoopShim;
@@ -56,6 +58,7 @@ import org.apache.hadoop.conf.Configuration;
 import org.apache.tez.common.CallableWithNdc;
 import org.apache.tez.common.ReflectionUtils;
 import org.apache.tez.common.RunnableWithNdc;
+import org.apache.tez.common.counters.TaskCounter;
 import org.apache.tez.dag.api.InputDescriptor;
 import org.apache.tez.dag.api.OutputDescriptor;
 import org.apache.tez.dag.api.ProcessorDescriptor;
@@ -92,6 +95,7 @@ import org.apache.tez.runtime.api.impl.TezInputContextImpl;
 import org.apache.tez.runtime.api.impl.TezMergedInputContextImpl;
 import org.apache.tez.runtime.api.impl.TezOutputContextImpl;
 import org.apache.tez.runtime.api.impl.TezUmbilical;
+import org.apache.tez.runtime.common.objectregistry.ObjectRegistryImpl;
 import org.apache.tez.runtime.common.resources.MemoryDistributor;
 
 import com.google.common.annotations.VisibleForTesting;
@@ -129,6 +133,15 @@ public class LogicalIOProcessorRuntimeTask extends RuntimeTask {
   AbstractLogicalIOProcessor processor;
   ProcessorContext processorContext;
 
+  // Events routed to the processor before it is initialized, which can happen when inputs are
+  // started before the processor is initialized. Guarded by itself, along with
+  // processorInitialized.
+  private final List<Event> pendingProcessorEvents = new ArrayList<Event>();
+  private boolean processorInitialized = false;
+
+  // nanoTime at which the last Input / Output finished initializing
+  private final AtomicLong ioInitializedTime = new AtomicLong();
+
   private final MemoryDistributor initialMemoryDistributor;
 
   /** Maps which will be provided to the processor run method */
@@ -151,6 +164,12 @@ public class LogicalIOProcessorRuntimeTask extends RuntimeTask {
   private volatile InputReadyTracker inputReadyTracker;
   
   private volatile ObjectRegistry objectRegistry;
+  // The registry is shared by the tasks of the container, counters report the change during
+  // this task. Kept separately since objectRegistry is cleared on cleanup.
+  private final ObjectRegistryImpl registryForCounters;
+  private final long registryHitsAtStart;
+  private final long registryMissesAtStart;
+  private final long registryEvictionsAtStart;
   private final ExecutionContext ExecutionContext;
   private final long memAvailable;
   private final HadoopShim hadoopShim;
@@ -158,6 +177,7 @@ public class LogicalIOProcessorRuntimeTask extends RuntimeTask {
 
   private final boolean initializeProcessorFirst;
   private final boolean initializeProcessorIOSerially;
+  private final boolean startInputsBeforeProcessorInitialize;
 
   public LogicalIOProcessorRuntimeTask(TaskSpec taskSpec, int appAttemptNumber,
       Configuration tezConf, String[] localDirs, TezUmbilical tezUmbilical,
@@ -196,6 +216,10 @@ public class LogicalIOProcessorRuntimeTask extends RuntimeTask {
         TezConfiguration.TEZ_TASK_INITIALIZE_PROCESSOR_FIRST_DEFAULT);
     this.initializeProcessorIOSerially = tezConf.getBoolean(TezConfiguration.TEZ_TASK_INITIALIZE_PROCESSOR_IO_SERIALLY,
         TezConfiguration.TEZ_TASK_INITIALIZE_PROCESSOR_IO_SERIALLY_DEFAULT);
+    this.startInputsBeforeProcessorInitialize = tezConf.getBoolean(
+        TezConfiguration.TEZ_TASK_START_INPUTS_BEFORE_PROCESSOR_INITIALIZE,
+        TezConfiguration.TEZ_TASK_START_INPUTS_BEFORE_PROCESSOR_INITIALIZE_DEFAULT)
+        && !initializeProcessorFirst && !initializeProcessorIOSerially;
     int numInitializers = numInputs + numOutputs; // Processor is initialized in the main thread.
     numInitializers = (numInitializers == 0 ? 1 : numInitializers);
     if (initializeProcessorIOSerially) {
@@ -212,6 +236,17 @@ public class LogicalIOProcessorRuntimeTask extends RuntimeTask {
     this.startedInputsMap = startedInputsMap;
     this.inputReadyTracker = new InputReadyTracker();
     this.objectRegistry = objectRegistry;
+    if (objectRegistry instanceof ObjectRegistryImpl) {
+      this.registryForCounters = (ObjectRegistryImpl) objectRegistry;
+      this.registryHitsAtStart = registryForCounters.getHits();
+      this.registryMissesAtStart = registryForCounters.getMisses();
+      this.registryEvictionsAtStart = registryForCounters.getEvictions();
+    } else {
+      this.registryForCounters = null;
+      this.registryHitsAtStart = 0;
+      this.registryMissesAtStart = 0;
+      this.registryEvictionsAtStart = 0;
+    }
     this.ExecutionContext = ExecutionContext;
     this.memAvailable = memAvailable;
     this.hadoopShim = hadoopShim;
@@ -225,6 +260,7 @@ public class LogicalIOProcessorRuntimeTask extends RuntimeTask {
   public void initialize() throws Exception {
     Preconditions.checkState(this.state.get() == State.NEW, "Already initialized");
     this.state.set(State.INITED);
+    long initializeStartTime = System.nanoTime();
 
     this.processorContext = createProcessorContext();
     this.processor = createProcessor(processorDescriptor.getClassName(), processorContext);
@@ -233,6 +269,8 @@ public class LogicalIOProcessorRuntimeTask extends RuntimeTask {
       // Initialize processor in the current thread.
       initializeLogicalIOProcessor();
     }
+    long ioInitializeStartTime = System.nanoTime();
+    ioInitializedTime.set(ioInitializeStartTime);
     int numTasks = 0;
 
     int inputIndex = 0;
@@ -249,7 +287,8 @@ public class LogicalIOProcessorRuntimeTask extends RuntimeTask {
       numTasks++;
     }
 
-    if (!(initializeProcessorFirst || initializeProcessorIOSerially)) {
+    if (!(initializeProcessorFirst || initializeProcessorIOSerially
+        || startInputsBeforeProcessorInitialize)) {
       // Initialize processor in the current thread.
       initializeLogicalIOProcessor();
     }
@@ -269,6 +308,8 @@ public class LogicalIOProcessorRuntimeTask extends RuntimeTask {
       }
     }
     LOG.info("All initializers finished");
+    tezCounters.findCounter(TaskCounter.IO_INITIALIZE_TIME).setValue(
+        TimeUnit.NANOSECONDS.toMillis(ioInitializedTime.get() - ioInitializeStartTime));
     // group inputs depend on inputs beings initialized. So must be done after.
     initializeGroupInputs();
     // Register the groups so that appropriate calls can be made.
@@ -290,6 +331,7 @@ public class LogicalIOProcessorRuntimeTask extends RuntimeTask {
 
     initialMemoryDistributor.makeInitialAllocations();
 
+    long inputStartTime = System.nanoTime();
     LOG.info("Starting Inputs/Outputs");
     int numAutoStarts = 0;
     for (InputSpec inputSpec : inputSpecs) {
@@ -340,6 +382,7 @@ public class LogicalIOProcessorRuntimeTask extends RuntimeTask {
       }
     }
     LOG.info("AutoStartComplete");
+    setPhaseTime(TaskCounter.INPUT_START_TIME, inputStartTime);
 
 
 
@@ -361,13 +404,24 @@ public class LogicalIOProcessorRuntimeTask extends RuntimeTask {
     // initialize.
 
     startRouterThread();
+
+    if (startInputsBeforeProcessorInitialize) {
+      // Inputs receive their events, and start fetching, while the processor initializes.
+      initializeLogicalIOProcessor();
+    }
+    setPhaseTime(TaskCounter.TASK_INITIALIZE_TIME, initializeStartTime);
   }
 
   public void run() throws Exception {
     Preconditions.checkState(this.state.get() == State.INITED,
         "Can only run while in INITED state. Current: " + this.state);
     this.state.set(State.RUNNING);
-    processor.run(runInputMap, runOutputMap);
+    long runStartTime = System.nanoTime();
+    try {
+      processor.run(runInputMap, runOutputMap);
+    } finally {
+      setPhaseTime(TaskCounter.PROCESSOR_RUN_TIME, runStartTime);
+    }
   }
 
   public void close() throws Exception {
@@ -375,6 +429,7 @@ public class LogicalIOProcessorRuntimeTask extends RuntimeTask {
       Preconditions.checkState(this.state.get() == State.RUNNING,
           "Can only run while in RUNNING state. Current: " + this.state);
       this.state.set(State.CLOSED);
+      long closeStartTime = System.nanoTime();
 
       // Close the Inputs.
       for (InputSpec inputSpec : inputSpecs) {
@@ -399,6 +454,7 @@ public class LogicalIOProcessorRuntimeTask extends RuntimeTask {
       // Close the Processor.
       processorClosed = true;
       processor.close();
+      setPhaseTime(TaskCounter.TASK_CLOSE_TIME, closeStartTime);
 
     } finally {
       setTaskDone();
@@ -463,6 +519,7 @@ public class LogicalIOProcessorRuntimeTask extends RuntimeTask {
         LOG.debug("Initialized Input with src edge: " + edgeName);
       }
       initializedInputs.put(edgeName, input);
+      recordIOInitialized();
       return null;
     }
   }
@@ -539,6 +596,7 @@ public class LogicalIOProcessorRuntimeTask extends RuntimeTask {
         LOG.debug("Initialized Output with dest edge: " + edgeName);
       }
       initializedOutputs.put(edgeName, output);
+      recordIOInitialized();
       return null;
     }
   }
@@ -580,8 +638,40 @@ public class LogicalIOProcessorRuntimeTask extends RuntimeTask {
       LOG.debug("Initializing processor" + ", processorClassName="
           + processorDescriptor.getClassName());
     }
+    long startTime = System.nanoTime();
     processor.initialize();
+    setPhaseTime(TaskCounter.PROCESSOR_INITIALIZE_TIME, startTime);
     LOG.info("Initialized processor");
+    synchronized (pendingProcessorEvents) {
+      processorInitialized = true;
+      if (!pendingProcessorEvents.isEmpty()) {
+        processor.handleEvents(new ArrayList<Event>(pendingProcessorEvents));
+        pendingProcessorEvents.clear();
+      }
+    }
+  }
+
+  private void handleProcessorEvent(Event event) {
+    synchronized (pendingProcessorEvents) {
+      if (processorInitialized) {
+        processor.handleEvents(Collections.singletonList(event));
+      } else {
+        pendingProcessorEvents.add(event);
+      }
+    }
+  }
+
+  private void recordIOInitialized() {
+    long now = System.nanoTime();
+    long last = ioInitializedTime.get();
+    while (now - last > 0 && !ioInitializedTime.compareAndSet(last, now)) {
+      last = ioInitializedTime.get();
+    }
+  }
+
+  private void setPhaseTime(TaskCounter counter, long startTimeNanos) {
+    tezCounters.findCounter(counter).setValue(
+        TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTimeNanos));
   }
 
   private InputContext createInputContext(Map<String, LogicalInput> inputMap,
@@ -729,7 +819,7 @@ public class LogicalIOProcessorRuntimeTask extends RuntimeTask {
         }
         break;
       case PROCESSOR:
-        processor.handleEvents(Collections.singletonList(e.getEvent()));
+        handleProcessorEvent(e.getEvent());
         break;
       case SYSTEM:
         LOG.warn("Trying to send a System event in a Task: " + e);
@@ -753,6 +843,19 @@ public class LogicalIOProcessorRuntimeTask extends RuntimeTask {
     return true;
   }
 
+  @Override
+  public void setFrameworkCounters() {
+    super.setFrameworkCounters();
+    if (registryForCounters != null) {
+      tezCounters.findCounter(TaskCounter.OBJECT_REGISTRY_HITS).setValue(
+          registryForCounters.getHits() - registryHitsAtStart);
+      tezCounters.findCounter(TaskCounter.OBJECT_REGISTRY_MISSES).setValue(
+          registryForCounters.getMisses() - registryMissesAtStart);
+      tezCounters.findCounter(TaskCounter.OBJECT_REGISTRY_EVICTIONS).setValue(
+          registryForCounters.getEvictions() - registryEvictionsAtStart);
+    }
+  }
+
   @Override
   public int getMaxEventsToHandle() {
     return Math.max(0, maxEventBacklog - eventsToBeProcessed.size());
@@ -27,12 +27,15 @@ import java.util.concurrent.atomic.AtomicReference;
 
 import org.apache.hadoop.conf.Configuration;
 import org.apache.tez.common.counters.TezCounters;
+import org.apache.tez.dag.api.TezConfiguration;
 import org.apache.tez.dag.records.TezTaskAttemptID;
+import org.apache.tez.runtime.api.impl.TaskMetricsSeries;
 import org.apache.tez.runtime.api.impl.TaskSpec;
 import org.apache.tez.runtime.api.impl.TaskStatistics;
 import org.apache.tez.runtime.api.impl.TezEvent;
 import org.apache.tez.runtime.api.impl.TezUmbilical;
 import org.apache.tez.runtime.metrics.TaskCounterUpdater;
+import org.apache.tez.runtime.metrics.TaskMetricsSampler;
 
 import com.google.common.collect.Maps;
 
@@ -52,6 +55,7 @@ public abstract class RuntimeTask {
   private final AtomicBoolean taskDone;
   private final TaskCounterUpdater counterUpdater;
   private final TaskStatistics statistics;
+  private final TaskMetricsSampler metricsSampler;
   private final AtomicBoolean progressNotified = new AtomicBoolean(false);
 
   protected RuntimeTask(TaskSpec taskSpec, Configuration tezConf,
@@ -71,6 +75,15 @@ public abstract class RuntimeTask {
     } else {
       this.counterUpdater = null;
     }
+    int sampleInterval = tezConf.getInt(TezConfiguration.TEZ_TASK_METRICS_SAMPLE_INTERVAL_MS,
+        TezConfiguration.TEZ_TASK_METRICS_SAMPLE_INTERVAL_MS_DEFAULT);
+    if (sampleInterval > 0) {
+      this.metricsSampler = new TaskMetricsSampler(System.currentTimeMillis(), sampleInterval,
+          tezConf.getInt(TezConfiguration.TEZ_TASK_METRICS_MAX_SAMPLES,
+              TezConfiguration.TEZ_TASK_METRICS_MAX_SAMPLES_DEFAULT));
+    } else {
+      this.metricsSampler = null;
+    }
   }
 
   protected enum State {
@@ -135,6 +148,30 @@ public abstract class RuntimeTask {
     return statistics;
   }
 
+  /**
+   * Samples the metrics of the task, if sampling is enabled and a sample is due.
+   * @param force sample even if no sample is due
+   */
+  public void sampleMetrics(boolean force) {
+    if (metricsSampler == null) {
+      return;
+    }
+    long now = System.currentTimeMillis();
+    if (force || metricsSampler.isSampleDue(now)) {
+      if (counterUpdater != null) {
+        counterUpdater.updateResourceCounters();
+      }
+      metricsSampler.sample(now, getCounters());
+    }
+  }
+
+  /**
+   * @return a copy of the metrics series sampled so far, or null if sampling is disabled
+   */
+  public TaskMetricsSeries getMetricsSeries() {
+    return metricsSampler == null ? null : metricsSampler.getSeries();
+  }
+
   public TezTaskAttemptID getTaskAttemptID() {
     return taskSpec.getTaskAttemptID();
   }
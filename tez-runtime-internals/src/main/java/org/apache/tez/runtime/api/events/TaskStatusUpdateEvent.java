@@ -25,6 +25,7 @@ import java.io.IOException;
 import org.apache.hadoop.io.Writable;
 import org.apache.tez.common.counters.TezCounters;
 import org.apache.tez.runtime.api.Event;
+import org.apache.tez.runtime.api.impl.TaskMetricsSeries;
 import org.apache.tez.runtime.api.impl.TaskStatistics;
 
 public class TaskStatusUpdateEvent extends Event implements Writable {
@@ -33,15 +34,22 @@ public class TaskStatusUpdateEvent extends Event implements Writable {
   private float progress;
   boolean progressNotified;
   private TaskStatistics statistics;
+  private TaskMetricsSeries metricsSeries;
 
   public TaskStatusUpdateEvent() {
   }
 
   public TaskStatusUpdateEvent(TezCounters tezCounters, float progress, TaskStatistics statistics, 
       boolean progressNotified) {
+    this(tezCounters, progress, statistics, null, progressNotified);
+  }
+
+  public TaskStatusUpdateEvent(TezCounters tezCounters, float progress, TaskStatistics statistics,
+      TaskMetricsSeries metricsSeries, boolean progressNotified) {
     this.tezCounters = tezCounters;
     this.progress = progress;
     this.statistics = statistics;
+    this.metricsSeries = metricsSeries;
     this.progressNotified = progressNotified;
   }
 
@@ -57,6 +65,10 @@ public class TaskStatusUpdateEvent extends Event implements Writable {
     return statistics;
   }
   
+  public TaskMetricsSeries getMetricsSeries() {
+    return metricsSeries;
+  }
+
   public boolean getProgressNotified() {
     return progressNotified;
   }
@@ -77,6 +89,12 @@ public class TaskStatusUpdateEvent extends Event implements Writable {
     } else {
       out.writeBoolean(false);
     }
+    if (metricsSeries != null) {
+      out.writeBoolean(true);
+      metricsSeries.write(out);
+    } else {
+      out.writeBoolean(false);
+    }
   }
 
   @Override
@@ -91,6 +109,10 @@ public class TaskStatusUpdateEvent extends Event implements Writable {
       statistics = new TaskStatistics();
       statistics.readFields(in);
     }
+    if (in.readBoolean()) {
+      metricsSeries = new TaskMetricsSeries();
+      metricsSeries.readFields(in);
+    }
   }
 
 }
@@ -60,24 +60,42 @@ public class GroupInputSpec implements Writable{
   
   @Override
   public void write(DataOutput out) throws IOException {
+    writeGroup(out);
+    mergedInputDescriptor.write(out);
+  }
+
+  @Override
+  public void readFields(DataInput in) throws IOException {
+    readGroup(in);
+    mergedInputDescriptor = new InputDescriptor();
+    mergedInputDescriptor.readFields(in);
+  }
+
+  void writeWithPayloadRefs(DataOutput out) throws IOException {
+    writeGroup(out);
+    UserPayloadStore.writeDescriptorRef(mergedInputDescriptor, out);
+  }
+
+  void readFieldsWithPayloadRefs(DataInput in, UserPayloadStore store) throws IOException {
+    readGroup(in);
+    mergedInputDescriptor = store.readPayloadRef(in, InputDescriptor.create(Text.readString(in)));
+  }
+
+  private void writeGroup(DataOutput out) throws IOException {
     Text.writeString(out, groupName);
     out.writeInt(groupVertices.size());
     for (String s : groupVertices) {
       Text.writeString(out, s);
     }
-    mergedInputDescriptor.write(out);
   }
 
-  @Override
-  public void readFields(DataInput in) throws IOException {
+  private void readGroup(DataInput in) throws IOException {
     groupName = StringInterner.weakIntern(Text.readString(in));
     int numMembers = in.readInt();
     groupVertices = Lists.newArrayListWithCapacity(numMembers);
     for (int i=0; i<numMembers; ++i) {
       groupVertices.add(StringInterner.weakIntern(Text.readString(in)));
     }
-    mergedInputDescriptor = new InputDescriptor();
-    mergedInputDescriptor.readFields(in);
   }
   
   @Override
@@ -22,6 +22,7 @@ import java.io.DataInput;
 import java.io.DataOutput;
 import java.io.IOException;
 
+import org.apache.hadoop.io.Text;
 import org.apache.hadoop.io.Writable;
 import org.apache.hadoop.util.StringInterner;
 import org.apache.tez.dag.api.InputDescriptor;
@@ -74,6 +75,18 @@ public class InputSpec implements Writable {
     inputDescriptor.readFields(in);
   }
 
+  void writeWithPayloadRefs(DataOutput out) throws IOException {
+    out.writeUTF(sourceVertexName);
+    out.writeInt(physicalEdgeCount);
+    UserPayloadStore.writeDescriptorRef(inputDescriptor, out);
+  }
+
+  void readFieldsWithPayloadRefs(DataInput in, UserPayloadStore store) throws IOException {
+    sourceVertexName = StringInterner.weakIntern(in.readUTF());
+    physicalEdgeCount = in.readInt();
+    inputDescriptor = store.readPayloadRef(in, InputDescriptor.create(Text.readString(in)));
+  }
+
   public String toString() {
     return "{ sourceVertexName=" + sourceVertexName
         + ", physicalEdgeCount=" + physicalEdgeCount
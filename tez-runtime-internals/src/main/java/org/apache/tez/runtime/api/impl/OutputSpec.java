@@ -22,6 +22,7 @@ import java.io.DataInput;
 import java.io.DataOutput;
 import java.io.IOException;
 
+import org.apache.hadoop.io.Text;
 import org.apache.hadoop.io.Writable;
 import org.apache.hadoop.util.StringInterner;
 import org.apache.tez.dag.api.OutputDescriptor;
@@ -70,6 +71,18 @@ public class OutputSpec implements Writable {
     outputDescriptor.readFields(in);
   }
 
+  void writeWithPayloadRefs(DataOutput out) throws IOException {
+    out.writeUTF(destinationVertexName);
+    out.writeInt(physicalEdgeCount);
+    UserPayloadStore.writeDescriptorRef(outputDescriptor, out);
+  }
+
+  void readFieldsWithPayloadRefs(DataInput in, UserPayloadStore store) throws IOException {
+    destinationVertexName = StringInterner.weakIntern(in.readUTF());
+    physicalEdgeCount = in.readInt();
+    outputDescriptor = store.readPayloadRef(in, OutputDescriptor.create(Text.readString(in)));
+  }
+
   public String toString() {
     return "{ destinationVertexName=" + destinationVertexName
         + ", physicalEdgeCount=" + physicalEdgeCount
@@ -0,0 +1,186 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package org.apache.tez.runtime.api.impl;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.io.WritableUtils;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * Time series of the metrics of a task attempt, in buckets of equal duration starting at the
+ * start time of the attempt. The number of buckets is bounded: once the series is full, pairs of
+ * adjacent buckets are merged, which doubles the duration of the buckets.
+ */
+public class TaskMetricsSeries implements Writable {
+
+  public enum Metric {
+    /** Bytes fetched by the shuffle inputs */
+    FETCH_BYTES(false),
+    /** Peak number of in-memory shuffle outputs waiting to be merged */
+    MERGE_QUEUE_DEPTH(true),
+    /** Spills of outputs and in-memory merges of inputs to disk */
+    SPILLS(false),
+    /** CPU time of the task */
+    CPU_MILLIS(false);
+
+    private final boolean gauge;
+
+    Metric(boolean gauge) {
+      this.gauge = gauge;
+    }
+
+    /**
+     * @return true if the buckets hold the peak of a current value, false if they hold the
+     *         increase of a total within the bucket
+     */
+    public boolean isGauge() {
+      return gauge;
+    }
+  }
+
+  private static final Metric[] METRICS = Metric.values();
+
+  private long startTime;
+  private long intervalMillis;
+  private int maxBuckets;
+  private int numBuckets;
+  private long[][] buckets;
+
+  public TaskMetricsSeries() {
+  }
+
+  public TaskMetricsSeries(long startTime, long intervalMillis, int maxBuckets) {
+    Preconditions.checkArgument(intervalMillis > 0, "intervalMillis must be positive");
+    Preconditions.checkArgument(maxBuckets >= 2, "maxBuckets must be at least 2");
+    this.startTime = startTime;
+    this.intervalMillis = intervalMillis;
+    this.maxBuckets = maxBuckets;
+    this.buckets = new long[METRICS.length][maxBuckets];
+  }
+
+  public long getStartTime() {
+    return startTime;
+  }
+
+  public long getIntervalMillis() {
+    return intervalMillis;
+  }
+
+  public int getNumBuckets() {
+    return numBuckets;
+  }
+
+  public long[] getValues(Metric metric) {
+    return Arrays.copyOf(buckets[metric.ordinal()], numBuckets);
+  }
+
+  /**
+   * Adds the increase of a total between two times, spread evenly over the buckets in between.
+   */
+  public void add(Metric metric, long fromTime, long toTime, long delta) {
+    Preconditions.checkArgument(!metric.isGauge(), metric);
+    int last = getBucket(toTime);
+    int first = Math.min(getBucket(fromTime), last);
+    long[] values = buckets[metric.ordinal()];
+    int count = last - first + 1;
+    for (int i = first; i < last; ++i) {
+      values[i] += delta / count;
+    }
+    values[last] += delta / count + delta % count;
+  }
+
+  /**
+   * Records the current value of a gauge, of which each bucket keeps the peak.
+   */
+  public void set(Metric metric, long time, long value) {
+    Preconditions.checkArgument(metric.isGauge(), metric);
+    int bucket = getBucket(time);
+    long[] values = buckets[metric.ordinal()];
+    values[bucket] = Math.max(values[bucket], value);
+  }
+
+  public TaskMetricsSeries copy() {
+    TaskMetricsSeries copy = new TaskMetricsSeries();
+    copy.startTime = startTime;
+    copy.intervalMillis = intervalMillis;
+    copy.maxBuckets = numBuckets;
+    copy.numBuckets = numBuckets;
+    copy.buckets = new long[METRICS.length][];
+    for (Metric metric : METRICS) {
+      copy.buckets[metric.ordinal()] = getValues(metric);
+    }
+    return copy;
+  }
+
+  private int getBucket(long time) {
+    long bucket = Math.max(0, time - startTime) / intervalMillis;
+    while (bucket >= maxBuckets) {
+      compact();
+      bucket = Math.max(0, time - startTime) / intervalMillis;
+    }
+    numBuckets = Math.max(numBuckets, (int) bucket + 1);
+    return (int) bucket;
+  }
+
+  private void compact() {
+    for (Metric metric : METRICS) {
+      long[] values = buckets[metric.ordinal()];
+      for (int i = 0; i < numBuckets; i += 2) {
+        long next = i + 1 < numBuckets ? values[i + 1] : 0;
+        values[i / 2] = metric.isGauge() ? Math.max(values[i], next) : values[i] + next;
+      }
+      Arrays.fill(values, (numBuckets + 1) / 2, values.length, 0);
+    }
+    numBuckets = (numBuckets + 1) / 2;
+    intervalMillis *= 2;
+  }
+
+  @Override
+  public void write(DataOutput out) throws IOException {
+    WritableUtils.writeVLong(out, startTime);
+    WritableUtils.writeVLong(out, intervalMillis);
+    WritableUtils.writeVInt(out, numBuckets);
+    for (Metric metric : METRICS) {
+      long[] values = buckets[metric.ordinal()];
+      for (int i = 0; i < numBuckets; ++i) {
+        WritableUtils.writeVLong(out, values[i]);
+      }
+    }
+  }
+
+  @Override
+  public void readFields(DataInput in) throws IOException {
+    startTime = WritableUtils.readVLong(in);
+    intervalMillis = WritableUtils.readVLong(in);
+    numBuckets = WritableUtils.readVInt(in);
+    maxBuckets = numBuckets;
+    buckets = new long[METRICS.length][numBuckets];
+    for (Metric metric : METRICS) {
+      long[] values = buckets[metric.ordinal()];
+      for (int i = 0; i < numBuckets; ++i) {
+        values[i] = WritableUtils.readVLong(in);
+      }
+    }
+  }
+}
@@ -27,6 +27,7 @@ import java.util.List;
 import javax.annotation.Nullable;
 
 import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.io.Text;
 import org.apache.hadoop.io.Writable;
 import org.apache.hadoop.util.StringInterner;
 import org.apache.tez.dag.api.ProcessorDescriptor;
@@ -164,24 +165,52 @@ public class TaskSpec implements Writable {
 
   @Override
   public void write(DataOutput out) throws IOException {
+    write(out, false);
+  }
+
+  /**
+   * Writes the spec with the payloads of its descriptors replaced by their hashes. The payloads
+   * themselves are sent separately, see {@link UserPayloadStore}.
+   */
+  public void writeWithPayloadRefs(DataOutput out) throws IOException {
+    write(out, true);
+  }
+
+  private void write(DataOutput out, boolean payloadRefs) throws IOException {
     taskAttemptId.write(out);
     out.writeUTF(dagName);
     out.writeUTF(vertexName);
     out.writeInt(vertexParallelism);
-    processorDescriptor.write(out);
+    if (payloadRefs) {
+      UserPayloadStore.writeDescriptorRef(processorDescriptor, out);
+    } else {
+      processorDescriptor.write(out);
+    }
     out.writeInt(inputSpecList.size());
     for (InputSpec inputSpec : inputSpecList) {
-      inputSpec.write(out);
+      if (payloadRefs) {
+        inputSpec.writeWithPayloadRefs(out);
+      } else {
+        inputSpec.write(out);
+      }
     }
     out.writeInt(outputSpecList.size());
     for (OutputSpec outputSpec : outputSpecList) {
-      outputSpec.write(out);
+      if (payloadRefs) {
+        outputSpec.writeWithPayloadRefs(out);
+      } else {
+        outputSpec.write(out);
+      }
     }
     if (groupInputSpecList != null && !groupInputSpecList.isEmpty()) {
       out.writeBoolean(true);
       out.writeInt(groupInputSpecList.size());
       for (GroupInputSpec group : groupInputSpecList) {
-        group.write(out);
+        if (payloadRefs) {
+          group.writeWithPayloadRefs(out);
+        } else {
+          group.write(out);
+        }
       }
     } else {
       out.writeBoolean(false);
@@ -196,25 +225,51 @@ public class TaskSpec implements Writable {
 
   @Override
   public void readFields(DataInput in) throws IOException {
+    readFields(in, null);
+  }
+
+  /**
+   * Reads a spec written by {@link #writeWithPayloadRefs}, taking the payloads of its descriptors
+   * from the store.
+   */
+  public void readFieldsWithPayloadRefs(DataInput in, UserPayloadStore store) throws IOException {
+    checkNotNull(store, "store is null");
+    readFields(in, store);
+  }
+
+  private void readFields(DataInput in, @Nullable UserPayloadStore store) throws IOException {
     taskAttemptId = TezTaskAttemptID.readTezTaskAttemptID(in);
     dagName = StringInterner.weakIntern(in.readUTF());
     vertexName = StringInterner.weakIntern(in.readUTF());
     vertexParallelism = in.readInt();
     // TODO TEZ-305 convert this to PB
-    processorDescriptor = new ProcessorDescriptor();
-    processorDescriptor.readFields(in);
+    if (store != null) {
+      processorDescriptor = store.readPayloadRef(in,
+          ProcessorDescriptor.create(Text.readString(in)));
+    } else {
+      processorDescriptor = new ProcessorDescriptor();
+      processorDescriptor.readFields(in);
+    }
     int numInputSpecs = in.readInt();
     inputSpecList = new ArrayList<InputSpec>(numInputSpecs);
     for (int i = 0; i < numInputSpecs; i++) {
       InputSpec inputSpec = new InputSpec();
-      inputSpec.readFields(in);
+      if (store != null) {
+        inputSpec.readFieldsWithPayloadRefs(in, store);
+      } else {
+        inputSpec.readFields(in);
+      }
       inputSpecList.add(inputSpec);
     }
     int numOutputSpecs = in.readInt();
     outputSpecList = new ArrayList<OutputSpec>(numOutputSpecs);
     for (int i = 0; i < numOutputSpecs; i++) {
       OutputSpec outputSpec = new OutputSpec();
-      outputSpec.readFields(in);
+      if (store != null) {
+        outputSpec.readFieldsWithPayloadRefs(in, store);
+      } else {
+        outputSpec.readFields(in);
+      }
       outputSpecList.add(outputSpec);
     }
     boolean hasGroupInputs = in.readBoolean();
@@ -223,7 +278,11 @@ public class TaskSpec implements Writable {
       groupInputSpecList = Lists.newArrayListWithCapacity(numGroups);
       for (int i=0; i<numGroups; ++i) {
         GroupInputSpec group = new GroupInputSpec();
-        group.readFields(in);
+        if (store != null) {
+          group.readFieldsWithPayloadRefs(in, store);
+        } else {
+          group.readFields(in);
+        }
         groupInputSpecList.add(group);
       }
     }
@@ -21,7 +21,9 @@ package org.apache.tez.runtime.api.impl;
 import java.io.DataInput;
 import java.io.DataOutput;
 import java.io.IOException;
-import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
 
 import org.apache.hadoop.io.DataInputBuffer;
 import org.apache.hadoop.io.Writable;
@@ -54,9 +56,23 @@ import org.apache.tez.runtime.internals.api.events.SystemEventProtos.TaskAttempt
 import com.google.protobuf.AbstractMessage;
 import com.google.protobuf.CodedInputStream;
 import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.WireFormat;
 
 public class TezEvent implements Writable {
 
+  /**
+   * Largest scratch buffer which is retained per thread across serialization calls. Bigger
+   * events are encoded into a buffer which is dropped once the event has been written.
+   */
+  private static final int MAX_RETAINED_SCRATCH_SIZE = 1024 * 1024;
+
+  private static final ThreadLocal<byte[]> SCRATCH = new ThreadLocal<byte[]>() {
+    @Override
+    protected byte[] initialValue() {
+      return new byte[CodedOutputStream.DEFAULT_BUFFER_SIZE];
+    }
+  };
+
   private EventType eventType;
 
   private Event event;
@@ -151,79 +167,136 @@ public class TezEvent implements Writable {
       TaskStatusUpdateEvent sEvt = (TaskStatusUpdateEvent) event;
       sEvt.write(out);
     } else {
-      AbstractMessage message;
+      byte[] scratch;
+      int serializedSize;
       switch (eventType) {
       case DATA_MOVEMENT_EVENT:
-        message =
-            ProtoConverters.convertDataMovementEventToProto(
-                (DataMovementEvent) event);
+        DataMovementEvent dmEvt = (DataMovementEvent) event;
+        ByteBuffer dmPayload = dmEvt.getUserPayload();
+        serializedSize = computePayloadEventSize(dmEvt.getSourceIndex(),
+            dmEvt.getTargetIndex(), true, dmEvt.getVersion(), dmPayload);
+        scratch = getScratch(serializedSize);
+        writePayloadEvent(scratch, dmEvt.getSourceIndex(), dmEvt.getTargetIndex(), true,
+            dmEvt.getVersion(), dmPayload);
         break;
       case COMPOSITE_DATA_MOVEMENT_EVENT:
-        message =
-            ProtoConverters.convertCompositeDataMovementEventToProto(
-                (CompositeDataMovementEvent) event);
-        break;
-      case VERTEX_MANAGER_EVENT:
-        message = ProtoConverters.convertVertexManagerEventToProto((VertexManagerEvent) event);
-        break;
-      case INPUT_READ_ERROR_EVENT:
-        InputReadErrorEvent ideEvt = (InputReadErrorEvent) event;
-        message = InputReadErrorEventProto.newBuilder()
-            .setIndex(ideEvt.getIndex())
-            .setDiagnostics(ideEvt.getDiagnostics())
-            .setVersion(ideEvt.getVersion())
-            .build();
-        break;
-      case TASK_ATTEMPT_FAILED_EVENT:
-        TaskAttemptFailedEvent tfEvt = (TaskAttemptFailedEvent) event;
-        message = TaskAttemptFailedEventProto.newBuilder()
-            .setDiagnostics(tfEvt.getDiagnostics())
-            .setTaskFailureType(TezConverterUtils.failureTypeToProto(tfEvt.getTaskFailureType()))
-            .build();
-        break;
-        case TASK_ATTEMPT_KILLED_EVENT:
-          TaskAttemptKilledEvent tkEvent = (TaskAttemptKilledEvent) event;
-          message = TaskAttemptKilledEventProto.newBuilder()
-              .setDiagnostics(tkEvent.getDiagnostics()).build();
-          break;
-      case TASK_ATTEMPT_COMPLETED_EVENT:
-        message = TaskAttemptCompletedEventProto.newBuilder()
-            .build();
-        break;
-      case INPUT_FAILED_EVENT:
-        InputFailedEvent ifEvt = (InputFailedEvent) event;
-        message = InputFailedEventProto.newBuilder()
-            .setTargetIndex(ifEvt.getTargetIndex())
-            .setVersion(ifEvt.getVersion()).build();
-        break;
-      case ROOT_INPUT_DATA_INFORMATION_EVENT:
-        message = ProtoConverters.convertRootInputDataInformationEventToProto(
-            (InputDataInformationEvent) event);
-        break;
-      case ROOT_INPUT_INITIALIZER_EVENT:
-        message = ProtoConverters
-            .convertRootInputInitializerEventToProto((InputInitializerEvent) event);
+        CompositeDataMovementEvent cdmEvt = (CompositeDataMovementEvent) event;
+        ByteBuffer cdmPayload = cdmEvt.getUserPayload();
+        serializedSize = computePayloadEventSize(cdmEvt.getSourceIndexStart(),
+            cdmEvt.getCount(), false, 0, cdmPayload);
+        scratch = getScratch(serializedSize);
+        writePayloadEvent(scratch, cdmEvt.getSourceIndexStart(), cdmEvt.getCount(), false, 0,
+            cdmPayload);
         break;
       default:
-        throw new TezUncheckedException("Unknown TezEvent"
-           + ", type=" + eventType);
-      }
-      if (out instanceof OutputStream) { //DataOutputBuffer extends DataOutputStream
-        int serializedSize = message.getSerializedSize();
-        out.writeInt(serializedSize);
-        int buffersize = serializedSize < CodedOutputStream.DEFAULT_BUFFER_SIZE ? serializedSize
-            : CodedOutputStream.DEFAULT_BUFFER_SIZE;
-        CodedOutputStream codedOut = CodedOutputStream.newInstance(
-            (OutputStream) out, buffersize);
+        AbstractMessage message = convertEventToProto();
+        serializedSize = message.getSerializedSize();
+        scratch = getScratch(serializedSize);
+        CodedOutputStream codedOut = CodedOutputStream.newInstance(scratch, 0, serializedSize);
         message.writeTo(codedOut);
-        codedOut.flush();
-      } else {
-        byte[] eventBytes = message.toByteArray();
-        out.writeInt(eventBytes.length);
-        out.write(eventBytes);
+        codedOut.checkNoSpaceLeft();
       }
+      out.writeInt(serializedSize);
+      out.write(scratch, 0, serializedSize);
+    }
+  }
+
+  private AbstractMessage convertEventToProto() {
+    switch (eventType) {
+    case VERTEX_MANAGER_EVENT:
+      return ProtoConverters.convertVertexManagerEventToProto((VertexManagerEvent) event);
+    case INPUT_READ_ERROR_EVENT:
+      InputReadErrorEvent ideEvt = (InputReadErrorEvent) event;
+      return InputReadErrorEventProto.newBuilder()
+          .setIndex(ideEvt.getIndex())
+          .setDiagnostics(ideEvt.getDiagnostics())
+          .setVersion(ideEvt.getVersion())
+          .build();
+    case TASK_ATTEMPT_FAILED_EVENT:
+      TaskAttemptFailedEvent tfEvt = (TaskAttemptFailedEvent) event;
+      return TaskAttemptFailedEventProto.newBuilder()
+          .setDiagnostics(tfEvt.getDiagnostics())
+          .setTaskFailureType(TezConverterUtils.failureTypeToProto(tfEvt.getTaskFailureType()))
+          .build();
+    case TASK_ATTEMPT_KILLED_EVENT:
+      TaskAttemptKilledEvent tkEvent = (TaskAttemptKilledEvent) event;
+      return TaskAttemptKilledEventProto.newBuilder()
+          .setDiagnostics(tkEvent.getDiagnostics()).build();
+    case TASK_ATTEMPT_COMPLETED_EVENT:
+      return TaskAttemptCompletedEventProto.newBuilder()
+          .build();
+    case INPUT_FAILED_EVENT:
+      InputFailedEvent ifEvt = (InputFailedEvent) event;
+      return InputFailedEventProto.newBuilder()
+          .setTargetIndex(ifEvt.getTargetIndex())
+          .setVersion(ifEvt.getVersion()).build();
+    case ROOT_INPUT_DATA_INFORMATION_EVENT:
+      return ProtoConverters.convertRootInputDataInformationEventToProto(
+          (InputDataInformationEvent) event);
+    case ROOT_INPUT_INITIALIZER_EVENT:
+      return ProtoConverters
+          .convertRootInputInitializerEventToProto((InputInitializerEvent) event);
+    default:
+      throw new TezUncheckedException("Unknown TezEvent"
+         + ", type=" + eventType);
+    }
+  }
+
+  /**
+   * Size of a DataMovementEventProto or CompositeEventProto as written by
+   * {@link #writePayloadEvent(byte[], int, int, boolean, int, ByteBuffer)}.
+   */
+  private static int computePayloadEventSize(int firstIndex, int secondIndex,
+      boolean writeVersion, int version, ByteBuffer payload) {
+    int size = CodedOutputStream.computeInt32Size(1, firstIndex)
+        + CodedOutputStream.computeInt32Size(2, secondIndex);
+    if (writeVersion) {
+      size += CodedOutputStream.computeInt32Size(4, version);
+    }
+    if (payload != null) {
+      int length = payload.remaining();
+      size += CodedOutputStream.computeTagSize(3)
+          + CodedOutputStream.computeRawVarint32Size(length) + length;
+    }
+    return size;
+  }
+
+  /**
+   * Encodes a DataMovementEventProto or CompositeEventProto straight into the scratch buffer.
+   * Both messages share the same layout (two int32 indices, a bytes payload as field 3 and an
+   * optional int32 version as field 4). The payload is copied directly from the event's
+   * ByteBuffer, instead of first being materialized as a ByteString by a message builder. The
+   * payload is written last, which is valid since protobuf parsers accept fields in any order.
+   */
+  private static void writePayloadEvent(byte[] scratch, int firstIndex, int secondIndex,
+      boolean writeVersion, int version, ByteBuffer payload) throws IOException {
+    CodedOutputStream codedOut = CodedOutputStream.newInstance(scratch);
+    codedOut.writeInt32(1, firstIndex);
+    codedOut.writeInt32(2, secondIndex);
+    if (writeVersion) {
+      codedOut.writeInt32(4, version);
+    }
+    if (payload != null) {
+      int length = payload.remaining();
+      codedOut.writeTag(3, WireFormat.WIRETYPE_LENGTH_DELIMITED);
+      codedOut.writeRawVarint32(length);
+      int headerSize = scratch.length - codedOut.spaceLeft();
+      payload.duplicate().get(scratch, headerSize, length);
+    }
+  }
 
+  /**
+   * Returns the per-thread scratch buffer, growing it if it cannot hold size bytes.
+   */
+  private static byte[] getScratch(int size) {
+    byte[] scratch = SCRATCH.get();
+    if (scratch.length < size) {
+      scratch = new byte[Math.max(size, Math.min(scratch.length * 2, MAX_RETAINED_SCRATCH_SIZE))];
+      if (scratch.length <= MAX_RETAINED_SCRATCH_SIZE) {
+        SCRATCH.set(scratch);
+      }
     }
+    return scratch;
   }
 
   private void deserializeEvent(DataInput in) throws IOException {
@@ -246,8 +319,9 @@ public class TezEvent implements Writable {
         eventBytes = ((DataInputBuffer)in).getData();
         startOffset = ((DataInputBuffer) in).getPosition();
       } else {
-        eventBytes = new byte[eventBytesLen];
-        in.readFully(eventBytes);
+        // Parsing copies every field out of the buffer, so the scratch can be reused
+        eventBytes = getScratch(eventBytesLen);
+        in.readFully(eventBytes, 0, eventBytesLen);
       }
       input = CodedInputStream.newInstance(eventBytes, startOffset, eventBytesLen);
       switch (eventType) {
@@ -312,6 +386,31 @@ public class TezEvent implements Writable {
     }
   }
 
+  /**
+   * Writes a list of events, as used by the heartbeat request and response. All events in the
+   * list are encoded through the same per-thread scratch buffer.
+   */
+  static void writeEvents(List<TezEvent> events, DataOutput out) throws IOException {
+    out.writeInt(events.size());
+    for (TezEvent e : events) {
+      e.write(out);
+    }
+  }
+
+  /**
+   * Reads a list of events written by {@link #writeEvents(List, DataOutput)}.
+   */
+  static List<TezEvent> readEvents(DataInput in) throws IOException {
+    int eventsCount = in.readInt();
+    List<TezEvent> events = new ArrayList<TezEvent>(eventsCount);
+    for (int i = 0; i < eventsCount; ++i) {
+      TezEvent e = new TezEvent();
+      e.readFields(in);
+      events.add(e);
+    }
+    return events;
+  }
+
   @Override
   public void write(DataOutput out) throws IOException {
     serializeEvent(out);
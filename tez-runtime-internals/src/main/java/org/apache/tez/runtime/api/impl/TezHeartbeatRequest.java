@@ -21,7 +21,6 @@ package org.apache.tez.runtime.api.impl;
 import java.io.DataInput;
 import java.io.DataOutput;
 import java.io.IOException;
-import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 
@@ -87,10 +86,7 @@ public class TezHeartbeatRequest implements Writable {
   public void write(DataOutput out) throws IOException {
     if (events != null) {
       out.writeBoolean(true);
-      out.writeInt(events.size());
-      for (TezEvent e : events) {
-        e.write(out);
-      }
+      TezEvent.writeEvents(events, out);
     } else {
       out.writeBoolean(false);
     }
@@ -110,13 +106,7 @@ public class TezHeartbeatRequest implements Writable {
   @Override
   public void readFields(DataInput in) throws IOException {
     if (in.readBoolean()) {
-      int eventsCount = in.readInt();
-      events = new ArrayList<TezEvent>(eventsCount);
-      for (int i = 0; i < eventsCount; ++i) {
-        TezEvent e = new TezEvent();
-        e.readFields(in);
-        events.add(e);
-      }
+      events = TezEvent.readEvents(in);
     }
     if (in.readBoolean()) {
       currentTaskAttemptID = TezTaskAttemptID.readTezTaskAttemptID(in);
@@ -21,7 +21,6 @@ package org.apache.tez.runtime.api.impl;
 import java.io.DataInput;
 import java.io.DataOutput;
 import java.io.IOException;
-import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 
@@ -90,10 +89,7 @@ public class TezHeartbeatResponse implements Writable {
     out.writeInt(nextPreRoutedEventId);
     if(events != null) {
       out.writeBoolean(true);
-      out.writeInt(events.size());
-      for (TezEvent e : events) {
-        e.write(out);
-      }
+      TezEvent.writeEvents(events, out);
     } else {
       out.writeBoolean(false);
     }
@@ -106,13 +102,7 @@ public class TezHeartbeatResponse implements Writable {
     nextFromEventId = in.readInt();
     nextPreRoutedEventId = in.readInt();
     if(in.readBoolean()) {
-      int eventCount = in.readInt();
-      events = new ArrayList<TezEvent>(eventCount);
-      for (int i = 0; i < eventCount; ++i) {
-        TezEvent e = new TezEvent();
-        e.readFields(in);
-        events.add(e);
-      }
+      events = TezEvent.readEvents(in);
     }
   }
 
@@ -0,0 +1,190 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.tez.runtime.api.impl;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.WeakHashMap;
+
+import javax.annotation.Nullable;
+
+import org.apache.hadoop.classification.InterfaceAudience.Private;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.util.StringUtils;
+import org.apache.tez.dag.api.EntityDescriptor;
+import org.apache.tez.dag.api.TezUncheckedException;
+import org.apache.tez.dag.api.UserPayload;
+
+/**
+ * Payloads of the entity descriptors of the tasks run in a container, keyed by a hash of their
+ * contents. The app master sends each payload to a container once, and the TaskSpecs of later
+ * tasks only carry the hashes of the payloads, see {@link TaskSpec#writeWithPayloadRefs}.
+ */
+@Private
+public class UserPayloadStore {
+
+  // Payloads received by this container, across the tasks it runs
+  private static final UserPayloadStore CONTAINER_STORE = new UserPayloadStore();
+
+  // Held weakly, so that a payload shared by the tasks of a vertex is hashed once while the
+  // vertex is alive. UserPayload does not override equals, i.e. entries are per instance.
+  private static final Map<UserPayload, String> HASHES =
+      Collections.synchronizedMap(new WeakHashMap<UserPayload, String>());
+
+  // Guarded by this
+  private final Map<String, UserPayload> payloads = new HashMap<String, UserPayload>();
+
+  public static UserPayloadStore getContainerStore() {
+    return CONTAINER_STORE;
+  }
+
+  /**
+   * @return hash of the contents and version of the payload, or null if there is nothing to send,
+   * in which case the payload is dropped by serialization, as in {@link EntityDescriptor#write}
+   */
+  public static String getHash(@Nullable UserPayload payload) {
+    ByteBuffer bb = payload == null ? null : payload.getPayload();
+    if (bb == null || !bb.hasRemaining()) {
+      return null;
+    }
+    String hash = HASHES.get(payload);
+    if (hash == null) {
+      MessageDigest digest;
+      try {
+        digest = MessageDigest.getInstance("SHA-1");
+      } catch (NoSuchAlgorithmException e) {
+        throw new TezUncheckedException(e);
+      }
+      digest.update(bb);
+      int version = payload.getVersion();
+      digest.update(new byte[] {(byte) (version >>> 24), (byte) (version >>> 16),
+          (byte) (version >>> 8), (byte) version});
+      hash = StringUtils.byteToHexString(digest.digest());
+      HASHES.put(payload, hash);
+    }
+    return hash;
+  }
+
+  /**
+   * @return the payloads of all descriptors of the task, keyed by their hash
+   */
+  public static Map<String, UserPayload> getPayloads(TaskSpec taskSpec) {
+    Map<String, UserPayload> taskPayloads = new LinkedHashMap<String, UserPayload>();
+    addPayload(taskSpec.getProcessorDescriptor(), taskPayloads);
+    for (InputSpec inputSpec : taskSpec.getInputs()) {
+      addPayload(inputSpec.getInputDescriptor(), taskPayloads);
+    }
+    for (OutputSpec outputSpec : taskSpec.getOutputs()) {
+      addPayload(outputSpec.getOutputDescriptor(), taskPayloads);
+    }
+    if (taskSpec.getGroupInputs() != null) {
+      for (GroupInputSpec group : taskSpec.getGroupInputs()) {
+        addPayload(group.getMergedInputDescriptor(), taskPayloads);
+      }
+    }
+    return taskPayloads;
+  }
+
+  private static void addPayload(EntityDescriptor<?> descriptor,
+      Map<String, UserPayload> taskPayloads) {
+    String hash = getHash(descriptor.getUserPayload());
+    if (hash != null) {
+      taskPayloads.put(hash, descriptor.getUserPayload());
+    }
+  }
+
+  /**
+   * Writes payloads which the container does not have yet.
+   *
+   * @param reset whether the container should drop the payloads it has before adding these
+   */
+  public static void writePayloads(DataOutput out, boolean reset,
+      Map<String, UserPayload> newPayloads) throws IOException {
+    out.writeBoolean(reset);
+    out.writeInt(newPayloads.size());
+    for (Entry<String, UserPayload> entry : newPayloads.entrySet()) {
+      Text.writeString(out, entry.getKey());
+      byte[] bytes = entry.getValue().deepCopyAsArray();
+      out.writeInt(bytes.length);
+      out.write(bytes);
+      out.writeInt(entry.getValue().getVersion());
+    }
+  }
+
+  /**
+   * Reads payloads written by {@link #writePayloads} into this store.
+   */
+  public synchronized void readPayloads(DataInput in) throws IOException {
+    if (in.readBoolean()) {
+      payloads.clear();
+    }
+    int numPayloads = in.readInt();
+    for (int i = 0; i < numPayloads; ++i) {
+      String hash = Text.readString(in);
+      byte[] bytes = new byte[in.readInt()];
+      in.readFully(bytes);
+      payloads.put(hash, UserPayload.create(ByteBuffer.wrap(bytes), in.readInt()));
+    }
+  }
+
+  public synchronized int size() {
+    return payloads.size();
+  }
+
+  public synchronized void clear() {
+    payloads.clear();
+  }
+
+  static void writeDescriptorRef(EntityDescriptor<?> descriptor, DataOutput out)
+      throws IOException {
+    Text.writeString(out, descriptor.getClassName());
+    String hash = getHash(descriptor.getUserPayload());
+    Text.writeString(out, hash == null ? "" : hash);
+  }
+
+  /**
+   * Sets the payload referred to by a hash written by {@link #writeDescriptorRef} on the
+   * descriptor.
+   */
+  <T extends EntityDescriptor<T>> T readPayloadRef(DataInput in, T descriptor)
+      throws IOException {
+    String hash = Text.readString(in);
+    if (!hash.isEmpty()) {
+      UserPayload payload;
+      synchronized (this) {
+        payload = payloads.get(hash);
+      }
+      if (payload == null) {
+        throw new IOException("Payload " + hash + " of " + descriptor.getClassName()
+            + " has not been received by this container");
+      }
+      descriptor.setUserPayload(payload);
+    }
+    return descriptor;
+  }
+}
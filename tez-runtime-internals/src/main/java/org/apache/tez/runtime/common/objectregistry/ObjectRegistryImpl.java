@@ -18,16 +18,38 @@
 
 package org.apache.tez.runtime.common.objectregistry;
 
-import java.util.AbstractMap;
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
 
+import org.apache.hadoop.conf.Configuration;
+import org.apache.tez.common.ReflectionUtils;
+import org.apache.tez.dag.api.TezConfiguration;
+import org.apache.tez.dag.api.TezReflectionException;
 import org.apache.tez.runtime.api.ObjectRegistry;
+import org.apache.tez.runtime.api.ObjectWeigher;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+/**
+ * Container level {@link ObjectRegistry}. Lookups do not lock, so tasks, and the threads
+ * within a task, can share cached objects without contending on the registry.
+ *
+ * If a memory budget is set, objects are weighed by the configured {@link ObjectWeigher} and
+ * evicted once the budget is exceeded. Objects with the shortest life-cycle are evicted first,
+ * and objects of the same life-cycle are evicted in LRU or LFU order.
+ */
 public class ObjectRegistryImpl implements ObjectRegistry {
-  
+
+  private static final Logger LOG = LoggerFactory.getLogger(ObjectRegistryImpl.class);
+
   public enum ObjectLifeCycle {
     /** Objects are valid for the lifetime of the Tez JVM/Session
      */
@@ -40,54 +62,251 @@ public class ObjectRegistryImpl implements ObjectRegistry {
     VERTEX,
   }
 
-  private Map<String, Map.Entry<Object, ObjectLifeCycle>> objectCache =
-      new HashMap<String, Entry<Object, ObjectLifeCycle>>();
+  public enum EvictionPolicy {
+    /** Least recently used objects are evicted first.
+     */
+    LRU,
+    /** Least frequently used objects are evicted first.
+     */
+    LFU,
+  }
+
+  private final ConcurrentMap<String, CachedObject> objectCache =
+      new ConcurrentHashMap<String, CachedObject>();
+
+  private final long maxSize;
+  private final EvictionPolicy evictionPolicy;
+  private final ObjectWeigher weigher;
+
+  // Guarded by this, along with all updates to objectCache
+  private long currentSize = 0;
+
+  private final AtomicLong hits = new AtomicLong();
+  private final AtomicLong misses = new AtomicLong();
+  private final AtomicLong evictions = new AtomicLong();
+
+  public ObjectRegistryImpl() {
+    this(-1, EvictionPolicy.LRU, null);
+  }
+
+  /**
+   * @param maxSize
+   *          memory budget in bytes, or -1 for no budget
+   * @param evictionPolicy
+   *          order in which objects of the same life-cycle are evicted
+   * @param weigher
+   *          weigher for cached objects. If null, objects have no weight and are never evicted
+   */
+  public ObjectRegistryImpl(long maxSize, EvictionPolicy evictionPolicy, ObjectWeigher weigher) {
+    this.maxSize = maxSize;
+    this.evictionPolicy = evictionPolicy;
+    this.weigher = weigher;
+  }
+
+  public static ObjectRegistryImpl create(Configuration conf) throws TezReflectionException {
+    long maxSizeMb = conf.getLong(TezConfiguration.TEZ_TASK_OBJECT_REGISTRY_MAX_SIZE_MB,
+        TezConfiguration.TEZ_TASK_OBJECT_REGISTRY_MAX_SIZE_MB_DEFAULT);
+    EvictionPolicy evictionPolicy = EvictionPolicy.valueOf(
+        conf.getTrimmed(TezConfiguration.TEZ_TASK_OBJECT_REGISTRY_EVICTION_POLICY,
+            TezConfiguration.TEZ_TASK_OBJECT_REGISTRY_EVICTION_POLICY_DEFAULT).toUpperCase());
+    String weigherClassName =
+        conf.getTrimmed(TezConfiguration.TEZ_TASK_OBJECT_REGISTRY_WEIGHER_CLASS);
+    ObjectWeigher weigher = null;
+    if (weigherClassName != null && !weigherClassName.isEmpty()) {
+      weigher = ReflectionUtils.createClazzInstance(weigherClassName);
+    }
+    if (maxSizeMb >= 0) {
+      if (weigher == null) {
+        LOG.warn("ObjectRegistry memory budget set without a weigher,"
+            + " objects will not be evicted");
+      }
+      LOG.info("ObjectRegistry memory budget=" + maxSizeMb + "MB, evictionPolicy="
+          + evictionPolicy + ", weigher=" + weigherClassName);
+    }
+    return new ObjectRegistryImpl(maxSizeMb < 0 ? -1 : maxSizeMb << 20, evictionPolicy, weigher);
+  }
 
   private synchronized Object add(ObjectLifeCycle lifeCycle,
       String key, Object value) {
-    Map.Entry<Object, ObjectLifeCycle> oldEntry =
-        objectCache.put(key,
-            new AbstractMap.SimpleImmutableEntry<Object, ObjectLifeCycle>(
-                value, lifeCycle));
-    return oldEntry != null ? oldEntry.getKey() : null;
+    long weight = weigher == null ? 0 : Math.max(0, weigher.weigh(key, value));
+    CachedObject oldObject = objectCache.put(key, new CachedObject(value, lifeCycle, weight));
+    currentSize += weight;
+    if (oldObject != null) {
+      currentSize -= oldObject.weight;
+    }
+    evictIfRequired(key);
+    return oldObject != null ? oldObject.value : null;
+  }
+
+  private void evictIfRequired(String addedKey) {
+    if (maxSize < 0 || currentSize <= maxSize) {
+      return;
+    }
+    CachedObject addedObject = objectCache.get(addedKey);
+    if (addedObject.weight > maxSize) {
+      // Can never fit, so it is not retained
+      evict(addedKey, addedObject);
+      return;
+    }
+    // The object just added is not evicted in favour of older ones. Snapshot the access stats,
+    // since lookups keep updating them while sorting.
+    List<EvictionCandidate> candidates = new ArrayList<EvictionCandidate>(objectCache.size());
+    for (Map.Entry<String, CachedObject> entry : objectCache.entrySet()) {
+      if (entry.getValue().weight > 0 && !entry.getKey().equals(addedKey)) {
+        candidates.add(new EvictionCandidate(entry.getKey(), entry.getValue()));
+      }
+    }
+    Collections.sort(candidates, evictionPolicy == EvictionPolicy.LFU ?
+        LFU_COMPARATOR : LRU_COMPARATOR);
+    for (EvictionCandidate candidate : candidates) {
+      if (currentSize <= maxSize) {
+        break;
+      }
+      evict(candidate.key, candidate.cachedObject);
+    }
+  }
+
+  private void evict(String key, CachedObject cachedObject) {
+    if (objectCache.remove(key, cachedObject)) {
+      currentSize -= cachedObject.weight;
+      evictions.incrementAndGet();
+      LOG.info("Evicted " + key + " from ObjectRegistry, lifeCycle=" + cachedObject.lifeCycle
+          + ", weight=" + cachedObject.weight + ", currentSize=" + currentSize
+          + ", maxSize=" + maxSize);
+    }
   }
 
   @Override
-  public synchronized Object get(String key) {
-    Map.Entry<Object, ObjectLifeCycle> entry =
-        objectCache.get(key);
-    return entry != null ? entry.getKey() : null;
+  public Object get(String key) {
+    CachedObject cachedObject = objectCache.get(key);
+    if (cachedObject == null) {
+      misses.incrementAndGet();
+      return null;
+    }
+    hits.incrementAndGet();
+    cachedObject.recordAccess();
+    return cachedObject.value;
   }
 
   @Override
   public synchronized boolean delete(String key) {
-    return (null != objectCache.remove(key));
+    CachedObject cachedObject = objectCache.remove(key);
+    if (cachedObject == null) {
+      return false;
+    }
+    currentSize -= cachedObject.weight;
+    return true;
   }
 
   public synchronized void clearCache(ObjectLifeCycle lifeCycle) {
-    Iterator<Entry<String, Entry<Object, ObjectLifeCycle>>> it =
-      objectCache.entrySet().iterator();
+    Iterator<Entry<String, CachedObject>> it = objectCache.entrySet().iterator();
     while (it.hasNext()) {
-      Entry<String, Entry<Object, ObjectLifeCycle>> entry = it.next();
-      if (entry.getValue().getValue().equals(lifeCycle)) {
+      CachedObject cachedObject = it.next().getValue();
+      if (cachedObject.lifeCycle.equals(lifeCycle)) {
         it.remove();
+        currentSize -= cachedObject.weight;
       }
     }
   }
 
   @Override
-  public synchronized Object cacheForVertex(String key, Object value) {
+  public Object cacheForVertex(String key, Object value) {
     return add(ObjectLifeCycle.VERTEX, key, value);
   }
 
   @Override
-  public synchronized Object cacheForDAG(String key, Object value) {
+  public Object cacheForDAG(String key, Object value) {
     return add(ObjectLifeCycle.DAG, key, value);
   }
 
   @Override
-  public synchronized Object cacheForSession(String key, Object value) {
+  public Object cacheForSession(String key, Object value) {
     return add(ObjectLifeCycle.SESSION, key, value);
   }
 
+  /**
+   * @return total weight of the cached objects
+   */
+  public synchronized long getCurrentSize() {
+    return currentSize;
+  }
+
+  public long getHits() {
+    return hits.get();
+  }
+
+  public long getMisses() {
+    return misses.get();
+  }
+
+  public long getEvictions() {
+    return evictions.get();
+  }
+
+  private static final class CachedObject {
+    private final Object value;
+    private final ObjectLifeCycle lifeCycle;
+    private final long weight;
+    private final AtomicLong accessCount = new AtomicLong();
+    private volatile long lastAccessTime;
+
+    CachedObject(Object value, ObjectLifeCycle lifeCycle, long weight) {
+      this.value = value;
+      this.lifeCycle = lifeCycle;
+      this.weight = weight;
+      this.lastAccessTime = System.nanoTime();
+    }
+
+    void recordAccess() {
+      accessCount.incrementAndGet();
+      lastAccessTime = System.nanoTime();
+    }
+  }
+
+  private static final class EvictionCandidate {
+    private final String key;
+    private final CachedObject cachedObject;
+    private final long accessCount;
+    private final long lastAccessTime;
+
+    EvictionCandidate(String key, CachedObject cachedObject) {
+      this.key = key;
+      this.cachedObject = cachedObject;
+      this.accessCount = cachedObject.accessCount.get();
+      this.lastAccessTime = cachedObject.lastAccessTime;
+    }
+  }
+
+  // Shorter life-cycles first, i.e. VERTEX before DAG before SESSION
+  private static int compareLifeCycle(EvictionCandidate c1, EvictionCandidate c2) {
+    return c2.cachedObject.lifeCycle.ordinal() - c1.cachedObject.lifeCycle.ordinal();
+  }
+
+  private static int compareAccessTime(EvictionCandidate c1, EvictionCandidate c2) {
+    // nanoTime values are only comparable by difference
+    long diff = c1.lastAccessTime - c2.lastAccessTime;
+    return diff < 0 ? -1 : (diff > 0 ? 1 : 0);
+  }
+
+  private static final Comparator<EvictionCandidate> LRU_COMPARATOR =
+      new Comparator<EvictionCandidate>() {
+        @Override
+        public int compare(EvictionCandidate c1, EvictionCandidate c2) {
+          int result = compareLifeCycle(c1, c2);
+          return result != 0 ? result : compareAccessTime(c1, c2);
+        }
+      };
+
+  private static final Comparator<EvictionCandidate> LFU_COMPARATOR =
+      new Comparator<EvictionCandidate>() {
+        @Override
+        public int compare(EvictionCandidate c1, EvictionCandidate c2) {
+          int result = compareLifeCycle(c1, c2);
+          if (result == 0) {
+            result = c1.accessCount < c2.accessCount ? -1 :
+                (c1.accessCount > c2.accessCount ? 1 : 0);
+          }
+          return result != 0 ? result : compareAccessTime(c1, c2);
+        }
+      };
 }
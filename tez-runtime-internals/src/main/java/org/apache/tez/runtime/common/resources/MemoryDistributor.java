@@ -65,6 +65,8 @@ public class MemoryDistributor {
   private final Set<TaskContext> dupSet = Collections
       .newSetFromMap(new ConcurrentHashMap<TaskContext, Boolean>());
   private final List<RequestorInfo> requestList;
+  // Guarded by requestList
+  private boolean initialAllocationsMade = false;
 
   /**
    * @param numTotalInputs
@@ -114,6 +116,13 @@ public class MemoryDistributor {
   public void makeInitialAllocations() throws TezException {
     Preconditions.checkState(numInputsSeen.get() == numTotalInputs, "All inputs are expected to ask for memory");
     Preconditions.checkState(numOutputsSeen.get() == numTotalOutputs, "All outputs are expected to ask for memory");
+    synchronized (requestList) {
+      makeInitialAllocationsInternal();
+      initialAllocationsMade = true;
+    }
+  }
+
+  private void makeInitialAllocationsInternal() throws TezException {
 
     logInitialRequests(requestList);
 
@@ -180,6 +189,21 @@ public class MemoryDistributor {
     }
 
     RequestorInfo requestInfo = new RequestorInfo(entityContext,requestSize, callback, descriptor);
+    synchronized (requestList) {
+      if (initialAllocationsMade) {
+        // e.g. a processor initialized after inputs were started. Allocations require all inputs
+        // and outputs to have made their requests, so these can only come from the processor.
+        LOG.warn("Memory requested by " + requestInfo.getRequestContext().getComponentType()
+            + " after initial allocations were made, assigning requested size=" + requestSize);
+        callback.memoryAssigned(requestSize);
+        return -1;
+      }
+      registerRequestInternal(requestInfo);
+    }
+    return -1;
+  }
+
+  private void registerRequestInternal(RequestorInfo requestInfo) {
     switch (requestInfo.getRequestContext().getComponentType()) {
     case INPUT:
       numInputsSeen.incrementAndGet();
@@ -199,7 +223,6 @@ public class MemoryDistributor {
       break;
     }
     requestList.add(requestInfo);
-    return -1;
   }
 
   private void validateAllocations(Iterable<Long> allocations, int numRequestors) {
@@ -68,7 +68,7 @@ public class TaskCounterUpdater {
   }
 
   
-  public void updateCounters() {
+  public synchronized void updateCounters() {
     // FileSystemStatistics are reset each time a new task is seen by the
     // container.
     // This doesn't remove the fileSystem, and does not clear all statistics -
@@ -110,9 +110,10 @@ public class TaskCounterUpdater {
   }
   
   /**
-   * Update resource information counters
+   * Update resource information counters. Also invoked by the heartbeat thread to sample the CPU
+   * usage of the task while it runs.
    */
-  void updateResourceCounters() {
+  public synchronized void updateResourceCounters() {
     // Update generic resource counters
     updateHeapUsageCounter();
 
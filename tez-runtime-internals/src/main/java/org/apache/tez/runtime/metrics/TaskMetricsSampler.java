@@ -0,0 +1,86 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.tez.runtime.metrics;
+
+import org.apache.tez.common.counters.TaskCounter;
+import org.apache.tez.common.counters.TezCounters;
+import org.apache.tez.runtime.api.impl.TaskMetricsSeries;
+import org.apache.tez.runtime.api.impl.TaskMetricsSeries.Metric;
+
+/**
+ * Samples the counters of a task into a {@link TaskMetricsSeries}, so that the AM can show how
+ * fetch rate, merge backlog, spills and CPU usage evolve while the task runs. Samples are taken
+ * from the heartbeat thread at most once per sample interval. When heartbeats are further apart
+ * than the interval, the increase of each total is spread evenly over the buckets in between.
+ */
+public class TaskMetricsSampler {
+
+  private final TaskMetricsSeries series;
+  private final long intervalMillis;
+  private final long[] lastValues = new long[Metric.values().length];
+  private long lastSampleTime;
+
+  public TaskMetricsSampler(long startTime, long intervalMillis, int maxSamples) {
+    this.series = new TaskMetricsSeries(startTime, intervalMillis, maxSamples);
+    this.intervalMillis = intervalMillis;
+    this.lastSampleTime = startTime;
+  }
+
+  public synchronized boolean isSampleDue(long now) {
+    return now - lastSampleTime >= intervalMillis;
+  }
+
+  public synchronized void sample(long now, TezCounters counters) {
+    for (Metric metric : Metric.values()) {
+      long value = getValue(metric, counters);
+      if (metric.isGauge()) {
+        series.set(metric, now, value);
+      } else {
+        // Counters of inputs and outputs which have been closed may no longer be reported
+        long delta = Math.max(0, value - lastValues[metric.ordinal()]);
+        lastValues[metric.ordinal()] = Math.max(value, lastValues[metric.ordinal()]);
+        series.add(metric, lastSampleTime, now, delta);
+      }
+    }
+    lastSampleTime = now;
+  }
+
+  /**
+   * @return a copy of the series sampled so far
+   */
+  public synchronized TaskMetricsSeries getSeries() {
+    return series.copy();
+  }
+
+  private static long getValue(Metric metric, TezCounters counters) {
+    switch (metric) {
+    case FETCH_BYTES:
+      return counters.findCounter(TaskCounter.SHUFFLE_BYTES).getValue();
+    case MERGE_QUEUE_DEPTH:
+      return counters.findCounter(TaskCounter.SHUFFLE_MERGE_QUEUE_DEPTH).getValue();
+    case SPILLS:
+      return counters.findCounter(TaskCounter.ADDITIONAL_SPILL_COUNT).getValue()
+          + counters.findCounter(TaskCounter.NUM_MEM_TO_DISK_MERGES).getValue();
+    case CPU_MILLIS:
+      return counters.findCounter(TaskCounter.CPU_MILLISECONDS).getValue();
+    default:
+      throw new IllegalArgumentException("Unknown metric " + metric);
+    }
+  }
+}
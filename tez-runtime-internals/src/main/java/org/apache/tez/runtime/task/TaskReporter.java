@@ -45,6 +45,7 @@ import org.apache.tez.runtime.api.events.TaskAttemptFailedEvent;
 import org.apache.tez.runtime.api.events.TaskAttemptKilledEvent;
 import org.apache.tez.runtime.api.events.TaskStatusUpdateEvent;
 import org.apache.tez.runtime.api.impl.EventMetaData;
+import org.apache.tez.runtime.api.impl.TaskMetricsSeries;
 import org.apache.tez.runtime.api.impl.TaskStatistics;
 import org.apache.tez.runtime.api.impl.TezEvent;
 import org.apache.tez.runtime.api.impl.TezHeartbeatRequest;
@@ -55,6 +56,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Preconditions;
 import com.google.common.collect.Lists;
 import com.google.common.util.concurrent.FutureCallback;
 import com.google.common.util.concurrent.Futures;
@@ -75,6 +77,9 @@ public class TaskReporter implements TaskReporterInterface {
 
   private final TezTaskUmbilicalProtocol umbilical;
   private final long pollInterval;
+  private final long minPollInterval;
+  private final long maxIdlePollInterval;
+  private final boolean amLongPolls;
   private final long sendCounterInterval;
   private final int maxEventsToGet;
   private final AtomicLong requestCounter;
@@ -87,8 +92,29 @@ public class TaskReporter implements TaskReporterInterface {
 
   public TaskReporter(TezTaskUmbilicalProtocol umbilical, long amPollInterval,
       long sendCounterInterval, int maxEventsToGet, AtomicLong requestCounter, String containerIdStr) {
+    this(umbilical, amPollInterval, amPollInterval, amPollInterval, false, sendCounterInterval,
+        maxEventsToGet, requestCounter, containerIdStr);
+  }
+
+  /**
+   * @param amPollInterval the heartbeat interval a task starts out with
+   * @param minPollInterval the heartbeat interval used while events are flowing
+   * @param maxIdlePollInterval the heartbeat interval up to which an idle task backs off
+   * @param amLongPolls whether the AM holds heartbeats which return no events
+   */
+  public TaskReporter(TezTaskUmbilicalProtocol umbilical, long amPollInterval,
+      long minPollInterval, long maxIdlePollInterval, boolean amLongPolls,
+      long sendCounterInterval, int maxEventsToGet, AtomicLong requestCounter,
+      String containerIdStr) {
+    Preconditions.checkArgument(minPollInterval <= amPollInterval
+        && amPollInterval <= maxIdlePollInterval,
+        "Expected minPollInterval <= amPollInterval <= maxIdlePollInterval, but found: "
+            + minPollInterval + ", " + amPollInterval + ", " + maxIdlePollInterval);
     this.umbilical = umbilical;
     this.pollInterval = amPollInterval;
+    this.minPollInterval = minPollInterval;
+    this.maxIdlePollInterval = maxIdlePollInterval;
+    this.amLongPolls = amLongPolls;
     this.sendCounterInterval = sendCounterInterval;
     this.maxEventsToGet = maxEventsToGet;
     this.requestCounter = requestCounter;
@@ -104,8 +130,9 @@ public class TaskReporter implements TaskReporterInterface {
   @Override
   public synchronized void registerTask(RuntimeTask task,
       ErrorReporter errorReporter) {
-    currentCallable = new HeartbeatCallable(task, umbilical, pollInterval, sendCounterInterval,
-        maxEventsToGet, requestCounter, containerIdStr);
+    currentCallable = new HeartbeatCallable(task, umbilical, pollInterval, minPollInterval,
+        maxIdlePollInterval, amLongPolls, sendCounterInterval, maxEventsToGet, requestCounter,
+        containerIdStr);
     ListenableFuture<Boolean> future = heartbeatExecutor.submit(currentCallable);
     Futures.addCallback(future, new HeartbeatCallback(errorReporter));
   }
@@ -136,11 +163,25 @@ public class TaskReporter implements TaskReporterInterface {
 
     private final TezTaskUmbilicalProtocol umbilical;
 
-    private final long pollInterval;
+    private final long minPollInterval;
+    private final long maxIdlePollInterval;
+    private final boolean amLongPolls;
     private final long sendCounterInterval;
     private final int maxEventsToGet;
     private final String containerIdStr;
 
+    /*
+     * Request id of the heartbeat in flight which the AM may hold, 0 if there is none. Events and
+     * task completion release it, instead of waiting for the AM to return it.
+     */
+    private final AtomicLong heldRequestId = new AtomicLong(0);
+
+    /*
+     * Current wait between regular heartbeats. Tightens to minPollInterval while events are
+     * flowing, and backs off up to maxIdlePollInterval while the task is idle.
+     */
+    private long currentPollInterval;
+
     private final AtomicLong requestCounter;
 
     private final AtomicBoolean finalEventQueued = new AtomicBoolean(false);
@@ -158,15 +199,28 @@ public class TaskReporter implements TaskReporterInterface {
     private AtomicInteger nonOobHeartbeatCounter = new AtomicInteger(0);
     private int nextHeartbeatNumToLog = 0;
     /*
-     * Tracks the last non-OOB heartbeat number at which counters were sent to the AM. 
+     * Total time spent waiting between regular heartbeats, and the value of this total at the
+     * time counters were last sent to the AM.
      */
-    private int prevCounterSendHeartbeatNum = 0;
+    private long nonOobHeartbeatTime = 0;
+    private long prevCounterSendHeartbeatTime = 0;
 
     public HeartbeatCallable(RuntimeTask task,
         TezTaskUmbilicalProtocol umbilical, long amPollInterval, long sendCounterInterval,
         int maxEventsToGet, AtomicLong requestCounter, String containerIdStr) {
+      this(task, umbilical, amPollInterval, amPollInterval, amPollInterval, false,
+          sendCounterInterval, maxEventsToGet, requestCounter, containerIdStr);
+    }
 
-      this.pollInterval = amPollInterval;
+    public HeartbeatCallable(RuntimeTask task,
+        TezTaskUmbilicalProtocol umbilical, long amPollInterval, long minPollInterval,
+        long maxIdlePollInterval, boolean amLongPolls, long sendCounterInterval,
+        int maxEventsToGet, AtomicLong requestCounter, String containerIdStr) {
+
+      this.currentPollInterval = amPollInterval;
+      this.minPollInterval = minPollInterval;
+      this.maxIdlePollInterval = maxIdlePollInterval;
+      this.amLongPolls = amLongPolls;
       this.sendCounterInterval = sendCounterInterval;
       this.maxEventsToGet = maxEventsToGet;
       this.requestCounter = requestCounter;
@@ -193,13 +247,16 @@ public class TaskReporter implements TaskReporterInterface {
           LOG.info("Asked to die via task heartbeat");
           return false;
         } else {
+          currentPollInterval = getNextPollInterval(
+              response.numEvents > 0 || response.numEventsSent > 0);
           if (response.numEvents < maxEventsToGet) {
             // Wait before sending another heartbeat. Otherwise consider as an OOB heartbeat
             lock.lock();
             try {
-              boolean interrupted = condition.await(pollInterval, TimeUnit.MILLISECONDS);
+              boolean interrupted = condition.await(currentPollInterval, TimeUnit.MILLISECONDS);
               if (!interrupted) {
                 nonOobHeartbeatCounter.incrementAndGet();
+                nonOobHeartbeatTime += currentPollInterval;
               }
             } finally {
               lock.unlock();
@@ -217,6 +274,18 @@ public class TaskReporter implements TaskReporterInterface {
       return true;
     }
 
+    /**
+     * Computes the wait before the next regular heartbeat. Any events sent or received tighten the
+     * interval to the minimum right away, while each idle heartbeat doubles it up to the maximum.
+     */
+    @VisibleForTesting
+    long getNextPollInterval(boolean eventsExchanged) {
+      if (eventsExchanged) {
+        return minPollInterval;
+      }
+      return Math.min(maxIdlePollInterval, Math.max(1, currentPollInterval) * 2);
+    }
+
     /**
      * @param eventsArg
      * @return
@@ -235,6 +304,7 @@ public class TaskReporter implements TaskReporterInterface {
       TezEvent updateEvent = null;
       List<TezEvent> events = new ArrayList<TezEvent>();
       eventsToSend.drainTo(events);
+      int numEventsSent = events.size();
 
       if (!task.isTaskDone() && !task.wasErrorReported()) {
         boolean sendCounters = false;
@@ -244,9 +314,9 @@ public class TaskReporter implements TaskReporterInterface {
          * real time decisions are made based on these counters, it can be sent once per second.
          */
         // Not completely accurate, since OOB heartbeats could go out.
-        if ((nonOobHeartbeatCounter.get() - prevCounterSendHeartbeatNum) * pollInterval >= sendCounterInterval) {
+        if (nonOobHeartbeatTime - prevCounterSendHeartbeatTime >= sendCounterInterval) {
           sendCounters = true;
-          prevCounterSendHeartbeatNum = nonOobHeartbeatCounter.get();
+          prevCounterSendHeartbeatTime = nonOobHeartbeatTime;
         }
         updateEvent = new TezEvent(getStatusUpdateEvent(sendCounters), updateEventMetadata);
         events.add(updateEvent);
@@ -264,7 +334,19 @@ public class TaskReporter implements TaskReporterInterface {
 
       maybeLogCounters();
 
-      TezHeartbeatResponse response = umbilical.heartbeat(request);
+      // The AM only holds heartbeats which carry nothing but the status update
+      boolean mayBeHeld = amLongPolls && numEventsSent == 0;
+      if (mayBeHeld) {
+        heldRequestId.set(requestId);
+      }
+      TezHeartbeatResponse response;
+      try {
+        response = umbilical.heartbeat(request);
+      } finally {
+        if (mayBeHeld) {
+          heldRequestId.set(0);
+        }
+      }
       if (LOG.isDebugEnabled()) {
         LOG.debug("Received heartbeat response from AM, response=" + response);
       }
@@ -272,7 +354,7 @@ public class TaskReporter implements TaskReporterInterface {
       if (response.shouldDie()) {
         LOG.info("Received should die response from AM");
         askedToDie.set(true);
-        return new ResponseWrapper(true, 1);
+        return new ResponseWrapper(true, 1, numEventsSent);
       }
       if (response.getLastRequestId() != requestId) {
         throw new TezException("AM and Task out of sync" + ", responseReqId="
@@ -300,7 +382,7 @@ public class TaskReporter implements TaskReporterInterface {
           task.handleEvents(response.getEvents());
         }
       }
-      return new ResponseWrapper(false, numEventsReceived);
+      return new ResponseWrapper(false, numEventsReceived, numEventsSent);
     }
 
     public void markComplete() {
@@ -337,6 +419,7 @@ public class TaskReporter implements TaskReporterInterface {
         TezEvent statusUpdateEvent = new TezEvent(getStatusUpdateEvent(true), updateEventMetadata);
         TezEvent taskCompletedEvent = new TezEvent(new TaskAttemptCompletedEvent(),
             updateEventMetadata);
+        releaseHeldHeartbeat();
         return !heartbeat(Lists.newArrayList(statusUpdateEvent, taskCompletedEvent)).shouldDie;
       } else {
         LOG.warn("A final task state event has already been sent. Not sending again");
@@ -348,18 +431,23 @@ public class TaskReporter implements TaskReporterInterface {
     TaskStatusUpdateEvent getStatusUpdateEvent(boolean sendCounters) {
       TezCounters counters = null;
       TaskStatistics stats = null;
+      TaskMetricsSeries metricsSeries = null;
       float progress = 0;
       boolean progressNotified = false;
       if (task.hasInitialized()) {
         progress = task.getProgress();
         progressNotified = task.getAndClearProgressNotification();
+        // Samples are recorded at every heartbeat which is due one, but only sent with counters
+        task.sampleMetrics(sendCounters);
         if (sendCounters) {
           // send these potentially large objects at longer intervals to avoid overloading the AM
           counters = task.getCounters();
           stats = task.getTaskStatistics();
+          metricsSeries = task.getMetricsSeries();
         }
       }
-      return new TaskStatusUpdateEvent(counters, progress, stats, progressNotified);
+      return new TaskStatusUpdateEvent(counters, progress, stats, metricsSeries,
+          progressNotified);
     }
 
     /**
@@ -401,6 +489,7 @@ public class TaskReporter implements TaskReporterInterface {
           // Counter may exceed limitation
           LOG.warn("Error when get constructing TaskStatusUpdateEvent. Not sending it out");
         }
+        releaseHeldHeartbeat();
         return !heartbeat(tezEvents).shouldDie;
       } else {
         LOG.warn("A final task state event has already been sent. Not sending again");
@@ -408,9 +497,35 @@ public class TaskReporter implements TaskReporterInterface {
       }
     }
 
+    /**
+     * Asks the AM to return the heartbeat it may be holding, so that completion or events of the
+     * task are sent right away. Only the first caller sends the request.
+     */
+    private void releaseHeldHeartbeat() {
+      long requestId = heldRequestId.getAndSet(0);
+      if (requestId != 0) {
+        try {
+          umbilical.releaseHeartbeat(containerIdStr, requestId);
+        } catch (IOException e) {
+          // The heartbeat returns at the long poll timeout at the latest
+          LOG.warn("Failed to release held heartbeat " + requestId, e);
+        }
+      }
+    }
+
     private void addEvents(TezTaskAttemptID taskAttemptID, Collection<TezEvent> events) {
       if (events != null && !events.isEmpty()) {
         eventsToSend.addAll(events);
+        releaseHeldHeartbeat();
+        if (maxIdlePollInterval > minPollInterval) {
+          // Don't hold generated events back for a backed off heartbeat interval
+          lock.lock();
+          try {
+            condition.signal();
+          } finally {
+            lock.unlock();
+          }
+        }
       }
     }
   }
@@ -469,10 +584,12 @@ public class TaskReporter implements TaskReporterInterface {
   private static final class ResponseWrapper {
     boolean shouldDie;
     int numEvents;
+    int numEventsSent;
 
-    private ResponseWrapper(boolean shouldDie, int numEvents) {
+    private ResponseWrapper(boolean shouldDie, int numEvents, int numEventsSent) {
       this.shouldDie = shouldDie;
       this.numEvents = numEvents;
+      this.numEventsSent = numEventsSent;
     }
   }
 }
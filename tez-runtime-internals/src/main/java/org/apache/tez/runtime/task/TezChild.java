@@ -98,6 +98,9 @@ public class TezChild {
 
   private final int getTaskMaxSleepTime;
   private final int amHeartbeatInterval;
+  private final int minAmHeartbeatInterval;
+  private final int maxIdleAmHeartbeatInterval;
+  private final boolean amLongPolls;
   private final long sendCounterInterval;
   private final int maxEventsToGet;
   private final String workingDir;
@@ -150,6 +153,20 @@ public class TezChild {
 
     amHeartbeatInterval = defaultConf.getInt(TezConfiguration.TEZ_TASK_AM_HEARTBEAT_INTERVAL_MS,
         TezConfiguration.TEZ_TASK_AM_HEARTBEAT_INTERVAL_MS_DEFAULT);
+    int minInterval = defaultConf.getInt(TezConfiguration.TEZ_TASK_AM_HEARTBEAT_INTERVAL_MS_MIN,
+        TezConfiguration.TEZ_TASK_AM_HEARTBEAT_INTERVAL_MS_MIN_DEFAULT);
+    minAmHeartbeatInterval = (minInterval < 0 || minInterval > amHeartbeatInterval) ?
+        amHeartbeatInterval : minInterval;
+    amLongPolls = defaultConf.getInt(TezConfiguration.TEZ_TASK_AM_HEARTBEAT_LONG_POLL_TIMEOUT_MS,
+        TezConfiguration.TEZ_TASK_AM_HEARTBEAT_LONG_POLL_TIMEOUT_MS_DEFAULT) > 0;
+    if (amLongPolls) {
+      // The AM holds heartbeats until events show up, no point in waiting any longer locally
+      maxIdleAmHeartbeatInterval = minAmHeartbeatInterval;
+    } else {
+      maxIdleAmHeartbeatInterval = Math.max(amHeartbeatInterval,
+          defaultConf.getInt(TezConfiguration.TEZ_TASK_AM_HEARTBEAT_IDLE_INTERVAL_MS_MAX,
+              TezConfiguration.TEZ_TASK_AM_HEARTBEAT_IDLE_INTERVAL_MS_MAX_DEFAULT));
+    }
 
     sendCounterInterval = defaultConf.getLong(
         TezConfiguration.TEZ_TASK_AM_HEARTBEAT_COUNTER_INTERVAL_MS,
@@ -202,8 +219,10 @@ public class TezChild {
     ContainerReporter containerReporter = new ContainerReporter(umbilical, containerContext,
         getTaskMaxSleepTime);
 
-    taskReporter = new TaskReporter(umbilical, amHeartbeatInterval,
-        sendCounterInterval, maxEventsToGet, heartbeatCounter, containerIdString);
+    taskReporter = new TaskReporter(umbilical,
+        Math.min(amHeartbeatInterval, maxIdleAmHeartbeatInterval), minAmHeartbeatInterval,
+        maxIdleAmHeartbeatInterval, amLongPolls, sendCounterInterval, maxEventsToGet,
+        heartbeatCounter, containerIdString);
 
     UserGroupInformation childUGI = null;
 
@@ -460,7 +479,7 @@ public class TezChild {
     Limits.setConfiguration(conf);
 
     // singleton of ObjectRegistry for this JVM
-    ObjectRegistryImpl objectRegistry = new ObjectRegistryImpl();
+    ObjectRegistryImpl objectRegistry = ObjectRegistryImpl.create(conf);
 
     return new TezChild(conf, host, port, containerIdentifier, tokenIdentifier,
         attemptNumber, workingDirectory, localDirs, serviceProviderEnvMap, objectRegistry, pid,
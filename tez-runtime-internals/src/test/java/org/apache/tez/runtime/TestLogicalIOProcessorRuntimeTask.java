@@ -20,6 +20,7 @@ package org.apache.tez.runtime;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 import static org.mockito.Mockito.mock;
@@ -30,6 +31,8 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 
+import org.apache.tez.common.counters.TaskCounter;
+import org.apache.tez.common.counters.TezCounters;
 import org.apache.tez.dag.api.InputDescriptor;
 import org.apache.tez.dag.api.OutputDescriptor;
 import org.apache.tez.dag.api.ProcessorDescriptor;
@@ -45,6 +48,7 @@ import org.apache.tez.runtime.api.AbstractLogicalOutput;
 import org.apache.tez.runtime.api.Event;
 import org.apache.tez.runtime.api.LogicalInput;
 import org.apache.tez.runtime.api.LogicalOutput;
+import org.apache.tez.runtime.api.MemoryUpdateCallback;
 import org.apache.tez.runtime.api.Reader;
 import org.apache.tez.runtime.api.InputContext;
 import org.apache.tez.runtime.api.OutputContext;
@@ -138,6 +142,47 @@ public class TestLogicalIOProcessorRuntimeTask {
 
   }
 
+  @Test(timeout = 5000)
+  public void testStartInputsBeforeProcessorInitialize() throws Exception {
+    TezDAGID dagId = createTezDagId();
+    TezVertexID vertexId = createTezVertexId(dagId);
+    Map<String, ByteBuffer> serviceConsumerMetadata = new HashMap<String, ByteBuffer>();
+    Multimap<String, String> startedInputsMap = HashMultimap.create();
+    TezUmbilical umbilical = mock(TezUmbilical.class);
+    TezConfiguration tezConf = new TezConfiguration();
+    tezConf.set(TezConfiguration.TEZ_TASK_SCALE_MEMORY_ALLOCATOR_CLASS,
+        ScalingAllocator.class.getName());
+    tezConf.setBoolean(TezConfiguration.TEZ_TASK_START_INPUTS_BEFORE_PROCESSOR_INITIALIZE, true);
+
+    TezTaskAttemptID taId = createTaskAttemptID(vertexId, 1);
+    TaskSpec task = new TaskSpec(taId, "dag1", "vertex1", 1,
+        ProcessorDescriptor.create(TestInitOrderProcessor.class.getName()),
+        createInputSpecList(), createOutputSpecList(), null, null);
+
+    LogicalIOProcessorRuntimeTask lio = new LogicalIOProcessorRuntimeTask(task, 0, tezConf, null,
+        umbilical, serviceConsumerMetadata, new HashMap<String, String>(), startedInputsMap, null,
+        "", new ExecutionContextImpl("localhost"), Runtime.getRuntime().maxMemory(), true,
+        new DefaultHadoopShim());
+    try {
+      int startCount = TestInput.startCount;
+      lio.initialize();
+      // The input was started before the processor was initialized
+      assertEquals(startCount + 1, TestInitOrderProcessor.inputStartCountAtInit);
+      assertNotNull(lio.eventRouterThread);
+      // Memory requested late by the processor is still assigned
+      assertEquals(TestInitOrderProcessor.MEMORY_REQUEST, TestInitOrderProcessor.memoryAssigned);
+      lio.run();
+      lio.close();
+
+      TezCounters counters = lio.getCounters();
+      assertTrue(counters.findCounter(TaskCounter.PROCESSOR_INITIALIZE_TIME).getValue() >= 50);
+      assertTrue(counters.findCounter(TaskCounter.TASK_INITIALIZE_TIME).getValue() >=
+          counters.findCounter(TaskCounter.PROCESSOR_INITIALIZE_TIME).getValue());
+    } finally {
+      cleanupAndTest(lio);
+    }
+  }
+
   private void cleanupAndTest(LogicalIOProcessorRuntimeTask lio) throws InterruptedException {
 
     ProcessorContext procContext = lio.getProcessorContext();
@@ -256,6 +301,42 @@ public class TestLogicalIOProcessorRuntimeTask {
 
   }
 
+  public static class TestInitOrderProcessor extends AbstractLogicalIOProcessor {
+
+    static final long MEMORY_REQUEST = 1024;
+    public static volatile int inputStartCountAtInit = -1;
+    public static volatile long memoryAssigned = -1;
+
+    public TestInitOrderProcessor(ProcessorContext context) {
+      super(context);
+    }
+
+    @Override
+    public void initialize() throws Exception {
+      inputStartCountAtInit = TestInput.startCount;
+      getContext().requestInitialMemory(MEMORY_REQUEST, new MemoryUpdateCallback() {
+        @Override
+        public void memoryAssigned(long assignedSize) {
+          memoryAssigned = assignedSize;
+        }
+      });
+      Thread.sleep(50);
+    }
+
+    @Override
+    public void run(Map<String, LogicalInput> inputs, Map<String, LogicalOutput> outputs)
+        throws Exception {
+    }
+
+    @Override
+    public void handleEvents(List<Event> processorEvents) {
+    }
+
+    @Override
+    public void close() throws Exception {
+    }
+  }
+
   public static class TestInput extends AbstractLogicalInput {
 
     public static volatile int startCount = 0;
@@ -27,7 +27,9 @@ import java.io.DataOutputStream;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 
 import org.apache.hadoop.conf.Configuration;
 import org.apache.tez.dag.api.InputDescriptor;
@@ -88,4 +90,68 @@ public class TestTaskSpec {
     Assert.assertEquals(taskConf.get("foo"), deSerTaskSpec.getTaskConf().get("foo"));
   }
 
+  @Test (timeout = 5000)
+  public void testSerDeWithPayloadRefs() throws IOException {
+    byte[] confBytes = new byte[] {1, 2, 3, 4};
+    // Equal payloads of different descriptors are sent once
+    ProcessorDescriptor procDesc = ProcessorDescriptor.create("proc").setUserPayload(
+        UserPayload.create(ByteBuffer.wrap(confBytes)));
+    List<InputSpec> inputSpecs = new ArrayList<>();
+    inputSpecs.add(new InputSpec("src1", InputDescriptor.create("inputClass").setUserPayload(
+        UserPayload.create(ByteBuffer.wrap(confBytes.clone()))), 10));
+    inputSpecs.add(new InputSpec("src2", InputDescriptor.create("inputClass"), 1));
+    List<OutputSpec> outputSpecs = new ArrayList<>();
+    outputSpecs.add(new OutputSpec("dest1", OutputDescriptor.create("outputClass").setUserPayload(
+        UserPayload.create(ByteBuffer.wrap(confBytes), 1)), 999));
+
+    TezTaskAttemptID taId = TezTaskAttemptID.getInstance(TezTaskID.getInstance(
+        TezVertexID.getInstance(TezDAGID.getInstance("1234", 1, 1), 1), 1), 1);
+    TaskSpec taskSpec = new TaskSpec(taId, "dagName", "vName", -1, procDesc, inputSpecs,
+        outputSpecs, null);
+
+    Map<String, UserPayload> payloads = UserPayloadStore.getPayloads(taskSpec);
+    Assert.assertEquals(2, payloads.size());
+
+    UserPayloadStore store = new UserPayloadStore();
+    TaskSpec deSerTaskSpec = writeAndReadWithPayloadRefs(taskSpec, payloads, store);
+    Assert.assertEquals(2, store.size());
+    Assert.assertEquals("proc", deSerTaskSpec.getProcessorDescriptor().getClassName());
+    Assert.assertArrayEquals(confBytes,
+        deSerTaskSpec.getProcessorDescriptor().getUserPayload().deepCopyAsArray());
+    Assert.assertArrayEquals(confBytes,
+        deSerTaskSpec.getInputs().get(0).getInputDescriptor().getUserPayload().deepCopyAsArray());
+    Assert.assertNull(deSerTaskSpec.getInputs().get(1).getInputDescriptor().getUserPayload());
+    Assert.assertEquals(1,
+        deSerTaskSpec.getOutputs().get(0).getOutputDescriptor().getUserPayload().getVersion());
+
+    // A later task only refers to the payloads
+    deSerTaskSpec = writeAndReadWithPayloadRefs(taskSpec,
+        Collections.<String, UserPayload>emptyMap(), store);
+    Assert.assertEquals(2, store.size());
+    Assert.assertArrayEquals(confBytes,
+        deSerTaskSpec.getProcessorDescriptor().getUserPayload().deepCopyAsArray());
+
+    try {
+      writeAndReadWithPayloadRefs(taskSpec, Collections.<String, UserPayload>emptyMap(),
+          new UserPayloadStore());
+      Assert.fail("Expected missing payloads to fail");
+    } catch (IOException e) {
+      Assert.assertTrue(e.getMessage().contains("has not been received"));
+    }
+  }
+
+  private TaskSpec writeAndReadWithPayloadRefs(TaskSpec taskSpec,
+      Map<String, UserPayload> newPayloads, UserPayloadStore store) throws IOException {
+    ByteArrayOutputStream bos = new ByteArrayOutputStream();
+    DataOutput out = new DataOutputStream(bos);
+    UserPayloadStore.writePayloads(out, false, newPayloads);
+    taskSpec.writeWithPayloadRefs(out);
+
+    DataInput in = new DataInputStream(new ByteArrayInputStream(bos.toByteArray()));
+    store.readPayloads(in);
+    TaskSpec deSerTaskSpec = new TaskSpec();
+    deSerTaskSpec.readFieldsWithPayloadRefs(in, store);
+    return deSerTaskSpec;
+  }
+
 }
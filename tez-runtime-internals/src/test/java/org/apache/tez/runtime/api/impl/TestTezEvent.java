@@ -22,7 +22,9 @@ import java.io.DataInput;
 import java.io.DataInputStream;
 import java.io.DataOutput;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.List;
 
 import org.apache.commons.lang.RandomStringUtils;
 import org.apache.hadoop.conf.Configuration;
@@ -32,10 +34,13 @@ import org.apache.tez.common.TezUtils;
 import org.apache.tez.dag.api.UserPayload;
 import org.apache.tez.dag.records.TezTaskAttemptID;
 import org.apache.tez.dag.records.TezTaskID;
+import org.apache.tez.runtime.api.events.CompositeDataMovementEvent;
 import org.apache.tez.runtime.api.events.DataMovementEvent;
+import org.apache.tez.runtime.api.events.InputReadErrorEvent;
 import org.apache.tez.runtime.api.events.TaskAttemptCompletedEvent;
 import org.apache.tez.runtime.api.events.TaskStatusUpdateEvent;
 import org.apache.tez.runtime.api.impl.EventMetaData.EventProducerConsumerType;
+import org.apache.tez.runtime.api.impl.TaskMetricsSeries.Metric;
 import org.junit.Assert;
 import org.junit.Test;
 
@@ -73,6 +78,14 @@ public class TestTezEvent {
     events.add(new TezEvent(new TaskStatusUpdateEvent(null, 0.1f, null, false),
         new EventMetaData(EventProducerConsumerType.PROCESSOR, "v5", "v6",
             srcTAID)));
+    // With a metrics series
+    TaskMetricsSeries metricsSeries = new TaskMetricsSeries(1000, 100, 8);
+    metricsSeries.add(Metric.FETCH_BYTES, 1000, 1250, 300);
+    metricsSeries.set(Metric.MERGE_QUEUE_DEPTH, 1150, 4);
+    metricsSeries.add(Metric.CPU_MILLIS, 1000, 1100, 50);
+    events.add(new TezEvent(new TaskStatusUpdateEvent(null, 0.2f, null, metricsSeries, false),
+        new EventMetaData(EventProducerConsumerType.PROCESSOR, "v5", "v6",
+            srcTAID)));
 
     // Serialize to different types of DataOutput
     // One that implements OutputStream and one that does not
@@ -101,6 +114,70 @@ public class TestTezEvent {
 
   }
 
+  @Test
+  public void testHeartbeatEventsSerialization() throws IOException {
+    TezTaskAttemptID srcTAID = TezTaskAttemptID.getInstance(
+        TezTaskID.fromString("task_1454468251169_866787_1_02_000000"), 1000);
+    EventMetaData srcInfo = new EventMetaData(EventProducerConsumerType.OUTPUT,
+        "v1", "v2", srcTAID);
+
+    // Payloads backed by direct buffers, and one larger than the retained scratch buffer
+    ByteBuffer smallPayload = ByteBuffer.allocateDirect(100);
+    ByteBuffer largePayload = ByteBuffer.allocate(2 * 1024 * 1024 + 7);
+    for (int i = 0; i < largePayload.capacity(); i++) {
+      largePayload.put(i, (byte) i);
+    }
+    List<TezEvent> events = new ArrayList<TezEvent>();
+    events.add(new TezEvent(DataMovementEvent.create(10, 20, 3, smallPayload), srcInfo));
+    events.add(new TezEvent(CompositeDataMovementEvent.create(5, 50, largePayload), srcInfo));
+    events.add(new TezEvent(DataMovementEvent.create(1, null), srcInfo));
+    events.add(new TezEvent(InputReadErrorEvent.create("diag", 4, 1), srcInfo));
+
+    TezHeartbeatRequest request = new TezHeartbeatRequest(1, events, 0, "c1", srcTAID, 0, 100);
+    DataOutputBuffer dataout = new DataOutputBuffer();
+    request.write(dataout);
+    DataInputBuffer datain = new DataInputBuffer();
+    datain.reset(dataout.getData(), dataout.getLength());
+    TezHeartbeatRequest actualRequest = new TezHeartbeatRequest();
+    actualRequest.readFields(datain);
+    List<TezEvent> actual = actualRequest.getEvents();
+    Assert.assertEquals(events.size(), actual.size());
+
+    DataMovementEvent dme = (DataMovementEvent) actual.get(0).getEvent();
+    Assert.assertEquals(10, dme.getSourceIndex());
+    Assert.assertEquals(20, dme.getTargetIndex());
+    Assert.assertEquals(3, dme.getVersion());
+    Assert.assertEquals(smallPayload, dme.getUserPayload());
+    Assert.assertEquals(srcInfo, actual.get(0).getSourceInfo());
+
+    CompositeDataMovementEvent cdme = (CompositeDataMovementEvent) actual.get(1).getEvent();
+    Assert.assertEquals(5, cdme.getSourceIndexStart());
+    Assert.assertEquals(50, cdme.getCount());
+    Assert.assertEquals(largePayload, cdme.getUserPayload());
+
+    DataMovementEvent noPayload = (DataMovementEvent) actual.get(2).getEvent();
+    Assert.assertEquals(1, noPayload.getSourceIndex());
+    Assert.assertNull(noPayload.getUserPayload());
+
+    InputReadErrorEvent ire = (InputReadErrorEvent) actual.get(3).getEvent();
+    Assert.assertEquals("diag", ire.getDiagnostics());
+    Assert.assertEquals(4, ire.getIndex());
+    Assert.assertEquals(1, ire.getVersion());
+
+    // Serialize the same events again, reusing the scratch, over a non buffered stream
+    TezHeartbeatResponse response = new TezHeartbeatResponse(events);
+    ByteArrayDataOutput bout = ByteStreams.newDataOutput();
+    response.write(bout);
+    TezHeartbeatResponse actualResponse = new TezHeartbeatResponse();
+    actualResponse.readFields(new DataInputStream(new ByteArrayInputStream(bout.toByteArray())));
+    Assert.assertEquals(events.size(), actualResponse.getEvents().size());
+    Assert.assertEquals(largePayload,
+        ((CompositeDataMovementEvent) actualResponse.getEvents().get(1).getEvent())
+            .getUserPayload());
+    Assert.assertEquals(smallPayload,
+        ((DataMovementEvent) actualResponse.getEvents().get(0).getEvent()).getUserPayload());
+  }
+
   private void serializeEvents(ArrayList<TezEvent> events, DataOutput out) throws IOException {
     out.writeInt(events.size());
     for (TezEvent e : events) {
@@ -145,6 +222,20 @@ public class TestTezEvent {
         Assert.assertEquals(tsuExpected.getProgress(), tsuActual.getProgress(), 0);
         Assert.assertEquals(tsuExpected.getProgressNotified(), tsuActual.getProgressNotified());
         Assert.assertEquals(tsuExpected.getStatistics(), tsuActual.getStatistics());
+        TaskMetricsSeries seriesExpected = tsuExpected.getMetricsSeries();
+        TaskMetricsSeries seriesActual = tsuActual.getMetricsSeries();
+        if (seriesExpected == null) {
+          Assert.assertNull(seriesActual);
+        } else {
+          Assert.assertEquals(seriesExpected.getStartTime(), seriesActual.getStartTime());
+          Assert.assertEquals(seriesExpected.getIntervalMillis(),
+              seriesActual.getIntervalMillis());
+          Assert.assertEquals(seriesExpected.getNumBuckets(), seriesActual.getNumBuckets());
+          for (Metric metric : Metric.values()) {
+            Assert.assertArrayEquals(seriesExpected.getValues(metric),
+                seriesActual.getValues(metric));
+          }
+        }
       }
     }
   }
@@ -18,7 +18,10 @@
 
 package org.apache.tez.runtime.common.objectregistry;
 
+import org.apache.hadoop.conf.Configuration;
+import org.apache.tez.dag.api.TezConfiguration;
 import org.apache.tez.runtime.api.ObjectRegistry;
+import org.apache.tez.runtime.api.ObjectWeigher;
 import org.junit.Assert;
 import org.junit.Test;
 
@@ -68,4 +71,95 @@ public class TestObjectRegistry {
     Assert.assertNotNull(objectRegistry.get(one));
     Assert.assertNull(objectRegistry.get(two));
   }
+
+  public static class LengthWeigher implements ObjectWeigher {
+    @Override
+    public long weigh(String key, Object value) {
+      return value instanceof byte[] ? ((byte[]) value).length : 0;
+    }
+  }
+
+  @Test(timeout = 5000)
+  public void testStats() {
+    ObjectRegistryImpl objectRegistry = new ObjectRegistryImpl();
+    objectRegistry.cacheForVertex("one", "one");
+    Assert.assertNotNull(objectRegistry.get("one"));
+    Assert.assertNotNull(objectRegistry.get("one"));
+    Assert.assertNull(objectRegistry.get("two"));
+    Assert.assertEquals(2, objectRegistry.getHits());
+    Assert.assertEquals(1, objectRegistry.getMisses());
+    Assert.assertEquals(0, objectRegistry.getEvictions());
+    Assert.assertEquals(0, objectRegistry.getCurrentSize());
+  }
+
+  @Test(timeout = 5000)
+  public void testLRUEviction() {
+    ObjectRegistryImpl objectRegistry = new ObjectRegistryImpl(100,
+        ObjectRegistryImpl.EvictionPolicy.LRU, new LengthWeigher());
+    objectRegistry.cacheForSession("session", new byte[40]);
+    objectRegistry.cacheForVertex("v1", new byte[20]);
+    objectRegistry.cacheForVertex("v2", new byte[20]);
+    objectRegistry.cacheForVertex("unweighed", "unweighed");
+    Assert.assertEquals(80, objectRegistry.getCurrentSize());
+    Assert.assertNotNull(objectRegistry.get("v1"));
+
+    // v2 is the least recently used vertex object
+    objectRegistry.cacheForDAG("dag", new byte[40]);
+    Assert.assertEquals(100, objectRegistry.getCurrentSize());
+    Assert.assertNull(objectRegistry.get("v2"));
+    Assert.assertNotNull(objectRegistry.get("v1"));
+    Assert.assertEquals(1, objectRegistry.getEvictions());
+
+    // Vertex objects go before longer life-cycles, even if used more recently
+    objectRegistry.get("session");
+    objectRegistry.get("dag");
+    objectRegistry.cacheForDAG("dag2", new byte[20]);
+    Assert.assertNull(objectRegistry.get("v1"));
+    Assert.assertNotNull(objectRegistry.get("session"));
+    Assert.assertNotNull(objectRegistry.get("dag"));
+    Assert.assertNotNull(objectRegistry.get("unweighed"));
+    Assert.assertEquals(100, objectRegistry.getCurrentSize());
+
+    // Objects larger than the whole budget are not retained
+    objectRegistry.cacheForVertex("large", new byte[101]);
+    Assert.assertNull(objectRegistry.get("large"));
+
+    Assert.assertTrue(objectRegistry.delete("dag2"));
+    Assert.assertEquals(80, objectRegistry.getCurrentSize());
+    objectRegistry.clearCache(ObjectRegistryImpl.ObjectLifeCycle.SESSION);
+    Assert.assertEquals(40, objectRegistry.getCurrentSize());
+  }
+
+  @Test(timeout = 5000)
+  public void testLFUEviction() {
+    ObjectRegistryImpl objectRegistry = new ObjectRegistryImpl(100,
+        ObjectRegistryImpl.EvictionPolicy.LFU, new LengthWeigher());
+    objectRegistry.cacheForDAG("d1", new byte[50]);
+    objectRegistry.cacheForDAG("d2", new byte[50]);
+    objectRegistry.get("d1");
+    objectRegistry.get("d1");
+    objectRegistry.get("d2");
+
+    // d2 is used less frequently, despite being used more recently
+    objectRegistry.cacheForDAG("d3", new byte[1]);
+    Assert.assertNull(objectRegistry.get("d2"));
+    Assert.assertNotNull(objectRegistry.get("d1"));
+    Assert.assertNotNull(objectRegistry.get("d3"));
+    Assert.assertEquals(51, objectRegistry.getCurrentSize());
+  }
+
+  @Test(timeout = 5000)
+  public void testCreateFromConf() throws Exception {
+    Configuration conf = new Configuration(false);
+    conf.setLong(TezConfiguration.TEZ_TASK_OBJECT_REGISTRY_MAX_SIZE_MB, 1);
+    conf.set(TezConfiguration.TEZ_TASK_OBJECT_REGISTRY_EVICTION_POLICY, "lfu");
+    conf.set(TezConfiguration.TEZ_TASK_OBJECT_REGISTRY_WEIGHER_CLASS,
+        LengthWeigher.class.getName());
+    ObjectRegistryImpl objectRegistry = ObjectRegistryImpl.create(conf);
+    objectRegistry.cacheForVertex("one", new byte[1 << 19]);
+    objectRegistry.cacheForVertex("two", new byte[1 << 19]);
+    Assert.assertEquals(1 << 20, objectRegistry.getCurrentSize());
+    objectRegistry.cacheForVertex("three", new byte[1]);
+    Assert.assertEquals(1, objectRegistry.getEvictions());
+  }
 }
@@ -0,0 +1,86 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.tez.runtime.metrics;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+
+import org.apache.hadoop.io.DataInputBuffer;
+import org.apache.hadoop.io.DataOutputBuffer;
+import org.apache.tez.common.counters.TaskCounter;
+import org.apache.tez.common.counters.TezCounters;
+import org.apache.tez.runtime.api.impl.TaskMetricsSeries;
+import org.apache.tez.runtime.api.impl.TaskMetricsSeries.Metric;
+import org.junit.Test;
+
+public class TestTaskMetricsSampler {
+
+  @Test(timeout = 5000)
+  public void testSampling() throws IOException {
+    TaskMetricsSampler sampler = new TaskMetricsSampler(0, 1000, 4);
+    TezCounters counters = new TezCounters();
+    assertFalse(sampler.isSampleDue(999));
+    assertTrue(sampler.isSampleDue(1000));
+
+    counters.findCounter(TaskCounter.SHUFFLE_BYTES).setValue(100);
+    counters.findCounter(TaskCounter.SHUFFLE_MERGE_QUEUE_DEPTH).setValue(3);
+    counters.findCounter(TaskCounter.CPU_MILLISECONDS).setValue(500);
+    sampler.sample(500, counters);
+    counters.findCounter(TaskCounter.SHUFFLE_MERGE_QUEUE_DEPTH).setValue(1);
+    counters.findCounter(TaskCounter.ADDITIONAL_SPILL_COUNT).setValue(1);
+    sampler.sample(900, counters);
+    // A late sample is spread over the buckets since the previous one
+    counters.findCounter(TaskCounter.SHUFFLE_BYTES).setValue(400);
+    counters.findCounter(TaskCounter.NUM_MEM_TO_DISK_MERGES).setValue(1);
+    sampler.sample(3100, counters);
+
+    TaskMetricsSeries series = sampler.getSeries();
+    assertEquals(1000, series.getIntervalMillis());
+    assertEquals(4, series.getNumBuckets());
+    assertArrayEquals(new long[] { 175, 75, 75, 75 }, series.getValues(Metric.FETCH_BYTES));
+    assertArrayEquals(new long[] { 3, 0, 0, 1 }, series.getValues(Metric.MERGE_QUEUE_DEPTH));
+    assertArrayEquals(new long[] { 1, 0, 0, 1 }, series.getValues(Metric.SPILLS));
+    assertArrayEquals(new long[] { 500, 0, 0, 0 }, series.getValues(Metric.CPU_MILLIS));
+
+    // Going past the last bucket merges pairs of buckets
+    counters.findCounter(TaskCounter.SHUFFLE_MERGE_QUEUE_DEPTH).setValue(2);
+    sampler.sample(4500, counters);
+    series = sampler.getSeries();
+    assertEquals(2000, series.getIntervalMillis());
+    assertEquals(3, series.getNumBuckets());
+    assertArrayEquals(new long[] { 250, 150, 0 }, series.getValues(Metric.FETCH_BYTES));
+    assertArrayEquals(new long[] { 3, 1, 2 }, series.getValues(Metric.MERGE_QUEUE_DEPTH));
+
+    DataOutputBuffer out = new DataOutputBuffer();
+    series.write(out);
+    DataInputBuffer in = new DataInputBuffer();
+    in.reset(out.getData(), out.getLength());
+    TaskMetricsSeries deserialized = new TaskMetricsSeries();
+    deserialized.readFields(in);
+    assertEquals(series.getStartTime(), deserialized.getStartTime());
+    assertEquals(series.getIntervalMillis(), deserialized.getIntervalMillis());
+    for (Metric metric : Metric.values()) {
+      assertArrayEquals(series.getValues(metric), deserialized.getValues(metric));
+    }
+  }
+}
@@ -483,6 +483,10 @@ public class TaskExecutionTestHelpers {
       return true;
     }
 
+    @Override
+    public void releaseHeartbeat(String containerIdentifier, long requestId) throws IOException {
+    }
+
     @Override
     public TezHeartbeatResponse heartbeat(TezHeartbeatRequest request) throws IOException,
         TezException {
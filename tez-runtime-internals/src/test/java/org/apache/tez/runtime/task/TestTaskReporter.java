@@ -19,6 +19,9 @@
 package org.apache.tez.runtime.task;
 
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.isA;
@@ -28,9 +31,11 @@ import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import java.util.List;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicLong;
 
@@ -42,6 +47,7 @@ import org.apache.tez.dag.api.TezUncheckedException;
 import org.apache.tez.dag.records.TezTaskAttemptID;
 import org.apache.tez.runtime.LogicalIOProcessorRuntimeTask;
 import org.apache.tez.runtime.api.events.TaskStatusUpdateEvent;
+import org.apache.tez.runtime.api.impl.EventType;
 import org.apache.tez.runtime.api.impl.TaskStatistics;
 import org.apache.tez.runtime.api.impl.TezEvent;
 import org.apache.tez.runtime.api.impl.TezHeartbeatRequest;
@@ -217,6 +223,80 @@ public class TestTaskReporter {
 
   }
 
+  @Test(timeout = 5000)
+  public void testAdaptivePollInterval() {
+    TezTaskAttemptID mockTaskAttemptId = mock(TezTaskAttemptID.class);
+    LogicalIOProcessorRuntimeTask mockTask = mock(LogicalIOProcessorRuntimeTask.class);
+    doReturn("vertexName").when(mockTask).getVertexName();
+    doReturn(mockTaskAttemptId).when(mockTask).getTaskAttemptID();
+    TezTaskUmbilicalProtocol mockUmbilical = mock(TezTaskUmbilicalProtocol.class);
+
+    // Fixed interval
+    TaskReporter.HeartbeatCallable heartbeatCallable =
+        new TaskReporter.HeartbeatCallable(mockTask, mockUmbilical, 100, 100, 5,
+            new AtomicLong(0), "containerIdStr");
+    Assert.assertEquals(100, heartbeatCallable.getNextPollInterval(false));
+    Assert.assertEquals(100, heartbeatCallable.getNextPollInterval(true));
+
+    // Backs off while idle, and tightens as soon as events are exchanged
+    heartbeatCallable =
+        new TaskReporter.HeartbeatCallable(mockTask, mockUmbilical, 100, 20, 350, 100, 5,
+            new AtomicLong(0), "containerIdStr");
+    Assert.assertEquals(200, heartbeatCallable.getNextPollInterval(false));
+    Assert.assertEquals(20, heartbeatCallable.getNextPollInterval(true));
+  }
+
+  @Test(timeout = 5000)
+  public void testHeldHeartbeatReleasedOnCompletion() throws Exception {
+    final CountDownLatch polling = new CountDownLatch(1);
+    final CountDownLatch released = new CountDownLatch(1);
+    TezTaskUmbilicalProtocol mockUmbilical = mock(TezTaskUmbilicalProtocol.class);
+    doAnswer(new Answer() {
+      @Override
+      public Object answer(InvocationOnMock invocation) throws Throwable {
+        TezHeartbeatRequest request = (TezHeartbeatRequest) invocation.getArguments()[0];
+        boolean pollOnly = true;
+        for (TezEvent event : request.getEvents()) {
+          pollOnly &= event.getEventType() == EventType.TASK_STATUS_UPDATE_EVENT;
+        }
+        if (pollOnly) {
+          // Held like an AM long polling, for longer than the test timeout unless released
+          polling.countDown();
+          released.await(60, TimeUnit.SECONDS);
+        }
+        TezHeartbeatResponse response = new TezHeartbeatResponse(createEvents(0));
+        response.setLastRequestId(request.getRequestId());
+        return response;
+      }
+    }).when(mockUmbilical).heartbeat(any(TezHeartbeatRequest.class));
+    doAnswer(new Answer() {
+      @Override
+      public Object answer(InvocationOnMock invocation) throws Throwable {
+        released.countDown();
+        return null;
+      }
+    }).when(mockUmbilical).releaseHeartbeat(anyString(), anyLong());
+
+    TezTaskAttemptID mockTaskAttemptId = mock(TezTaskAttemptID.class);
+    LogicalIOProcessorRuntimeTask mockTask = mock(LogicalIOProcessorRuntimeTask.class);
+    doReturn("vertexName").when(mockTask).getVertexName();
+    doReturn(mockTaskAttemptId).when(mockTask).getTaskAttemptID();
+    doReturn(10000).when(mockTask).getMaxEventsToHandle();
+
+    TaskReporter taskReporter = new TaskReporter(mockUmbilical, 100000, 100000, 100000, true,
+        100000, 5, new AtomicLong(0), "containerIdStr");
+    try {
+      taskReporter.registerTask(mockTask, mock(ErrorReporter.class));
+      polling.await();
+      // Completion goes out right away, instead of after the held heartbeat
+      Assert.assertTrue(taskReporter.taskSucceeded(mockTaskAttemptId));
+      verify(mockUmbilical).releaseHeartbeat(eq("containerIdStr"), eq(1L));
+      verify(mockUmbilical, times(2)).heartbeat(any(TezHeartbeatRequest.class));
+    } finally {
+      taskReporter.shutdown();
+    }
+  }
+
   private List<TezEvent> createEvents(int numEvents) {
     List<TezEvent> list = Lists.newArrayListWithCapacity(numEvents);
     for (int i = 0; i < numEvents; i++) {
@@ -499,6 +499,28 @@ public class TezRuntimeConfiguration {
    */
   public static final boolean TEZ_RUNTIME_OPTIMIZE_SHARED_FETCH_DEFAULT = false;
 
+  /**
+   * Share data fetched into memory by unordered inputs with later tasks running in the same
+   * container. Intended for broadcast edges, where consecutive tasks fetch identical outputs.
+   * Entries are cached for the lifetime of the DAG, and are evicted in LRU order once they are no
+   * longer in use by a task.
+   */
+  @ConfigurationProperty(type = "boolean")
+  public static final String TEZ_RUNTIME_SHUFFLE_FETCH_CACHE_ENABLED = TEZ_RUNTIME_PREFIX
+      + "shuffle.fetch.cache.enabled";
+  public static final boolean TEZ_RUNTIME_SHUFFLE_FETCH_CACHE_ENABLED_DEFAULT = false;
+
+  /**
+   * Fraction of the container's heap which may be used to cache fetched data across tasks, when
+   * {@link #TEZ_RUNTIME_SHUFFLE_FETCH_CACHE_ENABLED} is set. This memory is not accounted for
+   * by the task's memory distribution, and the limit set by the first task of a DAG to use the
+   * cache applies to all later tasks in the container.
+   */
+  @ConfigurationProperty(type = "float")
+  public static final String TEZ_RUNTIME_SHUFFLE_FETCH_CACHE_MEMORY_PERCENT = TEZ_RUNTIME_PREFIX
+      + "shuffle.fetch.cache.memory.percent";
+  public static final float TEZ_RUNTIME_SHUFFLE_FETCH_CACHE_MEMORY_PERCENT_DEFAULT = 0.1f;
+
   /**
    * Used only for internal testing. Strictly not recommended to be used elsewhere. This
    * parameter could be changed/dropped later.
@@ -587,6 +609,8 @@ public class TezRuntimeConfiguration {
     tezRuntimeKeys.add(TEZ_RUNTIME_RECORDS_BEFORE_PROGRESS);
     tezRuntimeKeys.add(TEZ_RUNTIME_OPTIMIZE_LOCAL_FETCH);
     tezRuntimeKeys.add(TEZ_RUNTIME_OPTIMIZE_SHARED_FETCH);
+    tezRuntimeKeys.add(TEZ_RUNTIME_SHUFFLE_FETCH_CACHE_ENABLED);
+    tezRuntimeKeys.add(TEZ_RUNTIME_SHUFFLE_FETCH_CACHE_MEMORY_PERCENT);
     tezRuntimeKeys.add(TEZ_RUNTIME_CONVERT_USER_PAYLOAD_TO_HISTORY_TEXT);
     tezRuntimeKeys.add(TEZ_RUNTIME_SORTER_CLASS);
     tezRuntimeKeys.add(TEZ_RUNTIME_CLEANUP_FILES_ON_INTERRUPT);
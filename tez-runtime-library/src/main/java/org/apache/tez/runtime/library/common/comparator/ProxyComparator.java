@@ -43,4 +43,17 @@ public interface ProxyComparator<KEY> extends RawComparator {
    */
   int getProxy(KEY key);
 
+  /**
+   * A wider proxy than {@link #getProxy(Object)}, normalized from the first 8 bytes of the key,
+   * with the same guarantees.
+   *
+   * getLongProxy(k1) < getLongProxy(k2) implies k1 < k2
+   *
+   * getLongProxy(k1) == getLongProxy(k2) requires actual key comparisons.
+   *
+   * @param key
+   * @return proxy
+   */
+  long getLongProxy(KEY key);
+
 }
@@ -21,6 +21,7 @@ import org.apache.hadoop.classification.InterfaceAudience.Public;
 import org.apache.hadoop.classification.InterfaceStability.Unstable;
 import org.apache.hadoop.io.BytesWritable;
 import org.apache.hadoop.io.WritableComparator;
+import org.apache.tez.runtime.library.utils.BufferUtils;
 
 @Public
 @Unstable
@@ -37,7 +38,7 @@ public final class TezBytesComparator extends WritableComparator implements
   @Override
   public int compare(byte[] b1, int s1, int l1,
       byte[] b2, int s2, int l2) {
-    return compareBytes(b1, s1, l1, b2, s2, l2);
+    return BufferUtils.compare(b1, s1, l1, b2, s2, l2);
   }
 
   @Override
@@ -60,4 +61,17 @@ public final class TezBytesComparator extends WritableComparator implements
     return prefix;
   }
 
+  @Override
+  public long getLongProxy(BytesWritable key) {
+    final int len = Math.min(key.getLength(), 8);
+    final byte[] content = key.getBytes();
+    long prefix = 0;
+    // shorter keys are padded with zeros, which sort before any other byte
+    for (int i = 0; i < 8; i++) {
+      prefix = (prefix << 8) | (i < len ? content[i] & 0xff : 0);
+    }
+    // flip the sign bit, so that signed comparisons of proxies are unsigned comparisons of bytes
+    return prefix ^ Long.MIN_VALUE;
+  }
+
 }
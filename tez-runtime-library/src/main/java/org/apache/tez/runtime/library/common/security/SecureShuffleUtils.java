@@ -20,6 +20,7 @@ package org.apache.tez.runtime.library.common.security;
 
 import java.io.IOException;
 import java.net.URL;
+import java.security.MessageDigest;
 
 import javax.crypto.SecretKey;
 
@@ -27,7 +28,6 @@ import com.google.common.base.Charsets;
 import org.apache.commons.codec.binary.Base64;
 import org.apache.hadoop.classification.InterfaceAudience;
 import org.apache.hadoop.classification.InterfaceStability;
-import org.apache.hadoop.io.WritableComparator;
 import org.apache.tez.common.security.JobTokenSecretManager;
 
 /**
@@ -70,7 +70,8 @@ public class SecureShuffleUtils {
    */
   private static boolean verifyHash(byte[] hash, byte[] msg, SecretKey key) {
     byte[] msg_hash = generateByteHash(msg, key);
-    return WritableComparator.compareBytes(msg_hash, 0, msg_hash.length, hash, 0, hash.length) == 0;
+    // constant time, to not leak how much of a forged hash matches
+    return MessageDigest.isEqual(msg_hash, hash);
   }
 
   /**
@@ -82,7 +83,7 @@ public class SecureShuffleUtils {
    */
   private static boolean verifyHash(byte[] hash, byte[] msg, JobTokenSecretManager mgr) {
     byte[] msg_hash = mgr.computeHash(msg);
-    return WritableComparator.compareBytes(msg_hash, 0, msg_hash.length, hash, 0, hash.length) == 0;
+    return MessageDigest.isEqual(msg_hash, hash);
   }
 
   /**
@@ -30,6 +30,8 @@ import com.google.common.base.Preconditions;
 public class MemoryFetchedInput extends FetchedInput {
 
   private BoundedByteArrayOutputStream byteStream;
+  // Set instead of byteStream for inputs wrapping previously fetched data
+  private byte[] fetchedBytes;
 
   public MemoryFetchedInput(long actualSize, long compressedSize,
       InputAttemptIdentifier inputAttemptIdentifier,
@@ -38,18 +40,31 @@ public class MemoryFetchedInput extends FetchedInput {
     this.byteStream = new BoundedByteArrayOutputStream((int) actualSize);
   }
 
+  /**
+   * Wraps data which has already been fetched, e.g. by an earlier task in the same container.
+   * The bytes are shared, and must not be modified.
+   */
+  protected MemoryFetchedInput(byte[] fetchedBytes, long compressedSize,
+      InputAttemptIdentifier inputAttemptIdentifier,
+      FetchedInputCallback callbackHandler) {
+    super(Type.MEMORY, fetchedBytes.length, compressedSize, inputAttemptIdentifier,
+        callbackHandler);
+    this.fetchedBytes = fetchedBytes;
+  }
+
   @Override
   public OutputStream getOutputStream() {
+    Preconditions.checkState(fetchedBytes == null, "Input has already been fetched");
     return byteStream;
   }
 
   @Override
   public InputStream getInputStream() {
-    return new ByteArrayInputStream(byteStream.getBuffer());
+    return new ByteArrayInputStream(getBytes());
   }
 
   public byte[] getBytes() {
-    return byteStream.getBuffer();
+    return fetchedBytes != null ? fetchedBytes : byteStream.getBuffer();
   }
   
   @Override
@@ -76,6 +91,7 @@ public class MemoryFetchedInput extends FetchedInput {
     if (state == State.COMMITTED) { // ABORTED would have already called cleanup
       state = State.FREED;
       this.byteStream = null;
+      this.fetchedBytes = null;
       notifyFreedResource();
     }
   }
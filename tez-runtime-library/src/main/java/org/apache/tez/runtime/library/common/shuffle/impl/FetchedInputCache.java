@@ -0,0 +1,248 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.tez.runtime.library.common.shuffle.impl;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.hadoop.classification.InterfaceAudience.Private;
+import org.apache.tez.runtime.api.ObjectRegistry;
+import org.apache.tez.runtime.library.common.InputAttemptIdentifier;
+import org.apache.tez.runtime.library.common.shuffle.FetchedInput;
+import org.apache.tez.runtime.library.common.shuffle.FetchedInputCallback;
+import org.apache.tez.runtime.library.common.shuffle.MemoryFetchedInput;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Preconditions;
+
+/**
+ * Container level cache of inputs fetched into memory, keyed by source attempt and partition.
+ * Lets consecutive tasks in a container, which consume the same outputs over a broadcast edge,
+ * reuse data fetched by an earlier task instead of fetching it again.
+ *
+ * The cache is stored in the {@link ObjectRegistry} with a DAG life-cycle, so it is dropped once
+ * the container moves on to another DAG. Entries are reference counted by the
+ * {@link FetchedInput}s handed out to tasks, and only entries which are not in use are evicted,
+ * in LRU order, to stay within the configured size.
+ */
+@Private
+public class FetchedInputCache implements FetchedInputCallback {
+
+  private static final Logger LOG = LoggerFactory.getLogger(FetchedInputCache.class);
+
+  @VisibleForTesting
+  static final String REGISTRY_KEY = FetchedInputCache.class.getName();
+
+  private final long maxSize;
+  private final Map<Key, Entry> entries = new LinkedHashMap<Key, Entry>(16, 0.75f, true);
+  private long currentSize = 0;
+
+  private long hits = 0;
+  private long misses = 0;
+  private long evictions = 0;
+
+  @VisibleForTesting
+  FetchedInputCache(long maxSize) {
+    this.maxSize = maxSize;
+  }
+
+  /**
+   * Returns the cache registered for the running DAG, creating it if this is the first task of
+   * the DAG in the container to use it.
+   */
+  public static FetchedInputCache getOrCreate(ObjectRegistry objectRegistry, long maxSize) {
+    synchronized (FetchedInputCache.class) {
+      Object cache = objectRegistry.get(REGISTRY_KEY);
+      if (cache instanceof FetchedInputCache) {
+        return (FetchedInputCache) cache;
+      }
+      FetchedInputCache newCache = new FetchedInputCache(maxSize);
+      objectRegistry.cacheForDAG(REGISTRY_KEY, newCache);
+      LOG.info("Created container level fetch cache with maxSize=" + maxSize);
+      return newCache;
+    }
+  }
+
+  /**
+   * Returns a committable input backed by the cached data for the given source attempt and
+   * partition, or null if it has not been cached. Attempts are identified by their output
+   * path component, so attempts without one are never cached. The returned input holds a
+   * reference on the cached data until it is freed or aborted.
+   */
+  public synchronized MemoryFetchedInput get(InputAttemptIdentifier srcAttemptIdentifier,
+      int partition) {
+    if (srcAttemptIdentifier.getPathComponent() == null) {
+      return null;
+    }
+    Key key = new Key(srcAttemptIdentifier.getPathComponent(), partition);
+    Entry entry = entries.get(key);
+    if (entry == null) {
+      misses++;
+      return null;
+    }
+    hits++;
+    entry.refCount++;
+    return new CachedFetchedInput(key, entry, srcAttemptIdentifier, this);
+  }
+
+  /**
+   * Caches data fetched for the given source attempt and partition, evicting unused entries if
+   * required. Data which does not fit is not cached.
+   */
+  public synchronized void put(InputAttemptIdentifier srcAttemptIdentifier, int partition,
+      byte[] data, long compressedSize) {
+    if (srcAttemptIdentifier.getPathComponent() == null) {
+      return;
+    }
+    Key key = new Key(srcAttemptIdentifier.getPathComponent(), partition);
+    if (entries.containsKey(key) || !makeRoom(data.length)) {
+      return;
+    }
+    entries.put(key, new Entry(data, compressedSize));
+    currentSize += data.length;
+    if (LOG.isDebugEnabled()) {
+      LOG.debug("Cached fetched input " + srcAttemptIdentifier + ", partition=" + partition
+          + ", size=" + data.length + ", cacheSize=" + currentSize);
+    }
+  }
+
+  private boolean makeRoom(long size) {
+    if (size > maxSize) {
+      return false;
+    }
+    Iterator<Map.Entry<Key, Entry>> iter = entries.entrySet().iterator();
+    while (currentSize + size > maxSize && iter.hasNext()) {
+      Entry entry = iter.next().getValue();
+      if (entry.refCount == 0) {
+        iter.remove();
+        currentSize -= entry.data.length;
+        evictions++;
+      }
+    }
+    return currentSize + size <= maxSize;
+  }
+
+  private synchronized void release(FetchedInput fetchedInput) {
+    CachedFetchedInput cachedInput = (CachedFetchedInput) fetchedInput;
+    Preconditions.checkState(cachedInput.entry.refCount > 0,
+        "Cached input released more than once: " + cachedInput.key);
+    cachedInput.entry.refCount--;
+  }
+
+  @Override
+  public void fetchComplete(FetchedInput fetchedInput) {
+    // Nothing to track, the data is already in memory.
+  }
+
+  @Override
+  public void fetchFailed(FetchedInput fetchedInput) {
+    release(fetchedInput);
+  }
+
+  @Override
+  public void freeResources(FetchedInput fetchedInput) {
+    release(fetchedInput);
+  }
+
+  public synchronized long getCurrentSize() {
+    return currentSize;
+  }
+
+  public synchronized long getHits() {
+    return hits;
+  }
+
+  public synchronized long getMisses() {
+    return misses;
+  }
+
+  public synchronized long getEvictions() {
+    return evictions;
+  }
+
+  @Override
+  public synchronized String toString() {
+    return "FetchedInputCache [maxSize=" + maxSize + ", currentSize=" + currentSize
+        + ", numEntries=" + entries.size() + ", hits=" + hits + ", misses=" + misses
+        + ", evictions=" + evictions + "]";
+  }
+
+  private static final class Key {
+    private final String pathComponent;
+    private final int partition;
+
+    Key(String pathComponent, int partition) {
+      this.pathComponent = pathComponent;
+      this.partition = partition;
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * pathComponent.hashCode() + partition;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (this == obj) {
+        return true;
+      }
+      if (!(obj instanceof Key)) {
+        return false;
+      }
+      Key other = (Key) obj;
+      return partition == other.partition && pathComponent.equals(other.pathComponent);
+    }
+
+    @Override
+    public String toString() {
+      return pathComponent + "/" + partition;
+    }
+  }
+
+  private static final class Entry {
+    private final byte[] data;
+    private final long compressedSize;
+    private int refCount = 0;
+
+    Entry(byte[] data, long compressedSize) {
+      this.data = data;
+      this.compressedSize = compressedSize;
+    }
+  }
+
+  private static final class CachedFetchedInput extends MemoryFetchedInput {
+    private final Key key;
+    private final Entry entry;
+
+    CachedFetchedInput(Key key, Entry entry, InputAttemptIdentifier inputAttemptIdentifier,
+        FetchedInputCache cache) {
+      super(entry.data, entry.compressedSize, inputAttemptIdentifier, cache);
+      this.key = key;
+      this.entry = entry;
+    }
+
+    @Override
+    public String toString() {
+      return "CachedFetchedInput [key=" + key + ", " + super.toString() + "]";
+    }
+  }
+}
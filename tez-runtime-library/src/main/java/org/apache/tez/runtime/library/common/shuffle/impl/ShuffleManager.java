@@ -79,6 +79,7 @@ import org.apache.tez.runtime.library.common.shuffle.FetcherCallback;
 import org.apache.tez.runtime.library.common.shuffle.HostPort;
 import org.apache.tez.runtime.library.common.shuffle.InputHost;
 import org.apache.tez.runtime.library.common.shuffle.InputHost.PartitionToInputs;
+import org.apache.tez.runtime.library.common.shuffle.MemoryFetchedInput;
 import org.apache.tez.runtime.library.common.shuffle.ShuffleUtils;
 
 import com.google.common.base.Objects;
@@ -159,6 +160,12 @@ public class ShuffleManager implements FetcherCallback {
   private final TezCounter bytesShuffledToDiskCounter;
   private final TezCounter bytesShuffledToMemCounter;
   private final TezCounter bytesShuffledDirectDiskCounter;
+  private final TezCounter bytesFromCacheCounter;
+
+  // Container level cache of fetched inputs. null if disabled.
+  private final FetchedInputCache fetchCache;
+  // Partition being fetched for each source attempt, used to cache fetched data.
+  private final Map<InputAttemptIdentifier, Integer> cacheablePartitions;
   
   private volatile Throwable shuffleError;
   private final HttpConnectionParams httpConnectionParams;
@@ -193,6 +200,7 @@ public class ShuffleManager implements FetcherCallback {
     this.bytesShuffledToDiskCounter = inputContext.getCounters().findCounter(TaskCounter.SHUFFLE_BYTES_TO_DISK);
     this.bytesShuffledToMemCounter = inputContext.getCounters().findCounter(TaskCounter.SHUFFLE_BYTES_TO_MEM);
     this.bytesShuffledDirectDiskCounter = inputContext.getCounters().findCounter(TaskCounter.SHUFFLE_BYTES_DISK_DIRECT);
+    this.bytesFromCacheCounter = inputContext.getCounters().findCounter(TaskCounter.SHUFFLE_BYTES_FROM_CACHE);
   
     this.ifileBufferSize = bufferSize;
     this.ifileReadAhead = ifileReadAheadEnabled;
@@ -203,6 +211,21 @@ public class ShuffleManager implements FetcherCallback {
         TezRuntimeConfiguration.TEZ_RUNTIME_OPTIMIZE_LOCAL_FETCH_DEFAULT);
     this.sharedFetchEnabled = conf.getBoolean(TezRuntimeConfiguration.TEZ_RUNTIME_OPTIMIZE_SHARED_FETCH,
         TezRuntimeConfiguration.TEZ_RUNTIME_OPTIMIZE_SHARED_FETCH_DEFAULT);
+    if (conf.getBoolean(TezRuntimeConfiguration.TEZ_RUNTIME_SHUFFLE_FETCH_CACHE_ENABLED,
+        TezRuntimeConfiguration.TEZ_RUNTIME_SHUFFLE_FETCH_CACHE_ENABLED_DEFAULT)) {
+      float cacheMemoryPercent = conf.getFloat(
+          TezRuntimeConfiguration.TEZ_RUNTIME_SHUFFLE_FETCH_CACHE_MEMORY_PERCENT,
+          TezRuntimeConfiguration.TEZ_RUNTIME_SHUFFLE_FETCH_CACHE_MEMORY_PERCENT_DEFAULT);
+      Preconditions.checkArgument(cacheMemoryPercent >= 0.0f && cacheMemoryPercent <= 1.0f,
+          "Invalid value for " + TezRuntimeConfiguration.TEZ_RUNTIME_SHUFFLE_FETCH_CACHE_MEMORY_PERCENT
+              + ": " + cacheMemoryPercent);
+      this.fetchCache = FetchedInputCache.getOrCreate(inputContext.getObjectRegistry(),
+          (long) (Runtime.getRuntime().maxMemory() * cacheMemoryPercent));
+      this.cacheablePartitions = new ConcurrentHashMap<InputAttemptIdentifier, Integer>();
+    } else {
+      this.fetchCache = null;
+      this.cacheablePartitions = null;
+    }
     this.verifyDiskChecksum = conf.getBoolean(
         TezRuntimeConfiguration.TEZ_RUNTIME_SHUFFLE_FETCH_VERIFY_DISK_CHECKSUM,
         TezRuntimeConfiguration.TEZ_RUNTIME_SHUFFLE_FETCH_VERIFY_DISK_CHECKSUM_DEFAULT);
@@ -282,6 +305,7 @@ public class ShuffleManager implements FetcherCallback {
         + ifileReadAhead + ", ifileReadAheadLength=" + ifileReadAheadLength +", "
         + "localDiskFetchEnabled=" + localDiskFetchEnabled + ", "
         + "sharedFetchEnabled=" + sharedFetchEnabled + ", "
+        + "fetchCache=" + fetchCache + ", "
         + httpConnectionParams.toString() + ", maxTaskOutputAtOnce=" + maxTaskOutputAtOnce);
   }
 
@@ -495,6 +519,15 @@ public class ShuffleManager implements FetcherCallback {
       return;
     }
 
+    if (fetchCache != null && !srcAttemptIdentifier.canRetrieveInputInChunks()) {
+      MemoryFetchedInput cachedInput = fetchCache.get(srcAttemptIdentifier, srcPhysicalIndex);
+      if (cachedInput != null) {
+        registerCachedInput(srcAttemptIdentifier, cachedInput);
+        return;
+      }
+      cacheablePartitions.put(srcAttemptIdentifier, srcPhysicalIndex);
+    }
+
     int inputIdentifier = srcAttemptIdentifier.getInputIdentifier();
     if (shuffleInfoEventsMap.get(inputIdentifier) == null) {
       shuffleInfoEventsMap.put(inputIdentifier, new ShuffleEventInfo(srcAttemptIdentifier));
@@ -516,6 +549,44 @@ public class ShuffleManager implements FetcherCallback {
     }
   }
 
+  /**
+   * Completes an input with data fetched by an earlier task in this container.
+   */
+  private void registerCachedInput(InputAttemptIdentifier srcAttemptIdentifier,
+      MemoryFetchedInput cachedInput) {
+    int inputIdentifier = srcAttemptIdentifier.getInputIdentifier();
+    boolean committed = false;
+    if (!completedInputSet.contains(inputIdentifier)) {
+      synchronized (completedInputSet) {
+        if (!completedInputSet.contains(inputIdentifier)) {
+          cachedInput.commit();
+          committed = true;
+          if (LOG.isDebugEnabled()) {
+            LOG.debug(srcNameTrimmed + ": " + "Using cached data for " + srcAttemptIdentifier
+                + ", size=" + cachedInput.getActualSize());
+          }
+          shuffledInputsCounter.increment(1);
+          bytesFromCacheCounter.increment(cachedInput.getActualSize());
+          decompressedDataSizeCounter.increment(cachedInput.getActualSize());
+          registerCompletedInput(cachedInput);
+        }
+      }
+    }
+    if (!committed) {
+      cachedInput.abort();
+      return;
+    }
+    lock.lock();
+    try {
+      lastProgressTime = System.currentTimeMillis();
+      logProgress();
+      // Signal the wakeLoop to check for termination.
+      wakeLoop.signal();
+    } finally {
+      lock.unlock();
+    }
+  }
+
   public void addCompletedInputWithNoData(
       InputAttemptIdentifier srcAttemptIdentifier) {
     int inputIdentifier = srcAttemptIdentifier.getInputIdentifier();
@@ -644,6 +715,7 @@ public class ShuffleManager implements FetcherCallback {
             bytesShuffledDirectDiskCounter.increment(fetchedBytes);
           }
           decompressedDataSizeCounter.increment(decompressedLength);
+          maybeCacheFetchedInput(srcAttemptIdentifier, fetchedInput);
 
           if (!srcAttemptIdentifier.canRetrieveInputInChunks()) {
             registerCompletedInput(fetchedInput);
@@ -675,6 +747,18 @@ public class ShuffleManager implements FetcherCallback {
     // TODO NEWTEZ Maybe inform fetchers, in case they have an alternate attempt of the same task in their queue.
   }
 
+  private void maybeCacheFetchedInput(InputAttemptIdentifier srcAttemptIdentifier,
+      FetchedInput fetchedInput) {
+    if (fetchCache == null) {
+      return;
+    }
+    Integer partition = cacheablePartitions.remove(srcAttemptIdentifier);
+    if (partition != null && fetchedInput.getType() == Type.MEMORY) {
+      fetchCache.put(srcAttemptIdentifier, partition,
+          ((MemoryFetchedInput) fetchedInput).getBytes(), fetchedInput.getCompressedSize());
+    }
+  }
+
   private void registerCompletedInput(FetchedInput fetchedInput) {
     lock.lock();
     try {
@@ -824,6 +908,9 @@ public class ShuffleManager implements FetcherCallback {
       if (this.fetcherExecutor != null && !this.fetcherExecutor.isShutdown()) {
         this.fetcherExecutor.shutdownNow(); // Interrupts all running fetchers.
       }
+      if (fetchCache != null) {
+        LOG.info(srcNameTrimmed + ": " + fetchCache);
+      }
     }
   }
 
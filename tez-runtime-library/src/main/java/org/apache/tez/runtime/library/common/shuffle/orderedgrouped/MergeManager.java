@@ -137,6 +137,9 @@ public class MergeManager implements FetchedInputAllocatorOrderedGrouped {
   private final TezCounter numDiskToDiskMerges;
   private final TezCounter additionalBytesWritten;
   private final TezCounter additionalBytesRead;
+  private final TezCounter mergeQueueDepth;
+  // Depth of this input included in mergeQueueDepth, which is shared by the inputs of the task
+  private int reportedMergeQueueDepth = 0;
   
   private final CompressionCodec codec;
   
@@ -186,6 +189,7 @@ public class MergeManager implements FetchedInputAllocatorOrderedGrouped {
     this.numMemToDiskMerges = inputContext.getCounters().findCounter(TaskCounter.NUM_MEM_TO_DISK_MERGES);
     this.additionalBytesWritten = inputContext.getCounters().findCounter(TaskCounter.ADDITIONAL_SPILLS_BYTES_WRITTEN);
     this.additionalBytesRead = inputContext.getCounters().findCounter(TaskCounter.ADDITIONAL_SPILLS_BYTES_READ);
+    this.mergeQueueDepth = inputContext.getCounters().findCounter(TaskCounter.SHUFFLE_MERGE_QUEUE_DEPTH);
 
     this.cleanup = conf.getBoolean(TezRuntimeConfiguration.TEZ_RUNTIME_CLEANUP_FILES_ON_INTERRUPT,
         TezRuntimeConfiguration.TEZ_RUNTIME_CLEANUP_FILES_ON_INTERRUPT_DEFAULT);
@@ -488,6 +492,7 @@ public class MergeManager implements FetchedInputAllocatorOrderedGrouped {
         }
       }
     }
+    updateMergeQueueDepth();
   }
 
   private void startMemToDiskMerge() {
@@ -501,6 +506,15 @@ public class MergeManager implements FetchedInputAllocatorOrderedGrouped {
         inMemoryMerger.startMerge(inMemoryMapOutputs);
       }
     }
+    updateMergeQueueDepth();
+  }
+
+  // Invoked whenever the in-memory outputs waiting to be merged change. Adds the change of the
+  // depth of this input, so that the counter is the sum over the inputs of the task.
+  private synchronized void updateMergeQueueDepth() {
+    int depth = inMemoryMapOutputs.size() + inMemoryMergedMapOutputs.size();
+    mergeQueueDepth.increment(depth - reportedMergeQueueDepth);
+    reportedMergeQueueDepth = depth;
   }
   
   public synchronized void closeInMemoryMergedFile(MapOutput mapOutput) {
@@ -514,6 +528,7 @@ public class MergeManager implements FetchedInputAllocatorOrderedGrouped {
     if (commitMemory >= mergeThreshold) {
       startMemToDiskMerge();
     }
+    updateMergeQueueDepth();
   }
 
   @Override
@@ -573,6 +588,7 @@ public class MergeManager implements FetchedInputAllocatorOrderedGrouped {
       inMemoryMergedMapOutputs.clear();
       memory.addAll(inMemoryMapOutputs);
       inMemoryMapOutputs.clear();
+      updateMergeQueueDepth();
       List<FileChunk> disk = new ArrayList<FileChunk>(onDiskMapOutputs);
       onDiskMapOutputs.clear();
 
@@ -696,8 +712,10 @@ public class MergeManager implements FetchedInputAllocatorOrderedGrouped {
           if (lastAddedMapOutput != null) {
             inMemoryMapOutputs.add(lastAddedMapOutput);
           }
+          updateMergeQueueDepth();
           return;
         }
+        updateMergeQueueDepth();
 
         mergedMapOutputs = unconditionalReserve(dummyMapId, mergeOutputSize, false);
       }
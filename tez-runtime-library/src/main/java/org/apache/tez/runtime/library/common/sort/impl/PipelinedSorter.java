@@ -82,8 +82,10 @@ public class PipelinedSorter extends ExternalSorter {
   private static final int KEYSTART = 1;         // key offset in acct
   private static final int VALSTART = 2;         // val offset in acct
   private static final int VALLEN = 3;           // val len in acct
-  private static final int NMETA = 4;            // num meta ints
-  private static final int METASIZE = NMETA * 4; // size in bytes
+  private static final int PROXYHI = 4;          // high int of the key proxy in acct
+  private static final int PROXYLO = 5;          // low int of the key proxy in acct
+  private final int numMeta;                     // num meta ints
+  private final int metaSize;                    // size in bytes
 
   private final int minSpillsForCombine;
   private final ProxyComparator hasher;
@@ -164,10 +166,14 @@ public class PipelinedSorter extends ExternalSorter {
     if(comparator instanceof ProxyComparator) {
       hasher = (ProxyComparator)comparator;
       initialSetupLogLine.append(true);
+      // room for the 8 byte proxy of the key
+      numMeta = 6;
     } else {
       hasher = null;
       initialSetupLogLine.append(false);
+      numMeta = 4;
     }
+    metaSize = numMeta * 4;
 
     LOG.info(initialSetupLogLine.toString());
 
@@ -176,7 +182,7 @@ public class PipelinedSorter extends ExternalSorter {
     int numBlocks = 0;
     while(availableMem > 0) {
       long size = Math.min(availableMem, computeBlockSize(availableMem, maxMemLimit));
-      int sizeWithoutMeta = (int) ((size) - (size % METASIZE));
+      int sizeWithoutMeta = (int) ((size) - (size % metaSize));
       totalCapacityWithoutMeta += sizeWithoutMeta;
       availableMem -= size;
       numBlocks++;
@@ -234,7 +240,7 @@ public class PipelinedSorter extends ExternalSorter {
 
     int size = computeBlockSize(currentAllocatableMemory, availableMemoryMb << 20);
     currentAllocatableMemory -= size;
-    int sizeWithoutMeta = (size) - (size % METASIZE);
+    int sizeWithoutMeta = (size) - (size % metaSize);
     ByteBuffer space = ByteBuffer.allocate(sizeWithoutMeta);
 
     buffers.add(space);
@@ -322,7 +328,7 @@ public class PipelinedSorter extends ExternalSorter {
       if(span.length() != 0) {
         items = span.length();
         perItem = span.kvbuffer.limit()/items;
-        items = (int) ((span.capacity)/(METASIZE+perItem));
+        items = (int) ((span.capacity)/(metaSize+perItem));
         if(items > 1024*1024) {
             // our goal is to have 1M splits and sort early
             items = 1024*1024;
@@ -385,7 +391,7 @@ public class PipelinedSorter extends ExternalSorter {
           partition + ")");
     }
     // TBD:FIX in TEZ-2574
-    if (span.kvmeta.remaining() < METASIZE) {
+    if (span.kvmeta.remaining() < metaSize) {
       this.sort();
       if (span.length() == 0) {
         spillSingleRecord(key, value, partition);
@@ -421,18 +427,24 @@ public class PipelinedSorter extends ExternalSorter {
     }
 
     int prefix = 0;
+    long longProxy = 0;
 
     if(hasher != null) {
       prefix = hasher.getProxy(key);
+      longProxy = hasher.getLongProxy(key);
     }
 
     prefix = (partition << (32 - partitionBits)) | (prefix >>> partitionBits);
 
-    /* maintain order as in PARTITION, KEYSTART, VALSTART, VALLEN */
+    /* maintain order as in PARTITION, KEYSTART, VALSTART, VALLEN, PROXYHI, PROXYLO */
     span.kvmeta.put(prefix);
     span.kvmeta.put(keystart);
     span.kvmeta.put(valstart);
     span.kvmeta.put(valend - valstart);
+    if (hasher != null) {
+      span.kvmeta.put((int) (longProxy >>> 32));
+      span.kvmeta.put((int) longProxy);
+    }
     mapOutputRecordCounter.increment(1);
     outputContext.notifyProgress();
     mapOutputByteCounter.increment(valend - keystart);
@@ -865,7 +877,7 @@ public class PipelinedSorter extends ExternalSorter {
     final ByteBuffer kvbuffer;
     final DataOutputStream out;
     final RawComparator comparator;
-    final byte[] imeta = new byte[METASIZE];
+    final byte[] imeta = new byte[metaSize];
 
     private int index = 0;
     private long eq = 0;
@@ -875,11 +887,11 @@ public class PipelinedSorter extends ExternalSorter {
 
     public SortSpan(ByteBuffer source, int maxItems, int perItem, RawComparator comparator) {
       capacity = source.remaining();
-      int metasize = METASIZE*maxItems;
+      int metasize = metaSize*maxItems;
       int dataSize = maxItems * perItem;
       if(capacity < (metasize+dataSize)) {
         // try to allocate less meta space, because we have sample data
-        metasize = METASIZE*(capacity/(perItem+METASIZE));
+        metasize = metaSize*(capacity/(perItem+metaSize));
       }
       ByteBuffer reserved = source.duplicate();
       reserved.mark();
@@ -911,7 +923,7 @@ public class PipelinedSorter extends ExternalSorter {
     }
 
     int offsetFor(int i) {
-      return (i * NMETA);
+      return (i * numMeta);
     }
 
     public void swap(final int mi, final int mj) {
@@ -920,9 +932,9 @@ public class PipelinedSorter extends ExternalSorter {
 
       final int kvioff = kvmetabase + (kvi << 2);
       final int kvjoff = kvmetabase + (kvj << 2);
-      System.arraycopy(rawkvmeta, kvioff, imeta, 0, METASIZE);
-      System.arraycopy(rawkvmeta, kvjoff, rawkvmeta, kvioff, METASIZE);
-      System.arraycopy(imeta, 0, rawkvmeta, kvjoff, METASIZE);
+      System.arraycopy(rawkvmeta, kvioff, imeta, 0, metaSize);
+      System.arraycopy(rawkvmeta, kvjoff, rawkvmeta, kvioff, metaSize);
+      System.arraycopy(imeta, 0, rawkvmeta, kvjoff, metaSize);
     }
 
     protected int compareKeys(final int kvi, final int kvj) {
@@ -957,6 +969,16 @@ public class PipelinedSorter extends ExternalSorter {
       if (kvip != kvjp) {
         return kvip - kvjp;
       }
+      if (hasher != null) {
+        // the proxies order the keys they differ on, without reading the keys
+        final long kvix = ((long) kvmeta.get(kvi + PROXYHI) << 32)
+            | (kvmeta.get(kvi + PROXYLO) & 0xFFFFFFFFL);
+        final long kvjx = ((long) kvmeta.get(kvj + PROXYHI) << 32)
+            | (kvmeta.get(kvj + PROXYLO) & 0xFFFFFFFFL);
+        if (kvix != kvjx) {
+          return kvix < kvjx ? -1 : 1;
+        }
+      }
       return compareKeys(kvi, kvj);
     }
 
@@ -982,7 +1004,7 @@ public class PipelinedSorter extends ExternalSorter {
     }
 
     public int length() {
-      return kvmeta.limit()/NMETA;
+      return kvmeta.limit()/numMeta;
     }
 
     public ByteBuffer end() {
@@ -997,7 +1019,7 @@ public class PipelinedSorter extends ExternalSorter {
       }
       int perItem = kvbuffer.position()/items;
       LOG.info(outputContext.getDestinationVertexName() + ": " + String.format("Span%d.length = %d, perItem = %d", index, length(), perItem));
-      if(remaining.remaining() < METASIZE+perItem) {
+      if(remaining.remaining() < metaSize+perItem) {
         //Check if we can get the next Buffer from the main buffer list
         ByteBuffer space = allocateSpace();
         if (space != null) {
@@ -1038,7 +1060,7 @@ public class PipelinedSorter extends ExternalSorter {
     
     @Override
     public String toString() {
-        return String.format("Span[%d,%d]", NMETA*kvmeta.capacity(), kvbuffer.limit());
+        return String.format("Span[%d,%d]", numMeta*kvmeta.capacity(), kvbuffer.limit());
     }
   }
 
@@ -1058,7 +1080,7 @@ public class PipelinedSorter extends ExternalSorter {
       this.kvmeta = span.kvmeta;
       this.kvbuffer = span.kvbuffer;
       this.span = span;
-      this.maxindex = (kvmeta.limit()/NMETA) - 1;
+      this.maxindex = span.length() - 1;
     }
 
     public DataInputBuffer getKey()  {
@@ -0,0 +1,160 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.tez.runtime.library.join;
+
+import java.io.IOException;
+import java.util.List;
+
+import org.apache.hadoop.classification.InterfaceAudience.Public;
+import org.apache.hadoop.classification.InterfaceStability.Evolving;
+import org.apache.hadoop.io.DataInputBuffer;
+import org.apache.hadoop.io.DataOutputBuffer;
+import org.apache.hadoop.io.Writable;
+import org.apache.tez.runtime.api.LogicalInput;
+import org.apache.tez.runtime.api.ObjectRegistry;
+import org.apache.tez.runtime.api.Reader;
+import org.apache.tez.runtime.library.api.KeyValueReader;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * Inner join of a broadcast input, held in memory, with another input. The hash table of the
+ * broadcast input is built once per container and cached in the {@link ObjectRegistry} for the
+ * life of the vertex, so later tasks of the vertex running in the same container skip reading
+ * the broadcast input. The probe side is streamed, so skew on the probe side costs no memory.
+ * Every row of the broadcast input is held in memory, so it must fit in memory however skewed it
+ * is; {@link PartitionedHashJoin} spills a build side which does not.</p>
+ * Keys are compared in serialized form, so both inputs must have keys of the same Writable class.
+ * The values of the broadcast input must be of a single Writable class. Each pair of matching
+ * rows is written to the {@link JoinWriter}, with the broadcast input as the left input.
+ */
+@Public
+@Evolving
+public class BroadcastHashJoin {
+
+  private static final Logger LOG = LoggerFactory.getLogger(BroadcastHashJoin.class);
+
+  private static final String REGISTRY_KEY_PREFIX = "BroadcastHashJoin:";
+
+  private final BuildSide buildSide;
+  private final boolean reused;
+  private final DataOutputBuffer keyBuffer = new DataOutputBuffer();
+  private final DataInputBuffer valueInput = new DataInputBuffer();
+
+  private BroadcastHashJoin(BuildSide buildSide, boolean reused) {
+    this.buildSide = buildSide;
+    this.reused = reused;
+  }
+
+  /**
+   * Returns a join with the hash table cached for the build input, building the table from the
+   * input if this is the first task of the vertex in the container to use it.
+   *
+   * @param objectRegistry registry of the task, see
+   *          {@link org.apache.tez.runtime.api.TaskContext#getObjectRegistry()}
+   * @param buildInputName name of the build input, which identifies the table within the vertex
+   * @param buildInput the build input, only read if the table is not cached
+   */
+  public static BroadcastHashJoin create(ObjectRegistry objectRegistry, String buildInputName,
+      LogicalInput buildInput) throws Exception {
+    String registryKey = REGISTRY_KEY_PREFIX + buildInputName;
+    // Tasks running concurrently in a container wait for the first one to build the table
+    synchronized (BroadcastHashJoin.class) {
+      Object cached = objectRegistry.get(registryKey);
+      if (cached instanceof BuildSide) {
+        LOG.info("Reusing cached hash table for " + buildInputName);
+        return new BroadcastHashJoin((BuildSide) cached, true);
+      }
+      Reader reader = buildInput.getReader();
+      Preconditions.checkState(reader instanceof KeyValueReader,
+          "Expected a KeyValueReader for " + buildInputName + ", found: " + reader.getClass());
+      BuildSide buildSide = build((KeyValueReader) reader);
+      objectRegistry.cacheForVertex(registryKey, buildSide);
+      LOG.info("Built hash table for " + buildInputName + " with " + buildSide.table.size()
+          + " keys, rows=" + buildSide.table.getNumRows()
+          + ", memoryUsed=" + buildSide.table.getMemoryUsed());
+      return new BroadcastHashJoin(buildSide, false);
+    }
+  }
+
+  static BuildSide build(KeyValueReader buildReader) throws IOException {
+    JoinHashTable table = new JoinHashTable();
+    Class<?> valueClass = null;
+    DataOutputBuffer keyBuffer = new DataOutputBuffer();
+    DataOutputBuffer valueBuffer = new DataOutputBuffer();
+    while (buildReader.next()) {
+      JoinUtils.serialize(buildReader.getCurrentKey(), keyBuffer);
+      Object value = buildReader.getCurrentValue();
+      JoinUtils.serialize(value, valueBuffer);
+      if (valueClass == null) {
+        valueClass = value.getClass();
+      }
+      table.add(keyBuffer.getData(), 0, keyBuffer.getLength(), valueBuffer.getData(), 0,
+          valueBuffer.getLength());
+    }
+    return new BuildSide(table, valueClass);
+  }
+
+  /**
+   * @return true if the hash table was built by an earlier task in the container
+   */
+  public boolean isReused() {
+    return reused;
+  }
+
+  /**
+   * Joins the rows of the probe input with the hash table, writing the matches to the writer.
+   *
+   * @return the number of matches written
+   */
+  public long join(KeyValueReader probeReader, JoinWriter writer) throws IOException {
+    long numMatches = 0;
+    // Each task reads the shared table into its own value
+    Writable buildValue = null;
+    while (probeReader.next()) {
+      Object key = probeReader.getCurrentKey();
+      JoinUtils.serialize(key, keyBuffer);
+      List<byte[]> buildValues =
+          buildSide.table.get(keyBuffer.getData(), 0, keyBuffer.getLength());
+      if (buildValues != null) {
+        if (buildValue == null) {
+          buildValue = JoinUtils.newWritable(buildSide.valueClass, null);
+        }
+        numMatches += JoinUtils.writeMatches(writer, key, buildValues, buildValue, valueInput,
+            probeReader.getCurrentValue());
+      }
+    }
+    return numMatches;
+  }
+
+  /**
+   * The hash table of a build input, with the class of its values, as cached in the registry.
+   */
+  static final class BuildSide {
+    private final JoinHashTable table;
+    private final Class<?> valueClass;
+
+    private BuildSide(JoinHashTable table, Class<?> valueClass) {
+      this.table = table;
+      this.valueClass = valueClass;
+    }
+  }
+}
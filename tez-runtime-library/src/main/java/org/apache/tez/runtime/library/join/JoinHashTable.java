@@ -0,0 +1,134 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.tez.runtime.library.join;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.hadoop.io.WritableComparator;
+
+/**
+ * Hash table of the build side of a join, which holds the serialized value of every row under
+ * its serialized key. Every row costs memory, so a key repeated on the build side costs memory
+ * in proportion to its number of rows.</p>
+ * The table may be read concurrently once it is built, e.g. when it is shared by the tasks
+ * running in a container, but must not be modified concurrently.
+ */
+final class JoinHashTable {
+
+  // Rough heap usage of a map entry, its key wrapper and list of values, on top of the key bytes
+  static final int ENTRY_OVERHEAD = 96;
+  // Rough heap usage of a value array and its reference in the list, on top of the value bytes
+  static final int ROW_OVERHEAD = 24;
+
+  private final Map<Key, List<byte[]>> rows = new HashMap<Key, List<byte[]>>();
+  private long numRows = 0;
+  private long memoryUsed = 0;
+
+  /**
+   * Adds a row, copying its key if the key is new, and its value.
+   */
+  void add(byte[] keyBytes, int keyOffset, int keyLength, byte[] valueBytes, int valueOffset,
+      int valueLength) {
+    Key key = new Key(keyBytes, keyOffset, keyLength);
+    List<byte[]> values = rows.get(key);
+    if (values == null) {
+      key = new Key(Arrays.copyOfRange(keyBytes, keyOffset, keyOffset + keyLength), 0, keyLength);
+      values = new ArrayList<byte[]>(1);
+      rows.put(key, values);
+      memoryUsed += keyLength + ENTRY_OVERHEAD;
+    }
+    values.add(Arrays.copyOfRange(valueBytes, valueOffset, valueOffset + valueLength));
+    memoryUsed += valueLength + ROW_OVERHEAD;
+    numRows++;
+  }
+
+  /**
+   * @return the serialized values of the rows of the key, null if it is absent
+   */
+  List<byte[]> get(byte[] bytes, int offset, int length) {
+    return rows.get(new Key(bytes, offset, length));
+  }
+
+  /**
+   * @return the number of distinct keys
+   */
+  int size() {
+    return rows.size();
+  }
+
+  /**
+   * @return the number of rows
+   */
+  long getNumRows() {
+    return numRows;
+  }
+
+  /**
+   * @return the estimated heap usage of the table, in bytes
+   */
+  long getMemoryUsed() {
+    return memoryUsed;
+  }
+
+  /**
+   * Writes the rows to a spill file.
+   */
+  void writeTo(JoinSpillFile.Writer writer) throws IOException {
+    for (Map.Entry<Key, List<byte[]>> entry : rows.entrySet()) {
+      Key key = entry.getKey();
+      for (byte[] value : entry.getValue()) {
+        writer.write(key.bytes, key.offset, key.length, value, 0, value.length);
+      }
+    }
+  }
+
+  private static final class Key {
+    private final byte[] bytes;
+    private final int offset;
+    private final int length;
+    private final int hash;
+
+    Key(byte[] bytes, int offset, int length) {
+      this.bytes = bytes;
+      this.offset = offset;
+      this.length = length;
+      this.hash = WritableComparator.hashBytes(bytes, offset, length);
+    }
+
+    @Override
+    public int hashCode() {
+      return hash;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (!(obj instanceof Key)) {
+        return false;
+      }
+      Key other = (Key) obj;
+      return hash == other.hash && WritableComparator.compareBytes(bytes, offset, length,
+          other.bytes, other.offset, other.length) == 0;
+    }
+  }
+}
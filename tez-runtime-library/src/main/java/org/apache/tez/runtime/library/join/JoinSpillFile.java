@@ -0,0 +1,140 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.tez.runtime.library.join;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import org.apache.hadoop.io.WritableUtils;
+
+/**
+ * Local file holding serialized join rows, as a key and a value each, written by
+ * {@link PartitionedHashJoin} for the partitions which do not fit in memory, and by
+ * {@link SortMergeJoin} for the key groups which do not fit in memory.
+ */
+final class JoinSpillFile {
+
+  private static final int BUFFER_SIZE = 64 * 1024;
+  private static final int EOF_MARKER = -1;
+
+  private final File file;
+
+  JoinSpillFile(File dir, String prefix) throws IOException {
+    this.file = File.createTempFile(prefix, ".spill", dir);
+  }
+
+  File getFile() {
+    return file;
+  }
+
+  Writer openWriter() throws IOException {
+    return new Writer(new DataOutputStream(
+        new BufferedOutputStream(new FileOutputStream(file), BUFFER_SIZE)));
+  }
+
+  Reader openReader() throws IOException {
+    return new Reader(new DataInputStream(
+        new BufferedInputStream(new FileInputStream(file), BUFFER_SIZE)));
+  }
+
+  void delete() {
+    if (!file.delete() && file.exists()) {
+      file.deleteOnExit();
+    }
+  }
+
+  static final class Writer implements Closeable {
+    private final DataOutputStream out;
+
+    private Writer(DataOutputStream out) {
+      this.out = out;
+    }
+
+    void write(byte[] keyBytes, int keyOffset, int keyLength, byte[] valueBytes,
+        int valueOffset, int valueLength) throws IOException {
+      WritableUtils.writeVInt(out, keyLength);
+      out.write(keyBytes, keyOffset, keyLength);
+      WritableUtils.writeVInt(out, valueLength);
+      out.write(valueBytes, valueOffset, valueLength);
+    }
+
+    @Override
+    public void close() throws IOException {
+      WritableUtils.writeVInt(out, EOF_MARKER);
+      out.close();
+    }
+  }
+
+  static final class Reader implements Closeable {
+    private final DataInputStream in;
+    private byte[] keyBytes = new byte[64];
+    private int keyLength;
+    private byte[] valueBytes = new byte[64];
+    private int valueLength;
+
+    private Reader(DataInputStream in) {
+      this.in = in;
+    }
+
+    boolean next() throws IOException {
+      keyLength = WritableUtils.readVInt(in);
+      if (keyLength == EOF_MARKER) {
+        return false;
+      }
+      keyBytes = ensureCapacity(keyBytes, keyLength);
+      in.readFully(keyBytes, 0, keyLength);
+      valueLength = WritableUtils.readVInt(in);
+      valueBytes = ensureCapacity(valueBytes, valueLength);
+      in.readFully(valueBytes, 0, valueLength);
+      return true;
+    }
+
+    byte[] getKeyBytes() {
+      return keyBytes;
+    }
+
+    int getKeyLength() {
+      return keyLength;
+    }
+
+    byte[] getValueBytes() {
+      return valueBytes;
+    }
+
+    int getValueLength() {
+      return valueLength;
+    }
+
+    private static byte[] ensureCapacity(byte[] bytes, int length) {
+      return bytes.length < length ? new byte[Math.max(length, bytes.length * 2)] : bytes;
+    }
+
+    @Override
+    public void close() throws IOException {
+      in.close();
+    }
+  }
+}
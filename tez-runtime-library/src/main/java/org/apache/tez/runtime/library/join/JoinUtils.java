@@ -0,0 +1,86 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.tez.runtime.library.join;
+
+import java.io.IOException;
+import java.util.List;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.io.DataInputBuffer;
+import org.apache.hadoop.io.DataOutputBuffer;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.util.ReflectionUtils;
+
+import com.google.common.base.Preconditions;
+
+final class JoinUtils {
+
+  private JoinUtils() {
+  }
+
+  /**
+   * Serializes a key or value into the buffer, which is reset first.
+   */
+  static void serialize(Object obj, DataOutputBuffer buffer) throws IOException {
+    Preconditions.checkArgument(obj instanceof Writable,
+        "Join keys and values must be Writable, found: " + (obj == null ? null : obj.getClass()));
+    buffer.reset();
+    ((Writable) obj).write(buffer);
+  }
+
+  /**
+   * Creates an instance of a key or value class, into which serialized keys or values are read.
+   */
+  static Writable newWritable(Class<?> writableClass, Configuration conf) {
+    if (writableClass == NullWritable.class) {
+      return NullWritable.get();
+    }
+    return (Writable) ReflectionUtils.newInstance(writableClass, conf);
+  }
+
+  /**
+   * Picks the partition of a key hash. Each level of repartitioning uses a different mix of the
+   * hash, so that keys which shared a partition at one level are spread at the next.
+   */
+  static int getPartition(int hash, int level, int numPartitions) {
+    int h = hash + level * 0x9E3779B9;
+    h ^= h >>> 16;
+    h *= 0x85EBCA6B;
+    h ^= h >>> 13;
+    return (h & Integer.MAX_VALUE) % numPartitions;
+  }
+
+  /**
+   * Writes a match of a right row with each of the serialized left values of its key.
+   *
+   * @param leftValue instance into which each left value is read
+   * @param input buffer used to read the left values
+   * @return the number of matches written
+   */
+  static long writeMatches(JoinWriter writer, Object key, List<byte[]> leftValues,
+      Writable leftValue, DataInputBuffer input, Object rightValue) throws IOException {
+    for (byte[] bytes : leftValues) {
+      input.reset(bytes, bytes.length);
+      leftValue.readFields(input);
+      writer.write(key, leftValue, rightValue);
+    }
+    return leftValues.size();
+  }
+}
@@ -0,0 +1,47 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.tez.runtime.library.join;
+
+import java.io.IOException;
+
+import org.apache.hadoop.classification.InterfaceAudience.Public;
+import org.apache.hadoop.classification.InterfaceStability.Evolving;
+
+/**
+ * Receives the matches of a join, one call per pair of matching rows. The key and values may be
+ * reused by the join once the call returns, so implementations which keep them must copy them.
+ */
+@Public
+@Evolving
+public abstract class JoinWriter {
+
+  /**
+   * Writes a match.
+   *
+   * @param key
+   *          the join key
+   * @param leftValue
+   *          the value of the row of the left input, i.e. the build side of a hash join
+   * @param rightValue
+   *          the value of the row of the right input, i.e. the probe side of a hash join
+   * @throws IOException
+   *           if an error occurs
+   */
+  public abstract void write(Object key, Object leftValue, Object rightValue) throws IOException;
+}
@@ -0,0 +1,367 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.tez.runtime.library.join;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.hadoop.classification.InterfaceAudience.Public;
+import org.apache.hadoop.classification.InterfaceStability.Evolving;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.io.DataInputBuffer;
+import org.apache.hadoop.io.DataOutputBuffer;
+import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.io.WritableComparator;
+import org.apache.tez.runtime.library.api.KeyValueReader;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * Inner join of two inputs, which hashes the rows of the build side into partitions held in
+ * memory up to a memory limit. Once the limit is exceeded, the largest partitions are spilled to
+ * local disk, along with the probe side rows which fall into them, and are joined once the probe
+ * side has been read. Spilled partitions which still do not fit are split again with a different
+ * hash, up to {@link #MAX_LEVELS} times. Partitions which do not fit after that, e.g. as they hold
+ * the rows of a hot key, are joined in chunks of their build side which fit in memory, reading
+ * their probe side once per chunk.</p>
+ * Keys are compared in serialized form, so both inputs must have keys of the same Writable class.
+ * The values of each input must be of a single Writable class. Each pair of matching rows is
+ * written to the {@link JoinWriter}, with the build side as the left input.
+ */
+@Public
+@Evolving
+public class PartitionedHashJoin {
+
+  private static final Logger LOG = LoggerFactory.getLogger(PartitionedHashJoin.class);
+
+  // Partitions which still do not fit after this many splits are joined in chunks
+  static final int MAX_LEVELS = 3;
+
+  private final long memoryLimit;
+  private final int numPartitions;
+  private final File spillDir;
+  private final Configuration conf;
+
+  private final DataOutputBuffer keyBuffer = new DataOutputBuffer();
+  private final DataOutputBuffer valueBuffer = new DataOutputBuffer();
+  private final DataInputBuffer keyInput = new DataInputBuffer();
+  private final DataInputBuffer valueInput = new DataInputBuffer();
+  private final List<JoinSpillFile> spillFiles = new ArrayList<JoinSpillFile>();
+  private int numSpilledPartitions = 0;
+  private int numChunkedPartitions = 0;
+
+  // Classes of the rows read back from disk, for the current join
+  private Class<?> keyClass;
+  private Class<?> buildValueClass;
+  private Class<?> probeValueClass;
+
+  /**
+   * @param memoryLimit estimated heap usage, in bytes, up to which the build side is held in
+   *          memory
+   * @param numPartitions number of partitions the build side is hashed into
+   * @param spillDir local directory for the partitions spilled to disk
+   * @param conf used to create the keys and values read back from disk
+   */
+  public PartitionedHashJoin(long memoryLimit, int numPartitions, File spillDir,
+      Configuration conf) {
+    Preconditions.checkArgument(memoryLimit > 0, "memoryLimit must be positive");
+    Preconditions.checkArgument(numPartitions > 1, "numPartitions must be more than 1");
+    this.memoryLimit = memoryLimit;
+    this.numPartitions = numPartitions;
+    this.spillDir = spillDir;
+    this.conf = conf;
+  }
+
+  /**
+   * Joins the rows of both inputs, writing the matches to the writer.
+   *
+   * @return the number of matches written
+   */
+  public long join(KeyValueReader buildReader, KeyValueReader probeReader, JoinWriter writer)
+      throws IOException {
+    JoinSpillFile[] buildSpills = new JoinSpillFile[numPartitions];
+    JoinSpillFile[] probeSpills = new JoinSpillFile[numPartitions];
+    JoinSpillFile.Writer[] spillWriters = new JoinSpillFile.Writer[numPartitions];
+    keyClass = null;
+    buildValueClass = null;
+    probeValueClass = null;
+    long numMatches = 0;
+    try {
+      JoinHashTable[] tables = build(buildReader, buildSpills, spillWriters);
+      closeAll(spillWriters);
+
+      Writable buildValue = null;
+      while (probeReader.next()) {
+        Object key = probeReader.getCurrentKey();
+        JoinUtils.serialize(key, keyBuffer);
+        byte[] bytes = keyBuffer.getData();
+        int length = keyBuffer.getLength();
+        int partition = JoinUtils.getPartition(WritableComparator.hashBytes(bytes, length), 0,
+            numPartitions);
+        if (tables[partition] != null) {
+          List<byte[]> buildValues = tables[partition].get(bytes, 0, length);
+          if (buildValues != null) {
+            if (buildValue == null) {
+              buildValue = JoinUtils.newWritable(buildValueClass, conf);
+            }
+            numMatches += JoinUtils.writeMatches(writer, key, buildValues, buildValue,
+                valueInput, probeReader.getCurrentValue());
+          }
+        } else {
+          Object value = probeReader.getCurrentValue();
+          JoinUtils.serialize(value, valueBuffer);
+          if (spillWriters[partition] == null) {
+            probeSpills[partition] = createSpillFile("probe_" + partition + "_");
+            spillWriters[partition] = probeSpills[partition].openWriter();
+          }
+          spillWriters[partition].write(bytes, 0, length, valueBuffer.getData(), 0,
+              valueBuffer.getLength());
+          keyClass = key.getClass();
+          probeValueClass = value.getClass();
+        }
+      }
+      closeAll(spillWriters);
+      tables = null;
+
+      for (int i = 0; i < numPartitions; ++i) {
+        if (buildSpills[i] != null && probeSpills[i] != null) {
+          numMatches += joinSpilled(buildSpills[i], probeSpills[i], 1, writer);
+        }
+      }
+    } finally {
+      closeQuietly(spillWriters);
+      for (JoinSpillFile spillFile : spillFiles) {
+        spillFile.delete();
+      }
+      spillFiles.clear();
+    }
+    LOG.info("Joined with " + numMatches + " matches, spilledPartitions="
+        + numSpilledPartitions + ", chunkedPartitions=" + numChunkedPartitions);
+    return numMatches;
+  }
+
+  /**
+   * @return the number of partitions spilled to disk by all joins, including those split again
+   */
+  public int getNumSpilledPartitions() {
+    return numSpilledPartitions;
+  }
+
+  /**
+   * @return the number of spilled partitions joined in several chunks by all joins, as they did
+   *         not fit in memory once split {@link #MAX_LEVELS} times
+   */
+  public int getNumChunkedPartitions() {
+    return numChunkedPartitions;
+  }
+
+  private JoinHashTable[] build(KeyValueReader buildReader, JoinSpillFile[] buildSpills,
+      JoinSpillFile.Writer[] spillWriters) throws IOException {
+    JoinHashTable[] tables = new JoinHashTable[numPartitions];
+    for (int i = 0; i < numPartitions; ++i) {
+      tables[i] = new JoinHashTable();
+    }
+    long memoryUsed = 0;
+    while (buildReader.next()) {
+      JoinUtils.serialize(buildReader.getCurrentKey(), keyBuffer);
+      Object value = buildReader.getCurrentValue();
+      JoinUtils.serialize(value, valueBuffer);
+      if (buildValueClass == null) {
+        buildValueClass = value.getClass();
+      }
+      byte[] bytes = keyBuffer.getData();
+      int length = keyBuffer.getLength();
+      int partition = JoinUtils.getPartition(WritableComparator.hashBytes(bytes, length), 0,
+          numPartitions);
+      if (spillWriters[partition] != null) {
+        spillWriters[partition].write(bytes, 0, length, valueBuffer.getData(), 0,
+            valueBuffer.getLength());
+        continue;
+      }
+      long previousMemory = tables[partition].getMemoryUsed();
+      tables[partition].add(bytes, 0, length, valueBuffer.getData(), 0, valueBuffer.getLength());
+      memoryUsed += tables[partition].getMemoryUsed() - previousMemory;
+      while (memoryUsed > memoryLimit) {
+        int largest = getLargestPartition(tables);
+        if (largest < 0) {
+          break;
+        }
+        memoryUsed -= tables[largest].getMemoryUsed();
+        buildSpills[largest] = createSpillFile("build_" + largest + "_");
+        spillWriters[largest] = buildSpills[largest].openWriter();
+        tables[largest].writeTo(spillWriters[largest]);
+        if (LOG.isDebugEnabled()) {
+          LOG.debug("Spilled partition " + largest + " with " + tables[largest].getNumRows()
+              + " rows, memoryUsed=" + memoryUsed);
+        }
+        tables[largest] = null;
+        numSpilledPartitions++;
+      }
+    }
+    return tables;
+  }
+
+  private long joinSpilled(JoinSpillFile buildSpill, JoinSpillFile probeSpill, int level,
+      JoinWriter writer) throws IOException {
+    JoinSpillFile.Reader reader = buildSpill.openReader();
+    try {
+      JoinHashTable table = new JoinHashTable();
+      boolean more = load(table, reader);
+      if (!more || level > MAX_LEVELS) {
+        long numMatches = probe(table, probeSpill, writer);
+        if (more) {
+          numChunkedPartitions++;
+        }
+        while (more) {
+          table = new JoinHashTable();
+          more = load(table, reader);
+          numMatches += probe(table, probeSpill, writer);
+        }
+        return numMatches;
+      }
+    } finally {
+      reader.close();
+    }
+    return splitAndJoin(buildSpill, probeSpill, level, writer);
+  }
+
+  // Fills the table from the reader up to the memory limit, returning whether rows are left
+  private boolean load(JoinHashTable table, JoinSpillFile.Reader reader) throws IOException {
+    while (table.getMemoryUsed() <= memoryLimit) {
+      if (!reader.next()) {
+        return false;
+      }
+      table.add(reader.getKeyBytes(), 0, reader.getKeyLength(), reader.getValueBytes(), 0,
+          reader.getValueLength());
+    }
+    return true;
+  }
+
+  private long probe(JoinHashTable table, JoinSpillFile probeSpill, JoinWriter writer)
+      throws IOException {
+    if (table.size() == 0) {
+      return 0;
+    }
+    long numMatches = 0;
+    Writable key = JoinUtils.newWritable(keyClass, conf);
+    Writable buildValue = JoinUtils.newWritable(buildValueClass, conf);
+    Writable probeValue = JoinUtils.newWritable(probeValueClass, conf);
+    JoinSpillFile.Reader reader = probeSpill.openReader();
+    try {
+      while (reader.next()) {
+        List<byte[]> buildValues = table.get(reader.getKeyBytes(), 0, reader.getKeyLength());
+        if (buildValues != null) {
+          keyInput.reset(reader.getKeyBytes(), reader.getKeyLength());
+          key.readFields(keyInput);
+          valueInput.reset(reader.getValueBytes(), reader.getValueLength());
+          probeValue.readFields(valueInput);
+          numMatches += JoinUtils.writeMatches(writer, key, buildValues, buildValue,
+              valueInput, probeValue);
+        }
+      }
+    } finally {
+      reader.close();
+    }
+    return numMatches;
+  }
+
+  private long splitAndJoin(JoinSpillFile buildSpill, JoinSpillFile probeSpill, int level,
+      JoinWriter writer) throws IOException {
+    JoinSpillFile[] buildSplits = split(buildSpill, level, "build_");
+    JoinSpillFile[] probeSplits = split(probeSpill, level, "probe_");
+    long numMatches = 0;
+    for (int i = 0; i < numPartitions; ++i) {
+      if (buildSplits[i] != null && probeSplits[i] != null) {
+        numMatches += joinSpilled(buildSplits[i], probeSplits[i], level + 1, writer);
+      }
+    }
+    return numMatches;
+  }
+
+  private JoinSpillFile[] split(JoinSpillFile spillFile, int level, String prefix)
+      throws IOException {
+    JoinSpillFile[] splits = new JoinSpillFile[numPartitions];
+    JoinSpillFile.Writer[] writers = new JoinSpillFile.Writer[numPartitions];
+    JoinSpillFile.Reader reader = spillFile.openReader();
+    try {
+      while (reader.next()) {
+        int partition = JoinUtils.getPartition(
+            WritableComparator.hashBytes(reader.getKeyBytes(), reader.getKeyLength()), level,
+            numPartitions);
+        if (writers[partition] == null) {
+          splits[partition] = createSpillFile(prefix + level + "_" + partition + "_");
+          writers[partition] = splits[partition].openWriter();
+          numSpilledPartitions++;
+        }
+        writers[partition].write(reader.getKeyBytes(), 0, reader.getKeyLength(),
+            reader.getValueBytes(), 0, reader.getValueLength());
+      }
+      closeAll(writers);
+    } finally {
+      reader.close();
+      closeQuietly(writers);
+    }
+    spillFile.delete();
+    return splits;
+  }
+
+  private JoinSpillFile createSpillFile(String prefix) throws IOException {
+    JoinSpillFile spillFile = new JoinSpillFile(spillDir, prefix);
+    spillFiles.add(spillFile);
+    return spillFile;
+  }
+
+  private static int getLargestPartition(JoinHashTable[] tables) {
+    int largest = -1;
+    for (int i = 0; i < tables.length; ++i) {
+      if (tables[i] != null && tables[i].size() > 0
+          && (largest < 0 || tables[i].getMemoryUsed() > tables[largest].getMemoryUsed())) {
+        largest = i;
+      }
+    }
+    return largest;
+  }
+
+  private static void closeAll(Closeable[] closeables) throws IOException {
+    for (int i = 0; i < closeables.length; ++i) {
+      if (closeables[i] != null) {
+        closeables[i].close();
+        closeables[i] = null;
+      }
+    }
+  }
+
+  // Releases the files of writers left open by a failure
+  private static void closeQuietly(Closeable[] closeables) {
+    for (Closeable closeable : closeables) {
+      if (closeable != null) {
+        try {
+          closeable.close();
+        } catch (IOException e) {
+          LOG.warn("Failed to close join spill file", e);
+        }
+      }
+    }
+  }
+}
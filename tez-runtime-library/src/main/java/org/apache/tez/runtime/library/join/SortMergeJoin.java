@@ -0,0 +1,218 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.tez.runtime.library.join;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+import org.apache.hadoop.classification.InterfaceAudience.Public;
+import org.apache.hadoop.classification.InterfaceStability.Evolving;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.io.DataInputBuffer;
+import org.apache.hadoop.io.DataOutputBuffer;
+import org.apache.hadoop.io.Writable;
+import org.apache.tez.runtime.library.api.KeyValuesReader;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * Inner join of two inputs sorted on the join key, e.g. read from an
+ * {@link org.apache.tez.runtime.library.input.OrderedGroupedKVInput} or an
+ * {@link org.apache.tez.runtime.library.input.OrderedGroupedMergedKVInput}. Keys must be
+ * {@link Comparable} with the same ordering as the comparator used to sort the inputs, which is
+ * the case for WritableComparable keys with the default comparator.</p>
+ * Duplicate keys are supported on both sides. The values of the left group of each matching key
+ * are buffered in memory up to a memory limit, and the right group is streamed against them.
+ * A left group which does not fit, e.g. that of a hot key, is spilled to local disk, and the
+ * right group is then buffered in chunks which fit in memory, reading the spilled left group once
+ * per chunk. The values of each input must be of a single Writable class. Each pair of matching
+ * rows is written to the {@link JoinWriter}.
+ */
+@Public
+@Evolving
+public class SortMergeJoin {
+
+  private static final Logger LOG = LoggerFactory.getLogger(SortMergeJoin.class);
+
+  private static final byte[] EMPTY_KEY = new byte[0];
+
+  private final long memoryLimit;
+  private final File spillDir;
+  private final Configuration conf;
+
+  private final DataOutputBuffer valueBuffer = new DataOutputBuffer();
+  private final DataInputBuffer valueInput = new DataInputBuffer();
+  private final List<byte[]> bufferedRows = new ArrayList<byte[]>();
+  private int numSpilledGroups = 0;
+
+  /**
+   * @param memoryLimit estimated heap usage, in bytes, up to which the values of a key group are
+   *          held in memory
+   * @param spillDir local directory for the key groups spilled to disk
+   * @param conf used to create the values read back from memory or disk
+   */
+  public SortMergeJoin(long memoryLimit, File spillDir, Configuration conf) {
+    Preconditions.checkArgument(memoryLimit > 0, "memoryLimit must be positive");
+    this.memoryLimit = memoryLimit;
+    this.spillDir = spillDir;
+    this.conf = conf;
+  }
+
+  /**
+   * Joins the rows of both inputs, writing the matches to the writer.
+   *
+   * @return the number of matches written
+   */
+  public long join(KeyValuesReader leftReader, KeyValuesReader rightReader, JoinWriter writer)
+      throws IOException {
+    long numMatches = 0;
+    boolean hasLeft = leftReader.next();
+    boolean hasRight = rightReader.next();
+    while (hasLeft && hasRight) {
+      Object leftKey = leftReader.getCurrentKey();
+      int cmp = compare(leftKey, rightReader.getCurrentKey());
+      if (cmp < 0) {
+        hasLeft = leftReader.next();
+      } else if (cmp > 0) {
+        hasRight = rightReader.next();
+      } else {
+        numMatches += joinGroup(leftKey, leftReader.getCurrentValues(),
+            rightReader.getCurrentValues(), writer);
+        hasLeft = leftReader.next();
+        hasRight = rightReader.next();
+      }
+    }
+    LOG.info("Joined with " + numMatches + " matches, spilledGroups=" + numSpilledGroups);
+    return numMatches;
+  }
+
+  /**
+   * @return the number of left key groups spilled to disk by all joins
+   */
+  public int getNumSpilledGroups() {
+    return numSpilledGroups;
+  }
+
+  private long joinGroup(Object key, Iterable<Object> leftValues, Iterable<Object> rightValues,
+      JoinWriter writer) throws IOException {
+    JoinSpillFile spillFile = null;
+    JoinSpillFile.Writer spillWriter = null;
+    try {
+      bufferedRows.clear();
+      long memoryUsed = 0;
+      Class<?> leftValueClass = null;
+      for (Object value : leftValues) {
+        JoinUtils.serialize(value, valueBuffer);
+        leftValueClass = value.getClass();
+        if (spillWriter != null) {
+          spillWriter.write(EMPTY_KEY, 0, 0, valueBuffer.getData(), 0, valueBuffer.getLength());
+          continue;
+        }
+        bufferedRows.add(Arrays.copyOf(valueBuffer.getData(), valueBuffer.getLength()));
+        memoryUsed += valueBuffer.getLength() + JoinHashTable.ROW_OVERHEAD;
+        if (memoryUsed > memoryLimit) {
+          spillFile = new JoinSpillFile(spillDir, "group_");
+          spillWriter = spillFile.openWriter();
+          for (byte[] row : bufferedRows) {
+            spillWriter.write(EMPTY_KEY, 0, 0, row, 0, row.length);
+          }
+          bufferedRows.clear();
+          numSpilledGroups++;
+        }
+      }
+      if (leftValueClass == null) {
+        return 0;
+      }
+      Writable leftValue = JoinUtils.newWritable(leftValueClass, conf);
+
+      if (spillWriter == null) {
+        long numMatches = 0;
+        for (Object rightValue : rightValues) {
+          numMatches += JoinUtils.writeMatches(writer, key, bufferedRows, leftValue, valueInput,
+              rightValue);
+        }
+        return numMatches;
+      }
+      spillWriter.close();
+      spillWriter = null;
+      return joinSpilledGroup(key, spillFile, leftValue, rightValues.iterator(), writer);
+    } finally {
+      bufferedRows.clear();
+      if (spillWriter != null) {
+        try {
+          spillWriter.close();
+        } catch (IOException e) {
+          LOG.warn("Failed to close join spill file", e);
+        }
+      }
+      if (spillFile != null) {
+        spillFile.delete();
+      }
+    }
+  }
+
+  private long joinSpilledGroup(Object key, JoinSpillFile spillFile, Writable leftValue,
+      Iterator<Object> rightValues, JoinWriter writer) throws IOException {
+    long numMatches = 0;
+    Writable rightValue = null;
+    DataInputBuffer rightInput = new DataInputBuffer();
+    while (rightValues.hasNext()) {
+      bufferedRows.clear();
+      long memoryUsed = 0;
+      while (rightValues.hasNext() && memoryUsed <= memoryLimit) {
+        Object value = rightValues.next();
+        JoinUtils.serialize(value, valueBuffer);
+        if (rightValue == null) {
+          rightValue = JoinUtils.newWritable(value.getClass(), conf);
+        }
+        bufferedRows.add(Arrays.copyOf(valueBuffer.getData(), valueBuffer.getLength()));
+        memoryUsed += valueBuffer.getLength() + JoinHashTable.ROW_OVERHEAD;
+      }
+      JoinSpillFile.Reader reader = spillFile.openReader();
+      try {
+        while (reader.next()) {
+          valueInput.reset(reader.getValueBytes(), reader.getValueLength());
+          leftValue.readFields(valueInput);
+          for (byte[] row : bufferedRows) {
+            rightInput.reset(row, row.length);
+            rightValue.readFields(rightInput);
+            writer.write(key, leftValue, rightValue);
+          }
+          numMatches += bufferedRows.size();
+        }
+      } finally {
+        reader.close();
+      }
+    }
+    return numMatches;
+  }
+
+  @SuppressWarnings({ "unchecked", "rawtypes" })
+  private static int compare(Object left, Object right) {
+    Preconditions.checkArgument(left instanceof Comparable,
+        "Join keys must be Comparable, found: " + (left == null ? null : left.getClass()));
+    return ((Comparable) left).compareTo(right);
+  }
+}
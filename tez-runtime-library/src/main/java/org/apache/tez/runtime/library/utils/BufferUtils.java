@@ -26,6 +26,10 @@ import org.apache.hadoop.io.DataOutputBuffer;
 
 @Private
 public class BufferUtils {
+  public static int compare(byte[] b1, int s1, int l1, byte[] b2, int s2, int l2) {
+    return FastByteComparisons.compareTo(b1, s1, l1, b2, s2, l2);
+  }
+
   public static int compare(DataInputBuffer buf1, DataInputBuffer buf2) {
     byte[] b1 = buf1.getData();
     byte[] b2 = buf2.getData();
@@ -25,6 +25,7 @@ import java.security.PrivilegedAction;
 
 import sun.misc.Unsafe;
 
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.primitives.Longs;
 import com.google.common.primitives.UnsignedBytes;
 
@@ -47,12 +48,13 @@ final class FastByteComparisons {
   }
 
 
-  private interface Comparer<T> {
+  interface Comparer<T> {
     abstract public int compareTo(T buffer1, int offset1, int length1,
         T buffer2, int offset2, int length2);
   }
 
-  private static Comparer<byte[]> lexicographicalComparerJavaImpl() {
+  @VisibleForTesting
+  static Comparer<byte[]> lexicographicalComparerJavaImpl() {
     return LexicographicalComparerHolder.PureJavaComparer.INSTANCE;
   }
 
@@ -99,12 +101,29 @@ final class FastByteComparisons {
             length1 == length2) {
           return 0;
         }
-        // Bring WritableComparator code local
-        int end1 = offset1 + length1;
-        int end2 = offset2 + length2;
-        for (int i = offset1, j = offset2; i < end1 && j < end2; i++, j++) {
-          int a = (buffer1[i] & 0xff);
-          int b = (buffer2[j] & 0xff);
+        int minLength = Math.min(length1, length2);
+        int minWords = minLength / Longs.BYTES;
+
+        /*
+         * Compare 8 bytes at a time, as the Unsafe comparer does. Words read
+         * big-endian compare as unsigned longs like their bytes do.
+         */
+        for (int i = 0; i < minWords * Longs.BYTES; i += Longs.BYTES) {
+          int i1 = offset1 + i;
+          int i2 = offset2 + i;
+          long lw = Longs.fromBytes(buffer1[i1], buffer1[i1 + 1], buffer1[i1 + 2],
+              buffer1[i1 + 3], buffer1[i1 + 4], buffer1[i1 + 5], buffer1[i1 + 6], buffer1[i1 + 7]);
+          long rw = Longs.fromBytes(buffer2[i2], buffer2[i2 + 1], buffer2[i2 + 2],
+              buffer2[i2 + 3], buffer2[i2 + 4], buffer2[i2 + 5], buffer2[i2 + 6], buffer2[i2 + 7]);
+          if (lw != rw) {
+            return (lw + Long.MIN_VALUE) < (rw + Long.MIN_VALUE) ? -1 : 1;
+          }
+        }
+
+        // The epilogue to cover the last (minLength % 8) elements.
+        for (int i = minWords * Longs.BYTES; i < minLength; i++) {
+          int a = (buffer1[offset1 + i] & 0xff);
+          int b = (buffer2[offset2 + i] & 0xff);
           if (a != b) {
             return a - b;
           }
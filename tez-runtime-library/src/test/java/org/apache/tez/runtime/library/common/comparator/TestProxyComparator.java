@@ -79,4 +79,38 @@ public class TestProxyComparator {
       }
     }
   }
+
+  @SuppressWarnings("unchecked")
+  @Test(timeout = 5000)
+  public void testLongProxyComparator() {
+    final ProxyComparator<BytesWritable> comparator = new TezBytesComparator();
+    final String[] longKeys = {
+      "AAAAAAA", "AAAAAAAA", "AAAAAAAAA", "AAAAAAAB", "AAAAAAB", "AAAB",
+      "AAA\u00F7AAAA", "\u00F7\u00F7\u00F7\u00F7\u00F7"
+    };
+    BytesWritable lhs = new BytesWritable();
+    BytesWritable rhs = new BytesWritable();
+    for (String[] lkeys : new String[][] { keys, longKeys }) {
+      for (String l : lkeys) {
+        for (String r : longKeys) {
+          set(lhs, l);
+          set(rhs, r);
+          final long lproxy = comparator.getLongProxy(lhs);
+          final long rproxy = comparator.getLongProxy(rhs);
+          final int cmp = comparator.compare(lhs, rhs);
+          if (lproxy < rproxy) {
+            assertTrue(String.format("(%s) %d < (%s) %d", l, lproxy, r, rproxy), cmp < 0);
+          }
+          if (lproxy > rproxy) {
+            assertTrue(String.format("(%s) %d > (%s) %d", l, lproxy, r, rproxy), cmp > 0);
+          }
+        }
+      }
+    }
+    // keys differing only after the first 3 bytes are told apart by the long proxy
+    set(lhs, "AAAA");
+    set(rhs, "AAAB");
+    assertTrue(comparator.getProxy(lhs) == comparator.getProxy(rhs));
+    assertTrue(comparator.getLongProxy(lhs) < comparator.getLongProxy(rhs));
+  }
 }
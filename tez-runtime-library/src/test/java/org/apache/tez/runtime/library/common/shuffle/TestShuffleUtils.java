@@ -17,6 +17,7 @@ import org.apache.tez.common.TezCommonUtils;
 import org.apache.tez.common.TezRuntimeFrameworkConfigs;
 import org.apache.tez.common.TezUtilsInternal;
 import org.apache.tez.common.counters.TezCounters;
+import org.apache.tez.common.security.JobTokenSecretManager;
 import org.apache.tez.runtime.api.Event;
 import org.apache.tez.runtime.api.InputContext;
 import org.apache.tez.runtime.api.OutputContext;
@@ -24,6 +25,7 @@ import org.apache.tez.runtime.api.events.CompositeDataMovementEvent;
 import org.apache.tez.runtime.api.events.VertexManagerEvent;
 import org.apache.tez.runtime.api.impl.ExecutionContextImpl;
 import org.apache.tez.runtime.library.api.TezRuntimeConfiguration;
+import org.apache.tez.runtime.library.common.security.SecureShuffleUtils;
 import org.apache.tez.runtime.library.common.sort.impl.IFileOutputStream;
 import org.apache.tez.runtime.library.common.sort.impl.TezIndexRecord;
 import org.apache.tez.runtime.library.common.sort.impl.TezSpillRecord;
@@ -39,12 +41,15 @@ import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.net.URL;
 import java.nio.ByteBuffer;
 import java.util.Arrays;
 import java.util.BitSet;
 import java.util.List;
 import java.util.Random;
 
+import javax.crypto.SecretKey;
+
 import static org.mockito.Mockito.any;
 import static org.mockito.Mockito.anyInt;
 import static org.mockito.Mockito.doReturn;
@@ -313,4 +318,28 @@ public class TestShuffleUtils {
     } catch (IOException e) {
     }
   }
+
+  @Test(timeout = 5000)
+  public void testVerifyReply() throws IOException {
+    SecretKey key = JobTokenSecretManager.createSecretKey("secret".getBytes());
+    JobTokenSecretManager mgr = new JobTokenSecretManager(key);
+    String msg = SecureShuffleUtils.buildMsgFrom(
+        new URL("http://somehost:13562/mapOutput?job=job_1&map=attempt_1"));
+    String hash = SecureShuffleUtils.hashFromString(msg, mgr);
+    SecureShuffleUtils.verifyReply(hash, msg, mgr);
+    SecureShuffleUtils.verifyReply(hash, msg, key);
+
+    // A hash of another message, or made with another key, is rejected
+    verifyReplyFails(SecureShuffleUtils.hashFromString(msg + "&reduce=1", mgr), msg, key);
+    verifyReplyFails(SecureShuffleUtils.generateHash(msg.getBytes(),
+        JobTokenSecretManager.createSecretKey("other".getBytes())), msg, key);
+  }
+
+  private void verifyReplyFails(String hash, String msg, SecretKey key) {
+    try {
+      SecureShuffleUtils.verifyReply(hash, msg, key);
+      Assert.fail("hash was supposed to be rejected!");
+    } catch (IOException e) {
+    }
+  }
 }
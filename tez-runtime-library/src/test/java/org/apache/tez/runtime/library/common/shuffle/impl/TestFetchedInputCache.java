@@ -0,0 +1,90 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.tez.runtime.library.common.shuffle.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import org.apache.tez.runtime.common.objectregistry.ObjectRegistryImpl;
+import org.apache.tez.runtime.library.common.InputAttemptIdentifier;
+import org.apache.tez.runtime.library.common.shuffle.FetchedInput;
+import org.apache.tez.runtime.library.common.shuffle.MemoryFetchedInput;
+import org.junit.Test;
+
+public class TestFetchedInputCache {
+
+  @Test(timeout = 5000)
+  public void testCacheHitAndEviction() {
+    FetchedInputCache cache = new FetchedInputCache(100);
+    InputAttemptIdentifier src1 = new InputAttemptIdentifier(0, 0, "attempt_0_path");
+    InputAttemptIdentifier src2 = new InputAttemptIdentifier(1, 0, "attempt_1_path");
+    InputAttemptIdentifier src3 = new InputAttemptIdentifier(2, 0, "attempt_2_path");
+
+    assertNull(cache.get(src1, 0));
+    byte[] data1 = new byte[60];
+    cache.put(src1, 0, data1, 30);
+    assertNull(cache.get(src1, 1));
+
+    MemoryFetchedInput cached = cache.get(src1, 0);
+    assertNotNull(cached);
+    assertEquals(FetchedInput.Type.MEMORY, cached.getType());
+    assertSame(data1, cached.getBytes());
+    assertEquals(60, cached.getActualSize());
+    assertEquals(30, cached.getCompressedSize());
+
+    // src1 is in use, so there is no room for src2
+    cache.put(src2, 0, new byte[60], 60);
+    assertNull(cache.get(src2, 0));
+    assertEquals(60, cache.getCurrentSize());
+
+    // Once released, src1 can be evicted
+    cached.commit();
+    cached.free();
+    cache.put(src2, 0, new byte[60], 60);
+    assertNull(cache.get(src1, 0));
+    assertEquals(60, cache.getCurrentSize());
+    assertEquals(1, cache.getEvictions());
+
+    // Larger than the cache
+    cache.put(src3, 0, new byte[101], 101);
+    assertNull(cache.get(src3, 0));
+
+    // Aborted inputs release their reference as well
+    MemoryFetchedInput cached2 = cache.get(src2, 0);
+    cached2.abort();
+    cache.put(src3, 0, new byte[50], 50);
+    assertNotNull(cache.get(src3, 0));
+    assertEquals(2, cache.getEvictions());
+  }
+
+  @Test(timeout = 5000)
+  public void testRegistryLifecycle() {
+    ObjectRegistryImpl objectRegistry = new ObjectRegistryImpl();
+    FetchedInputCache cache = FetchedInputCache.getOrCreate(objectRegistry, 100);
+    assertSame(cache, FetchedInputCache.getOrCreate(objectRegistry, 100));
+
+    objectRegistry.clearCache(ObjectRegistryImpl.ObjectLifeCycle.VERTEX);
+    assertSame(cache, FetchedInputCache.getOrCreate(objectRegistry, 100));
+
+    objectRegistry.clearCache(ObjectRegistryImpl.ObjectLifeCycle.DAG);
+    assertNull(objectRegistry.get(FetchedInputCache.REGISTRY_KEY));
+  }
+}
@@ -50,6 +50,8 @@ import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.io.FileChunk;
 import org.apache.hadoop.io.IntWritable;
 import org.apache.tez.common.TezRuntimeFrameworkConfigs;
+import org.apache.tez.common.counters.TaskCounter;
+import org.apache.tez.common.counters.TezCounter;
 import org.apache.tez.common.counters.TezCounters;
 import org.apache.tez.dag.api.TezConfiguration;
 import org.apache.tez.runtime.api.InputContext;
@@ -204,6 +206,39 @@ public class TestMergeManager {
     assertEquals(0, mergeManager.getCommitMemory());
   }
 
+  @Test(timeout = 10000)
+  public void testMergeQueueDepthSummedOverInputs() throws Throwable {
+    Configuration conf = new TezConfiguration(defaultConf);
+    FileSystem localFs = FileSystem.getLocal(conf);
+    // The inputs of a task share its counters
+    TezCounters counters = new TezCounters();
+    InputContext t0inputContext = createMockInputContext(UUID.randomUUID().toString());
+    doReturn(counters).when(t0inputContext).getCounters();
+    InputContext t1inputContext = createMockInputContext(UUID.randomUUID().toString());
+    doReturn(counters).when(t1inputContext).getCounters();
+    MergeManager t0mergeManager =
+        new MergeManager(conf, localFs, null, t0inputContext, null, null, null, null,
+        mock(ExceptionReporter.class), 2000000, null, false, -1);
+    t0mergeManager.configureAndStart();
+    MergeManager t1mergeManager =
+        new MergeManager(conf, localFs, null, t1inputContext, null, null, null, null,
+        mock(ExceptionReporter.class), 2000000, null, false, -1);
+    t1mergeManager.configureAndStart();
+    TezCounter mergeQueueDepth = counters.findCounter(TaskCounter.SHUFFLE_MERGE_QUEUE_DEPTH);
+
+    t0mergeManager.closeInMemoryFile(t0mergeManager.reserve(null, 1, 1, 0));
+    t0mergeManager.closeInMemoryFile(t0mergeManager.reserve(null, 1, 1, 0));
+    assertEquals(2, mergeQueueDepth.getValue());
+    t1mergeManager.closeInMemoryFile(t1mergeManager.reserve(null, 1, 1, 0));
+    assertEquals(3, mergeQueueDepth.getValue());
+
+    // Closing an input only removes its own outputs from the depth
+    t0mergeManager.close(false);
+    assertEquals(1, mergeQueueDepth.getValue());
+    t1mergeManager.close(false);
+    assertEquals(0, mergeQueueDepth.getValue());
+  }
+
   @Test(timeout=20000)
   public void testIntermediateMemoryMergeAccounting() throws Exception {
     Configuration conf = new TezConfiguration(defaultConf);
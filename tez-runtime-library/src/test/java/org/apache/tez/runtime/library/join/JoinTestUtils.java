@@ -0,0 +1,215 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.tez.runtime.library.join;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.hadoop.io.Text;
+import org.apache.tez.runtime.library.api.KeyValueReader;
+import org.apache.tez.runtime.library.api.KeyValuesReader;
+
+class JoinTestUtils {
+
+  /**
+   * @return the value of the row at the index of an input, unique to the row
+   */
+  static String valueOf(String input, int index) {
+    return input + "_" + index;
+  }
+
+  /**
+   * Reads the keys in order, each with its value, see {@link #valueOf(String, int)}.
+   */
+  static class ListKeyValueReader extends KeyValueReader {
+    private final String input;
+    private final List<String> keys;
+    private int index = -1;
+    private final Text key = new Text();
+    private final Text value = new Text();
+
+    ListKeyValueReader(String input, List<String> keys) {
+      this.input = input;
+      this.keys = keys;
+    }
+
+    @Override
+    public boolean next() throws IOException {
+      if (index + 1 == keys.size()) {
+        return false;
+      }
+      index++;
+      // Reuse the key and value objects, like the readers of the library
+      key.set(keys.get(index));
+      value.set(valueOf(input, index));
+      return true;
+    }
+
+    @Override
+    public Object getCurrentKey() throws IOException {
+      return key;
+    }
+
+    @Override
+    public Object getCurrentValue() throws IOException {
+      return value;
+    }
+  }
+
+  /**
+   * Reads the keys sorted and grouped, with the value of each row, see
+   * {@link #valueOf(String, int)}. The values of a group may only be iterated once.
+   */
+  static class ListKeyValuesReader extends KeyValuesReader {
+    private final List<String> sortedRows;
+    private int index = 0;
+    private final Text key = new Text();
+    private final Text value = new Text();
+    private final List<String> values = new ArrayList<String>();
+
+    ListKeyValuesReader(String input, List<String> keys) {
+      // Sort on the key, then the value
+      this.sortedRows = new ArrayList<String>();
+      for (int i = 0; i < keys.size(); i++) {
+        sortedRows.add(keys.get(i) + "\t" + valueOf(input, i));
+      }
+      Collections.sort(sortedRows);
+    }
+
+    @Override
+    public boolean next() throws IOException {
+      if (index == sortedRows.size()) {
+        return false;
+      }
+      String current = getKey(sortedRows.get(index));
+      key.set(current);
+      values.clear();
+      while (index < sortedRows.size() && getKey(sortedRows.get(index)).equals(current)) {
+        String row = sortedRows.get(index);
+        values.add(row.substring(row.indexOf('\t') + 1));
+        index++;
+      }
+      return true;
+    }
+
+    @Override
+    public Object getCurrentKey() throws IOException {
+      return key;
+    }
+
+    @Override
+    public Iterable<Object> getCurrentValues() throws IOException {
+      final Iterator<String> it = new ArrayList<String>(values).iterator();
+      values.clear();
+      return new Iterable<Object>() {
+        @Override
+        public Iterator<Object> iterator() {
+          return new Iterator<Object>() {
+            @Override
+            public boolean hasNext() {
+              return it.hasNext();
+            }
+
+            @Override
+            public Object next() {
+              value.set(it.next());
+              return value;
+            }
+
+            @Override
+            public void remove() {
+              throw new UnsupportedOperationException();
+            }
+          };
+        }
+      };
+    }
+
+    private static String getKey(String row) {
+      return row.substring(0, row.indexOf('\t'));
+    }
+  }
+
+  /**
+   * Counts the matches written, by key and values.
+   */
+  static class CountingJoinWriter extends JoinWriter {
+    final Map<String, Long> counts = new HashMap<String, Long>();
+
+    @Override
+    public void write(Object key, Object leftValue, Object rightValue) throws IOException {
+      String str = toMatch(key.toString(), leftValue.toString(), rightValue.toString());
+      Long count = counts.get(str);
+      counts.put(str, count == null ? 1 : count + 1);
+    }
+  }
+
+  /**
+   * @return the number of matches of each pair of rows of the left and right inputs with the
+   *         same key
+   */
+  static Map<String, Long> expectedMatches(String leftInput, List<String> leftKeys,
+      String rightInput, List<String> rightKeys) {
+    Map<String, List<Integer>> leftRows = new HashMap<String, List<Integer>>();
+    for (int i = 0; i < leftKeys.size(); i++) {
+      List<Integer> rows = leftRows.get(leftKeys.get(i));
+      if (rows == null) {
+        rows = new ArrayList<Integer>();
+        leftRows.put(leftKeys.get(i), rows);
+      }
+      rows.add(i);
+    }
+    Map<String, Long> expected = new HashMap<String, Long>();
+    for (int i = 0; i < rightKeys.size(); i++) {
+      String key = rightKeys.get(i);
+      List<Integer> rows = leftRows.get(key);
+      if (rows != null) {
+        for (int row : rows) {
+          expected.put(toMatch(key, valueOf(leftInput, row), valueOf(rightInput, i)), 1L);
+        }
+      }
+    }
+    return expected;
+  }
+
+  private static String toMatch(String key, String leftValue, String rightValue) {
+    return key + "," + leftValue + "," + rightValue;
+  }
+
+  /**
+   * Creates keys k_0 to k_(numKeys - 1), each repeated, followed by a hot key repeated.
+   */
+  static List<String> createKeys(int numKeys, int keyCopies, int hotKeyCopies) {
+    List<String> keys = new ArrayList<String>();
+    for (int i = 0; i < keyCopies; i++) {
+      for (int j = 0; j < numKeys; j++) {
+        keys.add("k_" + j);
+      }
+    }
+    for (int i = 0; i < hotKeyCopies; i++) {
+      keys.add("hot");
+    }
+    return keys;
+  }
+}
@@ -0,0 +1,155 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.tez.runtime.library.join;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.File;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileUtil;
+import org.apache.tez.runtime.api.LogicalInput;
+import org.apache.tez.runtime.api.ObjectRegistry;
+import org.apache.tez.runtime.library.join.JoinTestUtils.CountingJoinWriter;
+import org.apache.tez.runtime.library.join.JoinTestUtils.ListKeyValueReader;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+public class TestPartitionedHashJoin {
+
+  private File spillDir;
+
+  @Before
+  public void setup() {
+    spillDir = new File(System.getProperty("test.build.data", "/tmp"),
+        TestPartitionedHashJoin.class.getName());
+    FileUtil.fullyDelete(spillDir);
+    assertTrue(spillDir.mkdirs());
+  }
+
+  @After
+  public void cleanup() {
+    FileUtil.fullyDelete(spillDir);
+  }
+
+  @Test(timeout = 10000)
+  public void testJoinInMemory() throws Exception {
+    List<String> buildKeys = JoinTestUtils.createKeys(100, 2, 20);
+    List<String> probeKeys = JoinTestUtils.createKeys(200, 1, 50);
+    PartitionedHashJoin join =
+        new PartitionedHashJoin(1024 * 1024, 4, spillDir, new Configuration());
+    CountingJoinWriter writer = new CountingJoinWriter();
+
+    long numMatches = join.join(new ListKeyValueReader("b", buildKeys),
+        new ListKeyValueReader("p", probeKeys), writer);
+
+    Map<String, Long> expected = JoinTestUtils.expectedMatches("b", buildKeys, "p", probeKeys);
+    assertEquals(expected, writer.counts);
+    assertEquals(100 * 2 + 20 * 50, numMatches);
+    assertEquals(0, join.getNumSpilledPartitions());
+    assertEquals(0, spillDir.list().length);
+  }
+
+  @Test(timeout = 10000)
+  public void testJoinWithSpills() throws Exception {
+    List<String> buildKeys = JoinTestUtils.createKeys(500, 4, 50);
+    List<String> probeKeys = JoinTestUtils.createKeys(1000, 1, 100);
+    // Each partition holds about 30KB of rows, which need more levels of splits to fit
+    PartitionedHashJoin join = new PartitionedHashJoin(4000, 4, spillDir, new Configuration());
+    CountingJoinWriter writer = new CountingJoinWriter();
+
+    long numMatches = join.join(new ListKeyValueReader("b", buildKeys),
+        new ListKeyValueReader("p", probeKeys), writer);
+
+    Map<String, Long> expected = JoinTestUtils.expectedMatches("b", buildKeys, "p", probeKeys);
+    assertEquals(expected, writer.counts);
+    assertEquals(500 * 4 + 50 * 100, numMatches);
+    assertTrue(join.getNumSpilledPartitions() > 4);
+    assertEquals(0, join.getNumChunkedPartitions());
+    assertEquals(0, spillDir.list().length);
+  }
+
+  @Test(timeout = 10000)
+  public void testJoinWithHotKeyExceedingMemory() throws Exception {
+    // The rows of the hot key alone take several times the memory limit
+    List<String> buildKeys = JoinTestUtils.createKeys(100, 1, 1000);
+    List<String> probeKeys = JoinTestUtils.createKeys(100, 1, 5);
+    PartitionedHashJoin join = new PartitionedHashJoin(4000, 4, spillDir, new Configuration());
+    CountingJoinWriter writer = new CountingJoinWriter();
+
+    long numMatches = join.join(new ListKeyValueReader("b", buildKeys),
+        new ListKeyValueReader("p", probeKeys), writer);
+
+    Map<String, Long> expected = JoinTestUtils.expectedMatches("b", buildKeys, "p", probeKeys);
+    assertEquals(expected, writer.counts);
+    assertEquals(100 + 1000 * 5, numMatches);
+    assertEquals(1, join.getNumChunkedPartitions());
+    assertEquals(0, spillDir.list().length);
+  }
+
+  @Test(timeout = 10000)
+  public void testJoinEmptyBuildSide() throws Exception {
+    PartitionedHashJoin join = new PartitionedHashJoin(100, 4, spillDir, new Configuration());
+    CountingJoinWriter writer = new CountingJoinWriter();
+
+    long numMatches = join.join(new ListKeyValueReader("b", JoinTestUtils.createKeys(0, 0, 0)),
+        new ListKeyValueReader("p", JoinTestUtils.createKeys(100, 1, 10)), writer);
+
+    assertEquals(0, numMatches);
+    assertTrue(writer.counts.isEmpty());
+  }
+
+  @Test(timeout = 10000)
+  public void testBroadcastHashJoinReusesTable() throws Exception {
+    List<String> buildKeys = JoinTestUtils.createKeys(100, 2, 20);
+    List<String> probeKeys = JoinTestUtils.createKeys(200, 1, 50);
+    Map<String, Long> expected = JoinTestUtils.expectedMatches("b", buildKeys, "p", probeKeys);
+    ObjectRegistry objectRegistry = mock(ObjectRegistry.class);
+    LogicalInput buildInput = mock(LogicalInput.class);
+    when(buildInput.getReader()).thenReturn(new ListKeyValueReader("b", buildKeys));
+
+    BroadcastHashJoin join = BroadcastHashJoin.create(objectRegistry, "build", buildInput);
+    CountingJoinWriter writer = new CountingJoinWriter();
+    join.join(new ListKeyValueReader("p", probeKeys), writer);
+    assertEquals(expected, writer.counts);
+
+    ArgumentCaptor<Object> table = ArgumentCaptor.forClass(Object.class);
+    verify(objectRegistry).cacheForVertex(anyString(), table.capture());
+    ObjectRegistry cachedRegistry = mock(ObjectRegistry.class);
+    when(cachedRegistry.get(anyString())).thenReturn(table.getValue());
+    LogicalInput unreadInput = mock(LogicalInput.class);
+
+    join = BroadcastHashJoin.create(cachedRegistry, "build", unreadInput);
+    assertTrue(join.isReused());
+    writer = new CountingJoinWriter();
+    join.join(new ListKeyValueReader("p", probeKeys), writer);
+    assertEquals(expected, writer.counts);
+    verify(unreadInput, never()).getReader();
+  }
+}
@@ -0,0 +1,96 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.tez.runtime.library.join;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.List;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileUtil;
+import org.apache.tez.runtime.library.join.JoinTestUtils.CountingJoinWriter;
+import org.apache.tez.runtime.library.join.JoinTestUtils.ListKeyValuesReader;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestSortMergeJoin {
+
+  private File spillDir;
+
+  @Before
+  public void setup() {
+    spillDir = new File(System.getProperty("test.build.data", "/tmp"),
+        TestSortMergeJoin.class.getName());
+    FileUtil.fullyDelete(spillDir);
+    assertTrue(spillDir.mkdirs());
+  }
+
+  @After
+  public void cleanup() {
+    FileUtil.fullyDelete(spillDir);
+  }
+
+  @Test(timeout = 10000)
+  public void testJoinWithDuplicateKeys() throws Exception {
+    List<String> leftKeys = JoinTestUtils.createKeys(100, 3, 20);
+    List<String> rightKeys = JoinTestUtils.createKeys(150, 2, 40);
+    SortMergeJoin join = new SortMergeJoin(1024 * 1024, spillDir, new Configuration());
+    CountingJoinWriter writer = new CountingJoinWriter();
+
+    long numMatches = join.join(new ListKeyValuesReader("l", leftKeys),
+        new ListKeyValuesReader("r", rightKeys), writer);
+
+    assertEquals(JoinTestUtils.expectedMatches("l", leftKeys, "r", rightKeys), writer.counts);
+    assertEquals(100 * 3 * 2 + 20 * 40, numMatches);
+    assertEquals(0, join.getNumSpilledGroups());
+  }
+
+  @Test(timeout = 10000)
+  public void testJoinWithHotKeyExceedingMemory() throws Exception {
+    // The left rows of the hot key take several times the memory limit, and so do its right rows
+    List<String> leftKeys = JoinTestUtils.createKeys(100, 2, 500);
+    List<String> rightKeys = JoinTestUtils.createKeys(100, 1, 300);
+    SortMergeJoin join = new SortMergeJoin(2000, spillDir, new Configuration());
+    CountingJoinWriter writer = new CountingJoinWriter();
+
+    long numMatches = join.join(new ListKeyValuesReader("l", leftKeys),
+        new ListKeyValuesReader("r", rightKeys), writer);
+
+    assertEquals(JoinTestUtils.expectedMatches("l", leftKeys, "r", rightKeys), writer.counts);
+    assertEquals(100 * 2 + 500 * 300, numMatches);
+    assertEquals(1, join.getNumSpilledGroups());
+    assertEquals(0, spillDir.list().length);
+  }
+
+  @Test(timeout = 10000)
+  public void testJoinEmptySide() throws Exception {
+    SortMergeJoin join = new SortMergeJoin(1024 * 1024, spillDir, new Configuration());
+    CountingJoinWriter writer = new CountingJoinWriter();
+
+    long numMatches = join.join(
+        new ListKeyValuesReader("l", JoinTestUtils.createKeys(100, 1, 0)),
+        new ListKeyValuesReader("r", JoinTestUtils.createKeys(0, 0, 0)), writer);
+
+    assertEquals(0, numMatches);
+    assertEquals(0, writer.counts.size());
+  }
+}
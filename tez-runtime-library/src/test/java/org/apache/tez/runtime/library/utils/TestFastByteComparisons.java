@@ -0,0 +1,56 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.tez.runtime.library.utils;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+
+import org.apache.hadoop.io.WritableComparator;
+import org.junit.Test;
+
+public class TestFastByteComparisons {
+
+  @Test(timeout = 10000)
+  public void testComparersAgree() {
+    FastByteComparisons.Comparer<byte[]> javaComparer =
+        FastByteComparisons.lexicographicalComparerJavaImpl();
+    Random random = new Random();
+    byte[] b1 = new byte[64];
+    byte[] b2 = new byte[64];
+    for (int i = 0; i < 10000; i++) {
+      random.nextBytes(b1);
+      // common prefixes of all lengths, so that words and the epilogue differ
+      System.arraycopy(b1, 0, b2, 0, b2.length);
+      int diff = random.nextInt(b2.length);
+      b2[diff] = (byte) random.nextInt();
+      int s1 = random.nextInt(8);
+      int s2 = random.nextInt(8);
+      int l1 = random.nextInt(b1.length - 8);
+      int l2 = random.nextInt(b2.length - 8);
+      if (random.nextBoolean()) {
+        s2 = s1;
+      }
+      int expected = Integer.signum(WritableComparator.compareBytes(b1, s1, l1, b2, s2, l2));
+      assertEquals(expected, Integer.signum(javaComparer.compareTo(b1, s1, l1, b2, s2, l2)));
+      assertEquals(expected,
+          Integer.signum(FastByteComparisons.compareTo(b1, s1, l1, b2, s2, l2)));
+    }
+  }
+}
@@ -20,11 +20,14 @@ package org.apache.tez.test;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 
 import org.apache.hadoop.fs.FSDataOutputStream;
 import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.FileUtil;
 import org.apache.hadoop.fs.Path;
 import org.apache.tez.client.TezClient;
 import org.apache.tez.dag.api.DAG;
@@ -32,6 +35,7 @@ import org.apache.tez.dag.api.ProcessorDescriptor;
 import org.apache.tez.dag.api.TezConfiguration;
 import org.apache.tez.dag.api.TezConstants;
 import org.apache.tez.dag.api.TezException;
+import org.apache.tez.dag.api.UserPayload;
 import org.apache.tez.dag.api.Vertex;
 import org.apache.tez.dag.api.client.DAGClient;
 import org.apache.tez.dag.api.client.DAGStatus;
@@ -42,9 +46,13 @@ import org.apache.tez.runtime.api.LogicalInput;
 import org.apache.tez.runtime.api.LogicalOutput;
 import org.apache.tez.runtime.api.ProcessorContext;
 import org.apache.tez.runtime.library.api.TezRuntimeConfiguration;
+import org.apache.tez.runtime.library.common.Constants;
 import org.apache.tez.runtime.library.processor.SleepProcessor;
 import org.junit.Test;
 
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+
 import static org.junit.Assert.*;
 
 public class TestLocalMode {
@@ -252,6 +260,121 @@ public class TestLocalMode {
     }
   }
 
+  @Test(timeout=60000)
+  public void testLocalDirsWithParallelTasks() throws IOException, TezException,
+      InterruptedException {
+    File localDirs = new File(TEST_DIR, "local-dirs");
+    localDirs.mkdirs();
+    File taskTimesDir = new File(TEST_DIR, "task-times");
+    FileUtil.fullyDelete(taskTimesDir);
+    taskTimesDir.mkdirs();
+    TezConfiguration tezConf = new TezConfiguration();
+    tezConf.setBoolean(TezConfiguration.TEZ_LOCAL_MODE, true);
+    tezConf.set("fs.defaultFS", "file:///");
+    tezConf.setBoolean(TezRuntimeConfiguration.TEZ_RUNTIME_OPTIMIZE_LOCAL_FETCH, true);
+    tezConf.set(TezConfiguration.TEZ_LOCAL_MODE_LOCAL_DIRS, localDirs.getAbsolutePath());
+    tezConf.setInt(TezConfiguration.TEZ_AM_INLINE_TASK_EXECUTION_MAX_TASKS, -1);
+    TezClient tezClient = TezClient.create("testLocalDirsWithParallelTasks", tezConf, true);
+    tezClient.start();
+
+    FileSystem fs = FileSystem.get(tezConf);
+    String inputPath = new Path(TEST_DIR.getAbsolutePath(), "local-dirs-in").toString();
+    createInputFile(fs, inputPath);
+    String outputPath = new Path(TEST_DIR.getAbsolutePath(), "local-dirs-out").toString();
+    int numTasks = 4;
+    try {
+      DAG dag = OrderedWordCount.createDAG(tezConf, inputPath, outputPath, 2,
+          false, false, "LocalDirsDAG");
+      tezClient.waitTillReady();
+      DAGStatus dagStatus = tezClient.submitDAG(dag).waitForCompletion();
+      if (dagStatus.getState() != DAGStatus.State.SUCCEEDED) {
+        fail("DAG failed with diagnostics: " + dagStatus.getDiagnostics());
+      }
+      // Task outputs were written to the configured directories
+      assertEquals(1, localDirs.list().length);
+      assertTrue(countFiles(localDirs, Constants.TEZ_RUNTIME_TASK_OUTPUT_FILENAME_STRING) > 0);
+
+      DAG parallelDag = DAG.create("ParallelTasksDAG").addVertex(Vertex.create("Parallel",
+          ProcessorDescriptor.create(TaskTimesProcessor.class.getName()).setUserPayload(
+              UserPayload.create(ByteBuffer.wrap(taskTimesDir.getAbsolutePath()
+                  .getBytes(Charsets.UTF_8)))), numTasks));
+      dagStatus = tezClient.submitDAG(parallelDag).waitForCompletion();
+      assertEquals(DAGStatus.State.SUCCEEDED, dagStatus.getState());
+    } finally {
+      tezClient.stop();
+    }
+    assertEquals(0, localDirs.list().length);
+
+    // Tasks ran side by side, up to one per core
+    List<long[]> taskTimes = new ArrayList<long[]>();
+    for (File taskTimesFile : taskTimesDir.listFiles()) {
+      String[] times = Files.toString(taskTimesFile, Charsets.UTF_8).split(" ");
+      taskTimes.add(new long[] {Long.parseLong(times[0]), Long.parseLong(times[1])});
+    }
+    assertEquals(numTasks, taskTimes.size());
+    int maxRunning = 0;
+    for (long[] task : taskTimes) {
+      int running = 0;
+      for (long[] other : taskTimes) {
+        if (other[0] <= task[0] && task[0] < other[1]) {
+          running++;
+        }
+      }
+      maxRunning = Math.max(maxRunning, running);
+    }
+    int cores = Runtime.getRuntime().availableProcessors();
+    assertTrue("Max concurrent tasks: " + maxRunning, maxRunning >= Math.min(2, cores));
+    assertTrue("Max concurrent tasks: " + maxRunning, maxRunning <= cores);
+  }
+
+  private static int countFiles(File dir, String name) {
+    int count = 0;
+    File[] files = dir.listFiles();
+    if (files != null) {
+      for (File file : files) {
+        if (file.isDirectory()) {
+          count += countFiles(file, name);
+        } else if (file.getName().equals(name)) {
+          count++;
+        }
+      }
+    }
+    return count;
+  }
+
+  /**
+   * Writes the start and end time of the task to a file in the directory given in the payload.
+   */
+  public static class TaskTimesProcessor extends AbstractLogicalIOProcessor {
+
+    public TaskTimesProcessor(ProcessorContext context) {
+      super(context);
+    }
+
+    @Override
+    public void initialize() throws Exception {
+    }
+
+    @Override
+    public void handleEvents(List<Event> processorEvents) {
+    }
+
+    @Override
+    public void close() throws Exception {
+    }
+
+    @Override
+    public void run(Map<String, LogicalInput> inputs, Map<String, LogicalOutput> outputs) throws
+        Exception {
+      long start = System.currentTimeMillis();
+      Thread.sleep(2000);
+      long end = System.currentTimeMillis();
+      String dir = Charsets.UTF_8.decode(getContext().getUserPayload().getPayload()).toString();
+      Files.write(start + " " + end, new File(dir, "task_" + getContext().getTaskIndex()),
+          Charsets.UTF_8);
+    }
+  }
+
   private void createInputFile(FileSystem fs, String path) throws IOException {
     Path file = new Path(new Path(path), "input.txt");
     try {